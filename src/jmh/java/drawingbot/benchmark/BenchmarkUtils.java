@@ -0,0 +1,84 @@
+package drawingbot.benchmark;
+
+import drawingbot.JUnitDBV3ClassRunner;
+import drawingbot.JUnitDBV3Launcher;
+import drawingbot.image.PixelDataARGBY;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Utility methods for creating the fixed inputs used by the benchmarks, all inputs are seeded so results are comparable between runs
+ */
+public class BenchmarkUtils {
+
+    public static final long SEED = 1234;
+
+    private static boolean launched = false;
+
+    /**
+     * Starts the application in the same way as the unit tests, with the default test image & unit test presets loaded
+     * Only required by benchmarks which use the registries / projects, e.g. PFMs and Export Handlers
+     */
+    public static synchronized void launchApplication(){
+        if(launched){
+            return;
+        }
+        launched = true;
+        JUnitDBV3Launcher.postLaunchMethod = JUnitDBV3ClassRunner::setupTestDBV3Free;
+        JUnitDBV3Launcher.startJavaFx();
+    }
+
+    /**
+     * Creates pixel data with smooth gradients and noise, similar in character to a photograph
+     */
+    public static PixelDataARGBY createTestPixelData(int width, int height, long seed){
+        Random random = new Random(seed);
+        double phaseX = random.nextDouble() * Math.PI * 2;
+        double phaseY = random.nextDouble() * Math.PI * 2;
+
+        PixelDataARGBY pixelData = new PixelDataARGBY(width, height);
+        for(int x = 0; x < width; x++){
+            for(int y = 0; y < height; y++){
+                double gradient = Math.sin(x * 0.013 + phaseX) * Math.cos(y * 0.017 + phaseY);
+                int value = (int) (127 + gradient * 100 + random.nextGaussian() * 12);
+                value = Math.max(0, Math.min(255, value));
+                pixelData.setARGB(x, y, 255, value, value, value);
+            }
+        }
+        return pixelData;
+    }
+
+    /**
+     * Creates random walks of short line segments, with end points which often meet so they can be merged / sorted
+     */
+    public static List<LineString> createTestLineStrings(int count, int width, int height, long seed){
+        Random random = new Random(seed);
+        GeometryFactory factory = new GeometryFactory();
+        List<LineString> lineStrings = new ArrayList<>(count);
+
+        double x = width / 2D, y = height / 2D;
+        for(int i = 0; i < count; i++){
+            if(random.nextInt(10) == 0){
+                //start a new walk
+                x = random.nextDouble() * width;
+                y = random.nextDouble() * height;
+            }
+            int points = 2 + random.nextInt(6);
+            Coordinate[] coordinates = new Coordinate[points];
+            for(int p = 0; p < points; p++){
+                coordinates[p] = new Coordinate(x, y);
+                x = Math.max(0, Math.min(width, x + random.nextGaussian() * 5));
+                y = Math.max(0, Math.min(height, y + random.nextGaussian() * 5));
+            }
+            x = coordinates[points - 1].x;
+            y = coordinates[points - 1].y;
+            lineStrings.add(factory.createLineString(coordinates));
+        }
+        return lineStrings;
+    }
+}
@@ -0,0 +1,72 @@
+package drawingbot.benchmark;
+
+import drawingbot.pfm.helpers.BresenhamHelper;
+import drawingbot.pfm.helpers.BresenhamLineTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of plotting lines with {@link BresenhamHelper#plotLine(int, int, int, int, BresenhamHelper.IPixelSetter)} compared to the cached {@link BresenhamLineTable}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BresenhamBenchmark {
+
+    public static final int LINE_COUNT = 4096;
+
+    @Param({"16", "128", "512"})
+    public int maxLength;
+
+    private BresenhamHelper helper;
+    private BresenhamLineTable lineTable;
+    private int[] lines;
+    private long pixelSum;
+
+    private final BresenhamHelper.IPixelSetter setter = (x, y) -> pixelSum += x + y;
+
+    @Setup
+    public void setup(){
+        helper = new BresenhamHelper();
+        lineTable = new BresenhamLineTable();
+        lines = new int[LINE_COUNT * 4];
+
+        Random random = new Random(BenchmarkUtils.SEED);
+        for(int i = 0; i < LINE_COUNT; i++){
+            int x = random.nextInt(2000), y = random.nextInt(2000);
+            lines[i * 4] = x;
+            lines[i * 4 + 1] = y;
+            lines[i * 4 + 2] = x + random.nextInt(maxLength * 2 + 1) - maxLength;
+            lines[i * 4 + 3] = y + random.nextInt(maxLength * 2 + 1) - maxLength;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINE_COUNT)
+    public long plotLine(){
+        pixelSum = 0;
+        for(int i = 0; i < lines.length; i += 4){
+            helper.plotLine(lines[i], lines[i + 1], lines[i + 2], lines[i + 3], setter);
+        }
+        return pixelSum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINE_COUNT)
+    public long lineTable(){
+        long sum = 0;
+        for(int i = 0; i < lines.length; i += 4){
+            int startX = lines[i], startY = lines[i + 1];
+            int[] offsets = lineTable.getLineOffsets(lines[i + 2] - startX, lines[i + 3] - startY);
+            for(int o = 0; o < offsets.length; o += 2){
+                sum += startX + offsets[o] + startY + offsets[o + 1];
+            }
+        }
+        return sum;
+    }
+}
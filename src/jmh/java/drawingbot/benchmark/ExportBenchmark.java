@@ -0,0 +1,85 @@
+package drawingbot.benchmark;
+
+import drawingbot.DrawingBotV3;
+import drawingbot.TestUtils;
+import drawingbot.api.IGeometryFilter;
+import drawingbot.files.DrawingExportHandler;
+import drawingbot.files.ExportTask;
+import drawingbot.plotting.PFMTask;
+import drawingbot.plotting.PFMTaskBuilder;
+import drawingbot.registry.MasterRegistry;
+import drawingbot.registry.Register;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the registered {@link DrawingExportHandler}s exporting the same drawing, created by the default PFM from the default test image
+ * Path optimisation is bypassed so only the export itself is measured, see {@link OptimiseBenchmark}
+ * <br>
+ * Premium handlers are skipped, without the premium plugin they're only placeholders which don't export anything. Run with -p exportHandler=&lt;registry name&gt; to measure a single handler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExportBenchmark {
+
+    /**the registry name of the handler to measure, or empty to measure every handler which isn't premium*/
+    @Param({""})
+    public String exportHandler;
+
+    private List<DrawingExportHandler> handlers;
+    private PFMTask pfmTask;
+    private File exportDirectory;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarkUtils.launchApplication();
+        handlers = new ArrayList<>();
+        for(DrawingExportHandler handler : MasterRegistry.INSTANCE.drawingExportHandlers.values()){
+            if(!handler.isPremium && (exportHandler.isEmpty() || handler.registryName.equals(exportHandler))){
+                handlers.add(handler);
+            }
+        }
+        if(handlers.isEmpty()){
+            throw new IllegalArgumentException("Unknown or Premium Export Handler: " + exportHandler);
+        }
+        pfmTask = TestUtils.runPFMTest(PFMTaskBuilder.create(DrawingBotV3.context(), Register.PFM_SKETCH_LINES).createPFMTask());
+        exportDirectory = Files.createTempDirectory("dbv3_benchmark").toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        DrawingBotV3.project().setActiveTask(null);
+        DrawingBotV3.project().setRenderedTask(null);
+        pfmTask.tryDestroy();
+
+        File[] files = exportDirectory.listFiles();
+        if(files != null){
+            for(File file : files){
+                file.delete();
+            }
+        }
+        exportDirectory.delete();
+    }
+
+    @Benchmark
+    public void export(Blackhole blackhole) throws Exception {
+        for(DrawingExportHandler handler : handlers){
+            String extension = handler.getDefaultExtension();
+            File saveLocation = new File(exportDirectory, handler.registryName + extension);
+            ExportTask task = new ExportTask(DrawingBotV3.context(), handler, ExportTask.Mode.PER_DRAWING, pfmTask.drawing, IGeometryFilter.DEFAULT_FILTER, extension, saveLocation, true, true, true);
+            task.run();
+            blackhole.consume(task.get());
+        }
+    }
+}
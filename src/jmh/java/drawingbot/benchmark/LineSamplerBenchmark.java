@@ -0,0 +1,59 @@
+package drawingbot.benchmark;
+
+import drawingbot.image.PixelDataARGBY;
+import drawingbot.pfm.helpers.SimpleLineSampler;
+import drawingbot.plotting.PlottingTools;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SimpleLineSampler#findDarkestLine}, the inner loop of the sketch PFMs, from random start points on a fixed test image
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineSamplerBenchmark {
+
+    public static final int SAMPLE_COUNT = 256;
+
+    @Param({"1024"})
+    public int imageSize;
+
+    @Param({"20", "80"})
+    public int maxLength;
+
+    @Param({"-1", "20"})
+    public int maxTests;
+
+    private PixelDataARGBY pixelData;
+    private SimpleLineSampler sampler;
+    private int[] startPoints;
+    private final int[] darkestDst = new int[2];
+
+    @Setup
+    public void setup(){
+        pixelData = BenchmarkUtils.createTestPixelData(imageSize, imageSize, BenchmarkUtils.SEED);
+        sampler = new SimpleLineSampler(new PlottingTools());
+        startPoints = new int[SAMPLE_COUNT * 2];
+
+        Random random = new Random(BenchmarkUtils.SEED);
+        for(int i = 0; i < startPoints.length; i++){
+            startPoints[i] = random.nextInt(imageSize);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLE_COUNT)
+    public float findDarkestLine(){
+        float sum = 0;
+        for(int i = 0; i < startPoints.length; i += 2){
+            sum += sampler.findDarkestLine(pixelData, null, startPoints[i], startPoints[i + 1], 2, maxLength, maxTests, 0F, 360F, false, darkestDst);
+        }
+        return sum;
+    }
+}
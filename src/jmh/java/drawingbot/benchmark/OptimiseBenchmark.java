@@ -0,0 +1,74 @@
+package drawingbot.benchmark;
+
+import drawingbot.api.IProgressCallback;
+import drawingbot.geom.operation.GeometryOperationOptimize;
+import drawingbot.geom.spatial.GridSequencerLineString;
+import org.locationtech.jts.geom.LineString;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each stage of {@link GeometryOperationOptimize} on a fixed set of random line strings
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OptimiseBenchmark {
+
+    public static final IProgressCallback NO_PROGRESS = new IProgressCallback() {};
+    /**fixed rather than using the application's default, so results stay comparable if the default changes*/
+    public static final int IMPROVEMENT_BUDGET = 1000;
+
+    @Param({"100000"})
+    public int lineCount;
+
+    private List<LineString> lineStrings;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        lineStrings = BenchmarkUtils.createTestLineStrings(lineCount, 4000, 4000, BenchmarkUtils.SEED);
+    }
+
+    @Benchmark
+    public List<LineString> lineFilter(){
+        return GeometryOperationOptimize.lineFilter(new ArrayList<>(lineStrings), 2D, NO_PROGRESS);
+    }
+
+    @Benchmark
+    public List<LineString> lineSimplify(){
+        return GeometryOperationOptimize.lineSimplify(new ArrayList<>(lineStrings), 0.5D, NO_PROGRESS);
+    }
+
+    @Benchmark
+    public List<LineString> lineMerge(){
+        return GeometryOperationOptimize.lineMerge(new ArrayList<>(lineStrings), 0.5D, NO_PROGRESS, 3);
+    }
+
+    /**
+     * The greedy sort only, without the improvement pass
+     */
+    @Benchmark
+    public List<LineString> lineSortGreedy(){
+        GridSequencerLineString sequencer = new GridSequencerLineString(new ArrayList<>(lineStrings), 0D);
+        sequencer.setProgressCallback(NO_PROGRESS);
+        sequencer.setImprovementBudget(0);
+        return sequencer.sort();
+    }
+
+    /**
+     * The sort used by the application, including the improvement pass with a fixed budget
+     */
+    @Benchmark
+    public List<LineString> lineSort(){
+        GridSequencerLineString sequencer = new GridSequencerLineString(new ArrayList<>(lineStrings), 0D);
+        sequencer.setProgressCallback(NO_PROGRESS);
+        sequencer.setImprovementBudget(IMPROVEMENT_BUDGET);
+        return sequencer.sort();
+    }
+}
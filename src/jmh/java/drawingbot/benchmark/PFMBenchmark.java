@@ -0,0 +1,48 @@
+package drawingbot.benchmark;
+
+import drawingbot.DrawingBotV3;
+import drawingbot.TestUtils;
+import drawingbot.pfm.PFMFactory;
+import drawingbot.plotting.PFMTask;
+import drawingbot.plotting.PFMTaskBuilder;
+import drawingbot.registry.MasterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time taken by each PFM to plot the default test image, using the seeded "pfm_unit_test" presets from the regression tests
+ * Other PFMs can be measured by passing their registry names, e.g. -p pfm="Sketch Lines PFM"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class PFMBenchmark {
+
+    @Param({"Sketch Lines PFM", "Sketch Squares PFM", "Spiral PFM"})
+    public String pfm;
+
+    private PFMFactory<?> factory;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        BenchmarkUtils.launchApplication();
+        factory = MasterRegistry.INSTANCE.getPFMFactory(pfm);
+        if(factory == null){
+            throw new IllegalArgumentException("Unknown PFM: " + pfm);
+        }
+    }
+
+    @Benchmark
+    public long runPFM(){
+        PFMTask task = TestUtils.runPFMTest(PFMTaskBuilder.create(DrawingBotV3.context(), factory).createPFMTask());
+        long geometryCount = task.drawing.getGeometryCount();
+        DrawingBotV3.project().setActiveTask(null);
+        DrawingBotV3.project().setRenderedTask(null);
+        task.tryDestroy();
+        return geometryCount;
+    }
+}
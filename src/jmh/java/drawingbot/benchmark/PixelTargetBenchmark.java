@@ -0,0 +1,58 @@
+package drawingbot.benchmark;
+
+import drawingbot.image.PixelDataARGBY;
+import drawingbot.image.PixelTargetDarkestArea;
+import drawingbot.plotting.PlottedDrawing;
+import drawingbot.plotting.PlottingTools;
+import drawingbot.plotting.canvas.SimpleCanvas;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link PixelTargetDarkestArea#getNextDarkestPixel(boolean)} as the image is erased, in the same way the darkest PFMs use it
+ * Each invocation starts from a fresh copy of the test image, as the image is modified by the benchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PixelTargetBenchmark {
+
+    public static final int TARGET_COUNT = 20000;
+
+    @Param({"1024", "2048"})
+    public int imageSize;
+
+    private PlottingTools tools;
+    private PixelDataARGBY pixelData;
+
+    @Setup(Level.Trial)
+    public void setupTools(){
+        tools = new PlottingTools(new PlottedDrawing(new SimpleCanvas(imageSize, imageSize), null));
+    }
+
+    @Setup(Level.Invocation)
+    public void setupPixelData(){
+        pixelData = BenchmarkUtils.createTestPixelData(imageSize, imageSize, BenchmarkUtils.SEED);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TARGET_COUNT)
+    public long getNextDarkestPixel(){
+        PixelTargetDarkestArea target = new PixelTargetDarkestArea(tools, pixelData);
+        long sum = 0;
+        for(int i = 0; i < TARGET_COUNT; i++){
+            int[] pixel = target.getNextDarkestPixel(false);
+            if(pixel[0] == -1){
+                break;
+            }
+            sum += pixel[0] + pixel[1];
+            //erase the pixel, like a PFM drawing over it
+            pixelData.setARGB(pixel[0], pixel[1], 255, 255, 255, 255);
+        }
+        return sum;
+    }
+}
@@ -3,6 +3,7 @@ package drawingbot;
 import drawingbot.api.API;
 import drawingbot.api.IPlugin;
 import drawingbot.api_impl.DrawingBotV3API;
+import drawingbot.files.BatchJobRunner;
 import drawingbot.files.LoggingHandler;
 import drawingbot.files.RecentProjectHandler;
 import drawingbot.files.json.JsonLoaderManager;
@@ -58,6 +59,7 @@ public class FXApplication extends Application {
     public static boolean isPremiumEnabled;
     public static boolean isHeadless;
     public static boolean isUnitTesting;
+    public static BatchJobRunner batchJobRunner;
 
     public static SimpleBooleanProperty isLoaded = new SimpleBooleanProperty(false);
     public static MouseMonitor mouseMonitor;
@@ -77,7 +79,13 @@ public class FXApplication extends Application {
         // Setup console / file logging
         LoggingHandler.init();
 
-        SplashScreen.initPreloader(SoftwareManager.getSoftware().getSplashScreenClass());
+        // Batch mode runs the jobs without showing the user interface, see BatchJobRunner
+        batchJobRunner = BatchJobRunner.parseArgs(args);
+        if(batchJobRunner != null){
+            isHeadless = true;
+        }else{
+            SplashScreen.initPreloader(SoftwareManager.getSoftware().getSplashScreenClass());
+        }
         launch(args);
     }
 
@@ -272,7 +280,7 @@ public class FXApplication extends Application {
 
             ///////////////////////////////////////////////////////////////////////////////////////////////////////
 
-            if(launchArgs.length >= 1){
+            if(batchJobRunner == null && launchArgs.length >= 1){
                 DrawingBotV3.logger.info("Attempting to load file at startup");
                 try {
                     File startupFile =  new File(launchArgs[0]);
@@ -288,6 +296,10 @@ public class FXApplication extends Application {
 
             isLoaded.set(true);
 
+            if(batchJobRunner != null){
+                batchJobRunner.start();
+            }
+
             ///////////////////////////////////////////////////////////////////////////////////////////////////////
 
             DrawingBotV3.logger.exiting("FXApplication", "start");
@@ -306,7 +318,11 @@ public class FXApplication extends Application {
         ///////////////////////////////////////////////////////////////////////////////////////////////////////
 
         ///// SETUP OUTPUTS \\\\\
-        SplashScreen.startPreloader(this);
+        if(batchJobRunner != null){
+            DrawingBotV3.threadFactory("Loading Task Thread").newThread(new InitialLoadTask()).start();
+        }else{
+            SplashScreen.startPreloader(this);
+        }
     }
 
     public static ISoftware getSoftware(){
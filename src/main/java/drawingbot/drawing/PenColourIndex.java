@@ -0,0 +1,281 @@
+package drawingbot.drawing;
+
+import drawingbot.api.IDrawingPen;
+import drawingbot.api.IDrawingSet;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * An index of pen colours for finding the pens which are perceptually closest to a colour, see {@link drawingbot.registry.MasterRegistry#getPenColourIndex()}
+ * <br>
+ * The pens are converted to the OKLab colour space, where the euclidean distance between two colours is close to the perceived difference, and stored in a k-d tree.
+ * Queries can be constrained with a filter e.g. {@link #byType(String)} or {@link #inSet(IDrawingSet)}, pens which fail the filter are skipped but still used to navigate the tree.
+ * The index is immutable once created, so it can be queried from multiple threads.
+ */
+public class PenColourIndex {
+
+    private final IDrawingPen[] pens;
+    private final float[] coords;
+    private final byte[] axes;
+
+    /**
+     * @param pens the pens to index, pens with the same code name are only indexed once and pens with special colour handlers are skipped as they don't have a fixed colour
+     */
+    public PenColourIndex(Collection<? extends IDrawingPen> pens){
+        Map<String, IDrawingPen> unique = new LinkedHashMap<>();
+        for(IDrawingPen pen : pens){
+            if(pen != null && pen.getSpecialColorHandler() == null){
+                unique.putIfAbsent(pen.getCodeName(), pen);
+            }
+        }
+        this.pens = unique.values().toArray(new IDrawingPen[0]);
+        this.coords = new float[this.pens.length * 3];
+        this.axes = new byte[this.pens.length];
+        for(int i = 0; i < this.pens.length; i++){
+            toOKLab(this.pens[i].getARGB(), coords, i * 3);
+        }
+        build(0, this.pens.length);
+    }
+
+    public int size(){
+        return pens.length;
+    }
+
+    /**
+     * @return the pen closest to the colour, or null if the index is empty
+     */
+    public IDrawingPen findNearest(int argb){
+        return findNearest(argb, null);
+    }
+
+    /**
+     * @param filter the pens which can be returned, may be null
+     * @return the pen closest to the colour which passes the filter, or null if no pens pass the filter
+     */
+    public IDrawingPen findNearest(int argb, Predicate<IDrawingPen> filter){
+        List<IDrawingPen> nearest = findNearest(argb, 1, filter);
+        return nearest.isEmpty() ? null : nearest.get(0);
+    }
+
+    /**
+     * @param count the maximum number of pens to return
+     * @param filter the pens which can be returned, may be null
+     * @return the pens closest to the colour which pass the filter, ordered from the closest
+     */
+    public List<IDrawingPen> findNearest(int argb, int count, Predicate<IDrawingPen> filter){
+        if(count <= 0 || pens.length == 0){
+            return List.of();
+        }
+        Search search = new Search(argb, count, filter);
+        search(search, 0, pens.length);
+
+        List<IDrawingPen> result = new ArrayList<>(search.found);
+        for(int i = 0; i < search.found; i++){
+            result.add(pens[search.indices[i]]);
+        }
+        return result;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Builds the tree in place, the node for each range is stored at its median and is split on the axis with the largest spread
+     */
+    private void build(int start, int end){
+        if(end - start <= 1){
+            return;
+        }
+        int axis = getWidestAxis(start, end);
+        int median = (start + end) >>> 1;
+        select(start, end - 1, median, axis);
+        axes[median] = (byte) axis;
+        build(start, median);
+        build(median + 1, end);
+    }
+
+    private int getWidestAxis(int start, int end){
+        int widest = 0;
+        float widestSpread = -1;
+        for(int axis = 0; axis < 3; axis++){
+            float min = Float.MAX_VALUE;
+            float max = -Float.MAX_VALUE;
+            for(int i = start; i < end; i++){
+                float value = coords[i * 3 + axis];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if(max - min > widestSpread){
+                widestSpread = max - min;
+                widest = axis;
+            }
+        }
+        return widest;
+    }
+
+    /**
+     * Partially sorts the range so the pen at the given index is the one which would be there if the range was sorted on the axis
+     */
+    private void select(int left, int right, int index, int axis){
+        while(left < right){
+            float pivot = coords[((left + right) >>> 1) * 3 + axis];
+            int i = left;
+            int j = right;
+            while(i <= j){
+                while(coords[i * 3 + axis] < pivot){
+                    i++;
+                }
+                while(coords[j * 3 + axis] > pivot){
+                    j--;
+                }
+                if(i <= j){
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if(index <= j){
+                right = j;
+            }else if(index >= i){
+                left = i;
+            }else{
+                return;
+            }
+        }
+    }
+
+    private void swap(int a, int b){
+        IDrawingPen pen = pens[a];
+        pens[a] = pens[b];
+        pens[b] = pen;
+        for(int i = 0; i < 3; i++){
+            float value = coords[a * 3 + i];
+            coords[a * 3 + i] = coords[b * 3 + i];
+            coords[b * 3 + i] = value;
+        }
+    }
+
+    private void search(Search search, int start, int end){
+        if(start >= end){
+            return;
+        }
+        int node = (start + end) >>> 1;
+        if(search.filter == null || search.filter.test(pens[node])){
+            search.offer(node, distanceSq(search.target, 0, coords, node * 3));
+        }
+        if(end - start == 1){
+            return;
+        }
+        float diff = search.target[axes[node]] - coords[node * 3 + axes[node]];
+        if(diff < 0){
+            search(search, start, node);
+            if(!search.isFull() || diff * diff < search.getWorstDistance()){
+                search(search, node + 1, end);
+            }
+        }else{
+            search(search, node + 1, end);
+            if(!search.isFull() || diff * diff < search.getWorstDistance()){
+                search(search, start, node);
+            }
+        }
+    }
+
+    /**
+     * The closest pens found so far, ordered from the closest
+     */
+    private static class Search {
+
+        private final float[] target = new float[3];
+        private final Predicate<IDrawingPen> filter;
+        private final int[] indices;
+        private final float[] distances;
+        private int found = 0;
+
+        private Search(int argb, int count, Predicate<IDrawingPen> filter){
+            toOKLab(argb, target, 0);
+            this.filter = filter;
+            this.indices = new int[count];
+            this.distances = new float[count];
+        }
+
+        private boolean isFull(){
+            return found == indices.length;
+        }
+
+        private float getWorstDistance(){
+            return distances[found - 1];
+        }
+
+        private void offer(int index, float distance){
+            if(isFull() && distance >= getWorstDistance()){
+                return;
+            }
+            int pos = isFull() ? found - 1 : found++;
+            while(pos > 0 && distances[pos - 1] > distance){
+                indices[pos] = indices[pos - 1];
+                distances[pos] = distances[pos - 1];
+                pos--;
+            }
+            indices[pos] = index;
+            distances[pos] = distance;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return a filter for pens of the given type, typically the pens manufacturer
+     */
+    public static Predicate<IDrawingPen> byType(String type){
+        return pen -> pen.getType().equals(type);
+    }
+
+    /**
+     * @return a filter for pens in the given drawing set
+     */
+    public static Predicate<IDrawingPen> inSet(IDrawingSet drawingSet){
+        Set<String> codeNames = new HashSet<>();
+        drawingSet.getPens().forEach(pen -> codeNames.add(pen.getCodeName()));
+        return pen -> codeNames.contains(pen.getCodeName());
+    }
+
+    /**
+     * @return the perceptual distance between the two colours, the alpha is ignored
+     */
+    public static double getColourDistance(int argb1, int argb2){
+        float[] lab = new float[6];
+        toOKLab(argb1, lab, 0);
+        toOKLab(argb2, lab, 3);
+        return Math.sqrt(distanceSq(lab, 0, lab, 3));
+    }
+
+    private static float distanceSq(float[] a, int offsetA, float[] b, int offsetB){
+        float dL = a[offsetA] - b[offsetB];
+        float dA = a[offsetA + 1] - b[offsetB + 1];
+        float dB = a[offsetA + 2] - b[offsetB + 2];
+        return dL * dL + dA * dA + dB * dB;
+    }
+
+    /**
+     * Converts the sRGB colour to OKLab, the alpha is ignored
+     * @param dest the array to store the L, a & b values in
+     */
+    public static void toOKLab(int argb, float[] dest, int offset){
+        double r = toLinear((argb >> 16) & 0xff);
+        double g = toLinear((argb >> 8) & 0xff);
+        double b = toLinear(argb & 0xff);
+
+        double l = Math.cbrt(0.4122214708 * r + 0.5363325363 * g + 0.0514459929 * b);
+        double m = Math.cbrt(0.2119034982 * r + 0.6806995451 * g + 0.1073969566 * b);
+        double s = Math.cbrt(0.0883024619 * r + 0.2817188376 * g + 0.6299787005 * b);
+
+        dest[offset] = (float) (0.2104542553 * l + 0.7936177850 * m - 0.0040720468 * s);
+        dest[offset + 1] = (float) (1.9779984951 * l - 2.4285922050 * m + 0.4505937099 * s);
+        dest[offset + 2] = (float) (0.0259040371 * l + 0.7827717662 * m - 0.8086757660 * s);
+    }
+
+    private static double toLinear(int channel){
+        double c = channel / 255D;
+        return c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+}
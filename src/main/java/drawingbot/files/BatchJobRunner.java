@@ -0,0 +1,401 @@
+package drawingbot.files;
+
+import com.google.gson.JsonElement;
+import drawingbot.DrawingBotV3;
+import drawingbot.FXApplication;
+import drawingbot.files.json.JsonLoaderManager;
+import drawingbot.files.json.projects.ObservableProject;
+import drawingbot.files.json.projects.PresetProjectSettings;
+import drawingbot.files.loaders.AbstractFileLoader;
+import drawingbot.files.loaders.FileLoaderFlags;
+import drawingbot.image.format.ImageCropping;
+import drawingbot.image.format.ImageData;
+import drawingbot.javafx.GenericPreset;
+import drawingbot.javafx.util.JFXUtils;
+import drawingbot.plotting.PFMTask;
+import drawingbot.plotting.PFMTaskBuilder;
+import drawingbot.plotting.PlottedDrawing;
+import drawingbot.plotting.SubTaskScheduler;
+import drawingbot.registry.MasterRegistry;
+import drawingbot.registry.Register;
+import drawingbot.utils.LazyTimer;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Plots and exports a queue of project files / images without showing the user interface, e.g. to render a large number of drawings overnight.
+ * <br>
+ * The runner is started from the command line, see {@link #parseArgs(String[])}, each job loads the input into its own {@link ObservableProject}, runs the {@link PFMTask} and then runs an {@link ExportTask} for each of the requested {@link DrawingExportHandler}s, optimising the drawing with the users path optimisation settings.
+ * <br>
+ * Several jobs are run at the same time, limited by the number of jobs requested and by an estimate of the memory each job requires, see {@link SubTaskScheduler#estimateMemory(PFMTask)}.
+ * <br>
+ * Note: JavaFX is still started as the projects settings are observable values and the tasks are JavaFX tasks, but no windows are shown and the FX thread is only used to create the projects.
+ */
+public class BatchJobRunner {
+
+    public static final String ARG_BATCH = "--batch";
+    public static final String ARG_EXPORT = "--export";
+    public static final String ARG_OUTPUT = "--output";
+    public static final String ARG_TEMPLATE = "--template";
+    public static final String ARG_JOBS = "--jobs";
+    public static final String ARG_MODE = "--mode";
+
+    public static final String DEFAULT_EXPORT = "svg_default";
+
+    /**the project data loaders which are skipped when loading a project, the batch runner loads the image itself and always creates a new drawing*/
+    public static final String KEY_IMAGE_SETTINGS = "image_settings";
+    public static final String KEY_PLOTTED_DRAWING = "plotted_drawing";
+
+    /**the fraction of the max memory which the concurrent jobs can use*/
+    public static final double MEMORY_BUDGET = 0.75;
+
+    public final File source;
+    public final List<String> exportIDs;
+    @Nullable
+    public final File outputDirectory;
+    @Nullable
+    public final File templateFile;
+    public final int maxJobs;
+    public final ExportTask.Mode exportMode;
+
+    public BatchJobRunner(File source, List<String> exportIDs, @Nullable File outputDirectory, @Nullable File templateFile, int maxJobs, ExportTask.Mode exportMode) {
+        this.source = source;
+        this.exportIDs = exportIDs;
+        this.outputDirectory = outputDirectory;
+        this.templateFile = templateFile;
+        this.maxJobs = maxJobs;
+        this.exportMode = exportMode;
+    }
+
+    /**
+     * Creates the batch runner from the launch arguments, e.g.
+     * <br>
+     * --batch [directory or manifest] --export svg_default,image_default:.jpg --output [directory] --template [project file] --jobs 4 --mode per_pen
+     * <br>
+     * --batch must be the first argument, otherwise the arguments are ignored and the application starts normally, the other arguments can be given in any order.
+     * <br>
+     * A manifest is a text file listing one project / image file per line, relative paths are resolved against the manifests directory, blank lines and lines starting with # are ignored.
+     * @return the batch runner or null if the arguments don't request batch mode
+     * @throws IllegalArgumentException if the batch arguments are invalid
+     */
+    @Nullable
+    public static BatchJobRunner parseArgs(String[] args){
+        if(args.length == 0 || !args[0].equals(ARG_BATCH)){
+            return null;
+        }
+        File source = null;
+        List<String> exportIDs = new ArrayList<>();
+        File outputDirectory = null;
+        File templateFile = null;
+        int maxJobs = Runtime.getRuntime().availableProcessors();
+        ExportTask.Mode exportMode = ExportTask.Mode.PER_DRAWING;
+
+        for(int i = 0; i < args.length; i++){
+            String arg = args[i];
+            if(i + 1 >= args.length){
+                throw new IllegalArgumentException("Missing value for argument: " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case ARG_BATCH -> source = new File(value);
+                case ARG_EXPORT -> Arrays.stream(value.split(",")).map(String::trim).filter(s -> !s.isEmpty()).forEach(exportIDs::add);
+                case ARG_OUTPUT -> outputDirectory = new File(value);
+                case ARG_TEMPLATE -> templateFile = new File(value);
+                case ARG_JOBS -> maxJobs = Math.max(1, Integer.parseInt(value));
+                case ARG_MODE -> exportMode = ExportTask.Mode.valueOf(value.toUpperCase());
+                default -> throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        if(exportMode == ExportTask.Mode.PER_N_PENS){
+            throw new IllegalArgumentException("Export mode is not supported in batch mode: " + exportMode);
+        }
+        if(exportIDs.isEmpty()){
+            exportIDs.add(DEFAULT_EXPORT);
+        }
+        return new BatchJobRunner(source, exportIDs, outputDirectory, templateFile, maxJobs, exportMode);
+    }
+
+    /**
+     * Runs the batch on a new thread, the application exits once every job is complete
+     */
+    public void start(){
+        DrawingBotV3.threadFactory("DrawingBotV3 - Batch Runner").newThread(() -> {
+            int failed = 1;
+            try{
+                failed = run();
+            }catch (Exception e){
+                DrawingBotV3.logger.log(Level.SEVERE, "Batch Failed", e);
+            }
+            JFXUtils.runNow(() -> {
+                try {
+                    FXApplication.INSTANCE.stop();
+                } catch (Exception e) {
+                    DrawingBotV3.logger.log(Level.SEVERE, "Batch - Failed to shutdown", e);
+                }
+            });
+            System.exit(failed == 0 ? 0 : 1);
+        }).start();
+    }
+
+    /**
+     * Runs every job in the batch, returns once they've all completed
+     * @return the number of jobs which failed
+     */
+    public int run() throws IOException, InterruptedException {
+        List<File> inputs = findInputs(source);
+        List<BatchExport> exports = findExports(exportIDs);
+        if(inputs.isEmpty() || exports.isEmpty()){
+            DrawingBotV3.logger.severe("Batch - Nothing to run, found %s inputs and %s exports".formatted(inputs.size(), exports.size()));
+            return 1;
+        }
+        if(outputDirectory != null && !outputDirectory.exists() && !outputDirectory.mkdirs()){
+            throw new IOException("Failed to create output directory: " + outputDirectory);
+        }
+
+        GenericPreset<PresetProjectSettings> template = null;
+        if(templateFile != null){
+            template = JsonLoaderManager.importPresetFile(templateFile, Register.PRESET_MANAGER_PROJECT.getPresetType());
+            if(template == null){
+                throw new IOException("Failed to load template project: " + templateFile);
+            }
+            stripPreset(template);
+        }
+
+        int jobs = Math.min(maxJobs, inputs.size());
+        int memoryBudget = (int) Math.max(1, (long) (Runtime.getRuntime().maxMemory() * MEMORY_BUDGET) >> 20);
+        Semaphore memory = new Semaphore(memoryBudget, true);
+        AtomicInteger failed = new AtomicInteger();
+        LazyTimer timer = new LazyTimer();
+        timer.start();
+
+        DrawingBotV3.logger.info("Batch - Running %s jobs, %s at a time, memory budget %s MB".formatted(inputs.size(), jobs, memoryBudget));
+
+        ExecutorService service = Executors.newFixedThreadPool(jobs, DrawingBotV3.threadFactory("DrawingBotV3 - Batch Job"));
+        final GenericPreset<PresetProjectSettings> jobTemplate = template;
+        List<Future<?>> futures = new ArrayList<>();
+        for(int i = 0; i < inputs.size(); i++){
+            File input = inputs.get(i);
+            String jobName = "Batch Job %s / %s: %s".formatted(i + 1, inputs.size(), input.getName());
+            futures.add(service.submit(() -> {
+                try{
+                    runJob(jobName, input, exports, jobTemplate, memory, memoryBudget);
+                }catch (Exception e){
+                    failed.incrementAndGet();
+                    DrawingBotV3.logger.log(Level.SEVERE, jobName + " - Failed", e);
+                }
+            }));
+        }
+        for(Future<?> future : futures){
+            try{
+                future.get();
+            }catch (ExecutionException e){
+                DrawingBotV3.logger.log(Level.SEVERE, "Batch Job Failed", e.getCause());
+            }
+        }
+        service.shutdown();
+        timer.finish();
+
+        DrawingBotV3.logger.info("Batch - Finished %s jobs, %s failed, Elapsed Time: %s".formatted(inputs.size(), failed.get(), timer.getElapsedTimeFormatted()));
+        return failed.get();
+    }
+
+    public void runJob(String jobName, File input, List<BatchExport> exports, @Nullable GenericPreset<PresetProjectSettings> template, Semaphore memory, int memoryBudget) throws Exception {
+        DrawingBotV3.logger.info(jobName + " - Started");
+        LazyTimer timer = new LazyTimer();
+        timer.start();
+
+        //// LOAD THE PROJECT \\\\
+        ObservableProject project;
+        File imageFile;
+        JsonElement imageCropping = null;
+        if(FileUtils.matchesExtensionFilter(FileUtils.getExtension(input.getName()), FileUtils.FILTER_PROJECT)){
+            GenericPreset<PresetProjectSettings> preset = JsonLoaderManager.importPresetFile(input, Register.PRESET_MANAGER_PROJECT.getPresetType());
+            if(preset == null){
+                throw new IOException("Failed to load project: " + input);
+            }
+            imageFile = preset.data.imagePath.isEmpty() ? null : findImageFile(new File(preset.data.imagePath), input);
+            imageCropping = preset.data.settings.get(KEY_IMAGE_SETTINGS);
+            stripPreset(preset);
+            project = createProject(FileUtils.removeExtension(input.getName()), input, preset);
+        }else{
+            imageFile = input;
+            project = createProject(FileUtils.removeExtension(input.getName()), null, template);
+        }
+        if(project == null){
+            throw new IllegalStateException("Failed to create the project");
+        }
+
+        //// LOAD THE IMAGE \\\\
+        ImageData imageData = null;
+        if(imageFile != null){
+            AbstractFileLoader loader = MasterRegistry.INSTANCE.getFileLoader(project.context, imageFile, EnumSet.of(FileLoaderFlags.PROJECT_LOADING));
+            loader.run();
+            imageData = loader.get();
+            if(imageData != null && imageCropping != null){
+                imageData.imageCropping.update(JsonLoaderManager.createDefaultGson().fromJson(imageCropping, ImageCropping.class));
+            }
+        }
+        if(imageData == null && !project.getPFMFactory().isGenerativePFM()){
+            throw new IOException("No image to plot for: " + input);
+        }
+
+        //// CREATE THE DRAWING \\\\
+        final ImageData openImage = imageData;
+        PFMTask pfmTask = JFXUtils.runTaskNow(new FutureTask<>(() -> {
+            project.setOpenImage(openImage);
+            return PFMTaskBuilder.create(project.context).createPFMTask();
+        }));
+        if(pfmTask == null){
+            throw new IllegalStateException("Failed to create the plotting task");
+        }
+
+        //larger drawings wait until there is enough memory available, drawings larger than the budget run alone
+        int required = (int) Math.min(memoryBudget, Math.max(1, SubTaskScheduler.estimateMemory(pfmTask) >> 20));
+        memory.acquire(required);
+        try{
+            pfmTask.run();
+            PlottedDrawing drawing = pfmTask.get();
+            if(drawing == null || pfmTask.isCancelled()){
+                throw new IllegalStateException("The plotting task was cancelled");
+            }
+
+            //// EXPORT THE DRAWING \\\\
+            File outputDir = outputDirectory != null ? outputDirectory : input.getParentFile();
+            String baseName = FileUtils.removeExtension(input.getName());
+            for(BatchExport export : exports){
+                File saveLocation = new File(outputDir, baseName + export.suffix + export.extension);
+                ExportTask exportTask = new ExportTask(project.context, export.handler, exportMode, drawing, project.getExportGeometryFilter(), export.extension, saveLocation, true, false, true);
+                exportTask.run();
+                exportTask.get();
+                if(!exportTask.error.isEmpty()){
+                    throw new IOException("Export Failed: %s - %s".formatted(saveLocation, exportTask.error));
+                }
+            }
+        }finally {
+            memory.release(required);
+        }
+        timer.finish();
+        DrawingBotV3.logger.info(jobName + " - Finished, Elapsed Time: " + timer.getElapsedTimeFormatted());
+    }
+
+    /**
+     * Removes the presets image & plotted drawing, they are loaded / created by the job itself
+     */
+    public static void stripPreset(GenericPreset<PresetProjectSettings> preset){
+        preset.data.settings.remove(KEY_IMAGE_SETTINGS);
+        preset.data.settings.remove(KEY_PLOTTED_DRAWING);
+        preset.data.imagePath = "";
+    }
+
+    /**
+     * Creates the jobs project on the FX thread, from the preset if one is provided or the users defaults
+     */
+    @Nullable
+    public static ObservableProject createProject(String name, @Nullable File file, @Nullable GenericPreset<PresetProjectSettings> preset){
+        return JFXUtils.runTaskNow(new FutureTask<>(() -> {
+            ObservableProject project;
+            if(preset != null){
+                project = new ObservableProject(name, file);
+                Register.PRESET_MANAGER_PROJECT.applyPreset(project.context, project, preset, false);
+            }else{
+                //use the users defaults
+                project = new ObservableProject(DrawingBotV3.project());
+                project.name.set(name);
+                project.file.set(file);
+            }
+            return project;
+        }));
+    }
+
+    /**
+     * @return the image file, or a file of the same name next to the project if the image has moved along with the project
+     */
+    public static File findImageFile(File imageFile, File projectFile){
+        if(!imageFile.exists()){
+            File relative = new File(projectFile.getParentFile(), imageFile.getName());
+            if(relative.exists()){
+                return relative;
+            }
+        }
+        return imageFile;
+    }
+
+    /**
+     * @return the project files & images in the directory, or listed in the manifest
+     */
+    public static List<File> findInputs(File source) throws IOException {
+        List<File> inputs = new ArrayList<>();
+        if(source == null || !source.exists()){
+            throw new IOException("Batch source doesn't exist: " + source);
+        }
+        if(source.isDirectory()){
+            File[] files = source.listFiles();
+            if(files != null){
+                Arrays.stream(files).filter(File::isFile).filter(BatchJobRunner::isSupportedInput).sorted().forEach(inputs::add);
+            }
+            return inputs;
+        }
+        if(isSupportedInput(source)){
+            inputs.add(source);
+            return inputs;
+        }
+        for(String line : Files.readAllLines(source.toPath())){
+            line = line.trim();
+            if(line.isEmpty() || line.startsWith("#")){
+                continue;
+            }
+            File file = new File(line);
+            if(!file.isAbsolute()){
+                file = new File(source.getParentFile(), line);
+            }
+            if(!file.exists()){
+                DrawingBotV3.logger.warning("Batch - Skipping missing file: " + file);
+                continue;
+            }
+            inputs.add(file);
+        }
+        return inputs;
+    }
+
+    public static boolean isSupportedInput(File file){
+        String extension = FileUtils.getExtension(file.getName());
+        return FileUtils.matchesExtensionFilter(extension, FileUtils.FILTER_PROJECT) || FileUtils.matchesExtensionFilter(extension, FileUtils.IMPORT_IMAGES);
+    }
+
+    /**
+     * @param exportIDs the registry names of the export handlers, optionally followed by the extension e.g. image_default:.jpg
+     */
+    public static List<BatchExport> findExports(List<String> exportIDs) throws IOException {
+        List<BatchExport> exports = new ArrayList<>();
+        for(String exportID : exportIDs){
+            String[] split = exportID.split(":", 2);
+            DrawingExportHandler handler = MasterRegistry.INSTANCE.drawingExportHandlers.get(split[0]);
+            if(handler == null){
+                throw new IOException("Unknown export handler: %s, expected one of %s".formatted(split[0], MasterRegistry.INSTANCE.drawingExportHandlers.keySet()));
+            }
+            String extension = split.length > 1 ? split[1] : handler.getDefaultExtension();
+            if(!extension.startsWith(".")){
+                extension = "." + extension;
+            }
+            exports.add(new BatchExport(handler, extension, ""));
+        }
+
+        //exports which would write to the same file are given the handlers name as a suffix
+        for(int i = 0; i < exports.size(); i++){
+            BatchExport export = exports.get(i);
+            if(exports.stream().filter(e -> e.extension.equals(export.extension)).count() > 1){
+                exports.set(i, new BatchExport(export.handler, export.extension, "_" + export.handler.getRegistryName()));
+            }
+        }
+        return exports;
+    }
+
+    public record BatchExport(DrawingExportHandler handler, String extension, String suffix){}
+}
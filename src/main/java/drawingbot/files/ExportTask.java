@@ -28,7 +28,9 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -90,7 +92,14 @@ public class ExportTask extends DBTask<Boolean> {
     }
 
     public void createExportPlottedDrawing(IGeometryFilter geometryFilter){
-        exportDrawing = GeometryUtils.getOptimisedPlottedDrawing(this, geometryFilter, forceBypassOptimisation);
+        createExportPlottedDrawing(geometryFilter, geometryFilter);
+    }
+
+    /**
+     * @param filterKey identifies the geometry filter, so exports with the same filter can reuse the same optimised drawing, see {@link drawingbot.geom.ExportDrawingCache}
+     */
+    public void createExportPlottedDrawing(IGeometryFilter geometryFilter, Object filterKey){
+        exportDrawing = GeometryUtils.getOptimisedPlottedDrawing(this, geometryFilter, filterKey, forceBypassOptimisation);
         exportPenStats = exportDrawing.getPerPenGeometryStats();
         exportRenderOrder = filterActivePens(exportDrawing.getGlobalRenderOrder(), true);
         exportIterator = new DrawingGeometryIterator(exportDrawing, exportRenderOrder);
@@ -103,10 +112,14 @@ public class ExportTask extends DBTask<Boolean> {
     }
 
     public void doExport(IGeometryFilter geometryFilter, File saveLocation){
+        doExport(geometryFilter, geometryFilter, saveLocation);
+    }
+
+    public void doExport(IGeometryFilter geometryFilter, Object filterKey, File saveLocation){
         if(overwrite || Files.notExists(saveLocation.toPath())){
 
             updateMessage("Optimising Paths");
-            createExportPlottedDrawing(geometryFilter);
+            createExportPlottedDrawing(geometryFilter, filterKey);
 
             updateMessage("Exporting Paths");
             renderedGeometries = 0;
@@ -172,7 +185,7 @@ public class ExportTask extends DBTask<Boolean> {
                     updateTitle(exportHandler.description + ": " + (groupPos+1) + " / " + groups.size() + " - " + saveLocation.getPath());
                     File fileName = new File(baseSaveLocation.getPath() + "_group" + (groupPos+1) + extension);
                     if(!group.geometries.isEmpty()){
-                        doExport((drawing, geometry, pen) -> geometryFilter.filter(drawing, geometry, pen) && geometry.getGroupID() == group.groupID, fileName);
+                        doExport((drawing, geometry, pen) -> geometryFilter.filter(drawing, geometry, pen) && geometry.getGroupID() == group.groupID, List.of(geometryFilter, "group", group.groupID), fileName);
                     }
                     groupPos++;
                 }
@@ -186,7 +199,7 @@ public class ExportTask extends DBTask<Boolean> {
                         updateTitle(exportHandler.description + ": " + " Set: " + (setPos+1) + " / " + plottedDrawing.drawingSets.drawingSetSlots.size() +  " Pen: " + (penPos+1) + " / " + drawingSet.pens.size() + " - " + saveLocation.getPath());
                         File fileName = new File(baseSaveLocation.getPath() + "_set" + (setPos+1) + "_pen" + (penPos+1) + "_" + FileUtils.getSafeFileName(drawingPen.getName()) + extension);
                         if(drawingPen.isEnabled() && activePens.contains(drawingPen)){
-                            doExport((drawing, geometry, pen) -> geometryFilter.filter(drawing, geometry, pen) && pen == drawingPen, fileName);
+                            doExport((drawing, geometry, pen) -> geometryFilter.filter(drawing, geometry, pen) && pen == drawingPen, List.of(geometryFilter, "pen", drawingPen), fileName);
                         }
                         penPos++;
                     }
@@ -218,7 +231,7 @@ public class ExportTask extends DBTask<Boolean> {
                         if(!nextPens.isEmpty()){
                             updateTitle(exportHandler.description + ": " + " Pens: " + (i+1) + " to " + (i+nextPens.size()) + " - " + saveLocation.getPath());
                             File fileName = new File(baseSaveLocation.getPath() + "_pens" + (i+1) + "_to_" + (i+nextPens.size()) + extension);
-                            doExport((drawing, geometry, pen) -> geometryFilter.filter(drawing, geometry, pen) && nextPens.contains(pen), fileName);
+                            doExport((drawing, geometry, pen) -> geometryFilter.filter(drawing, geometry, pen) && nextPens.contains(pen), List.of(geometryFilter, "pens", nextPens), fileName);
                         }
                     }
                 }else{
@@ -301,6 +314,21 @@ public class ExportTask extends DBTask<Boolean> {
         }
     }
 
+    @Nullable
+    public FileChannel createFileChannel(File file) {
+        try {
+            File parent = file.getParentFile();
+            if (!parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Unable to create directory: " + parent.getAbsolutePath());
+            }
+            return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }catch (Exception e){
+            setException(e);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     public enum Mode {
         PER_DRAWING("per/drawing"),
         PER_PEN("per/pen"),
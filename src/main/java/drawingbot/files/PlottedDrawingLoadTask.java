@@ -0,0 +1,51 @@
+package drawingbot.files;
+
+import drawingbot.files.json.projects.DBTaskContext;
+import drawingbot.plotting.PlottedDrawing;
+import drawingbot.registry.Register;
+import drawingbot.render.overlays.NotificationOverlays;
+import drawingbot.utils.DBTask;
+import javafx.application.Platform;
+
+import java.io.File;
+
+/**
+ * Restores a {@link PlottedDrawing} saved by the {@link PlottedDrawingSerializer}, the geometries are added to the drawing a block at a time and the drawing becomes the projects current drawing once it's complete.
+ */
+public class PlottedDrawingLoadTask extends DBTask<PlottedDrawing> {
+
+    public final File file;
+
+    public PlottedDrawingLoadTask(DBTaskContext context, File file) {
+        super(context);
+        this.file = file;
+    }
+
+    @Override
+    public String getTaskType() {
+        return "PlottedDrawingLoadTask";
+    }
+
+    @Override
+    protected PlottedDrawing call() throws Exception {
+        updateTitle("Loading Plotted Drawing");
+        updateMessage(file.getName());
+        try(PlottedDrawingSerializer.Reader reader = new PlottedDrawingSerializer.Reader(file, context.project().getDrawingSets())){
+            int total = reader.header.geometryCount;
+            while(!reader.isDone()){
+                if(isCancelled()){
+                    return null;
+                }
+                reader.readBlock();
+                updateProgress(reader.getGeometriesRead(), total);
+            }
+            PlottedDrawing drawing = reader.drawing;
+            Platform.runLater(() -> {
+                context.taskManager().setCurrentDrawing(drawing);
+                context.project().setDisplayMode(Register.INSTANCE.DISPLAY_MODE_DRAWING);
+                NotificationOverlays.INSTANCE.showWithSubtitle("Loaded Plotted Drawing", "%s geometries".formatted(drawing.getGeometryCount()));
+            });
+            return drawing;
+        }
+    }
+}
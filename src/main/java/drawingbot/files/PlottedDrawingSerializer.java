@@ -0,0 +1,632 @@
+package drawingbot.files;
+
+import drawingbot.DrawingBotV3;
+import drawingbot.api.ICanvas;
+import drawingbot.drawing.DrawingSets;
+import drawingbot.files.json.projects.ObservableProject;
+import drawingbot.geom.shapes.*;
+import drawingbot.javafx.observables.ObservableDrawingPen;
+import drawingbot.javafx.observables.ObservableDrawingSet;
+import drawingbot.javafx.preferences.DBPreferences;
+import drawingbot.pfm.PFMFactory;
+import drawingbot.plotting.PlottedDrawing;
+import drawingbot.plotting.PlottedGroup;
+import drawingbot.plotting.canvas.SimpleCanvas;
+import drawingbot.registry.MasterRegistry;
+import drawingbot.utils.EnumClippingMode;
+import drawingbot.utils.EnumCroppingMode;
+import drawingbot.utils.EnumDistributionType;
+import drawingbot.utils.EnumRescaleMode;
+import drawingbot.utils.UnitsLength;
+import org.apache.commons.compress.compressors.deflate.DeflateCompressorInputStream;
+import org.apache.commons.compress.compressors.deflate.DeflateCompressorOutputStream;
+import org.apache.commons.compress.compressors.deflate.DeflateParameters;
+
+import java.awt.*;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Saves the geometries & groups of a {@link PlottedDrawing} to a compact binary file, which is stored next to the project file, so the drawing can be restored without re-plotting it.
+ * <br>
+ * The file starts with an uncompressed header containing the drawings {@link UUID}, the rest of the file is deflate compressed.
+ * Geometries are written in blocks of {@link #BLOCK_SIZE}, each block is split into columns (types, path segments, attributes, coordinates), so similar values are compressed together.
+ * Attributes are stored as the zig-zag varint difference from the previous geometry, coordinates are stored as varint differences of 1/16 fixed point values when this is lossless and as raw floats otherwise, so every coordinate is restored bit for bit.
+ */
+public class PlottedDrawingSerializer {
+
+    public static final String EXTENSION = ".dbgeom";
+    public static final int MAGIC = 0x4442474D; //DBGM
+    public static final int VERSION = 1;
+    public static final int BLOCK_SIZE = 4096;
+
+    public static final int TYPE_LINE = 0;
+    public static final int TYPE_PATH = 1;
+    public static final int TYPE_SHAPE = 2;
+    public static final int TYPE_CUBIC = 3;
+    public static final int TYPE_QUAD = 4;
+    public static final int TYPE_RECT = 5;
+    public static final int TYPE_ELLIPSE = 6;
+
+    /**the fixed point scale used for coordinates, any float which is a multiple of 1/16 is stored as an integer*/
+    private static final double FIXED_POINT_SCALE = 16D;
+    private static final double FIXED_POINT_LIMIT = 1 << 28;
+    private static final int NEGATIVE_ZERO_BITS = Float.floatToRawIntBits(-0.0F);
+
+    public static File getDrawingFile(File projectFile){
+        return new File(projectFile.getParentFile(), FileUtils.removeExtension(projectFile.getName()) + EXTENSION);
+    }
+
+    /**
+     * Saves the projects current drawing next to the project file, if enabled in the preferences
+     */
+    public static void saveProjectDrawing(ObservableProject project){
+        PlottedDrawing drawing = project.getCurrentDrawing();
+        File projectFile = project.file.get();
+        if(!DBPreferences.INSTANCE.saveDrawingWithProject.get() || drawing == null || projectFile == null){
+            return;
+        }
+        try {
+            write(drawing, getDrawingFile(projectFile));
+        } catch (IOException exception) {
+            DrawingBotV3.logger.log(Level.SEVERE, "Failed to save plotted drawing", exception);
+        }
+    }
+
+    /**
+     * @return the UUID of the drawing stored in the file, or null if the file isn't a valid drawing file
+     */
+    public static UUID readDrawingUUID(File file){
+        if(!file.exists()){
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Header header = readHeader(in);
+            return header == null ? null : header.uuid;
+        } catch (IOException exception) {
+            return null;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    //// WRITING \\\\
+
+    /**
+     * Writes the drawing to a temporary file first, so the previous drawing file isn't lost if saving fails
+     */
+    public static void write(PlottedDrawing drawing, File file) throws IOException {
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            write(drawing, out);
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static void write(PlottedDrawing drawing, DataOutputStream out) throws IOException {
+        int geometryCount = drawing.getGeometryCount();
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(drawing.uuid.getMostSignificantBits());
+        out.writeLong(drawing.uuid.getLeastSignificantBits());
+        out.writeInt(geometryCount);
+        out.flush();
+
+        DeflateParameters parameters = new DeflateParameters();
+        parameters.setCompressionLevel(6);
+        DeflateCompressorOutputStream deflateStream = new DeflateCompressorOutputStream(out, parameters);
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(deflateStream, 1 << 16));
+
+        writeCanvas(drawing.getCanvas(), data);
+        writeGroups(drawing, data);
+
+        BlockEncoder encoder = new BlockEncoder();
+        for(int start = 0; start < geometryCount; start += BLOCK_SIZE){
+            int end = Math.min(geometryCount, start + BLOCK_SIZE);
+            encoder.reset();
+            for(int i = start; i < end; i++){
+                encoder.encode(drawing.geometries.get(i));
+            }
+            encoder.writeTo(end - start, data);
+        }
+        data.flush();
+        deflateStream.finish();
+    }
+
+    private static void writeCanvas(ICanvas canvas, DataOutputStream data) throws IOException {
+        data.writeUTF(canvas.getUnits().name());
+        data.writeUTF(canvas.getCroppingMode().name());
+        data.writeUTF(canvas.getClippingMode().name());
+        data.writeUTF(canvas.getRescaleMode().name());
+        data.writeBoolean(canvas.useOriginalSizing());
+        data.writeDouble(canvas.getTargetPenWidth());
+        data.writeDouble(canvas.getPlottingScale());
+        data.writeDouble(canvas.getWidth());
+        data.writeDouble(canvas.getHeight());
+        data.writeDouble(canvas.getDrawingWidth());
+        data.writeDouble(canvas.getDrawingHeight());
+        data.writeDouble(canvas.getDrawingOffsetX());
+        data.writeDouble(canvas.getDrawingOffsetY());
+        data.writeDouble(canvas.getCanvasScale());
+    }
+
+    private static void writeGroups(PlottedDrawing drawing, DataOutputStream data) throws IOException {
+        data.writeInt(drawing.groups.size());
+        for(PlottedGroup group : drawing.groups.values()){
+            data.writeInt(group.groupID);
+            data.writeInt(drawing.drawingSets == null ? -1 : drawing.drawingSets.drawingSetSlots.indexOf(group.drawingSet));
+            data.writeUTF(group.pfmFactory == null ? "" : group.pfmFactory.getRegistryName());
+            data.writeBoolean(group.needsDistribution);
+            data.writeUTF(group.overrideDistributionType == null ? "" : group.overrideDistributionType.name());
+            data.writeUTF(group.groupType.name());
+
+            //the pens are stored as their index in the drawing set, which is restored by the projects drawing sets
+            data.writeInt(group.originalDrawingSetOrder.size());
+            for(Map.Entry<Integer, ObservableDrawingPen> entry : group.originalDrawingSetOrder.entrySet()){
+                data.writeInt(entry.getKey());
+                data.writeInt(group.drawingSet.pens.indexOf(entry.getValue()));
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    //// READING \\\\
+
+    public static class Header {
+
+        public UUID uuid;
+        public int geometryCount;
+
+    }
+
+    private static Header readHeader(DataInputStream in) throws IOException {
+        if(in.readInt() != MAGIC){
+            return null;
+        }
+        int version = in.readInt();
+        if(version > VERSION){
+            DrawingBotV3.logger.warning("Unsupported plotted drawing file version: " + version);
+            return null;
+        }
+        Header header = new Header();
+        header.uuid = new UUID(in.readLong(), in.readLong());
+        header.geometryCount = in.readInt();
+        return header;
+    }
+
+    /**
+     * Reads the drawing file a block at a time, so the geometries can be added to the drawing as they're decoded
+     */
+    public static class Reader implements Closeable {
+
+        public final Header header;
+        public final PlottedDrawing drawing;
+        private final DataInputStream in;
+        private final DataInputStream data;
+        private final BlockDecoder decoder = new BlockDecoder();
+        private int geometriesRead = 0;
+
+        public Reader(File file, DrawingSets drawingSets) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try{
+                this.header = readHeader(in);
+                if(header == null){
+                    throw new IOException("Invalid plotted drawing file: " + file);
+                }
+                this.data = new DataInputStream(new BufferedInputStream(new DeflateCompressorInputStream(in), 1 << 16));
+                this.drawing = new PlottedDrawing(readCanvas(data), drawingSets, false);
+                this.drawing.uuid = header.uuid;
+                readGroups(drawing, drawingSets, data);
+            }catch (IOException | RuntimeException exception){
+                in.close();
+                throw exception;
+            }
+        }
+
+        public int getGeometriesRead(){
+            return geometriesRead;
+        }
+
+        public boolean isDone(){
+            return geometriesRead >= header.geometryCount;
+        }
+
+        /**
+         * Decodes the next block of geometries and adds them to the drawing
+         */
+        public void readBlock() throws IOException {
+            geometriesRead += decoder.readBlock(data, drawing);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static SimpleCanvas readCanvas(DataInputStream data) throws IOException {
+        return new SimpleCanvas(
+                UnitsLength.valueOf(data.readUTF()), EnumCroppingMode.valueOf(data.readUTF()), EnumClippingMode.valueOf(data.readUTF()), EnumRescaleMode.valueOf(data.readUTF()),
+                data.readBoolean(), data.readDouble(), data.readDouble(),
+                data.readDouble(), data.readDouble(), data.readDouble(), data.readDouble(), data.readDouble(), data.readDouble(), data.readDouble());
+    }
+
+    private static void readGroups(PlottedDrawing drawing, DrawingSets drawingSets, DataInputStream data) throws IOException {
+        int groupCount = data.readInt();
+        for(int g = 0; g < groupCount; g++){
+            int groupID = data.readInt();
+            int slot = data.readInt();
+            String pfmName = data.readUTF();
+            boolean needsDistribution = data.readBoolean();
+            String overrideDistributionType = data.readUTF();
+            String groupType = data.readUTF();
+
+            ObservableDrawingSet drawingSet = slot >= 0 && slot < drawingSets.drawingSetSlots.size() ? drawingSets.drawingSetSlots.get(slot) : drawingSets.getActiveDrawingSet();
+            if(drawingSet == null){
+                throw new IOException("Missing drawing set for plotted group: " + groupID);
+            }
+            PFMFactory<?> pfmFactory = pfmName.isEmpty() ? null : MasterRegistry.INSTANCE.getPFMFactory(pfmName);
+
+            PlottedGroup group = new PlottedGroup(groupID, drawingSet, pfmFactory);
+            group.needsDistribution = needsDistribution;
+            group.overrideDistributionType = overrideDistributionType.isEmpty() ? null : EnumDistributionType.valueOf(overrideDistributionType);
+            group.groupType = PlottedGroup.GroupDistributionType.valueOf(groupType);
+
+            int penCount = data.readInt();
+            group.originalDrawingSetOrder.clear();
+            for(int p = 0; p < penCount; p++){
+                int penNumber = data.readInt();
+                int penIndex = data.readInt();
+                if(penIndex >= 0 && penIndex < drawingSet.pens.size()){
+                    group.originalDrawingSetOrder.put(penNumber, drawingSet.pens.get(penIndex));
+                }
+            }
+            drawing.addPlottedGroup(group);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    //// BLOCK ENCODING \\\\
+
+    private static class BlockEncoder {
+
+        private final ByteColumn types = new ByteColumn();
+        private final ByteColumn segments = new ByteColumn();
+        private final ByteColumn attributes = new ByteColumn();
+        private final ByteColumn coords = new ByteColumn();
+        private final CoordinateCodec codec = new CoordinateCodec();
+        private final float[] segmentCoords = new float[6];
+
+        private int lastPenIndex, lastPFMPenIndex, lastGroupID, lastRGBA, lastFillType;
+
+        public void reset(){
+            types.reset();
+            segments.reset();
+            attributes.reset();
+            coords.reset();
+            codec.reset();
+            lastPenIndex = lastPFMPenIndex = lastGroupID = lastRGBA = lastFillType = 0;
+        }
+
+        public void encode(IGeometry geometry){
+            attributes.writeZigZag(geometry.getPenIndex() - lastPenIndex);
+            attributes.writeZigZag(geometry.getPFMPenIndex() - lastPFMPenIndex);
+            attributes.writeZigZag(geometry.getGroupID() - lastGroupID);
+            attributes.writeZigZag(geometry.getSampledRGBA() - lastRGBA);
+            attributes.writeZigZag(geometry.getFillType() - lastFillType);
+            lastPenIndex = geometry.getPenIndex();
+            lastPFMPenIndex = geometry.getPFMPenIndex();
+            lastGroupID = geometry.getGroupID();
+            lastRGBA = geometry.getSampledRGBA();
+            lastFillType = geometry.getFillType();
+
+            if(geometry instanceof ILine line){
+                types.writeByte(TYPE_LINE);
+                writeCoords(line.getX1(), line.getY1(), line.getX2(), line.getY2());
+            }else if(geometry instanceof GCubicCurve curve){
+                types.writeByte(TYPE_CUBIC);
+                writeCoords(curve.toFloatArray());
+            }else if(geometry instanceof GQuadCurve curve){
+                types.writeByte(TYPE_QUAD);
+                writeCoords(curve.toFloatArray());
+            }else if(geometry instanceof GRectangle rect){
+                types.writeByte(TYPE_RECT);
+                writeCoords(rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight());
+            }else if(geometry instanceof GEllipse ellipse){
+                types.writeByte(TYPE_ELLIPSE);
+                writeCoords(ellipse.getX(), ellipse.getY(), ellipse.getWidth(), ellipse.getHeight());
+            }else{
+                //any other geometry types are stored as their path, which may change their type when loaded
+                types.writeByte(geometry instanceof GShape ? TYPE_SHAPE : TYPE_PATH);
+                writePath(geometry.getAWTShape());
+            }
+        }
+
+        private void writeCoords(float... values){
+            for(int i = 0; i < values.length; i += 2){
+                codec.write(coords, values[i], values[i + 1]);
+            }
+        }
+
+        private void writePath(Shape shape){
+            PathIterator iterator = shape.getPathIterator(null);
+            types.writeByte(iterator.getWindingRule());
+            int countIndex = segments.size();
+            int segmentCount = 0;
+            segments.writeInt(0); //replaced with the segment count
+            while(!iterator.isDone()){
+                int type = iterator.currentSegment(segmentCoords);
+                segments.writeByte(type);
+                int points = switch (type) {
+                    case PathIterator.SEG_MOVETO, PathIterator.SEG_LINETO -> 1;
+                    case PathIterator.SEG_QUADTO -> 2;
+                    case PathIterator.SEG_CUBICTO -> 3;
+                    default -> 0;
+                };
+                for(int p = 0; p < points; p++){
+                    codec.write(coords, segmentCoords[p * 2], segmentCoords[p * 2 + 1]);
+                }
+                segmentCount++;
+                iterator.next();
+            }
+            segments.setInt(countIndex, segmentCount);
+        }
+
+        public void writeTo(int count, DataOutputStream data) throws IOException {
+            data.writeInt(count);
+            types.writeTo(data);
+            segments.writeTo(data);
+            attributes.writeTo(data);
+            coords.writeTo(data);
+        }
+    }
+
+    private static class BlockDecoder {
+
+        private final ByteColumn types = new ByteColumn();
+        private final ByteColumn segments = new ByteColumn();
+        private final ByteColumn attributes = new ByteColumn();
+        private final ByteColumn coords = new ByteColumn();
+        private final CoordinateCodec codec = new CoordinateCodec();
+
+        public int readBlock(DataInputStream data, PlottedDrawing drawing) throws IOException {
+            int count = data.readInt();
+            types.readFrom(data);
+            segments.readFrom(data);
+            attributes.readFrom(data);
+            coords.readFrom(data);
+            codec.reset();
+
+            int penIndex = 0, pfmPenIndex = 0, groupID = 0, rgba = 0, fillType = 0;
+            for(int i = 0; i < count; i++){
+                penIndex += attributes.readZigZag();
+                pfmPenIndex += attributes.readZigZag();
+                groupID += attributes.readZigZag();
+                rgba += attributes.readZigZag();
+                fillType += attributes.readZigZag();
+
+                IGeometry geometry = decode(types.readByte());
+                geometry.setPenIndex(penIndex);
+                geometry.setPFMPenIndex(pfmPenIndex);
+                geometry.setGroupID(groupID);
+                geometry.setSampledRGBA(rgba);
+                geometry.setFillType(fillType);
+                drawing.addGeometry(geometry);
+            }
+            return count;
+        }
+
+        private IGeometry decode(int type) throws IOException {
+            return switch (type) {
+                case TYPE_LINE -> new GLine(readX(), readY(), readX(), readY());
+                case TYPE_CUBIC -> new GCubicCurve(readCoords(8));
+                case TYPE_QUAD -> {
+                    float[] c = readCoords(6);
+                    yield new GQuadCurve(c[0], c[1], c[2], c[3], c[4], c[5]);
+                }
+                case TYPE_RECT -> new GRectangle(readX(), readY(), readX(), readY());
+                case TYPE_ELLIPSE -> new GEllipse(readX(), readY(), readX(), readY());
+                case TYPE_PATH -> new GPath(readPath(), true);
+                case TYPE_SHAPE -> new GShape(readPath());
+                default -> throw new IOException("Unknown geometry type: " + type);
+            };
+        }
+
+        private float readX(){
+            return codec.readX(coords);
+        }
+
+        private float readY(){
+            return codec.readY(coords);
+        }
+
+        private float[] readCoords(int length){
+            float[] values = new float[length];
+            for(int i = 0; i < length; i += 2){
+                values[i] = readX();
+                values[i + 1] = readY();
+            }
+            return values;
+        }
+
+        private GeneralPath readPath() throws IOException {
+            int windingRule = types.readByte();
+            int segmentCount = segments.readInt();
+            GeneralPath path = new GeneralPath(windingRule, Math.max(segmentCount, 2));
+            for(int s = 0; s < segmentCount; s++){
+                int type = segments.readByte();
+                switch (type) {
+                    case PathIterator.SEG_MOVETO -> path.moveTo(readX(), readY());
+                    case PathIterator.SEG_LINETO -> path.lineTo(readX(), readY());
+                    case PathIterator.SEG_QUADTO -> path.quadTo(readX(), readY(), readX(), readY());
+                    case PathIterator.SEG_CUBICTO -> path.curveTo(readX(), readY(), readX(), readY(), readX(), readY());
+                    case PathIterator.SEG_CLOSE -> path.closePath();
+                    default -> throw new IOException("Unknown path segment type: " + type);
+                }
+            }
+            return path;
+        }
+    }
+
+    /**
+     * Stores coordinates as the difference from the previous coordinate on the same axis, in 1/16 fixed point.
+     * Each value starts with a varint token, an even token is the zig-zag encoded difference shifted left by one, an odd token is followed by the raw float bits.
+     */
+    private static class CoordinateCodec {
+
+        private int lastX, lastY;
+
+        public void reset(){
+            lastX = lastY = 0;
+        }
+
+        public void write(ByteColumn column, float x, float y){
+            lastX = write(column, x, lastX);
+            lastY = write(column, y, lastY);
+        }
+
+        private static int write(ByteColumn column, float value, int last){
+            double scaled = value * FIXED_POINT_SCALE;
+            // -0.0 is stored as a raw float, as the fixed point value would lose the sign
+            if(scaled == Math.rint(scaled) && Math.abs(scaled) <= FIXED_POINT_LIMIT && Float.floatToRawIntBits(value) != NEGATIVE_ZERO_BITS){
+                int fixed = (int) scaled;
+                column.writeVarLong(zigZag(fixed - last) << 1);
+                return fixed;
+            }
+            column.writeVarLong(1);
+            column.writeInt(Float.floatToRawIntBits(value));
+            return last;
+        }
+
+        public float readX(ByteColumn column){
+            long token = column.readVarLong();
+            if((token & 1) == 1){
+                return Float.intBitsToFloat(column.readInt());
+            }
+            lastX += unZigZag(token >>> 1);
+            return (float) (lastX / FIXED_POINT_SCALE);
+        }
+
+        public float readY(ByteColumn column){
+            long token = column.readVarLong();
+            if((token & 1) == 1){
+                return Float.intBitsToFloat(column.readInt());
+            }
+            lastY += unZigZag(token >>> 1);
+            return (float) (lastY / FIXED_POINT_SCALE);
+        }
+    }
+
+    private static long zigZag(int value){
+        return ((long) value << 1) ^ ((long) value >> 63);
+    }
+
+    private static int unZigZag(long value){
+        return (int) ((value >>> 1) ^ -(value & 1));
+    }
+
+    /**
+     * A growable byte array which is written / read sequentially
+     */
+    private static class ByteColumn {
+
+        private byte[] bytes = new byte[1024];
+        private int size;
+        private int position;
+
+        public int size(){
+            return size;
+        }
+
+        public void reset(){
+            size = 0;
+            position = 0;
+        }
+
+        private void ensureCapacity(int extra){
+            if(size + extra > bytes.length){
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        public void writeByte(int value){
+            ensureCapacity(1);
+            bytes[size++] = (byte) value;
+        }
+
+        public void writeInt(int value){
+            ensureCapacity(4);
+            setInt(size, value);
+            size += 4;
+        }
+
+        public void setInt(int index, int value){
+            bytes[index] = (byte) (value >>> 24);
+            bytes[index + 1] = (byte) (value >>> 16);
+            bytes[index + 2] = (byte) (value >>> 8);
+            bytes[index + 3] = (byte) value;
+        }
+
+        public void writeVarLong(long value){
+            ensureCapacity(10);
+            while((value & ~0x7FL) != 0){
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        public void writeZigZag(int value){
+            writeVarLong(zigZag(value));
+        }
+
+        public int readByte(){
+            return bytes[position++] & 0xFF;
+        }
+
+        public int readInt(){
+            int value = ((bytes[position] & 0xFF) << 24) | ((bytes[position + 1] & 0xFF) << 16) | ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+            position += 4;
+            return value;
+        }
+
+        public long readVarLong(){
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do{
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            }while(b < 0);
+            return value;
+        }
+
+        public int readZigZag(){
+            return unZigZag(readVarLong());
+        }
+
+        public void writeTo(DataOutputStream data) throws IOException {
+            data.writeInt(size);
+            data.write(bytes, 0, size);
+        }
+
+        public void readFrom(DataInputStream data) throws IOException {
+            reset();
+            int length = data.readInt();
+            ensureCapacity(length);
+            data.readFully(bytes, 0, length);
+            size = length;
+        }
+    }
+}
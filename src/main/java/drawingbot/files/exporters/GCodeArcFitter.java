@@ -0,0 +1,202 @@
+package drawingbot.files.exporters;
+
+import java.util.Arrays;
+
+/**
+ * Replaces runs of short G1 moves with G2/G3 arcs, and merges runs of nearly collinear moves into a single G1 move.
+ * <br>
+ * The points of each pen down path are collected until the path is finished, then each arc / line is extended greedily from the start of the path while every original point and every original segment stays within the tolerance of it.
+ * All coordinates and the tolerance are in millimetres, the units of the G-Code output after the G-Code transform has been applied, see {@link GCodeSettings#getGCodeArcTolerance()}.
+ */
+public class GCodeArcFitter {
+
+    /**the minimum number of segments which will be replaced by an arc*/
+    public static final int MIN_ARC_SEGMENTS = 3;
+    /**limits the number of points in a single arc / line, which bounds the cost of fitting*/
+    public static final int MAX_FIT_POINTS = 256;
+    /**arcs with a larger radius are treated as lines, very large arcs are handled poorly by most controllers*/
+    public static final double MAX_ARC_RADIUS = 5000;
+
+    public interface IMoveConsumer {
+
+        void linearMove(float x, float y);
+
+        /**
+         * @param i the x offset of the center from the start point
+         * @param j the y offset of the center from the start point
+         */
+        void arcMove(boolean clockwise, float x, float y, float i, float j);
+
+    }
+
+    public final double tolerance;
+
+    private float[] points = new float[256];
+    private int count;
+
+    //the last fitted arc
+    private double centerX, centerY;
+    private boolean clockwise;
+
+    //tallies
+    public int inputMoves;
+    public int outputMoves;
+    public int arcMoves;
+
+    public GCodeArcFitter(double tolerance){
+        this.tolerance = tolerance;
+    }
+
+    public boolean isEmpty(){
+        return count == 0;
+    }
+
+    public void addPoint(float x, float y){
+        if(count * 2 == points.length){
+            points = Arrays.copyOf(points, points.length * 2);
+        }
+        points[count * 2] = x;
+        points[count * 2 + 1] = y;
+        count++;
+    }
+
+    /**
+     * Fits the current path and passes the resulting moves to the consumer, the first point is the start of the path and is never output
+     */
+    public void flush(IMoveConsumer consumer){
+        int last = count - 1;
+        int start = 0;
+        inputMoves += Math.max(0, last);
+        while(start < last){
+            // nearly straight runs also fit arcs with very large radii, so arcs are only used when they reach further than a line
+            int lineEnd = findLineEnd(start, last);
+            int arcEnd = lineEnd == last ? -1 : findArcEnd(start, last);
+            if(arcEnd > lineEnd){
+                consumer.arcMove(clockwise, x(arcEnd), y(arcEnd), (float) (centerX - x(start)), (float) (centerY - y(start)));
+                arcMoves++;
+                outputMoves++;
+                start = arcEnd;
+                continue;
+            }
+            consumer.linearMove(x(lineEnd), y(lineEnd));
+            outputMoves++;
+            start = lineEnd;
+        }
+        count = 0;
+    }
+
+    private float x(int index){
+        return points[index * 2];
+    }
+
+    private float y(int index){
+        return points[index * 2 + 1];
+    }
+
+    /**
+     * @return the index of the furthest point which can be reached with a single arc, or -1 if no arc fits
+     */
+    private int findArcEnd(int start, int last){
+        int best = -1;
+        double bestCenterX = 0, bestCenterY = 0;
+        boolean bestClockwise = false;
+        int maxEnd = Math.min(last, start + MAX_FIT_POINTS);
+        for(int end = start + MIN_ARC_SEGMENTS; end <= maxEnd; end++){
+            if(!fitArc(start, end)){
+                break;
+            }
+            best = end;
+            bestCenterX = centerX;
+            bestCenterY = centerY;
+            bestClockwise = clockwise;
+        }
+        centerX = bestCenterX;
+        centerY = bestCenterY;
+        clockwise = bestClockwise;
+        return best;
+    }
+
+    /**
+     * Fits a circle through the start, middle and end points, then checks every point & segment in between is within the tolerance of the arc
+     */
+    private boolean fitArc(int start, int end){
+        int mid = (start + end) / 2;
+        double ax = x(start), ay = y(start);
+        double bx = x(mid), by = y(mid);
+        double cx = x(end), cy = y(end);
+
+        double det = 2 * (ax * (by - cy) + bx * (cy - ay) + cx * (ay - by));
+        if(Math.abs(det) < 1e-9){
+            return false; //collinear
+        }
+        double a2 = ax * ax + ay * ay, b2 = bx * bx + by * by, c2 = cx * cx + cy * cy;
+        centerX = (a2 * (by - cy) + b2 * (cy - ay) + c2 * (ay - by)) / det;
+        centerY = (a2 * (cx - bx) + b2 * (ax - cx) + c2 * (bx - ax)) / det;
+
+        double radius = Math.hypot(ax - centerX, ay - centerY);
+        if(radius > MAX_ARC_RADIUS || radius < tolerance){
+            return false;
+        }
+
+        double sweep = 0;
+        int direction = 0;
+        for(int k = start; k < end; k++){
+            double x1 = x(k) - centerX, y1 = y(k) - centerY;
+            double x2 = x(k + 1) - centerX, y2 = y(k + 1) - centerY;
+
+            // the point must be on the circle
+            if(Math.abs(Math.hypot(x2, y2) - radius) > tolerance){
+                return false;
+            }
+
+            // the arc must travel in one direction
+            double cross = x1 * y2 - y1 * x2;
+            int segmentDirection = cross > 0 ? 1 : cross < 0 ? -1 : 0;
+            if(segmentDirection == 0 || (direction != 0 && segmentDirection != direction)){
+                return false;
+            }
+            direction = segmentDirection;
+
+            // the arc must not bulge too far from the original segment
+            double halfChord = Math.hypot(x2 - x1, y2 - y1) / 2;
+            if(halfChord >= radius || radius - Math.sqrt(radius * radius - halfChord * halfChord) > tolerance){
+                return false;
+            }
+            sweep += Math.atan2(Math.abs(cross), x1 * x2 + y1 * y2);
+        }
+        if(sweep >= Math.PI * 2 - 0.01){
+            return false;
+        }
+        clockwise = direction < 0;
+        return true;
+    }
+
+    /**
+     * @return the index of the furthest point which can be reached with a single line, while staying within the tolerance of all the points in between
+     */
+    private int findLineEnd(int start, int last){
+        int best = start + 1;
+        int maxEnd = Math.min(last, start + MAX_FIT_POINTS);
+        for(int end = start + 2; end <= maxEnd; end++){
+            if(!fitLine(start, end)){
+                break;
+            }
+            best = end;
+        }
+        return best;
+    }
+
+    private boolean fitLine(int start, int end){
+        double ax = x(start), ay = y(start);
+        double dx = x(end) - ax, dy = y(end) - ay;
+        double lengthSq = dx * dx + dy * dy;
+        for(int k = start + 1; k < end; k++){
+            double px = x(k) - ax, py = y(k) - ay;
+            double t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSq));
+            if(Math.hypot(px - t * dx, py - t * dy) > tolerance){
+                return false;
+            }
+        }
+        return true;
+    }
+}
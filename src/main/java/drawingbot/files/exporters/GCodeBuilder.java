@@ -8,16 +8,56 @@ import drawingbot.utils.Utils;
 
 import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
-import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.function.Function;
 
+/**
+ * Writes G-Code directly to a byte buffer, the custom G-Code snippets are compiled once and the pen up / pen down commands are only formatted once per layer.
+ * Numbers are written with a fixed-point formatter which matches the output of {@link Utils#gcodeFloat(float)}, without creating any strings.
+ */
 public class GCodeBuilder {
 
+    public static final int BUFFER_SIZE = 1 << 20;
+    public static final int DECIMAL_SCALE = 1000; //see Utils.gcode_decimals
+    /**the largest value which can be formatted with the fixed-point formatter, larger values fallback to {@link Utils#gcodeFloat(float)}*/
+    public static final double MAX_FIXED_VALUE = 1e12;
+    private static final int MAX_FIXED_LENGTH = 20;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
     public final ExportTask task;
     public final GCodeSettings settings;
-    private final PrintWriter output;
+    private final WritableByteChannel output;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+    private int position;
+
+    private final GCodeTemplate startCode, endCode, penUpCode, penDownCode, startLayerCode, endLayerCode;
+    private byte[] penUpCommand, penDownCommand;
+
+    /**only created when arc fitting is enabled, pen down moves are collected by the fitter until the path is finished*/
+    private final GCodeArcFitter arcFitter;
+    private final GCodeArcFitter.IMoveConsumer fittedMoves = new GCodeArcFitter.IMoveConsumer() {
+        @Override
+        public void linearMove(float x, float y) {
+            writeLinearMove('1', x, y);
+        }
+
+        @Override
+        public void arcMove(boolean clockwise, float x, float y, float i, float j) {
+            writeByte('G');
+            writeByte(clockwise ? '2' : '3');
+            writeParameter('X', x);
+            writeParameter('Y', y);
+            writeParameter('I', i);
+            writeParameter('J', j);
+            writeLineSeparator();
+        }
+    };
 
     public boolean isPenDown;
 
@@ -36,10 +76,17 @@ public class GCodeBuilder {
     public float lastMoveX = 0, lastMoveY = 0;
     public Limit dx = new Limit(), dy = new Limit();
 
-    public GCodeBuilder(ExportTask task, GCodeSettings settings, PrintWriter output) {
+    public GCodeBuilder(ExportTask task, GCodeSettings settings, WritableByteChannel output) {
         this.task = task;
         this.settings = settings;
         this.output = output;
+        this.startCode = GCodeTemplate.compile(settings.gcodeStartCode.getValue());
+        this.endCode = GCodeTemplate.compile(settings.gcodeEndCode.getValue());
+        this.penUpCode = GCodeTemplate.compile(settings.gcodePenUpCode.getValue());
+        this.penDownCode = GCodeTemplate.compile(settings.gcodePenDownCode.getValue());
+        this.startLayerCode = GCodeTemplate.compile(settings.gcodeStartLayerCode.getValue());
+        this.endLayerCode = GCodeTemplate.compile(settings.gcodeEndLayerCode.getValue());
+        this.arcFitter = settings.gcodeEnableArcFitting.get() ? new GCodeArcFitter(settings.getGCodeArcTolerance()) : null;
     }
 
     /**
@@ -49,7 +96,8 @@ public class GCodeBuilder {
         //comment(task.exportDrawing.getOrCreateDrawingStats().getDrawingStatsComment()); //TODO STANDARDISE HPGL + GCODE DRAWING STATS WITH SVG
         comment("GCode generated by: " + FXApplication.getSoftware().getDisplayName() + " " + FXApplication.getSoftware().getDisplayVersion());
         comment("Time: " + Utils.getDateAndTime());
-        command(GCodeExporter.replaceWildcards(this, settings.gcodeStartCode.getValue()));
+        command(startCode.format(this));
+        updateLayerCommands();
 
         isPenDown = true; //forces the first pen up command
         movePenUp();
@@ -59,7 +107,7 @@ public class GCodeBuilder {
      * Must be called to save the file
      */
     public void close() {
-        command(GCodeExporter.replaceWildcards(this, settings.gcodeEndCode.getValue()));
+        command(endCode.format(this));
 
         comment("Distance Moved: " + Utils.gcodeFloat(distanceMoved) + " mm");
         comment("Distance Moved - Pen Up: " + Utils.gcodeFloat(distanceUp) + " mm");
@@ -69,17 +117,35 @@ public class GCodeBuilder {
         comment("Pen Dropped: " + penDrops + " times");
         comment("Min X: " + Utils.gcodeFloat(dx.min) + " Max X: " + Utils.gcodeFloat(dx.max));
         comment("Min Y: " + Utils.gcodeFloat(dy.min) + " Max Y: " + Utils.gcodeFloat(dy.max));
+        if(arcFitter != null && arcFitter.inputMoves > 0){
+            float reduction = 100F * (arcFitter.inputMoves - arcFitter.outputMoves) / arcFitter.inputMoves;
+            comment("Arc Fitting: " + arcFitter.inputMoves + " moves replaced with " + arcFitter.outputMoves + " moves, including " + arcFitter.arcMoves + " arcs");
+            comment("Arc Fitting - Reduction: " + Utils.gcodeFloat(reduction) + " %");
+        }
 
-        output.flush();
-        output.close();
+        try{
+            flushBuffer();
+            output.close();
+        }catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Formats the pen up / pen down commands for the current layer, so they don't need to be formatted on every use
+     */
+    private void updateLayerCommands(){
+        penUpCommand = toLine(penUpCode.format(this));
+        penDownCommand = toLine(penDownCode.format(this));
     }
 
     /**
      * Adds the PEN UP command, if the pen is already raised the command won't be added.
      */
     public void movePenUp() {
+        flushFittedPath();
         if (isPenDown) {
-            output.println(GCodeExporter.replaceWildcards(this, settings.gcodePenUpCode.getValue()));
+            write(penUpCommand);
             isPenDown = false;
             penLifts++;
         }
@@ -91,7 +157,7 @@ public class GCodeBuilder {
      */
     public void movePenDown() {
         if (!isPenDown) {
-            output.println(GCodeExporter.replaceWildcards(this, settings.gcodePenDownCode.getValue()));
+            write(penDownCommand);
             isPenDown = true;
             penDrops++;
         }
@@ -99,13 +165,14 @@ public class GCodeBuilder {
 
     public void startLayer() {
         movePenUp();
-        output.println(GCodeExporter.replaceWildcards(this, settings.gcodeStartLayerCode.getValue()));
+        updateLayerCommands();
+        command(startLayerCode.format(this));
     }
 
 
     public void endLayer() {
         movePenUp();
-        output.println(GCodeExporter.replaceWildcards(this, settings.gcodeEndLayerCode.getValue()));
+        command(endLayerCode.format(this));
     }
 
     public void move(float[] coords, int type) {
@@ -132,20 +199,61 @@ public class GCodeBuilder {
     }
 
     public void linearMoveG1(float xValue, float yValue) {
-        output.println((isPenDown ? "G1" : "G0") + " X" + Utils.gcodeFloat(xValue) + " Y" + Utils.gcodeFloat(yValue));
+        if(arcFitter != null && isPenDown){
+            if(arcFitter.isEmpty()){
+                arcFitter.addPoint(lastX, lastY);
+            }
+            arcFitter.addPoint(xValue, yValue);
+        }else{
+            flushFittedPath();
+            writeLinearMove(isPenDown ? '1' : '0', xValue, yValue);
+        }
         logMove(xValue, yValue);
         lastMoveX = xValue;
         lastMoveY = yValue;
     }
 
+    private void writeLinearMove(char type, float xValue, float yValue){
+        writeByte('G');
+        writeByte(type);
+        writeParameter('X', xValue);
+        writeParameter('Y', yValue);
+        writeLineSeparator();
+    }
+
+    /**
+     * Writes the moves collected by the arc fitter, must be called before any other command is written
+     */
+    private void flushFittedPath(){
+        if(arcFitter != null && !arcFitter.isEmpty()){
+            arcFitter.flush(fittedMoves);
+        }
+    }
+
     public void quadCurveG5(float controlPX, float controlPY, float endX, float endY){
-        output.println("G5 P" + Utils.gcodeFloat(controlPX - lastX) + " Q" + Utils.gcodeFloat(controlPY - lastY) + " X" + Utils.gcodeFloat(endX) + " Y" + Utils.gcodeFloat(endY));
+        flushFittedPath();
+        writeByte('G');
+        writeByte('5');
+        writeParameter('P', controlPX - lastX);
+        writeParameter('Q', controlPY - lastY);
+        writeParameter('X', endX);
+        writeParameter('Y', endY);
+        writeLineSeparator();
         logMove(controlPX, controlPY);
         logMove(endX, endY);
     }
 
     public void bezierCurveG5(float controlP1X, float controlP1Y, float controlP2X, float controlP2Y, float endX, float endY){
-        output.println("G5 I" + Utils.gcodeFloat(controlP1X - lastX) + " J" + Utils.gcodeFloat(controlP1Y - lastY) + " P" + Utils.gcodeFloat(controlP2X - endX) + " Q" + Utils.gcodeFloat(controlP2Y - endY) + " X" + Utils.gcodeFloat(endX) + " Y" + Utils.gcodeFloat(endY));
+        flushFittedPath();
+        writeByte('G');
+        writeByte('5');
+        writeParameter('I', controlP1X - lastX);
+        writeParameter('J', controlP1Y - lastY);
+        writeParameter('P', controlP2X - endX);
+        writeParameter('Q', controlP2Y - endY);
+        writeParameter('X', endX);
+        writeParameter('Y', endY);
+        writeLineSeparator();
         logMove(controlP1X, controlP1Y);
         logMove(controlP2X, controlP2Y);
         logMove(endX, endY);
@@ -170,11 +278,119 @@ public class GCodeBuilder {
     }
 
     public void command(String command) {
-        output.println(command);
+        flushFittedPath();
+        write(toLine(command));
     }
 
     public void comment(String comment) {
-        comment.lines().forEach(line -> output.println(settings.gcodeCommentType.get().formatter.apply(line)));
+        comment.lines().forEach(line -> command(settings.gcodeCommentType.get().formatter.apply(line)));
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static byte[] toLine(String line){
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        byte[] result = new byte[bytes.length + LINE_SEPARATOR.length];
+        System.arraycopy(bytes, 0, result, 0, bytes.length);
+        System.arraycopy(LINE_SEPARATOR, 0, result, bytes.length, LINE_SEPARATOR.length);
+        return result;
+    }
+
+    /**
+     * Writes " " + the parameter letter + the value
+     */
+    private void writeParameter(char parameter, float value){
+        ensureCapacity(MAX_FIXED_LENGTH + 2);
+        buffer[position++] = ' ';
+        buffer[position++] = (byte) parameter;
+        int end = formatFloat(value, buffer, position);
+        if(end == -1){
+            write(Utils.gcodeFloat(value).getBytes(StandardCharsets.UTF_8));
+        }else{
+            position = end;
+        }
+    }
+
+    private void writeByte(char c){
+        ensureCapacity(1);
+        buffer[position++] = (byte) c;
+    }
+
+    private void writeLineSeparator(){
+        write(LINE_SEPARATOR);
+    }
+
+    private void write(byte[] bytes){
+        if(bytes.length > buffer.length){
+            flushBuffer();
+            writeFully(ByteBuffer.wrap(bytes));
+            return;
+        }
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void ensureCapacity(int length){
+        if(position + length > buffer.length){
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer(){
+        if(position == 0){
+            return;
+        }
+        byteBuffer.clear();
+        byteBuffer.limit(position);
+        writeFully(byteBuffer);
+        position = 0;
+    }
+
+    private void writeFully(ByteBuffer src){
+        try{
+            while(src.hasRemaining()){
+                output.write(src);
+            }
+        }catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Formats the value in the same format as {@link Utils#gcodeFloat(float)}, i.e. 3 decimal places, rounded half-even, with no leading zero.
+     * <br>
+     * Multiplying a float by 1000 is always exact as a double, so the rounding matches the {@link java.text.DecimalFormat} exactly.
+     * @return the position after the formatted value, or -1 if the value is too large, or not a number, in which case nothing is written
+     */
+    public static int formatFloat(float value, byte[] dst, int offset){
+        double scaled = Math.rint((double) value * DECIMAL_SCALE);
+        if(!(Math.abs(scaled) < MAX_FIXED_VALUE * DECIMAL_SCALE)){
+            return -1;
+        }
+        if(Float.floatToRawIntBits(value) < 0){
+            dst[offset++] = '-';
+        }
+        long fixed = (long) Math.abs(scaled);
+        long integer = fixed / DECIMAL_SCALE;
+        int fraction = (int) (fixed % DECIMAL_SCALE);
+
+        if(integer != 0){
+            int digits = 0;
+            for(long i = integer; i != 0; i /= 10){
+                digits++;
+            }
+            for(int i = offset + digits - 1; i >= offset; i--){
+                dst[i] = (byte) ('0' + (integer % 10));
+                integer /= 10;
+            }
+            offset += digits;
+        }
+        dst[offset++] = (byte) Utils.gcode_decimal_seperator;
+        dst[offset++] = (byte) ('0' + fraction / 100);
+        dst[offset++] = (byte) ('0' + (fraction / 10) % 10);
+        dst[offset++] = (byte) ('0' + fraction % 10);
+        return offset;
     }
 
     public enum CommentType{
@@ -12,7 +12,7 @@ import drawingbot.utils.Limit;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.PathIterator;
 import java.io.File;
-import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -39,32 +39,24 @@ public class GCodeExporter {
 
     public static List<GCodeWildcard> wildcards = new ArrayList<>();
     static {
-        wildcards.add(new GCodeWildcard("%PEN_NAME%") {
+        //Legacy: "%LAYER_NAME%" is the old wildcard id
+        wildcards.add(new GCodeWildcard("%PEN_NAME%", "%LAYER_NAME%") {
             @Override
-            public String formatWildcard(GCodeBuilder builder, String string) {
-                //Legacy: fix for old wildcard ids
-                string = string.replaceAll("%LAYER_NAME%", builder.layerName);
-
-                return string.replaceAll(wildcard, builder.layerName);
+            public String getValue(GCodeBuilder builder) {
+                return builder.layerName;
             }
         });
         wildcards.add(new GCodeWildcard("%PEN_ID%") {
             @Override
-            public String formatWildcard(GCodeBuilder builder, String string) {
-                string = string.replaceAll(wildcard, "" + builder.layerID);
-
+            public String getValue(GCodeBuilder builder) {
                 //TODO PARSE PLUS + MINUS
-
-                return string;
+                return "" + builder.layerID;
             }
         });
     }
 
     public static String replaceWildcards(GCodeBuilder builder, String command){
-        for(GCodeWildcard wildcard : GCodeExporter.wildcards){
-            command = wildcard.formatWildcard(builder, command);
-        }
-        return command;
+        return GCodeTemplate.compile(command).format(builder);
     }
 
 
@@ -98,7 +90,7 @@ public class GCodeExporter {
 
     public static void exportGCode(ExportTask exportTask, GCodeSettings settings, File saveLocation){
 
-        PrintWriter output = exportTask.createFileWriter(saveLocation);
+        FileChannel output = exportTask.createFileChannel(saveLocation);
         if(output == null){
             return;
         }
@@ -153,7 +145,7 @@ public class GCodeExporter {
 
     public static void exportGCodeTest(ExportTask exportTask, GCodeSettings settings, File saveLocation) {
         String gname = FileUtils.removeExtension(saveLocation) + "gcode_test" + exportTask.extension;
-        PrintWriter output = exportTask.createFileWriter(new File(gname));
+        FileChannel output = exportTask.createFileChannel(new File(gname));
         if(output == null){
             return;
         }
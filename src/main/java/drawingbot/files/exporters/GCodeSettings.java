@@ -20,6 +20,8 @@ public class GCodeSettings implements IProperties {
     public final SimpleStringProperty gcodeEndLayerCode = new SimpleStringProperty(GCodeExporter.defaultEndLayerCode);
     public final DoubleProperty gcodeCurveFlatness = new SimpleDoubleProperty(0.1F);
     public final SimpleBooleanProperty gcodeEnableFlattening = new SimpleBooleanProperty(true);
+    public final DoubleProperty gcodeArcTolerance = new SimpleDoubleProperty(0.05F);
+    public final SimpleBooleanProperty gcodeEnableArcFitting = new SimpleBooleanProperty(false);
     public final SimpleBooleanProperty gcodeCenterZeroPoint = new SimpleBooleanProperty(false);
     public final SimpleObjectProperty<GCodeBuilder.CommentType> gcodeCommentType = new SimpleObjectProperty<>(GCodeBuilder.CommentType.BRACKETS);
 
@@ -31,10 +33,18 @@ public class GCodeSettings implements IProperties {
         return gcodeUnits.get().toMM(gcodeOffsetY.get());
     }
 
+    /**
+     * @return the arc fitting tolerance in millimetres, the units of the G-Code output, the tolerance is entered in the G-Code units like the offsets
+     */
+    public double getGCodeArcTolerance(){
+        return gcodeUnits.get().toMM(gcodeArcTolerance.get());
+    }
+
     public GCodeSettings(){
         gcodeUnits.addListener((observable, oldValue, newValue) -> {
             gcodeOffsetX.set(UnitsLength.convert(gcodeOffsetX.get(), oldValue, newValue));
             gcodeOffsetY.set(UnitsLength.convert(gcodeOffsetY.get(), oldValue, newValue));
+            gcodeArcTolerance.set(UnitsLength.convert(gcodeArcTolerance.get(), oldValue, newValue));
         });
     }
 
@@ -54,6 +64,8 @@ public class GCodeSettings implements IProperties {
         copy.gcodeCurveFlatness.set(gcodeCurveFlatness.get());
 
         copy.gcodeEnableFlattening.set(gcodeEnableFlattening.get());
+        copy.gcodeArcTolerance.set(gcodeArcTolerance.get());
+        copy.gcodeEnableArcFitting.set(gcodeEnableArcFitting.get());
         copy.gcodeCenterZeroPoint.set(gcodeCenterZeroPoint.get());
         copy.gcodeCommentType.set(gcodeCommentType.get());
         return copy;
@@ -67,7 +79,7 @@ public class GCodeSettings implements IProperties {
     @Override
     public ObservableList<Observable> getPropertyList() {
         if(propertyList == null){
-            propertyList = PropertyUtil.createPropertiesList(gcodeOffsetX, gcodeOffsetY, gcodeUnits, gcodeStartCode, gcodeEndCode, gcodePenDownCode, gcodePenUpCode, gcodeStartLayerCode, gcodeEndLayerCode, gcodeCurveFlatness, gcodeEnableFlattening, gcodeCenterZeroPoint, gcodeCommentType);
+            propertyList = PropertyUtil.createPropertiesList(gcodeOffsetX, gcodeOffsetY, gcodeUnits, gcodeStartCode, gcodeEndCode, gcodePenDownCode, gcodePenUpCode, gcodeStartLayerCode, gcodeEndLayerCode, gcodeCurveFlatness, gcodeEnableFlattening, gcodeArcTolerance, gcodeEnableArcFitting, gcodeCenterZeroPoint, gcodeCommentType);
         }
         return propertyList;
     }
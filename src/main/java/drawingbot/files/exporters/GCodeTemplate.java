@@ -0,0 +1,81 @@
+package drawingbot.files.exporters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A custom G-Code snippet from the {@link GCodeSettings}, which is split around its wildcards once, so they can be replaced without searching the snippet every time it's used.
+ */
+public class GCodeTemplate {
+
+    public final String template;
+    private final String[] literals;
+    private final GCodeWildcard[] wildcards;
+
+    private GCodeTemplate(String template, String[] literals, GCodeWildcard[] wildcards){
+        this.template = template;
+        this.literals = literals;
+        this.wildcards = wildcards;
+    }
+
+    public boolean hasWildcards(){
+        return wildcards.length > 0;
+    }
+
+    /**
+     * @return the snippet with the wildcards replaced with their values for the builders current layer
+     */
+    public String format(GCodeBuilder builder){
+        if(!hasWildcards()){
+            return template;
+        }
+        StringBuilder stringBuilder = new StringBuilder(template.length() + 16);
+        for(int i = 0; i < wildcards.length; i++){
+            stringBuilder.append(literals[i]);
+            String value = wildcards[i].getValue(builder);
+            stringBuilder.append(value == null ? "" : value);
+        }
+        stringBuilder.append(literals[wildcards.length]);
+        return stringBuilder.toString();
+    }
+
+    public static GCodeTemplate compile(String template){
+        return compile(template, GCodeExporter.wildcards);
+    }
+
+    public static GCodeTemplate compile(String template, List<GCodeWildcard> wildcards){
+        if(template == null){
+            template = "";
+        }
+        List<String> literals = new ArrayList<>();
+        List<GCodeWildcard> found = new ArrayList<>();
+
+        int start = 0;
+        while(true){
+            // find the next wildcard, or one of its legacy aliases
+            int nextIndex = -1;
+            int nextLength = 0;
+            GCodeWildcard nextWildcard = null;
+            for(GCodeWildcard wildcard : wildcards){
+                for(int i = -1; i < wildcard.aliases.size(); i++){
+                    String name = i == -1 ? wildcard.wildcard : wildcard.aliases.get(i);
+                    int index = template.indexOf(name, start);
+                    if(index != -1 && (nextIndex == -1 || index < nextIndex)){
+                        nextIndex = index;
+                        nextLength = name.length();
+                        nextWildcard = wildcard;
+                    }
+                }
+            }
+            if(nextWildcard == null){
+                break;
+            }
+            literals.add(template.substring(start, nextIndex));
+            found.add(nextWildcard);
+            start = nextIndex + nextLength;
+        }
+        literals.add(template.substring(start));
+
+        return new GCodeTemplate(template, literals.toArray(new String[0]), found.toArray(new GCodeWildcard[0]));
+    }
+}
@@ -1,14 +1,32 @@
 package drawingbot.files.exporters;
 
+import java.util.List;
+
 public abstract class GCodeWildcard {
 
     public final String wildcard;
+    public final List<String> aliases;
 
-    public GCodeWildcard(String wildcard){
+    /**
+     * @param aliases legacy names for the wildcard, which are still replaced but not shown to the user
+     */
+    public GCodeWildcard(String wildcard, String... aliases){
         this.wildcard = wildcard;
+        this.aliases = List.of(aliases);
     }
 
-    public abstract String formatWildcard(GCodeBuilder builder, String string);
+    /**
+     * @return the value which should replace the wildcard for the builders current layer
+     */
+    public abstract String getValue(GCodeBuilder builder);
+
+    public String formatWildcard(GCodeBuilder builder, String string){
+        String value = getValue(builder);
+        for(String alias : aliases){
+            string = string.replace(alias, value);
+        }
+        return string.replace(wildcard, value);
+    }
 
     @Override
     public String toString() {
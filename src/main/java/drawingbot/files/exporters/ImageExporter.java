@@ -1,5 +1,6 @@
 package drawingbot.files.exporters;
 
+import drawingbot.DrawingBotV3;
 import drawingbot.api.IGeometryFilter;
 import drawingbot.files.ExportTask;
 import drawingbot.image.ImageTools;
@@ -11,6 +12,7 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.CancellationException;
 
 public class ImageExporter {
 
@@ -23,6 +25,10 @@ public class ImageExporter {
     }
 
     public static void exportImage(ExportTask exportTask, File saveLocation) {
+        if(TiledImageRenderer.useTiledRendering(exportTask)){
+            exportTiledImage(exportTask, saveLocation);
+            return;
+        }
 
         ImageRenderer renderer = new ImageRenderer(exportTask, false);
 
@@ -44,6 +50,36 @@ public class ImageExporter {
         }
     }
 
+    /**
+     * Exports the image without creating the full resolution raster, the tiles are rendered as the image writer requests them
+     */
+    public static void exportTiledImage(ExportTask exportTask, File saveLocation) {
+        TiledImageRenderer renderer = new TiledImageRenderer(exportTask);
+        renderer.binGeometries(exportTask, IGeometryFilter.BYPASS_FILTER);
+        renderer.setBandListener((band, finishedGeometries) -> {
+            for(int i = 0; i < finishedGeometries; i++){
+                exportTask.onGeometryExported();
+            }
+        });
+
+        try {
+            if(ImageIO.write(renderer.createExportImage(), exportTask.extension.substring(1), saveLocation)){
+                exportTask.updateProgress(1, 1);
+            }else{
+                exportTask.setError("Image Export Failed");
+            }
+        } catch (CancellationException e) {
+            //the partially written image is incomplete, so it shouldn't be left behind
+            saveLocation.delete();
+            exportTask.updateMessage("Cancelled");
+            exportTask.updateProgress(0, 1);
+            DrawingBotV3.logger.info("Export Task: Cancelled " + saveLocation.getPath());
+        } catch (IOException e) {
+            exportTask.setError(e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
     public static void exportReferenceImage(ExportTask exportTask, File saveLocation) {
         BufferedImage referenceImage = exportTask.exportDrawing.getReferenceImage();
         if(referenceImage == null) {
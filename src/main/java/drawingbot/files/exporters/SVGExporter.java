@@ -1,30 +1,32 @@
 package drawingbot.files.exporters;
 
 import drawingbot.DrawingBotV3;
-import drawingbot.api.ISpecialPenHandler;
+import drawingbot.api.ICanvas;
+import drawingbot.api.IGeometryFilter;
 import drawingbot.drawing.DrawingStats;
 import drawingbot.files.ExportTask;
+import drawingbot.geom.shapes.IGeometry;
 import drawingbot.image.ImageTools;
 import drawingbot.javafx.observables.ObservableDrawingPen;
 import drawingbot.javafx.preferences.DBPreferences;
+import drawingbot.plotting.DrawingGeometryIterator;
+import drawingbot.plotting.PlottedDrawing;
 import drawingbot.plotting.canvas.CanvasUtils;
 import drawingbot.registry.Register;
-import org.apache.batik.dom.GenericDOMImplementation;
-import org.apache.batik.svggen.SVGGraphics2D;
 import org.apache.batik.util.SVGConstants;
-import org.w3c.dom.DOMImplementation;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 
 import java.awt.*;
-import java.awt.geom.AffineTransform;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-
-//Documentation/Source: https://xmlgraphics.apache.org/batik/using/svg-generator.html
+import java.awt.geom.PathIterator;
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the SVG directly to a buffered stream, while walking through the {@link ExportTask#exportIterator}, so the memory used doesn't grow with the size of the drawing.
+ * <br>
+ * Each pen is written to its own layer, the stroke style is set once per layer and each geometry is written as a single path, the layer's transform converts the geometries from drawing space to the SVG page.
+ */
 //Check with: https://validator.w3.org/
 public class SVGExporter {
 
@@ -33,6 +35,9 @@ public class SVGExporter {
     public static final String XMLNS = SVGConstants.XMLNS_NAMESPACE_URI;
     public static final String INKSCAPE_NS = "http://www.inkscape.org/namespaces/inkscape";
 
+    /**the number of decimal places used for coordinates in the path data*/
+    public static final int PATH_PRECISION = 3;
+
     public static void exportBasicSVG(ExportTask exportTask, File saveLocation){
         exportSVG(exportTask, saveLocation, false);
     }
@@ -42,150 +47,343 @@ public class SVGExporter {
     }
 
     public static void exportSVG(ExportTask exportTask, File saveLocation, boolean inkscape) {
-        try {
-            int width = (int)exportTask.exportDrawing.getCanvas().getScaledWidth();
-            int height = (int)exportTask.exportDrawing.getCanvas().getScaledHeight();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(saveLocation), StandardCharsets.UTF_8), 1 << 16)) {
+            writeSVG(exportTask, new SVGWriter(writer), inkscape);
+        } catch (IOException e) {
+            exportTask.setError(e.getMessage());
+            e.printStackTrace();
+        }
+    }
 
-            // Calculate the page size relative to the configured SVG DPI
-            int scaledPageWidth = (int)CanvasUtils.getExportWidth(exportTask.exportDrawing.getCanvas(), DrawingBotV3.SVG_DPI);
-            int scaledPageHeight = (int)CanvasUtils.getExportHeight(exportTask.exportDrawing.getCanvas(), DrawingBotV3.SVG_DPI);
+    public static void writeSVG(ExportTask exportTask, SVGWriter svg, boolean inkscape) throws IOException {
+        PlottedDrawing exportDrawing = exportTask.exportDrawing;
+        ICanvas canvas = exportDrawing.getCanvas();
 
-            double scale = (double)scaledPageWidth / width;
+        int width = (int)canvas.getScaledWidth();
+        int height = (int)canvas.getScaledHeight();
 
-            // Get a DOMImplementation.
-            DOMImplementation domImpl = GenericDOMImplementation.getDOMImplementation();
+        // Calculate the page size relative to the configured SVG DPI
+        int scaledPageWidth = (int)CanvasUtils.getExportWidth(canvas, DrawingBotV3.SVG_DPI);
+        double scale = (double)scaledPageWidth / width;
 
-            // Create an instance of org.w3c.dom.Document.
-            Document document = domImpl.createDocument(SVG_NS, SVG, null);
+        svg.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+        svg.write("<svg xmlns=\"" + SVG_NS + "\"");
+        if(inkscape){
+            svg.attribute("xmlns:inkscape", INKSCAPE_NS);
+        }
+        svg.attribute("width", canvas.getWidth() + canvas.getUnits().getSuffix());
+        svg.attribute("height", canvas.getHeight() + canvas.getUnits().getSuffix());
+        svg.write(">\n");
 
-            // Get the root element (the 'svg' element).
-            Element svgRoot = document.getDocumentElement();
+        if(DBPreferences.INSTANCE.svgDrawingStatsComment.get()) {
+            DrawingStats drawingStats = exportDrawing.getOrCreateDrawingStats();
+            svg.comment(drawingStats.getDrawingStatsComment());
+        }
 
-            // Set the attributes on the root 'svg' element.
-            svgRoot.setAttributeNS(null, "width", exportTask.exportDrawing.getCanvas().getWidth() + exportTask.exportDrawing.getCanvas().getUnits().getSuffix());
-            svgRoot.setAttributeNS(null, "height", exportTask.exportDrawing.getCanvas().getHeight() + exportTask.exportDrawing.getCanvas().getUnits().getSuffix());
+        if(DBPreferences.INSTANCE.exportSVGBackground.get()){
+            svg.beginLayer("Background", "Background", inkscape);
+            svg.write(" transform=\"scale(");
+            svg.number(scale);
+            svg.write(")\">\n");
+            svg.write("<rect x=\"0\" y=\"0\"");
+            svg.attribute("width", String.valueOf(width));
+            svg.attribute("height", String.valueOf(height));
+            svg.attribute("fill", SVGWriter.toHex(ImageTools.getARGBFromColor(exportTask.context.project.getDrawingArea().canvasColor.getValue())));
+            svg.write("/>\n");
+            svg.endLayer();
+        }
 
+        /////PENS
 
-            if(inkscape){
-                svgRoot.setAttributeNS(XMLNS, "xmlns:inkscape", INKSCAPE_NS);
-            }
+        // Geometries are transformed from drawing space to the page, see Graphics2DExporter#preDraw
+        double layerScale = scale * canvas.getCanvasScale();
+        double layerOffsetX = scale * canvas.getScaledDrawingOffsetX();
+        double layerOffsetY = scale * canvas.getScaledDrawingOffsetY();
 
-            if(DBPreferences.INSTANCE.svgDrawingStatsComment.get()) {
-                DrawingStats drawingStats = exportTask.exportDrawing.getOrCreateDrawingStats();
-                svgRoot.appendChild(document.createComment(drawingStats.getDrawingStatsComment()));
-            }
+        // The iterator returns every geometry of a pen before moving onto the next one, so each layer can be written in one pass
+        DrawingGeometryIterator iterator = exportTask.exportIterator;
+        iterator.reset();
+        iterator.setGeometryFilter(IGeometryFilter.BYPASS_FILTER);
+        iterator.setVertexLimit(0);
 
-            if(DBPreferences.INSTANCE.exportSVGBackground.get()){
-                // Create a fresh document to draw background
-                Document backgroundGraphicsDocument = domImpl.createDocument(SVG_NS, SVG, null);
+        ObservableDrawingPen layerPen = null;
+        int layerARGB = 0;
 
-                // Create a new instance of the SVG Generator for the new background document
-                SVGGraphics2D backgroundGraphics = new SVGGraphics2D(backgroundGraphicsDocument);
-                Element background = backgroundGraphicsDocument.createElementNS(SVGConstants.SVG_NAMESPACE_URI, SVGConstants.SVG_G_TAG);
+        while(iterator.hasNext()){
+            IGeometry geometry = iterator.next();
+            ObservableDrawingPen drawingPen = iterator.currentPen;
 
-                background.setAttribute("id", "Background");
-                if(inkscape){
-                    background.setAttribute("inkscape:groupmode", "layer");
-                    background.setAttribute("inkscape:label", "Background");
+            if(drawingPen != layerPen){
+                if(layerPen != null){
+                    svg.endLayer();
                 }
+                layerPen = drawingPen;
+                layerARGB = drawingPen.getAWTColor().getRGB();
 
-                // Draw the background
-                backgroundGraphics.setTopLevelGroup(background);
-                backgroundGraphics.setSVGCanvasSize(new Dimension(scaledPageWidth, scaledPageHeight));
-                backgroundGraphics.transform(AffineTransform.getScaleInstance(scale, scale));
+                int index = exportTask.exportRenderOrder.indexOf(drawingPen);
+                String layerName = formatLayerName(DBPreferences.INSTANCE.svgLayerNaming.get(), drawingPen.getDisplayName(), "" + (index+1));
 
-                Graphics2DExporter.drawBackground(exportTask.context, backgroundGraphics, width, height);
-                Graphics2DExporter.preDraw(exportTask, backgroundGraphics);
-                Graphics2DExporter.postDraw(exportTask, backgroundGraphics);
+                //Note: the ID must not contain any whitespace characters
+                svg.beginLayer(layerName.replace(' ', '_'), layerName, inkscape);
+                svg.write(" fill=\"none\"");
+                svg.strokeAttributes(layerARGB);
+                svg.write(" stroke-width=\"");
+                svg.number(exportDrawing.getCanvas().getRenderedPenWidth(drawingPen.getStrokeSize()));
+                svg.write("\" stroke-linecap=\"round\" stroke-linejoin=\"round\" transform=\"matrix(");
+                svg.number(layerScale);
+                svg.write(" 0 0 ");
+                svg.number(layerScale);
+                svg.write(' ');
+                svg.number(layerOffsetX);
+                svg.write(' ');
+                svg.number(layerOffsetY);
+                svg.write(")\">\n");
+            }
 
-                // Transfer the background graphics document into the host document
-                if(background.hasChildNodes()){
-                    Node graphicsNode = document.importNode(background, true);
-                    svgRoot.appendChild(graphicsNode);
-                    backgroundGraphics.dispose();
-                }
+            int argb = drawingPen.getAWTColor(geometry.getSampledRGBA()).getRGB();
+            svg.write("<path");
+            if(argb != layerARGB){
+                svg.strokeAttributes(argb);
+            }
+            if(geometry.getFillType() == 0){
+                svg.fillAttributes(argb);
             }
+            svg.write(" d=\"");
+            svg.pathData(geometry.getAWTShape());
+            svg.write("\"/>\n");
 
-            /////PENS
+            exportTask.onGeometryExported();
+        }
 
-            int index = 0;
-            for(ObservableDrawingPen drawingPen : exportTask.exportRenderOrder){
+        if(layerPen != null){
+            svg.endLayer();
+        }
 
-                String layerName = formatLayerName(DBPreferences.INSTANCE.svgLayerNaming.get(), drawingPen.getDisplayName(), "" + (index+1));
+        if(DBPreferences.INSTANCE.svgPFMSettingsText.get()){
+            String settingsJson = exportDrawing.getMetadata(Register.INSTANCE.SETTINGS_JSON);
+            if(settingsJson != null){
+                svg.text(settingsJson);
+                svg.write('\n');
+            }
+        }
 
-                // Create a fresh document to draw each pen into
-                Document graphicsDocument = domImpl.createDocument(SVG_NS, SVG, null);
+        svg.write("</svg>\n");
+        exportTask.updateProgress(1, 1);
+    }
 
-                // Create a new instance of the SVG Generator for the new document
-                SVGGraphics2D graphics = new SVGGraphics2D(graphicsDocument);
-                Element group = graphicsDocument.createElementNS(SVGConstants.SVG_NAMESPACE_URI, SVGConstants.SVG_G_TAG);
+    public static String formatLayerName(String pattern, String name, String index){
+        String formatted = pattern;
+        formatted = formatted.replaceAll("%NAME%", name);
+        formatted = formatted.replaceAll("%INDEX%", index);
+        if(formatted.isEmpty()){
+            return index;
+        }
+        return formatted;
+    }
 
-                //Note: the ID must not contain any whitespace characters
-                group.setAttribute("id", layerName.replace(' ', '_'));
-                if(inkscape){
-                    group.setAttribute("inkscape:groupmode", "layer");
-                    group.setAttribute("inkscape:label", layerName);
-                }
+    /**
+     * A minimal SVG writer, numbers and path data are formatted into a reusable buffer to avoid creating strings for every coordinate.
+     * N.B this class is not thread safe.
+     */
+    public static class SVGWriter {
+
+        private static final long PRECISION_MULTIPLIER = (long) Math.pow(10, PATH_PRECISION);
+        /**larger values would overflow the rounded long, they are formatted with BigDecimal instead*/
+        private static final double MAX_FIXED_POINT = 1e15;
+
+        private final Writer writer;
+        private final char[] numberBuffer = new char[32];
+        private final double[] coords = new double[6];
+
+        public SVGWriter(Writer writer){
+            this.writer = writer;
+        }
+
+        public void write(String string) throws IOException {
+            writer.write(string);
+        }
+
+        public void write(char c) throws IOException {
+            writer.write(c);
+        }
+
+        public void attribute(String name, String value) throws IOException {
+            writer.write(' ');
+            writer.write(name);
+            writer.write("=\"");
+            escape(value);
+            writer.write('"');
+        }
+
+        public void beginLayer(String id, String label, boolean inkscape) throws IOException {
+            writer.write("<g");
+            attribute("id", id);
+            if(inkscape){
+                attribute("inkscape:groupmode", "layer");
+                attribute("inkscape:label", label);
+            }
+        }
+
+        public void endLayer() throws IOException {
+            writer.write("</g>\n");
+        }
+
+        public void strokeAttributes(int argb) throws IOException {
+            attribute("stroke", toHex(argb));
+            int alpha = ImageTools.alpha(argb);
+            if(alpha != 255){
+                writer.write(" stroke-opacity=\"");
+                number(alpha / 255D);
+                writer.write('"');
+            }
+        }
+
+        public void fillAttributes(int argb) throws IOException {
+            attribute("fill", toHex(argb));
+            int alpha = ImageTools.alpha(argb);
+            if(alpha != 255){
+                writer.write(" fill-opacity=\"");
+                number(alpha / 255D);
+                writer.write('"');
+            }
+        }
 
-                // Draw the pen's paths
-                graphics.setTopLevelGroup(group);
-                graphics.setSVGCanvasSize(new Dimension(scaledPageWidth, scaledPageHeight));
-                graphics.transform(AffineTransform.getScaleInstance(scale, scale));
-
-                Graphics2DExporter.preDraw(exportTask, graphics);
-                Graphics2DExporter.drawGeometries(exportTask, graphics, (drawing, geometry, pen) -> pen == drawingPen);
-                Graphics2DExporter.postDraw(exportTask, graphics);
-
-                // Transfer the graphics document into the host document
-                if(group.hasChildNodes()){
-                    //the metadata for the stroke colour is lost when the stroke is black, this is a very ugly work around to prevent that, TODO find a better fix
-                    if(!(drawingPen.source instanceof ISpecialPenHandler) && drawingPen.getARGB() == ImageTools.getARGB(255, 0, 0, 0)){
-                        Node node = group.getFirstChild();
-                        if(node instanceof Element){
-                            Element element = (Element) node;
-                            element.setAttribute("stroke", "black");
+        public void comment(String comment) throws IOException {
+            //comments can't contain a double hyphen
+            writer.write("<!--");
+            writer.write(comment.replace("--", "- -"));
+            writer.write("-->\n");
+        }
+
+        public void text(String text) throws IOException {
+            escape(text);
+        }
+
+        /**
+         * Writes the path data of the shape, repeated line segments omit the command, as they are implied by the previous segment
+         */
+        public void pathData(Shape shape) throws IOException {
+            PathIterator iterator = shape.getPathIterator(null);
+            char lastCommand = 0;
+            while (!iterator.isDone()) {
+                int segType = iterator.currentSegment(coords);
+                switch (segType) {
+                    case PathIterator.SEG_MOVETO -> {
+                        command('M', lastCommand);
+                        point(0);
+                        lastCommand = 'M';
+                    }
+                    case PathIterator.SEG_LINETO -> {
+                        if(lastCommand != 'M' && lastCommand != 'L'){
+                            command('L', lastCommand);
+                        }else{
+                            writer.write(' ');
                         }
+                        point(0);
+                        lastCommand = 'L';
+                    }
+                    case PathIterator.SEG_QUADTO -> {
+                        command('Q', lastCommand);
+                        point(0);
+                        writer.write(' ');
+                        point(2);
+                        lastCommand = 'Q';
+                    }
+                    case PathIterator.SEG_CUBICTO -> {
+                        command('C', lastCommand);
+                        point(0);
+                        writer.write(' ');
+                        point(2);
+                        writer.write(' ');
+                        point(4);
+                        lastCommand = 'C';
                     }
-                    Node graphicsNode = document.importNode(group, true);
-                    svgRoot.appendChild(graphicsNode);
+                    case PathIterator.SEG_CLOSE -> {
+                        writer.write('Z');
+                        lastCommand = 'Z';
+                    }
+                    default -> throw new RuntimeException("Unrecognised segment type " + segType);
                 }
-                graphics.dispose();
-                index++;
+                iterator.next();
             }
+        }
 
-            if(DBPreferences.INSTANCE.svgPFMSettingsText.get()){
-                String settingsJson = exportTask.exportDrawing.getMetadata(Register.INSTANCE.SETTINGS_JSON);
-                if(settingsJson != null){
-                    svgRoot.appendChild(document.createTextNode(settingsJson));
-                }
+        private void command(char command, char lastCommand) throws IOException {
+            if(lastCommand != 0 && lastCommand != 'Z'){
+                writer.write(' ');
             }
+            writer.write(command);
+        }
 
-            // Finally, stream out SVG to the standard output using UTF-8 encoding.
-            exportTask.updateMessage("Encoding SVG");
-            exportTask.updateProgress(-1, 1);
-
-            SVGGraphics2D generator = new SVGGraphics2D(document);
-            OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(saveLocation.toString()), SVGGraphics2D.DEFAULT_XML_ENCODING);
-            generator.stream(svgRoot, writer, true, true);
-            writer.flush();
-            writer.close();
+        private void point(int offset) throws IOException {
+            number(coords[offset]);
+            writer.write(' ');
+            number(coords[offset + 1]);
+        }
 
-            exportTask.updateProgress(1, 1);
+        /**
+         * Writes the number rounded to {@link #PATH_PRECISION} decimal places, with trailing zeros removed
+         */
+        public void number(double value) throws IOException {
+            if(!Double.isFinite(value)){
+                writer.write('0');
+                return;
+            }
+            if(Math.abs(value) >= MAX_FIXED_POINT){
+                writer.write(BigDecimal.valueOf(value).setScale(PATH_PRECISION, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString());
+                return;
+            }
+            long rounded = Math.round(value * PRECISION_MULTIPLIER);
+            if(rounded == 0){
+                writer.write('0');
+                return;
+            }
+            boolean negative = rounded < 0;
+            if(negative){
+                rounded = -rounded;
+            }
+            long integer = rounded / PRECISION_MULTIPLIER;
+            long fraction = rounded % PRECISION_MULTIPLIER;
+
+            int pos = numberBuffer.length;
+            if(fraction != 0){
+                int digits = PATH_PRECISION;
+                while(fraction % 10 == 0){
+                    fraction /= 10;
+                    digits--;
+                }
+                for(int i = 0; i < digits; i++){
+                    numberBuffer[--pos] = (char)('0' + fraction % 10);
+                    fraction /= 10;
+                }
+                numberBuffer[--pos] = '.';
+            }
+            do{
+                numberBuffer[--pos] = (char)('0' + integer % 10);
+                integer /= 10;
+            }while(integer != 0);
+            if(negative){
+                numberBuffer[--pos] = '-';
+            }
+            writer.write(numberBuffer, pos, numberBuffer.length - pos);
+        }
 
-        } catch (IOException e) {
-            exportTask.setError(e.getMessage());
-            e.printStackTrace();
+        private void escape(String string) throws IOException {
+            for(int i = 0; i < string.length(); i++){
+                char c = string.charAt(i);
+                switch (c) {
+                    case '<' -> writer.write("&lt;");
+                    case '>' -> writer.write("&gt;");
+                    case '&' -> writer.write("&amp;");
+                    case '"' -> writer.write("&quot;");
+                    default -> writer.write(c);
+                }
+            }
         }
-    }
 
-    public static String formatLayerName(String pattern, String name, String index){
-        String formatted = pattern;
-        formatted = formatted.replaceAll("%NAME%", name);
-        formatted = formatted.replaceAll("%INDEX%", index);
-        if(formatted.isEmpty()){
-            return index;
+        public static String toHex(int argb){
+            return String.format("#%06x", argb & 0xFFFFFF);
         }
-        return formatted;
     }
 
 }
@@ -0,0 +1,443 @@
+package drawingbot.files.exporters;
+
+import drawingbot.DrawingBotV3;
+import drawingbot.api.ICanvas;
+import drawingbot.api.IGeometryFilter;
+import drawingbot.files.ExportTask;
+import drawingbot.files.json.projects.DBTaskContext;
+import drawingbot.geom.shapes.IGeometry;
+import drawingbot.image.blend.EnumBlendMode;
+import drawingbot.javafx.observables.ObservableDrawingPen;
+import drawingbot.javafx.preferences.DBPreferences;
+import drawingbot.plotting.PlottedDrawing;
+import drawingbot.plotting.PlottedGroup;
+import drawingbot.plotting.canvas.CanvasUtils;
+import drawingbot.render.RenderUtils;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.*;
+
+/**
+ * Renders raster exports in tiles on multiple threads, so very large / high DPI images can be exported without holding the full resolution raster in memory.
+ * <br>
+ * The geometries are sorted into the tiles they overlap once, keeping the order they're rendered in. Each tile is rendered with supersampling into a small buffer and then downsampled, tiles never sample outside their own bounds so there are no seams between them.
+ * The result is provided as a {@link RenderedImage} which renders each band of tiles when the image writer requests its rows, the PNG & TIFF writers request rows in order so only a few bands are held in memory at once.
+ * <br>
+ * If the writing thread is interrupted while a band is being rendered, the image throws a {@link CancellationException} with the thread's interrupt flag restored, which will escape the image writer.
+ */
+public class TiledImageRenderer {
+
+    public static final int TILE_SIZE = 256;
+    public static final int MAX_SUPERSAMPLING = 4;
+    /**images with more pixels than this are always exported in tiles, regardless of the preference, the untiled renderer would need multiple gigabytes*/
+    public static final long MAX_UNTILED_PIXELS = 1L << 27;
+    private static final int CACHED_BANDS = 2;
+
+    public final DBTaskContext context;
+    public final PlottedDrawing drawing;
+    public final ICanvas canvas;
+    public final EnumBlendMode blendMode;
+    public final boolean drawBackground;
+    public final boolean hasAlpha;
+
+    public final int rasterWidth;
+    public final int rasterHeight;
+    public final double rasterScale;
+    public final int samples;
+
+    private final int tilesX, tilesY;
+    private final List<Entry> entries = new ArrayList<>();
+    private final int[][] tileEntries;
+    private final int[] tileEntryCounts;
+    /**the number of geometries which are finished once each band has been rendered, i.e. the geometries whose last row of tiles is the band*/
+    private final int[] bandFinishedGeometries;
+    private final boolean[] bandReported;
+
+    private final BandCache bandCache = new BandCache();
+    private IBandListener bandListener = (band, finishedGeometries) -> {};
+
+    private record Entry(IGeometry geometry, PlottedGroup group, ObservableDrawingPen pen) {}
+
+    public interface IBandListener {
+
+        /**
+         * Called the first time each band is rendered
+         * @param finishedGeometries the number of geometries which have been completely rendered by this band
+         */
+        void onBandRendered(int band, int finishedGeometries);
+
+    }
+
+    public TiledImageRenderer(ExportTask exportTask) {
+        this(exportTask.context, exportTask.exportDrawing, exportTask.context.project().blendMode.get(), ImageExporter.getOutputBufferedImageType(exportTask) == BufferedImage.TYPE_INT_ARGB, ImageExporter.drawBackgroundOnRaster(exportTask));
+    }
+
+    public TiledImageRenderer(DBTaskContext context, PlottedDrawing drawing, EnumBlendMode blendMode, boolean hasAlpha, boolean drawBackground) {
+        this.context = context;
+        this.drawing = drawing;
+        this.canvas = drawing.getCanvas();
+        this.blendMode = blendMode;
+        this.hasAlpha = hasAlpha;
+        this.drawBackground = drawBackground;
+
+        this.rasterWidth = CanvasUtils.getRasterExportWidth(canvas, DBPreferences.INSTANCE.exportDPI.get(), false);
+        this.rasterHeight = CanvasUtils.getRasterExportHeight(canvas, DBPreferences.INSTANCE.exportDPI.get(), false);
+        this.rasterScale = (double) rasterWidth / canvas.getScaledWidth();
+
+        // matches the quality of the ImageRenderer, which renders at the next integer scale and then resizes the image
+        double linearScale = Math.ceil(rasterScale);
+        this.samples = linearScale == rasterScale ? 1 : Math.min(MAX_SUPERSAMPLING, Math.max(2, (int) Math.ceil(linearScale / rasterScale)));
+
+        this.tilesX = Math.max(1, (rasterWidth + TILE_SIZE - 1) / TILE_SIZE);
+        this.tilesY = Math.max(1, (rasterHeight + TILE_SIZE - 1) / TILE_SIZE);
+        this.tileEntries = new int[tilesX * tilesY][];
+        this.tileEntryCounts = new int[tilesX * tilesY];
+        this.bandFinishedGeometries = new int[tilesY];
+        this.bandReported = new boolean[tilesY];
+    }
+
+    /**
+     * @return true if the export should be rendered in tiles, either because it's enabled in the preferences or the image is too large to render in one piece
+     */
+    public static boolean useTiledRendering(ExportTask exportTask){
+        if(DBPreferences.INSTANCE.tiledImageExport.get()){
+            return true;
+        }
+        ICanvas canvas = exportTask.exportDrawing.getCanvas();
+        long width = CanvasUtils.getRasterExportWidth(canvas, DBPreferences.INSTANCE.exportDPI.get(), false);
+        long height = CanvasUtils.getRasterExportHeight(canvas, DBPreferences.INSTANCE.exportDPI.get(), false);
+        double scale = (double) width / canvas.getScaledWidth();
+        double linearScale = Math.ceil(scale);
+        return (long) (width * (linearScale / scale)) * (long) (height * (linearScale / scale)) > MAX_UNTILED_PIXELS;
+    }
+
+    public void setBandListener(IBandListener bandListener){
+        this.bandListener = bandListener;
+    }
+
+    public int getBandCount(){
+        return tilesY;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    //// BINNING \\\\
+
+    /**
+     * Sorts the geometries provided by the export iterator into the tiles they overlap, this must be called before the image is rendered
+     */
+    public void binGeometries(ExportTask exportTask, IGeometryFilter geometryFilter){
+        exportTask.exportIterator.reset();
+        RenderUtils.renderDrawing(this, exportTask.exportIterator, geometryFilter, 0, 0, (renderer, geometry, drawing, group, pen) -> renderer.addGeometry(geometry, group, pen));
+    }
+
+    public void addGeometry(IGeometry geometry, PlottedGroup group, ObservableDrawingPen pen){
+        int index = entries.size();
+        entries.add(new Entry(geometry, group, pen));
+
+        // the bounds of the geometry in raster pixels, including the width of the stroke
+        double drawingScale = canvas.getCanvasScale() * rasterScale;
+        double margin = canvas.getRenderedPenWidth(pen.getStrokeSize()) * drawingScale + 1;
+        Rectangle2D bounds = geometry.getAWTShape().getBounds2D();
+        double minX = (bounds.getMinX() * canvas.getCanvasScale() + canvas.getScaledDrawingOffsetX()) * rasterScale - margin;
+        double minY = (bounds.getMinY() * canvas.getCanvasScale() + canvas.getScaledDrawingOffsetY()) * rasterScale - margin;
+        double maxX = (bounds.getMaxX() * canvas.getCanvasScale() + canvas.getScaledDrawingOffsetX()) * rasterScale + margin;
+        double maxY = (bounds.getMaxY() * canvas.getCanvasScale() + canvas.getScaledDrawingOffsetY()) * rasterScale + margin;
+
+        int minTileX = Math.max(0, (int) Math.floor(minX / TILE_SIZE));
+        int minTileY = Math.max(0, (int) Math.floor(minY / TILE_SIZE));
+        int maxTileX = Math.min(tilesX - 1, (int) Math.floor(maxX / TILE_SIZE));
+        int maxTileY = Math.min(tilesY - 1, (int) Math.floor(maxY / TILE_SIZE));
+        bandFinishedGeometries[Math.max(0, maxTileY)]++;
+
+        for(int tileY = minTileY; tileY <= maxTileY; tileY++){
+            for(int tileX = minTileX; tileX <= maxTileX; tileX++){
+                int tile = tileY * tilesX + tileX;
+                int[] list = tileEntries[tile];
+                int count = tileEntryCounts[tile];
+                if(list == null){
+                    list = tileEntries[tile] = new int[16];
+                }else if(count == list.length){
+                    list = tileEntries[tile] = Arrays.copyOf(list, list.length * 2);
+                }
+                list[count] = index;
+                tileEntryCounts[tile] = count + 1;
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    //// RENDERING \\\\
+
+    /**
+     * Renders one row of tiles in parallel
+     * @return the packed pixels of the band, in the format of the export image
+     */
+    private int[] renderBand(int band) throws InterruptedException {
+        int bandY = band * TILE_SIZE;
+        int bandHeight = Math.min(TILE_SIZE, rasterHeight - bandY);
+        int[] pixels = new int[rasterWidth * bandHeight];
+
+        List<Callable<Void>> jobs = new ArrayList<>();
+        for(int tileX = 0; tileX < tilesX; tileX++){
+            int tile = band * tilesX + tileX;
+            int x = tileX * TILE_SIZE;
+            int tileWidth = Math.min(TILE_SIZE, rasterWidth - x);
+            jobs.add(() -> {
+                renderTile(tile, x, bandY, tileWidth, bandHeight, pixels);
+                return null;
+            });
+        }
+
+        try{
+            for(Future<Void> future : getTileService().invokeAll(jobs)){
+                future.get();
+            }
+        }catch (ExecutionException e){
+            throw new RuntimeException(e.getCause());
+        }
+        if(!bandReported[band]){
+            bandReported[band] = true;
+            bandListener.onBandRendered(band, bandFinishedGeometries[band]);
+        }
+        return pixels;
+    }
+
+    private void renderTile(int tile, int x, int y, int width, int height, int[] bandPixels){
+        BufferedImage tileImage = new BufferedImage(width * samples, height * samples, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = ImageRenderer.createFreshGraphics2D(context, tileImage, blendMode, false, drawBackground);
+        graphics.translate(-x * samples, -y * samples);
+        graphics.scale(rasterScale * samples, rasterScale * samples);
+        Graphics2DExporter.preDraw(drawing, graphics);
+
+        int[] list = tileEntries[tile];
+        for(int i = 0; i < tileEntryCounts[tile]; i++){
+            Entry entry = entries.get(list[i]);
+            RenderUtils.renderGeometryAWT(graphics, entry.geometry, drawing, entry.group, entry.pen);
+        }
+        graphics.dispose();
+
+        downsample(((DataBufferInt) tileImage.getRaster().getDataBuffer()).getData(), width * samples, bandPixels, x, width, height);
+    }
+
+    /**
+     * Averages each block of samples into one pixel, weighted by the alpha of each sample.
+     * When the export has no alpha channel the pixels are composited over black, matching the conversion used by the {@link ImageRenderer}
+     */
+    private void downsample(int[] src, int srcWidth, int[] dst, int dstX, int width, int height){
+        int sampleCount = samples * samples;
+        for(int y = 0; y < height; y++){
+            for(int x = 0; x < width; x++){
+                long a = 0, r = 0, g = 0, b = 0;
+                for(int sy = 0; sy < samples; sy++){
+                    int offset = (y * samples + sy) * srcWidth + x * samples;
+                    for(int sx = 0; sx < samples; sx++){
+                        int argb = src[offset + sx];
+                        int alpha = argb >>> 24;
+                        a += alpha;
+                        r += ((argb >> 16) & 0xFF) * alpha;
+                        g += ((argb >> 8) & 0xFF) * alpha;
+                        b += (argb & 0xFF) * alpha;
+                    }
+                }
+                int pixel;
+                if(hasAlpha){
+                    pixel = a == 0 ? 0 : (int) ((a + sampleCount / 2) / sampleCount) << 24 | (int) ((r + a / 2) / a) << 16 | (int) ((g + a / 2) / a) << 8 | (int) ((b + a / 2) / a);
+                }else{
+                    long divisor = 255L * sampleCount;
+                    pixel = 0xFF000000 | (int) ((r + divisor / 2) / divisor) << 16 | (int) ((g + divisor / 2) / divisor) << 8 | (int) ((b + divisor / 2) / divisor);
+                }
+                dst[y * rasterWidth + dstX + x] = pixel;
+            }
+        }
+    }
+
+    /**
+     * Keeps the most recently rendered bands, as image writers may request rows which span two bands
+     */
+    private class BandCache {
+
+        private final int[] bands = new int[CACHED_BANDS];
+        private final int[][] pixels = new int[CACHED_BANDS][];
+        private int next = 0;
+
+        private BandCache(){
+            Arrays.fill(bands, -1);
+        }
+
+        /**
+         * @throws CancellationException if the thread is interrupted while the band is rendered
+         */
+        public synchronized int[] getBand(int band){
+            for(int i = 0; i < CACHED_BANDS; i++){
+                if(bands[i] == band){
+                    return pixels[i];
+                }
+            }
+            int[] rendered;
+            try {
+                rendered = renderBand(band);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Tiled image export cancelled");
+            }
+            bands[next] = band;
+            pixels[next] = rendered;
+            next = (next + 1) % CACHED_BANDS;
+            return rendered;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    //// OUTPUT \\\\
+
+    public RenderedImage createExportImage(){
+        return new TiledRenderedImage();
+    }
+
+    /**
+     * An image which is rendered one band at a time as its rows are requested, the tile grid of the image matches the bands, so writers which work tile by tile also render one band at a time
+     */
+    private class TiledRenderedImage implements RenderedImage {
+
+        private final ColorModel colorModel = hasAlpha ? ColorModel.getRGBdefault() : new DirectColorModel(24, 0xFF0000, 0xFF00, 0xFF);
+        private final SampleModel sampleModel = colorModel.createCompatibleSampleModel(rasterWidth, Math.min(TILE_SIZE, rasterHeight));
+
+        @Override
+        public Vector<RenderedImage> getSources() {
+            return null;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return Image.UndefinedProperty;
+        }
+
+        @Override
+        public String[] getPropertyNames() {
+            return null;
+        }
+
+        @Override
+        public ColorModel getColorModel() {
+            return colorModel;
+        }
+
+        @Override
+        public SampleModel getSampleModel() {
+            return sampleModel;
+        }
+
+        @Override
+        public int getWidth() {
+            return rasterWidth;
+        }
+
+        @Override
+        public int getHeight() {
+            return rasterHeight;
+        }
+
+        @Override
+        public int getMinX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinY() {
+            return 0;
+        }
+
+        @Override
+        public int getNumXTiles() {
+            return 1;
+        }
+
+        @Override
+        public int getNumYTiles() {
+            return tilesY;
+        }
+
+        @Override
+        public int getMinTileX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinTileY() {
+            return 0;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return rasterWidth;
+        }
+
+        @Override
+        public int getTileHeight() {
+            return TILE_SIZE;
+        }
+
+        @Override
+        public int getTileGridXOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getTileGridYOffset() {
+            return 0;
+        }
+
+        @Override
+        public Raster getTile(int tileX, int tileY) {
+            int y = tileY * TILE_SIZE;
+            return getData(new Rectangle(0, y, rasterWidth, Math.min(TILE_SIZE, rasterHeight - y)));
+        }
+
+        @Override
+        public Raster getData() {
+            return getData(new Rectangle(0, 0, rasterWidth, rasterHeight));
+        }
+
+        @Override
+        public Raster getData(Rectangle rect) {
+            WritableRaster raster = Raster.createWritableRaster(sampleModel.createCompatibleSampleModel(rect.width, rect.height), new Point(rect.x, rect.y));
+            return copyData(raster);
+        }
+
+        @Override
+        public WritableRaster copyData(WritableRaster raster) {
+            if(raster == null){
+                raster = Raster.createWritableRaster(sampleModel.createCompatibleSampleModel(rasterWidth, rasterHeight), null);
+            }
+            Rectangle bounds = raster.getBounds().intersection(new Rectangle(0, 0, rasterWidth, rasterHeight));
+            if(bounds.isEmpty()){
+                return raster;
+            }
+            int[] row = new int[bounds.width];
+            for(int y = bounds.y; y < bounds.y + bounds.height; y++){
+                int[] band = bandCache.getBand(y / TILE_SIZE);
+                System.arraycopy(band, (y % TILE_SIZE) * rasterWidth + bounds.x, row, 0, bounds.width);
+                raster.setDataElements(bounds.x, y, bounds.width, 1, row);
+            }
+            return raster;
+        }
+    }
+
+    private static ExecutorService tileService;
+
+    private static synchronized ExecutorService getTileService(){
+        if(tileService == null){
+            tileService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), DrawingBotV3.threadFactory("DrawingBotV3 - Image Export Tiles"));
+        }
+        return tileService;
+    }
+}
@@ -39,6 +39,8 @@ public class PresetGCodeSettingsEditor extends DefaultPresetEditor<GCodeSettings
         editorNode.getChildren().add(new SettingNode<>("Y Offset", collectSetting(Register.PRESET_MANAGER_GCODE_SETTINGS.gcodeOffsetY.copy())));
         editorNode.getChildren().add(new SettingNode<>("Curve Flattening", collectSetting(Register.PRESET_MANAGER_GCODE_SETTINGS.gcodeEnableFlattening.copy())));
         editorNode.getChildren().add(new SettingNode<>( "Curve Flatness", collectSetting(Register.PRESET_MANAGER_GCODE_SETTINGS.gcodeCurveFlatness.copy())));
+        editorNode.getChildren().add(new SettingNode<>("Arc Fitting", collectSetting(Register.PRESET_MANAGER_GCODE_SETTINGS.gcodeEnableArcFitting.copy())));
+        editorNode.getChildren().add(new SettingNode<>("Arc Tolerance", collectSetting(Register.PRESET_MANAGER_GCODE_SETTINGS.gcodeArcTolerance.copy())));
         editorNode.getChildren().add(new SettingNode<>("Center Zero Point", collectSetting(Register.PRESET_MANAGER_GCODE_SETTINGS.gcodeCenterZeroPoint.copy())));
         editorNode.getChildren().add(new SettingNode<>("Comment Type", collectSetting(Register.PRESET_MANAGER_GCODE_SETTINGS.gcodeCommentType.copy())));
         editorNode.getChildren().add(new LabelNode("Custom GCode").setTitleStyling());
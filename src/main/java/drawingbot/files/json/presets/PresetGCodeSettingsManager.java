@@ -19,6 +19,8 @@ public class PresetGCodeSettingsManager extends DefaultPresetManager<GCodeSettin
     public GenericSetting<GCodeSettings, UnitsLength> gcodeUnits = registerSetting(GenericSetting.createOptionSetting(GCodeSettings.class, UnitsLength.class, "gcodeUnits", FXCollections.observableArrayList(UnitsLength.values()), UnitsLength.MILLIMETRES, i -> i.gcodeUnits));
     public GenericSetting<GCodeSettings, Double> gcodeCurveFlatness = registerSetting(GenericSetting.createDoubleSetting(GCodeSettings.class, "gcodeCurveFlatness", 0.1D, i -> i.gcodeCurveFlatness).setValidator(Math::abs).createDisableBinding("gcodeEnableFlattening", false));
     public GenericSetting<GCodeSettings, Boolean> gcodeEnableFlattening = registerSetting(GenericSetting.createBooleanSetting(GCodeSettings.class, "gcodeEnableFlattening", true, i -> i.gcodeEnableFlattening));
+    public GenericSetting<GCodeSettings, Double> gcodeArcTolerance = registerSetting(GenericSetting.createDoubleSetting(GCodeSettings.class, "gcodeArcTolerance", 0.05D, i -> i.gcodeArcTolerance).setValidator(Math::abs).createDisableBinding("gcodeEnableArcFitting", false));
+    public GenericSetting<GCodeSettings, Boolean> gcodeEnableArcFitting = registerSetting(GenericSetting.createBooleanSetting(GCodeSettings.class, "gcodeEnableArcFitting", false, i -> i.gcodeEnableArcFitting));
     public GenericSetting<GCodeSettings, Boolean> gcodeCenterZeroPoint = registerSetting(GenericSetting.createBooleanSetting(GCodeSettings.class, "gcodeCenterZeroPoint", false, i -> i.gcodeCenterZeroPoint));
     public GenericSetting<GCodeSettings, GCodeBuilder.CommentType> gcodeCommentType = registerSetting(GenericSetting.createOptionSetting(GCodeSettings.class, GCodeBuilder.CommentType.class, "gcodeCommentType", FXCollections.observableArrayList(GCodeBuilder.CommentType.values()), GCodeBuilder.CommentType.BRACKETS, i -> i.gcodeCommentType));
     public GenericSetting<GCodeSettings, String> gcodeStartCode = registerSetting(GenericSetting.createStringSetting(GCodeSettings.class, "gcodeStartCode", GCodeExporter.defaultStartCode, i -> i.gcodeStartCode).setEditorFactory(Editors::createGenericTextArea));
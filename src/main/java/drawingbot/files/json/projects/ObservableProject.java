@@ -11,6 +11,7 @@ import drawingbot.files.FileUtils;
 import drawingbot.files.VersionControl;
 import drawingbot.files.json.PresetData;
 import drawingbot.files.loaders.FileLoaderFlags;
+import drawingbot.geom.ExportDrawingCache;
 import drawingbot.geom.MaskingSettings;
 import drawingbot.image.ImageFilterSettings;
 import drawingbot.image.blend.EnumBlendMode;
@@ -353,6 +354,9 @@ public class ObservableProject implements ITaskManager, DrawingSets.Listener, Ob
             setRenderFlag(Flags.ACTIVE_TASK_CHANGED, true);
         });
         currentDrawing.addListener((observable, oldValue, newValue) -> {
+            if(oldValue != null){
+                ExportDrawingCache.invalidate(oldValue);
+            }
             setRenderFlag(Flags.CURRENT_DRAWING_CHANGED, true);
         });
         exportDrawing.addListener((observable, oldValue, newValue) -> {
@@ -7,6 +7,8 @@ import drawingbot.DrawingBotV3;
 import drawingbot.drawing.DrawingSets;
 import drawingbot.files.ExportTask;
 import drawingbot.files.FileUtils;
+import drawingbot.files.PlottedDrawingLoadTask;
+import drawingbot.files.PlottedDrawingSerializer;
 import drawingbot.files.VersionControl;
 import drawingbot.files.json.AbstractPresetManager;
 import drawingbot.files.json.JsonData;
@@ -106,6 +108,15 @@ public class PresetProjectSettingsManager extends AbstractPresetManager<Observab
 
     }
 
+    @JsonData
+    public static class PlottedDrawingData {
+
+        public String file = "";
+        public String uuid = "";
+        public int geometryCount = 0;
+
+    }
+
     @JsonData
     public static class OptionalData {
 
@@ -255,5 +266,38 @@ public class PresetProjectSettingsManager extends AbstractPresetManager<Observab
                 data.importDirectory = context.project().lastImportDirectory.get();
             }
         });
+
+        MasterRegistry.INSTANCE.registerProjectDataLoader(new PresetDataLoader.DataInstance<>(PresetProjectSettings.class,"plotted_drawing", PlottedDrawingData.class, PlottedDrawingData::new, 11) {
+
+            @Override
+            public void loadData(DBTaskContext context, PlottedDrawingData data, GenericPreset<PresetProjectSettings> preset) {
+                File projectFile = context.project().file.get();
+                if(data.file.isEmpty() || projectFile == null){
+                    return;
+                }
+                //the drawing file is only used if it still contains the drawing which was saved with the project
+                File drawingFile = new File(projectFile.getParentFile(), data.file);
+                UUID uuid = PlottedDrawingSerializer.readDrawingUUID(drawingFile);
+                if(uuid != null && uuid.toString().equals(data.uuid)){
+                    DrawingBotV3.INSTANCE.taskMonitor.queueTask(new PlottedDrawingLoadTask(context, drawingFile));
+                }
+            }
+
+            @Override
+            public void saveData(DBTaskContext context, PlottedDrawingData data, GenericPreset<PresetProjectSettings> preset) {
+                PlottedDrawing drawing = context.project().getCurrentDrawing();
+                File projectFile = context.project().file.get();
+                if(DBPreferences.INSTANCE.saveDrawingWithProject.get() && drawing != null && projectFile != null){
+                    data.file = PlottedDrawingSerializer.getDrawingFile(projectFile).getName();
+                    data.uuid = drawing.uuid.toString();
+                    data.geometryCount = drawing.getGeometryCount();
+                }
+            }
+
+            @Override
+            public boolean isEnabled() {
+                return DBPreferences.INSTANCE.saveDrawingWithProject.get();
+            }
+        });
     }
 }
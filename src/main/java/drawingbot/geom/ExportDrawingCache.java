@@ -0,0 +1,141 @@
+package drawingbot.geom;
+
+import drawingbot.DrawingBotV3;
+import drawingbot.api.IGeometryFilter;
+import drawingbot.api.ISpecialPenHandler;
+import drawingbot.javafx.GenericSetting;
+import drawingbot.javafx.observables.ObservableDrawingPen;
+import drawingbot.javafx.preferences.DBPreferences;
+import drawingbot.plotting.PlottedDrawing;
+import drawingbot.plotting.canvas.CanvasUtils;
+
+import java.awt.geom.AffineTransform;
+import java.util.*;
+
+/**
+ * Caches the optimised {@link PlottedDrawing}s created for exports, so exporting the same drawing to several formats, or with several export modes only optimises the drawing once.
+ * <br>
+ * Entries are keyed on the drawing, its pen distribution, the geometry filter, the optimisation settings and the state of the drawing's pens, any edit to one of these will create a new entry and the stale entries will be evicted once the cache is over its memory budget.
+ * The keys identify the source drawing by its {@link PlottedDrawing#instanceID} and don't reference it, so drawings which are never explicitly invalidated e.g. from batch jobs or closed projects aren't kept in memory by the cache, only their optimised copies which are counted in the budget.
+ * The cached drawings are shared by every export which uses them, so they must not be modified after they've been added.
+ * <br>
+ * Each filter is optimised separately, so a per pen export after a per drawing export will optimise each pen again rather than filtering the cached drawing, as the optimisation of the whole drawing may join or order geometries differently.
+ */
+public class ExportDrawingCache {
+
+    /**the estimated memory required per geometry and per vertex of an optimised drawing*/
+    public static final long BYTES_PER_GEOMETRY_ESTIMATE = 96;
+    public static final long BYTES_PER_VERTEX_ESTIMATE = 16;
+
+    private static final Map<CacheKey, PlottedDrawing> cache = new LinkedHashMap<>(16, 0.75F, true);
+    private static long cacheSize = 0;
+
+    /**
+     * @return the cached optimised drawing for the key, or null if there isn't one
+     */
+    public static synchronized PlottedDrawing get(CacheKey key){
+        return cache.get(key);
+    }
+
+    /**
+     * Adds the optimised drawing to the cache, removing the least recently used drawings until the cache is within the memory budget
+     */
+    public static synchronized void put(CacheKey key, PlottedDrawing optimisedDrawing){
+        long budget = DBPreferences.INSTANCE.exportCacheSize.get() * 1024L * 1024L;
+        long size = getSizeInBytes(optimisedDrawing);
+        if(size > budget){
+            return;
+        }
+        PlottedDrawing previous = cache.put(key, optimisedDrawing);
+        if(previous != null){
+            cacheSize -= getSizeInBytes(previous);
+        }
+        cacheSize += size;
+
+        Iterator<Map.Entry<CacheKey, PlottedDrawing>> iterator = cache.entrySet().iterator();
+        while(cacheSize > budget && iterator.hasNext()){
+            Map.Entry<CacheKey, PlottedDrawing> entry = iterator.next();
+            if(entry.getKey() == key){
+                continue;
+            }
+            cacheSize -= getSizeInBytes(entry.getValue());
+            iterator.remove();
+        }
+        DrawingBotV3.logger.fine("Export Cache - %s drawings, %s MB".formatted(cache.size(), cacheSize / (1024 * 1024)));
+    }
+
+    /**
+     * Removes every optimised drawing created from the given drawing, called once the drawing has been replaced
+     */
+    public static synchronized void invalidate(PlottedDrawing drawing){
+        Iterator<Map.Entry<CacheKey, PlottedDrawing>> iterator = cache.entrySet().iterator();
+        while(iterator.hasNext()){
+            Map.Entry<CacheKey, PlottedDrawing> entry = iterator.next();
+            if(entry.getKey().drawingID() == drawing.instanceID){
+                cacheSize -= getSizeInBytes(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    public static synchronized void clear(){
+        cache.clear();
+        cacheSize = 0;
+    }
+
+    public static long getSizeInBytes(PlottedDrawing drawing){
+        return drawing.getGeometryCount() * BYTES_PER_GEOMETRY_ESTIMATE + drawing.getVertexCount() * BYTES_PER_VERTEX_ESTIMATE;
+    }
+
+    /**
+     * @param filterKey identifies the geometry filter, filters which are created for each export e.g. per pen filters, should provide a key which is equal for equal filters
+     * @param optimise if the export will run the path optimisation
+     */
+    public static CacheKey createKey(PlottedDrawing drawing, IGeometryFilter filter, Object filterKey, boolean optimise){
+        List<Object> settings = new ArrayList<>();
+        if(optimise){
+            for(GenericSetting<?, ?> setting : DBPreferences.INSTANCE.settings){
+                if(setting.getCategory().equals(DBPreferences.CATEGORY_OPTIMISATION)){
+                    settings.add(setting.getValue());
+                }
+            }
+        }
+        List<PenState> penStates = new ArrayList<>();
+        for(ObservableDrawingPen pen : drawing.getAllPens()){
+            penStates.add(new PenState(pen, pen.isEnabled(), pen.getARGB(), pen.getStrokeSize(), pen.getSpecialColorHandler()));
+        }
+        return new CacheKey(drawing.instanceID, drawing.getGeometryCount(), drawing.getVertexCount(), drawing.getDistributionRevision(), drawing.getDisplayedShapeMin(), drawing.getDisplayedShapeMax(), filterKey == null ? filter : filterKey, optimise, settings, penStates, drawing.getGlobalRenderOrder(), CanvasUtils.createCanvasScaleTransform(drawing.getCanvas()));
+    }
+
+    /**
+     * The drawing is compared by its instance id, the geometry / vertex counts are included so geometries added to or removed from the drawing will invalidate the entry
+     * and the distribution revision is included so geometries moved to other pens by {@link PlottedDrawing#updatePenDistribution()} will invalidate the entry
+     */
+    public record CacheKey(long drawingID, int geometryCount, long vertexCount, int distributionRevision, int displayedMin, int displayedMax, Object filterKey, boolean optimise, List<Object> settings, List<PenState> penStates, List<ObservableDrawingPen> renderOrder, AffineTransform canvasTransform){
+
+        @Override
+        public boolean equals(Object obj) {
+            if(this == obj){
+                return true;
+            }
+            if(!(obj instanceof CacheKey other)){
+                return false;
+            }
+            return drawingID == other.drawingID && geometryCount == other.geometryCount && vertexCount == other.vertexCount && distributionRevision == other.distributionRevision
+                    && displayedMin == other.displayedMin && displayedMax == other.displayedMax && optimise == other.optimise
+                    && filterKey.equals(other.filterKey) && settings.equals(other.settings) && penStates.equals(other.penStates)
+                    && renderOrder.equals(other.renderOrder) && canvasTransform.equals(other.canvasTransform);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(drawingID, geometryCount, vertexCount, distributionRevision, displayedMin, displayedMax, filterKey, optimise, settings, penStates);
+        }
+    }
+
+    /**
+     * The properties of the pen which change which geometries are exported or how they're optimised
+     */
+    public record PenState(ObservableDrawingPen pen, boolean enabled, int argb, float strokeSize, ISpecialPenHandler specialPenHandler){}
+
+}
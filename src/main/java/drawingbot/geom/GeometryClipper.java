@@ -0,0 +1,564 @@
+package drawingbot.geom;
+
+import drawingbot.geom.shapes.*;
+import drawingbot.image.PixelDataMask;
+import drawingbot.plotting.PathBuilder;
+
+import java.awt.*;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Clips geometries to a shape by finding the exact points where each segment crosses the shapes boundary, rather than sampling points along the segment.
+ * <br>
+ * The clipper is prepared once for the clipping shape:
+ * <li>Rectangles are clipped with Liang-Barsky</li>
+ * <li>{@link PixelDataMask}s are clipped by walking the pixels crossed by each segment</li>
+ * <li>Other shapes are flattened into an edge table, split into horizontal bands, so each segment is only tested against the edges near it</li>
+ * <br>
+ * Curves are split at the points where their chords cross the boundary, so they remain curves after clipping.
+ * A clipper isn't thread safe, each thread should use its own.
+ */
+public abstract class GeometryClipper {
+
+    public static final double EPSILON = 1e-9;
+    public static final double FLATNESS = 0.1;
+    /**the maximum number of chords used to find the crossings of a curve*/
+    public static final int MAX_CURVE_CHORDS = 256;
+
+    public final Shape shape;
+
+    private double[] crossings = new double[16];
+    private int crossingCount;
+    private final double[] curve = new double[8], left = new double[8], right = new double[8];
+
+    protected GeometryClipper(Shape shape){
+        this.shape = shape;
+    }
+
+    public static GeometryClipper create(Shape shape){
+        if(shape instanceof Rectangle2D rectangle){
+            return new RectangleClipper(rectangle);
+        }
+        if(shape instanceof PixelDataMask mask){
+            return new MaskClipper(mask);
+        }
+        return new EdgeTableClipper(shape);
+    }
+
+    /**
+     * Adds the parameters (0 - 1) where the segment crosses the boundary of the shape, they don't need to be sorted or unique
+     */
+    protected abstract void findCrossings(double x1, double y1, double x2, double y2);
+
+    public abstract boolean contains(double x, double y);
+
+    /**
+     * Fast check used to skip clipping geometries which are entirely inside of the shape, it may return false even if they are
+     */
+    public boolean containsBounds(Rectangle2D bounds){
+        return false;
+    }
+
+    protected void addCrossing(double t){
+        if(crossingCount == crossings.length){
+            crossings = Arrays.copyOf(crossings, crossings.length * 2);
+        }
+        crossings[crossingCount++] = t;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @param outside if true the parts of the geometry outside of the shape are kept instead
+     * @return the clipped geometries, or a list containing only the original geometry if it wasn't clipped
+     */
+    public List<IGeometry> clip(IGeometry geometry, boolean outside){
+        List<IGeometry> geometries = new ArrayList<>();
+
+        if(geometry instanceof ILine line){
+            List<double[]> pieces = clipLine(line.getX1(), line.getY1(), line.getX2(), line.getY2(), outside);
+            if(isUnclipped(pieces)){
+                geometries.add(geometry);
+            }else{
+                for(double[] piece : pieces){
+                    geometries.add(GeometryUtils.copyGeometryData(new GLine(lerp(line.getX1(), line.getX2(), piece[0]), lerp(line.getY1(), line.getY2(), piece[0]), lerp(line.getX1(), line.getX2(), piece[1]), lerp(line.getY1(), line.getY2(), piece[1])), geometry));
+                }
+            }
+            return geometries;
+        }
+
+        if(!outside && containsBounds(geometry.getAWTShape().getBounds2D())){
+            geometries.add(geometry);
+            return geometries;
+        }
+
+        List<IGeometry> pathElements = new ArrayList<>();
+        GeometryUtils.splitGPath(geometry instanceof GPath ? (GPath) geometry : new GPath(geometry.getAWTShape()), pathElements::add);
+
+        PathBuilder pathBuilder = new PathBuilder(geometries::add);
+        pathBuilder.startPath();
+        boolean clipped = false;
+
+        for (IGeometry element : pathElements) {
+            if (element instanceof GLine line) {
+                float x1 = line.getX1(), y1 = line.getY1(), x2 = line.getX2(), y2 = line.getY2();
+                List<double[]> pieces = clipLine(x1, y1, x2, y2, outside);
+                clipped |= !isUnclipped(pieces);
+                for(double[] piece : pieces){
+                    pathBuilder.lineTo(lerp(x1, x2, piece[0]), lerp(y1, y2, piece[0]), lerp(x1, x2, piece[1]), lerp(y1, y2, piece[1]));
+                }
+            } else if (element instanceof GQuadCurve || element instanceof GCubicCurve) {
+                GCubicCurve cubic = element instanceof GQuadCurve quad ? new GCubicCurve(quad) : (GCubicCurve) element;
+                float[] coords = cubic.toFloatArray();
+                List<double[]> pieces = clipCurve(coords, outside);
+                clipped |= !isUnclipped(pieces);
+                for(double[] piece : pieces){
+                    float[] sub = subCurve(coords, piece[0], piece[1]);
+                    pathBuilder.curveTo(sub[0], sub[1], sub[2], sub[3], sub[4], sub[5], sub[6], sub[7]);
+                }
+            } else {
+                throw new UnsupportedOperationException("Invalid element type: " + element.getClass().getSimpleName());
+            }
+        }
+        pathBuilder.endPath();
+
+        if(!clipped){
+            geometries.clear();
+            geometries.add(geometry);
+            return geometries;
+        }
+        geometries.forEach(g -> GeometryUtils.copyGeometryData(g, geometry));
+        return geometries;
+    }
+
+    private static boolean isUnclipped(List<double[]> pieces){
+        return pieces.size() == 1 && pieces.get(0)[0] == 0 && pieces.get(0)[1] == 1;
+    }
+
+    private static float lerp(float a, float b, double t){
+        return t == 0 ? a : t == 1 ? b : (float) (a + (b - a) * t);
+    }
+
+    /**
+     * @return the parameter ranges of the line which should be kept
+     */
+    private List<double[]> clipLine(double x1, double y1, double x2, double y2, boolean outside){
+        crossingCount = 0;
+        findCrossings(x1, y1, x2, y2);
+        return createPieces(outside, t -> contains(x1 + (x2 - x1) * t, y1 + (y2 - y1) * t));
+    }
+
+    /**
+     * @return the parameter ranges of the cubic curve which should be kept
+     */
+    private List<double[]> clipCurve(float[] coords, boolean outside){
+        crossingCount = 0;
+        double length = 0;
+        for(int i = 0; i < 6; i += 2){
+            length += Math.hypot(coords[i + 2] - coords[i], coords[i + 3] - coords[i + 1]);
+        }
+        int chords = Math.max(8, Math.min(MAX_CURVE_CHORDS, (int) Math.ceil(length / 2)));
+
+        double lastX = coords[0], lastY = coords[1];
+        for(int i = 1; i <= chords; i++){
+            double t = i / (double) chords;
+            double x = cubicPoint(coords, 0, t), y = cubicPoint(coords, 1, t);
+            int start = crossingCount;
+            findCrossings(lastX, lastY, x, y);
+            // convert the chord parameters to curve parameters
+            for(int c = start; c < crossingCount; c++){
+                crossings[c] = (i - 1 + crossings[c]) / chords;
+            }
+            lastX = x;
+            lastY = y;
+        }
+        return createPieces(outside, t -> contains(cubicPoint(coords, 0, t), cubicPoint(coords, 1, t)));
+    }
+
+    private interface IContainsTest {
+        boolean contains(double t);
+    }
+
+    /**
+     * Sorts the current crossings and tests the middle of each range between them, adjacent ranges which are kept are merged
+     */
+    private List<double[]> createPieces(boolean outside, IContainsTest test){
+        Arrays.sort(crossings, 0, crossingCount);
+        List<double[]> pieces = new ArrayList<>();
+        double start = 0;
+        double pieceStart = -1;
+        for(int i = 0; i <= crossingCount; i++){
+            double end = i == crossingCount ? 1 : crossings[i];
+            if(end <= start + EPSILON || end >= 1 - EPSILON){
+                if(i != crossingCount){
+                    continue;
+                }
+                end = 1;
+            }
+            boolean keep = test.contains((start + end) / 2) != outside;
+            if(keep && pieceStart == -1){
+                pieceStart = start;
+            }else if(!keep && pieceStart != -1){
+                pieces.add(new double[]{pieceStart, start});
+                pieceStart = -1;
+            }
+            start = end;
+        }
+        if(pieceStart != -1){
+            pieces.add(new double[]{pieceStart, 1});
+        }
+        return pieces;
+    }
+
+    private static double cubicPoint(float[] c, int axis, double t){
+        double mt = 1 - t;
+        return mt * mt * mt * c[axis] + 3 * mt * mt * t * c[2 + axis] + 3 * mt * t * t * c[4 + axis] + t * t * t * c[6 + axis];
+    }
+
+    /**
+     * @return the part of the cubic curve between the two parameters
+     */
+    private float[] subCurve(float[] coords, double t0, double t1){
+        for(int i = 0; i < 8; i++){
+            curve[i] = coords[i];
+        }
+        if(t1 < 1){
+            splitCubic(curve, left, right, t1);
+            System.arraycopy(left, 0, curve, 0, 8);
+        }
+        if(t0 > 0){
+            splitCubic(curve, left, right, t0 / t1);
+            System.arraycopy(right, 0, curve, 0, 8);
+        }
+        float[] result = new float[8];
+        for(int i = 0; i < 8; i++){
+            result[i] = (float) curve[i];
+        }
+        //keep the exact end points, so the pieces join the rest of the path
+        if(t0 == 0){
+            result[0] = coords[0];
+            result[1] = coords[1];
+        }
+        if(t1 == 1){
+            result[6] = coords[6];
+            result[7] = coords[7];
+        }
+        return result;
+    }
+
+    /**
+     * De Casteljau subdivision of a cubic curve
+     */
+    private static void splitCubic(double[] c, double[] left, double[] right, double t){
+        for(int axis = 0; axis < 2; axis++){
+            double p0 = c[axis], p1 = c[2 + axis], p2 = c[4 + axis], p3 = c[6 + axis];
+            double p01 = p0 + (p1 - p0) * t, p12 = p1 + (p2 - p1) * t, p23 = p2 + (p3 - p2) * t;
+            double p012 = p01 + (p12 - p01) * t, p123 = p12 + (p23 - p12) * t;
+            double p0123 = p012 + (p123 - p012) * t;
+            left[axis] = p0;
+            left[2 + axis] = p01;
+            left[4 + axis] = p012;
+            left[6 + axis] = p0123;
+            right[axis] = p0123;
+            right[2 + axis] = p123;
+            right[4 + axis] = p23;
+            right[6 + axis] = p3;
+        }
+    }
+
+    /**
+     * Liang-Barsky clipping of the segment to the rectangle
+     * @return the parameter range of the segment inside the rectangle, or null if it doesn't intersect
+     */
+    protected static double[] clipToRectangle(double x1, double y1, double x2, double y2, double minX, double minY, double maxX, double maxY){
+        double dx = x2 - x1, dy = y2 - y1;
+        double t0 = 0, t1 = 1;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {x1 - minX, maxX - x1, y1 - minY, maxY - y1};
+        for(int i = 0; i < 4; i++){
+            if(p[i] == 0){
+                if(q[i] < 0){
+                    return null;
+                }
+            }else{
+                double r = q[i] / p[i];
+                if(p[i] < 0){
+                    if(r > t1) return null;
+                    if(r > t0) t0 = r;
+                }else{
+                    if(r < t0) return null;
+                    if(r < t1) t1 = r;
+                }
+            }
+        }
+        return new double[]{t0, t1};
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static class RectangleClipper extends GeometryClipper {
+
+        private final double minX, minY, maxX, maxY;
+
+        public RectangleClipper(Rectangle2D rectangle) {
+            super(rectangle);
+            this.minX = rectangle.getMinX();
+            this.minY = rectangle.getMinY();
+            this.maxX = rectangle.getMaxX();
+            this.maxY = rectangle.getMaxY();
+        }
+
+        @Override
+        protected void findCrossings(double x1, double y1, double x2, double y2) {
+            double[] range = clipToRectangle(x1, y1, x2, y2, minX, minY, maxX, maxY);
+            if(range == null){
+                return;
+            }
+            if(range[0] > 0){
+                addCrossing(range[0]);
+            }
+            if(range[1] < 1){
+                addCrossing(range[1]);
+            }
+        }
+
+        @Override
+        public boolean contains(double x, double y) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY;
+        }
+
+        @Override
+        public boolean containsBounds(Rectangle2D bounds) {
+            return bounds.getMinX() >= minX && bounds.getMaxX() <= maxX && bounds.getMinY() >= minY && bounds.getMaxY() <= maxY;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Walks the pixels crossed by each segment, adding a crossing wherever the mask changes
+     */
+    public static class MaskClipper extends GeometryClipper {
+
+        private final PixelDataMask mask;
+        private final Rectangle bounds;
+
+        public MaskClipper(PixelDataMask mask) {
+            super(mask);
+            this.mask = mask;
+            this.bounds = mask.getBounds();
+        }
+
+        @Override
+        protected void findCrossings(double x1, double y1, double x2, double y2) {
+            double[] range = clipToRectangle(x1, y1, x2, y2, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+            if(range == null){
+                return;
+            }
+            if(range[0] > 0){
+                addCrossing(range[0]);
+            }
+            if(range[1] < 1){
+                addCrossing(range[1]);
+            }
+            double dx = x2 - x1, dy = y2 - y1;
+            double startX = x1 + dx * range[0], startY = y1 + dy * range[0];
+            int x = Math.max(bounds.x, Math.min(bounds.x + bounds.width - 1, (int) Math.floor(startX)));
+            int y = Math.max(bounds.y, Math.min(bounds.y + bounds.height - 1, (int) Math.floor(startY)));
+
+            int stepX = dx > 0 ? 1 : -1, stepY = dy > 0 ? 1 : -1;
+            double deltaX = dx == 0 ? Double.POSITIVE_INFINITY : 1 / Math.abs(dx);
+            double deltaY = dy == 0 ? Double.POSITIVE_INFINITY : 1 / Math.abs(dy);
+            double nextX = dx == 0 ? Double.POSITIVE_INFINITY : ((dx > 0 ? x + 1 : x) - x1) / dx;
+            double nextY = dy == 0 ? Double.POSITIVE_INFINITY : ((dy > 0 ? y + 1 : y) - y1) / dy;
+
+            boolean inside = mask.contains(x, y);
+            while(true){
+                double t;
+                if(nextX < nextY){
+                    t = nextX;
+                    x += stepX;
+                    nextX += deltaX;
+                }else{
+                    t = nextY;
+                    y += stepY;
+                    nextY += deltaY;
+                }
+                if(t >= range[1]){
+                    break;
+                }
+                boolean next = mask.contains(x, y);
+                if(next != inside){
+                    addCrossing(t);
+                    inside = next;
+                }
+            }
+        }
+
+        @Override
+        public boolean contains(double x, double y) {
+            return mask.contains(x, y);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Flattens the shape into a table of edges, split into horizontal bands, both the crossings and the containment tests only use the edges in the bands the segment / point overlaps.
+     */
+    public static class EdgeTableClipper extends GeometryClipper {
+
+        private float[] edges = new float[64];
+        private int edgeCount;
+        private final boolean evenOdd;
+
+        private final double minY, maxY, bandHeight;
+        private final int bandCount;
+        private final int[][] bands;
+
+        //stops edges which are in multiple bands being tested twice
+        private final int[] edgeStamps;
+        private int stamp;
+
+        public EdgeTableClipper(Shape shape) {
+            super(shape);
+            PathIterator iterator = shape.getPathIterator(null, FLATNESS);
+            this.evenOdd = iterator.getWindingRule() == PathIterator.WIND_EVEN_ODD;
+
+            float[] coords = new float[6];
+            float moveX = 0, moveY = 0, lastX = 0, lastY = 0;
+            while(!iterator.isDone()){
+                switch (iterator.currentSegment(coords)) {
+                    case PathIterator.SEG_MOVETO -> {
+                        addEdge(lastX, lastY, moveX, moveY); //implicitly close the previous sub path, like the shapes fill
+                        moveX = lastX = coords[0];
+                        moveY = lastY = coords[1];
+                    }
+                    case PathIterator.SEG_LINETO -> {
+                        addEdge(lastX, lastY, coords[0], coords[1]);
+                        lastX = coords[0];
+                        lastY = coords[1];
+                    }
+                    case PathIterator.SEG_CLOSE -> {
+                        addEdge(lastX, lastY, moveX, moveY);
+                        lastX = moveX;
+                        lastY = moveY;
+                    }
+                }
+                iterator.next();
+            }
+            addEdge(lastX, lastY, moveX, moveY);
+
+            Rectangle2D bounds = shape.getBounds2D();
+            this.minY = bounds.getMinY();
+            this.maxY = bounds.getMaxY();
+            this.bandCount = Math.max(1, Math.min(4096, edgeCount / 4));
+            this.bandHeight = Math.max(EPSILON, (maxY - minY) / bandCount);
+
+            int[] bandSizes = new int[bandCount];
+            for(int e = 0; e < edgeCount; e++){
+                for(int b = band(edgeMinY(e)); b <= band(edgeMaxY(e)); b++){
+                    bandSizes[b]++;
+                }
+            }
+            this.bands = new int[bandCount][];
+            for(int b = 0; b < bandCount; b++){
+                bands[b] = new int[bandSizes[b]];
+                bandSizes[b] = 0;
+            }
+            for(int e = 0; e < edgeCount; e++){
+                for(int b = band(edgeMinY(e)); b <= band(edgeMaxY(e)); b++){
+                    bands[b][bandSizes[b]++] = e;
+                }
+            }
+            this.edgeStamps = new int[edgeCount];
+        }
+
+        private void addEdge(float x1, float y1, float x2, float y2){
+            if(x1 == x2 && y1 == y2){
+                return;
+            }
+            if((edgeCount + 1) * 4 > edges.length){
+                edges = Arrays.copyOf(edges, edges.length * 2);
+            }
+            int index = edgeCount * 4;
+            edges[index] = x1;
+            edges[index + 1] = y1;
+            edges[index + 2] = x2;
+            edges[index + 3] = y2;
+            edgeCount++;
+        }
+
+        private double edgeMinY(int edge){
+            return Math.min(edges[edge * 4 + 1], edges[edge * 4 + 3]);
+        }
+
+        private double edgeMaxY(int edge){
+            return Math.max(edges[edge * 4 + 1], edges[edge * 4 + 3]);
+        }
+
+        private int band(double y){
+            return Math.max(0, Math.min(bandCount - 1, (int) ((y - minY) / bandHeight)));
+        }
+
+        @Override
+        protected void findCrossings(double x1, double y1, double x2, double y2) {
+            double segMinY = Math.min(y1, y2), segMaxY = Math.max(y1, y2);
+            if(edgeCount == 0 || segMaxY < minY || segMinY > maxY){
+                return;
+            }
+            stamp++;
+            double rx = x2 - x1, ry = y2 - y1;
+            for(int b = band(segMinY); b <= band(segMaxY); b++){
+                for(int edge : bands[b]){
+                    if(edgeStamps[edge] == stamp){
+                        continue;
+                    }
+                    edgeStamps[edge] = stamp;
+
+                    int index = edge * 4;
+                    double ex = edges[index], ey = edges[index + 1];
+                    double sx = edges[index + 2] - ex, sy = edges[index + 3] - ey;
+                    double denominator = rx * sy - ry * sx;
+                    if(Math.abs(denominator) < EPSILON){
+                        continue; //parallel, the containment tests handle overlapping edges
+                    }
+                    double qx = ex - x1, qy = ey - y1;
+                    double t = (qx * sy - qy * sx) / denominator;
+                    double u = (qx * ry - qy * rx) / denominator;
+                    if(t >= 0 && t <= 1 && u >= 0 && u <= 1){
+                        addCrossing(t);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Casts a ray in the +x direction, counting the crossings with the edges in the points band
+         */
+        @Override
+        public boolean contains(double x, double y) {
+            if(edgeCount == 0 || y < minY || y > maxY){
+                return false;
+            }
+            int winding = 0;
+            for(int edge : bands[band(y)]){
+                int index = edge * 4;
+                double ex1 = edges[index], ey1 = edges[index + 1];
+                double ex2 = edges[index + 2], ey2 = edges[index + 3];
+                if((ey1 <= y) == (ey2 <= y)){
+                    continue;
+                }
+                double crossX = ex1 + (y - ey1) * (ex2 - ex1) / (ey2 - ey1);
+                if(crossX > x){
+                    winding += ey2 > ey1 ? 1 : -1;
+                }
+            }
+            return evenOdd ? (winding & 1) != 0 : winding != 0;
+        }
+    }
+}
@@ -11,7 +11,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 
-@Deprecated //will be replaced in future versions
+/**
+ * @deprecated samples points along each segment, use {@link GeometryClipper} which finds the exact crossings
+ */
+@Deprecated
 public class GeometryClipping {
 
     //TODO someone decide what accuracy is needed or make this configurable
@@ -25,7 +28,7 @@ public class GeometryClipping {
         }
         // Fast rectangle checks to avoid unnecessary clipping operations
         if(shape instanceof Rectangle2D rectangle2D){
-            if(geometry instanceof GLine line){
+            if(geometry instanceof ILine line){
                 return !rectangle2D.contains(line.getX1(), line.getY1()) || !rectangle2D.contains(line.getX2(), line.getY2());
             }
         }
@@ -33,6 +33,22 @@ public class GeometryUtils {
     public static GeometryFactory factory = new GeometryFactory(new PrecisionModel(1000));
 
     public static PlottedDrawing getOptimisedPlottedDrawing(ExportTask task, IGeometryFilter filter, boolean forceBypassOptimisation){
+        return getOptimisedPlottedDrawing(task, filter, filter, forceBypassOptimisation);
+    }
+
+    /**
+     * @param filterKey identifies the geometry filter in the {@link ExportDrawingCache}
+     */
+    public static PlottedDrawing getOptimisedPlottedDrawing(ExportTask task, IGeometryFilter filter, Object filterKey, boolean forceBypassOptimisation){
+        // rescaled exports modify the canvas of the optimised drawing, so they can't share it with other exports
+        ExportDrawingCache.CacheKey cacheKey = null;
+        if(task.exportScale == 1D){
+            cacheKey = ExportDrawingCache.createKey(task.plottedDrawing, filter, filterKey, isPathOptimisationEnabled(task, forceBypassOptimisation));
+            PlottedDrawing cached = ExportDrawingCache.get(cacheKey);
+            if(cached != null){
+                return cached;
+            }
+        }
 
         IProgressCallback progressCallback = new IProgressCallback() {
             @Override
@@ -67,14 +83,21 @@ public class GeometryUtils {
             i++;
         }
 
+        if(cacheKey != null && !task.isCancelled()){
+            ExportDrawingCache.put(cacheKey, plottedDrawing);
+        }
         return plottedDrawing;
     }
 
+    public static boolean isPathOptimisationEnabled(ExportTask task, boolean forceBypassOptimisation){
+        return task.exportHandler.isVector && !forceBypassOptimisation && DBPreferences.INSTANCE.pathOptimisationEnabled.getValue();
+    }
+
     public static List<AbstractGeometryOperation> getGeometryExportOperations(ExportTask task, IGeometryFilter filter, boolean forceBypassOptimisation){
         List<AbstractGeometryOperation> geometryOperations = new ArrayList<>();
         geometryOperations.add(new GeometryOperationSimplify(filter, true, false));
 
-        if(task.exportHandler.isVector && !forceBypassOptimisation && DBPreferences.INSTANCE.pathOptimisationEnabled.getValue()){
+        if(isPathOptimisationEnabled(task, forceBypassOptimisation)){
             geometryOperations.add(new GeometryOperationOptimize(CanvasUtils.createCanvasScaleTransform(task.plottedDrawing.getCanvas())));
             if(DBPreferences.INSTANCE.lineSortingEnabled.get()){
                 geometryOperations.add(new GeometryOperationSortGeometries());
@@ -1,6 +1,6 @@
 package drawingbot.geom.converters;
 
-import drawingbot.geom.shapes.GLine;
+import drawingbot.geom.shapes.ILine;
 import drawingbot.geom.shapes.IGeometry;
 import drawingbot.geom.shapes.JFXGeometryConverter;
 import javafx.scene.shape.Line;
@@ -10,12 +10,12 @@ public class JFXLineConverter implements JFXGeometryConverter {
 
     @Override
     public boolean canConvert(IGeometry geometry) {
-        return geometry instanceof GLine;
+        return geometry instanceof ILine;
     }
 
     @Override
     public Shape convert(IGeometry geometry) {
-        GLine line = (GLine) geometry;
+        ILine line = (ILine) geometry;
         Line jfxLine = new Line();
         update(jfxLine, line);
         return jfxLine;
@@ -28,7 +28,7 @@ public class JFXLineConverter implements JFXGeometryConverter {
 
     @Override
     public void update(Shape shape, IGeometry geometry) {
-        GLine line = (GLine) geometry;
+        ILine line = (ILine) geometry;
         Line jfxLine = (Line) shape;
         jfxLine.setStartX(line.getX1());
         jfxLine.setStartY(line.getY1());
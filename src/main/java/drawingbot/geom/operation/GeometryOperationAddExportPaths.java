@@ -34,7 +34,8 @@ public class GeometryOperationAddExportPaths extends AbstractGeometryOperation{
                 originEllipse.setPenIndex(2);
                 newDrawing.addGeometry(originEllipse, exportGroup);
 
-                newDrawing.addGeometry(geometry, newGroup);
+                //the original drawing may be reused by later exports, see ExportDrawingCache, so its geometries aren't moved to the new drawing
+                newDrawing.addGeometry(geometry.copyGeometry(), newGroup);
 
                 Coordinate dstCoord = geometry.getEndCoordinate();
                 IGeometry dstEllipse = new GEllipse((float)dstCoord.x-0.5F, (float)dstCoord.y-0.5F, 1, 1);
@@ -4,6 +4,8 @@ import drawingbot.api.ISpecialPenHandler;
 import drawingbot.api.IProgressCallback;
 import drawingbot.geom.GeometryUtils;
 import drawingbot.geom.shapes.IGeometry;
+import drawingbot.geom.spatial.GridSequencer;
+import drawingbot.geom.spatial.GridSequencerLineString;
 import drawingbot.geom.spatial.STRTreeSequencerLineString;
 import drawingbot.javafx.observables.ObservableDrawingPen;
 import drawingbot.javafx.preferences.DBPreferences;
@@ -21,8 +23,11 @@ import org.locationtech.jts.simplify.DouglasPeuckerSimplifier;
 
 import java.awt.geom.AffineTransform;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Optimises the geometries, including simplifying, merging, filtering and sorting.
@@ -43,44 +48,75 @@ public class GeometryOperationOptimize extends AbstractGeometryOperation{
         AffineTransform toJTS = AffineTransform.getScaleInstance(printTransform.getScaleX(), printTransform.getScaleY());
         AffineTransform fromJTS = AffineTransform.getScaleInstance(1/printTransform.getScaleX(), 1/printTransform.getScaleY());
 
+        List<OptimiseJob> jobs = new ArrayList<>();
         for(PlottedGroup group : originalDrawing.groups.values()){
             PlottedGroup originalGroup = originalDrawing.getPlottedGroup(group.getGroupID());
             PlottedGroup newGroup = newDrawing.getMatchingPlottedGroup(originalGroup, forExport);
 
-
             for(Map.Entry<ObservableDrawingPen, List<IGeometry>> entry : group.getGeometriesPerPen().entrySet()){
-                if(entry.getKey().getSpecialColorHandler() == null || entry.getKey().getSpecialColorHandler().canOptimisePenPaths(entry.getKey())){
-
-                    FlagStates pfmFlags = group.pfmFactory == null ? Flags.DEFAULT_PFM_STATE : group.pfmFactory.getFlags();
-                    if(group.pfmFactory != null && (!pfmFlags.getFlag(Flags.PFM_LINE_OPTIMISING) || !pfmFlags.anyMatch(Flags.PFM_LINE_SIMPLIFY, Flags.PFM_LINE_MERGING, Flags.PFM_LINE_FILTERING, Flags.PFM_LINE_SORTING))){
-                        entry.getValue().forEach(geometry -> {
-                            IGeometry newGeometry;
-                            if(DBPreferences.INSTANCE.multipassEnabled.get() && pfmFlags.getFlag(Flags.PFM_GEOMETRY_MULTIPASS)){
-                                newGeometry = GeometryUtils.createMultiPassGeometry(geometry, DBPreferences.INSTANCE.multipassCount.get());
-                            }else{
-                                newGeometry = geometry.copyGeometry();
-                            }
-                            newDrawing.addGeometry(newGeometry, newGroup);
-                        });
-                    }else{
-                        List<IGeometry> geometries = optimiseBasicGeometry(entry.getValue(), toJTS, fromJTS, progressCallback, pfmFlags);
-                        for(IGeometry geometry : geometries){
-                            geometry.setPenIndex(entry.getKey().penNumber.get());
-                            geometry.setGroupID(newGroup.getGroupID());
+                jobs.add(new OptimiseJob(group, newGroup, entry.getKey(), entry.getValue()));
+            }
+        }
 
-                            //group id and geometry index will be set by the addGeometry so don't need to be set manually
-                            newDrawing.addGeometry(geometry, newGroup);
-                        }
-                    }
-                }else{
-                    entry.getValue().forEach(g -> newDrawing.addGeometry(g.copyGeometry(), newGroup));
-                }
+        if(!runJobs(jobs, toJTS, fromJTS)){
+            return newDrawing;
+        }
+
+        //add the results in the original order, regardless of the order the jobs finished in
+        for(OptimiseJob job : jobs){
+            for(IGeometry geometry : job.result){
+                //group id and geometry index will be set by the addGeometry so don't need to be set manually
+                newDrawing.addGeometry(geometry, job.newGroup);
             }
         }
 
         return newDrawing;
     }
 
+    /**
+     * Runs the jobs on the current thread if there is only one, otherwise the pens are optimised in parallel
+     * @return false if the thread was interrupted before the jobs could finish
+     */
+    private boolean runJobs(List<OptimiseJob> jobs, AffineTransform toJTS, AffineTransform fromJTS){
+        int parallelism = Math.min(jobs.size(), Runtime.getRuntime().availableProcessors());
+        if(parallelism <= 1){
+            for(OptimiseJob job : jobs){
+                job.run(toJTS, fromJTS, progressCallback);
+            }
+            return true;
+        }
+
+        AggregateProgress aggregateProgress = new AggregateProgress(progressCallback, jobs.size());
+        List<Callable<OptimiseJob>> callables = new ArrayList<>();
+
+        //submit the largest jobs first, so the smaller jobs can fill in the gaps
+        List<OptimiseJob> submitOrder = new ArrayList<>(jobs);
+        submitOrder.sort(Comparator.comparingInt((OptimiseJob job) -> job.geometries.size()).reversed());
+        for(OptimiseJob job : submitOrder){
+            IProgressCallback jobProgress = aggregateProgress.createJobCallback();
+            callables.add(() -> {
+                job.run(toJTS, fromJTS, jobProgress);
+                aggregateProgress.onJobFinished(jobProgress);
+                return job;
+            });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism, OPTIMISE_THREAD_FACTORY, null, false);
+        try{
+            for(Future<OptimiseJob> future : pool.invokeAll(callables)){
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return true;
+    }
+
     @Override
     public boolean isDestructive() {
         return false;
@@ -211,12 +247,131 @@ public class GeometryOperationOptimize extends AbstractGeometryOperation{
         return lineStrings;
     }
 
+    private static final ForkJoinPool.ForkJoinWorkerThreadFactory OPTIMISE_THREAD_FACTORY = pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("DrawingBotV3 - Geometry Optimise " + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    };
+
+    /**
+     * The geometries of a single pen in a single group, pens are optimised independently, so jobs can be run at the same time
+     */
+    private static class OptimiseJob {
+
+        public final PlottedGroup group;
+        public final PlottedGroup newGroup;
+        public final ObservableDrawingPen pen;
+        public final List<IGeometry> geometries;
+        public List<IGeometry> result = List.of();
+
+        public OptimiseJob(PlottedGroup group, PlottedGroup newGroup, ObservableDrawingPen pen, List<IGeometry> geometries){
+            this.group = group;
+            this.newGroup = newGroup;
+            this.pen = pen;
+            this.geometries = geometries;
+        }
+
+        public void run(AffineTransform toJTS, AffineTransform fromJTS, IProgressCallback progressCallback){
+            if(pen.getSpecialColorHandler() != null && !pen.getSpecialColorHandler().canOptimisePenPaths(pen)){
+                result = new ArrayList<>(geometries.size());
+                geometries.forEach(g -> result.add(g.copyGeometry()));
+                return;
+            }
+
+            FlagStates pfmFlags = group.pfmFactory == null ? Flags.DEFAULT_PFM_STATE : group.pfmFactory.getFlags();
+            if(group.pfmFactory != null && (!pfmFlags.getFlag(Flags.PFM_LINE_OPTIMISING) || !pfmFlags.anyMatch(Flags.PFM_LINE_SIMPLIFY, Flags.PFM_LINE_MERGING, Flags.PFM_LINE_FILTERING, Flags.PFM_LINE_SORTING))){
+                result = new ArrayList<>(geometries.size());
+                geometries.forEach(geometry -> {
+                    if(DBPreferences.INSTANCE.multipassEnabled.get() && pfmFlags.getFlag(Flags.PFM_GEOMETRY_MULTIPASS)){
+                        result.add(GeometryUtils.createMultiPassGeometry(geometry, DBPreferences.INSTANCE.multipassCount.get()));
+                    }else{
+                        result.add(geometry.copyGeometry());
+                    }
+                });
+            }else{
+                result = optimiseBasicGeometry(geometries, toJTS, fromJTS, progressCallback, pfmFlags);
+                for(IGeometry geometry : result){
+                    geometry.setPenIndex(pen.penNumber.get());
+                }
+            }
+        }
+    }
+
+    /**
+     * Combines the progress of the jobs running in parallel, the titles / messages of individual jobs are replaced with the number of pens which have been optimised
+     * <br>
+     * Each job only publishes its progress when it changes by a tenth of a percent and the parent is only updated when the overall percentage changes, so the jobs rarely contend.
+     */
+    private static class AggregateProgress {
+
+        public static final int JOB_STEPS = 1000;
+
+        private final IProgressCallback parent;
+        private final int jobCount;
+        private final AtomicInteger totalSteps = new AtomicInteger();
+        private final AtomicInteger finishedJobs = new AtomicInteger();
+        private volatile int reportedPercent = -1;
+
+        public AggregateProgress(IProgressCallback parent, int jobCount){
+            this.parent = parent;
+            this.jobCount = jobCount;
+            this.parent.updateTitle("Optimising Paths: ");
+            this.parent.updateMessage("0 / " + jobCount);
+        }
+
+        public IProgressCallback createJobCallback(){
+            return new JobProgress();
+        }
+
+        public void onJobFinished(IProgressCallback jobProgress){
+            ((JobProgress) jobProgress).setSteps(JOB_STEPS);
+            int finished = finishedJobs.incrementAndGet();
+            synchronized (this){
+                parent.updateMessage(finished + " / " + jobCount);
+            }
+        }
+
+        private void publish(int steps){
+            int percent = (int) (steps * 100L / ((long) jobCount * JOB_STEPS));
+            if(percent == reportedPercent){
+                return;
+            }
+            synchronized (this){
+                if(percent != reportedPercent){
+                    reportedPercent = percent;
+                    parent.updateProgress(steps, (double) jobCount * JOB_STEPS);
+                }
+            }
+        }
+
+        private class JobProgress implements IProgressCallback {
+
+            //the progress of the current stage of the job in steps, the stages are not weighted, only written by the thread running the job
+            private volatile int steps;
+
+            @Override
+            public void updateProgress(double progress, double max) {
+                setSteps(max == 0 ? 0 : (int) Math.min(JOB_STEPS, progress / max * JOB_STEPS));
+            }
+
+            private void setSteps(int value){
+                int delta = value - steps;
+                if(delta == 0){
+                    return;
+                }
+                steps = value;
+                publish(totalSteps.addAndGet(delta));
+            }
+        }
+    }
+
     /**
-     * Orders lines to minimise air time, by finding the nearest line to the current point.
-     * This is a simple version and doesn't provide a perfect solution
+     * Orders lines to minimise air time, by finding the nearest line to the current point and then improving the order with 2-opt / Or-opt moves.
+     * This doesn't provide a perfect solution, see {@link GridSequencer}
      */
     public static List<LineString> lineSort(List<LineString> lineStrings, double allowableDistance, IProgressCallback progressCallback){
-        STRTreeSequencerLineString sequencer = new STRTreeSequencerLineString(lineStrings, allowableDistance);
+        GridSequencerLineString sequencer = new GridSequencerLineString(lineStrings, allowableDistance);
         sequencer.setProgressCallback(progressCallback);
         return sequencer.sort();
     }
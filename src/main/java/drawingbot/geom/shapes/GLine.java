@@ -10,7 +10,7 @@ import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Line2D;
 
-public class GLine extends AbstractGeometry implements IGeometry, IPathElement {
+public class GLine extends AbstractGeometry implements IGeometry, IPathElement, ILine {
 
     public Line2D.Float awtLine;
 
@@ -80,18 +80,22 @@ public class GLine extends AbstractGeometry implements IGeometry, IPathElement {
 
     //// Coordinates \\\\
 
+    @Override
     public float getX1() {
         return awtLine.x1;
     }
 
+    @Override
     public float getY1() {
         return awtLine.y1;
     }
 
+    @Override
     public float getX2() {
         return awtLine.x2;
     }
 
+    @Override
     public float getY2() {
         return awtLine.y2;
     }
@@ -0,0 +1,16 @@
+package drawingbot.geom.shapes;
+
+/**
+ * A straight line between two points, implemented by {@link GLine} and by the views of lines in a {@link drawingbot.plotting.GeometryStore}
+ */
+public interface ILine extends IPathElement {
+
+    float getX1();
+
+    float getY1();
+
+    float getX2();
+
+    float getY2();
+
+}
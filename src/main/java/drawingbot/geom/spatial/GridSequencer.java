@@ -0,0 +1,685 @@
+package drawingbot.geom.spatial;
+
+import drawingbot.DrawingBotV3;
+import drawingbot.api.IProgressCallback;
+import drawingbot.utils.LazyTimer;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Orders cities to minimise the pen up distance between them, the cities are first ordered with a greedy nearest neighbour search and then improved with 2-opt / Or-opt moves until no improvement is found or the improvement budget is spent.
+ * <br>
+ * The start / end points of the cities are stored in a uniform grid, which allows points to be removed in O(1) so the grid never needs to be rebuilt, the grid is also used to create the candidate neighbours for the improvement moves.
+ * <br>
+ * The improvement budget is counted in work units rather than time, so the same cities will always be sorted into the same order regardless of the machine or its load.
+ * The improvement pass still stops early if the thread is interrupted, in which case the best order found so far is returned.
+ * <br>
+ * Cities which can be reversed may be drawn in either direction, N.B this class is not thread safe.
+ */
+public abstract class GridSequencer<T> {
+
+    /**the number of neighbours of each end point considered during the improvement moves*/
+    public static final int NEIGHBOUR_COUNT = 5;
+
+    /**the longest run of cities which will be reversed / moved in a single improvement move*/
+    public static final int MAX_MOVE_LENGTH = 50000;
+
+    /**the longest segment which will be relocated by Or-opt*/
+    public static final int MAX_OR_OPT_LENGTH = 3;
+
+    /**the work allowed per city during the improvement pass, one unit is one candidate evaluated or one city moved in the tour*/
+    public static final int DEFAULT_IMPROVEMENT_BUDGET = 1000;
+
+    /**the work units used to evaluate every candidate move at one position in the tour*/
+    private static final int POSITION_COST = NEIGHBOUR_COUNT * (1 + MAX_OR_OPT_LENGTH);
+
+    private static final double EPSILON = 1E-9;
+
+    public List<T> cities;
+    public double allowableDistance;
+    public int improvementBudget = DEFAULT_IMPROVEMENT_BUDGET;
+    public IProgressCallback progressCallback;
+
+    /**the pen up distance of the cities in their original order, the greedy order and the final order*/
+    public double originalDistance, greedyDistance, sortedDistance;
+
+    private int count;
+    private double[] startX, startY, endX, endY;
+    private boolean[] reversible;
+    private boolean allReversible;
+
+    //// THE GRID \\\\
+    private double gridMinX, gridMinY, cellSize;
+    private int gridWidth, gridHeight;
+    private int[] cellStart;
+    private int[] cellCount;
+    private int[] cellItems;
+    private int[] itemCell;
+    private int[] itemPosition;
+    private int liveItems;
+
+    /**the neighbouring cities of each end point, -1 if there are fewer than NEIGHBOUR_COUNT neighbours*/
+    private int[] neighbours;
+
+    //// THE TOUR \\\\
+    private int[] tour;
+    private int[] tourPosition;
+    private boolean[] reversed;
+    private long improvementWork;
+
+    public GridSequencer(List<T> cities, double allowableDistance) {
+        this.cities = cities;
+        this.allowableDistance = allowableDistance;
+    }
+
+    public void setProgressCallback(IProgressCallback progressCallback) {
+        this.progressCallback = progressCallback;
+    }
+
+    /**
+     * @param improvementBudget the work allowed per city during the improvement pass, 0 to only use the greedy order
+     */
+    public void setImprovementBudget(int improvementBudget) {
+        this.improvementBudget = improvementBudget;
+    }
+
+    public List<T> sort(){
+        if(cities.isEmpty()){
+            return new ArrayList<>();
+        }
+        LazyTimer timer = new LazyTimer();
+        timer.start();
+
+        build();
+        originalDistance = getOriginalDistance();
+
+        findNeighbours();
+        sequenceGreedy();
+        greedyDistance = getTourDistance();
+
+        improve();
+        sortedDistance = getTourDistance();
+
+        timer.finish();
+        DrawingBotV3.logger.info("Grid Sequencer - Cities: %s, Time: %s, Pen Up Distance: Original %.2f, Greedy %.2f, Sorted %.2f, Saved %.2f (%.1f%%)".formatted(count, timer.getElapsedTimeFormatted(), originalDistance, greedyDistance, sortedDistance, originalDistance - sortedDistance, originalDistance == 0 ? 0 : (originalDistance - sortedDistance) / originalDistance * 100));
+
+        List<T> sorted = new ArrayList<>(count);
+        for(int i = 0; i < count; i++){
+            int city = tour[i];
+            sorted.add(reversed[city] ? reverseCity(cities.get(city)) : cities.get(city));
+        }
+        return sorted;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void build(){
+        count = cities.size();
+        startX = new double[count];
+        startY = new double[count];
+        endX = new double[count];
+        endY = new double[count];
+        reversible = new boolean[count];
+        allReversible = true;
+
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+
+        for(int i = 0; i < count; i++){
+            T city = cities.get(i);
+            Coordinate start = getStartCoordinateFromCity(city);
+            Coordinate end = getEndCoordinateFromCity(city);
+            startX[i] = start.x;
+            startY[i] = start.y;
+            endX[i] = end.x;
+            endY[i] = end.y;
+            reversible[i] = canReverse(city);
+            allReversible &= reversible[i];
+
+            minX = Math.min(minX, Math.min(start.x, end.x));
+            minY = Math.min(minY, Math.min(start.y, end.y));
+            maxX = Math.max(maxX, Math.max(start.x, end.x));
+            maxY = Math.max(maxY, Math.max(start.y, end.y));
+        }
+
+        // aim for roughly two end points per cell, the cell size is clamped so the grid stays small when the points are all in a line
+        double width = maxX - minX;
+        double height = maxY - minY;
+        cellSize = Math.max(Math.sqrt(width * height / count), Math.max(width, height) / count);
+        if(!(cellSize > 0)){
+            cellSize = 1;
+        }
+        gridMinX = minX;
+        gridMinY = minY;
+        gridWidth = (int)(width / cellSize) + 1;
+        gridHeight = (int)(height / cellSize) + 1;
+
+        int cells = gridWidth * gridHeight;
+        cellStart = new int[cells + 1];
+        cellCount = new int[cells];
+        itemCell = new int[count * 2];
+        itemPosition = new int[count * 2];
+
+        for(int item = 0; item < count * 2; item++){
+            int city = item >> 1;
+            if((item & 1) == 1 && !reversible[city]){
+                itemCell[item] = -1;
+                continue;
+            }
+            int cell = getCell(getItemX(item), getItemY(item));
+            itemCell[item] = cell;
+            cellCount[cell]++;
+        }
+
+        for(int cell = 0; cell < cells; cell++){
+            cellStart[cell + 1] = cellStart[cell] + cellCount[cell];
+        }
+        cellItems = new int[cellStart[cells]];
+        liveItems = cellItems.length;
+
+        int[] fill = new int[cells];
+        for(int item = 0; item < count * 2; item++){
+            int cell = itemCell[item];
+            if(cell != -1){
+                int position = cellStart[cell] + fill[cell]++;
+                cellItems[position] = item;
+                itemPosition[item] = position;
+            }
+        }
+    }
+
+    private double getItemX(int item){
+        return (item & 1) == 0 ? startX[item >> 1] : endX[item >> 1];
+    }
+
+    private double getItemY(int item){
+        return (item & 1) == 0 ? startY[item >> 1] : endY[item >> 1];
+    }
+
+    private int getCellX(double x){
+        return Math.max(0, Math.min(gridWidth - 1, (int)((x - gridMinX) / cellSize)));
+    }
+
+    private int getCellY(double y){
+        return Math.max(0, Math.min(gridHeight - 1, (int)((y - gridMinY) / cellSize)));
+    }
+
+    private int getCell(double x, double y){
+        return getCellY(y) * gridWidth + getCellX(x);
+    }
+
+    /**
+     * Removes both end points of the city from the grid, by swapping them with the last live item in their cell
+     */
+    private void removeCity(int city){
+        removeItem(city << 1);
+        removeItem((city << 1) | 1);
+    }
+
+    private void removeItem(int item){
+        int cell = itemCell[item];
+        if(cell == -1){
+            return;
+        }
+        int position = itemPosition[item];
+        int last = cellStart[cell] + cellCount[cell] - 1;
+        int lastItem = cellItems[last];
+
+        cellItems[position] = lastItem;
+        itemPosition[lastItem] = position;
+        cellItems[last] = item;
+        itemPosition[item] = last;
+
+        cellCount[cell]--;
+        itemCell[item] = -1;
+        liveItems--;
+    }
+
+    /**
+     * @return the minimum distance from the given point to any cell in the given ring around the cell cx, cy
+     */
+    private double getRingDistance(double x, double y, int cx, int cy, int ring){
+        if(ring == 0){
+            return 0;
+        }
+        double left = x - (gridMinX + (cx - ring + 1) * cellSize);
+        double right = (gridMinX + (cx + ring) * cellSize) - x;
+        double top = y - (gridMinY + (cy - ring + 1) * cellSize);
+        double bottom = (gridMinY + (cy + ring) * cellSize) - y;
+        return Math.max(0, Math.min(Math.min(left, right), Math.min(top, bottom)));
+    }
+
+    private boolean coversGrid(int cx, int cy, int ring){
+        return cx - ring <= 0 && cy - ring <= 0 && cx + ring >= gridWidth - 1 && cy + ring >= gridHeight - 1;
+    }
+
+    /**
+     * Visits every live item in the cells of the given ring
+     */
+    private void visitRing(int cx, int cy, int ring, ItemVisitor visitor){
+        if(ring == 0){
+            visitCell(cx, cy, visitor);
+            return;
+        }
+        for(int x = cx - ring; x <= cx + ring; x++){
+            visitCell(x, cy - ring, visitor);
+            visitCell(x, cy + ring, visitor);
+        }
+        for(int y = cy - ring + 1; y <= cy + ring - 1; y++){
+            visitCell(cx - ring, y, visitor);
+            visitCell(cx + ring, y, visitor);
+        }
+    }
+
+    private void visitCell(int x, int y, ItemVisitor visitor){
+        if(x < 0 || y < 0 || x >= gridWidth || y >= gridHeight){
+            return;
+        }
+        int cell = y * gridWidth + x;
+        int start = cellStart[cell];
+        int end = start + cellCount[cell];
+        for(int i = start; i < end; i++){
+            visitor.visit(cellItems[i]);
+        }
+    }
+
+    private interface ItemVisitor {
+        void visit(int item);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private int nearestItem;
+    private double nearestDistance;
+
+    /**
+     * @return the nearest live item to the given point, or the first item found within the allowable distance
+     */
+    private int findNearest(double x, double y){
+        int cx = getCellX(x);
+        int cy = getCellY(y);
+        nearestItem = -1;
+        nearestDistance = Double.MAX_VALUE;
+
+        ItemVisitor visitor = item -> {
+            double distance = distance(x, y, getItemX(item), getItemY(item));
+            if(distance < nearestDistance || (distance == nearestDistance && item < nearestItem)){
+                nearestDistance = distance;
+                nearestItem = item;
+            }
+        };
+
+        for(int ring = 0; ; ring++){
+            if(nearestItem != -1 && (nearestDistance <= allowableDistance || getRingDistance(x, y, cx, cy, ring) > nearestDistance)){
+                break;
+            }
+            visitRing(cx, cy, ring, visitor);
+            if(coversGrid(cx, cy, ring)){
+                break;
+            }
+        }
+        return nearestItem;
+    }
+
+    /**
+     * Finds the nearest cities to each end point, which are used as the candidates for the improvement moves
+     */
+    private void findNeighbours(){
+        neighbours = new int[count * 2 * NEIGHBOUR_COUNT];
+        int[] nearestCities = new int[NEIGHBOUR_COUNT];
+        double[] nearestDistances = new double[NEIGHBOUR_COUNT];
+
+        for(int item = 0; item < count * 2; item++){
+            int city = item >> 1;
+            double x = getItemX(item);
+            double y = getItemY(item);
+            int cx = getCellX(x);
+            int cy = getCellY(y);
+
+            int[] found = {0};
+            ItemVisitor visitor = other -> {
+                int otherCity = other >> 1;
+                if(otherCity == city){
+                    return;
+                }
+                double distance = distance(x, y, getItemX(other), getItemY(other));
+                int existing = -1;
+                for(int i = 0; i < found[0]; i++){
+                    if(nearestCities[i] == otherCity){
+                        existing = i;
+                        break;
+                    }
+                }
+                if(existing != -1){
+                    if(distance >= nearestDistances[existing]){
+                        return;
+                    }
+                    //remove the existing entry, it will be re-inserted with the shorter distance
+                    System.arraycopy(nearestCities, existing + 1, nearestCities, existing, found[0] - existing - 1);
+                    System.arraycopy(nearestDistances, existing + 1, nearestDistances, existing, found[0] - existing - 1);
+                    found[0]--;
+                }else if(found[0] == NEIGHBOUR_COUNT && distance >= nearestDistances[NEIGHBOUR_COUNT - 1]){
+                    return;
+                }
+                int insert = Math.min(found[0], NEIGHBOUR_COUNT - 1);
+                while(insert > 0 && nearestDistances[insert - 1] > distance){
+                    nearestCities[insert] = nearestCities[insert - 1];
+                    nearestDistances[insert] = nearestDistances[insert - 1];
+                    insert--;
+                }
+                nearestCities[insert] = otherCity;
+                nearestDistances[insert] = distance;
+                found[0] = Math.min(found[0] + 1, NEIGHBOUR_COUNT);
+            };
+
+            for(int ring = 0; ; ring++){
+                if(found[0] == NEIGHBOUR_COUNT && getRingDistance(x, y, cx, cy, ring) > nearestDistances[NEIGHBOUR_COUNT - 1]){
+                    break;
+                }
+                visitRing(cx, cy, ring, visitor);
+                if(coversGrid(cx, cy, ring)){
+                    break;
+                }
+            }
+
+            int offset = item * NEIGHBOUR_COUNT;
+            for(int i = 0; i < NEIGHBOUR_COUNT; i++){
+                neighbours[offset + i] = i < found[0] ? nearestCities[i] : -1;
+            }
+        }
+    }
+
+    /**
+     * Creates the initial tour, starting from the origin and moving to the nearest unvisited end point each time
+     */
+    private void sequenceGreedy(){
+        tour = new int[count];
+        tourPosition = new int[count];
+        reversed = new boolean[count];
+
+        double x = 0, y = 0;
+        for(int i = 0; i < count; i++){
+            int item = findNearest(x, y);
+            int city = item >> 1;
+            reversed[city] = (item & 1) == 1;
+            tour[i] = city;
+            tourPosition[city] = i;
+            removeCity(city);
+
+            x = getEndX(city);
+            y = getEndY(city);
+
+            if(progressCallback != null && (i & 1023) == 0){
+                progressCallback.updateProgress(i, count);
+                progressCallback.updateMessage(i + " / " + count);
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Improves the tour with 2-opt and Or-opt moves, limited to the candidate neighbours of each end point, until no improving move is found or the improvement budget is spent
+     */
+    private void improve(){
+        improvementWork = 0;
+        if(count < 3 || improvementBudget <= 0){
+            return;
+        }
+        long budget = (long) count * improvementBudget;
+        boolean improved = true;
+
+        while(improved && improvementWork < budget){
+            improved = false;
+            for(int i = 1; i < count; i++){
+                if((i & 255) == 0){
+                    if(Thread.currentThread().isInterrupted()){
+                        return;
+                    }
+                    if(progressCallback != null){
+                        progressCallback.updateProgress(Math.min(improvementWork, budget), budget);
+                    }
+                }
+                if(improvementWork >= budget){
+                    return;
+                }
+                improvementWork += POSITION_COST;
+                if(allReversible && twoOpt(i)){
+                    improved = true;
+                }
+                if(orOpt(i)){
+                    improved = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Tries to replace the link into position i, with a link from the end of position i-1 to one of its neighbours by reversing the cities between them
+     */
+    private boolean twoOpt(int i){
+        int prev = tour[i - 1];
+        double ax = getEndX(prev), ay = getEndY(prev);
+        double removedLink = distance(ax, ay, getStartX(tour[i]), getStartY(tour[i]));
+
+        int offset = getEndItem(prev) * NEIGHBOUR_COUNT;
+        for(int n = 0; n < NEIGHBOUR_COUNT; n++){
+            int candidate = neighbours[offset + n];
+            if(candidate == -1){
+                break;
+            }
+            int q = tourPosition[candidate];
+            if(q >= i){
+                // reverse i..q, linking the end of i-1 to the end of q and the start of i to the start of q+1
+                if(q - i > MAX_MOVE_LENGTH){
+                    continue;
+                }
+                double delta = distance(ax, ay, getEndX(candidate), getEndY(candidate)) - removedLink;
+                if(q + 1 < count){
+                    int next = tour[q + 1];
+                    delta += distance(getStartX(tour[i]), getStartY(tour[i]), getStartX(next), getStartY(next)) - distance(getEndX(candidate), getEndY(candidate), getStartX(next), getStartY(next));
+                }
+                if(delta < -EPSILON){
+                    reverse(i, q);
+                    return true;
+                }
+            }else if(q < i - 1){
+                // reverse q+1..i-1, linking the end of q to the end of i-1 and the start of q+1 to the start of i
+                if(i - 1 - q > MAX_MOVE_LENGTH){
+                    continue;
+                }
+                int next = tour[q + 1];
+                double delta = distance(getEndX(candidate), getEndY(candidate), ax, ay)
+                        + distance(getStartX(next), getStartY(next), getStartX(tour[i]), getStartY(tour[i]))
+                        - distance(getEndX(candidate), getEndY(candidate), getStartX(next), getStartY(next))
+                        - removedLink;
+                if(delta < -EPSILON){
+                    reverse(q + 1, i - 1);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tries to move the short segment starting at position i, so it follows one of the neighbours of its start point, in either direction
+     */
+    private boolean orOpt(int i){
+        for(int length = 1; length <= MAX_OR_OPT_LENGTH && i + length <= count; length++){
+            int first = tour[i];
+            int last = tour[i + length - 1];
+            double bx = getEndX(tour[i - 1]), by = getEndY(tour[i - 1]);
+
+            boolean canReverse = true;
+            for(int s = i; s < i + length; s++){
+                canReverse &= reversible[tour[s]];
+            }
+
+            double removeGain = distance(bx, by, getStartX(first), getStartY(first));
+            if(i + length < count){
+                int after = tour[i + length];
+                removeGain += distance(getEndX(last), getEndY(last), getStartX(after), getStartY(after)) - distance(bx, by, getStartX(after), getStartY(after));
+            }
+
+            int offset = getStartItem(first) * NEIGHBOUR_COUNT;
+            for(int n = 0; n < NEIGHBOUR_COUNT; n++){
+                int candidate = neighbours[offset + n];
+                if(candidate == -1){
+                    break;
+                }
+                int q = tourPosition[candidate];
+                if((q >= i - 1 && q <= i + length - 1) || Math.abs(q - i) > MAX_MOVE_LENGTH){
+                    continue;
+                }
+                double qx = getEndX(candidate), qy = getEndY(candidate);
+                double forwardAdd = distance(qx, qy, getStartX(first), getStartY(first));
+                double reverseAdd = distance(qx, qy, getEndX(last), getEndY(last));
+                if(q + 1 < count){
+                    int next = tour[q + 1];
+                    double nx = getStartX(next), ny = getStartY(next);
+                    double removedLink = distance(qx, qy, nx, ny);
+                    forwardAdd += distance(getEndX(last), getEndY(last), nx, ny) - removedLink;
+                    reverseAdd += distance(getStartX(first), getStartY(first), nx, ny) - removedLink;
+                }
+                if(forwardAdd - removeGain < -EPSILON && (!canReverse || forwardAdd <= reverseAdd)){
+                    moveSegment(i, length, q, false);
+                    return true;
+                }
+                if(canReverse && reverseAdd - removeGain < -EPSILON){
+                    moveSegment(i, length, q, true);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reverses the order and the direction of the cities between the two positions, inclusive
+     */
+    private void reverse(int from, int to){
+        improvementWork += to - from + 1;
+        while(from < to){
+            int a = tour[from];
+            int b = tour[to];
+            tour[from] = b;
+            tour[to] = a;
+            tourPosition[b] = from;
+            tourPosition[a] = to;
+            reversed[a] = !reversed[a];
+            reversed[b] = !reversed[b];
+            from++;
+            to--;
+        }
+        if(from == to){
+            reversed[tour[from]] = !reversed[tour[from]];
+        }
+    }
+
+    /**
+     * Moves the segment at position i so it follows the city currently at position q
+     */
+    private void moveSegment(int i, int length, int q, boolean reverse){
+        int[] segment = new int[length];
+        System.arraycopy(tour, i, segment, 0, length);
+
+        int insert;
+        int updateFrom, updateTo;
+        if(q > i){
+            System.arraycopy(tour, i + length, tour, i, q - i - length + 1);
+            insert = q - length + 1;
+            updateFrom = i;
+            updateTo = q;
+        }else{
+            System.arraycopy(tour, q + 1, tour, q + 1 + length, i - q - 1);
+            insert = q + 1;
+            updateFrom = q + 1;
+            updateTo = i + length - 1;
+        }
+        for(int s = 0; s < length; s++){
+            int city = reverse ? segment[length - 1 - s] : segment[s];
+            if(reverse){
+                reversed[city] = !reversed[city];
+            }
+            tour[insert + s] = city;
+        }
+        for(int p = updateFrom; p <= updateTo; p++){
+            tourPosition[tour[p]] = p;
+        }
+        improvementWork += updateTo - updateFrom + 1;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private int getStartItem(int city){
+        return reversed[city] ? (city << 1) | 1 : city << 1;
+    }
+
+    private int getEndItem(int city){
+        return reversed[city] ? city << 1 : (city << 1) | 1;
+    }
+
+    private double getStartX(int city){
+        return reversed[city] ? endX[city] : startX[city];
+    }
+
+    private double getStartY(int city){
+        return reversed[city] ? endY[city] : startY[city];
+    }
+
+    private double getEndX(int city){
+        return reversed[city] ? startX[city] : endX[city];
+    }
+
+    private double getEndY(int city){
+        return reversed[city] ? startY[city] : endY[city];
+    }
+
+    private static double distance(double x1, double y1, double x2, double y2){
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * @return the pen up distance of the tour, starting from the origin
+     */
+    public double getTourDistance(){
+        double total = 0;
+        double x = 0, y = 0;
+        for(int i = 0; i < count; i++){
+            int city = tour[i];
+            total += distance(x, y, getStartX(city), getStartY(city));
+            x = getEndX(city);
+            y = getEndY(city);
+        }
+        return total;
+    }
+
+    private double getOriginalDistance(){
+        double total = 0;
+        double x = 0, y = 0;
+        for(int i = 0; i < count; i++){
+            total += distance(x, y, startX[i], startY[i]);
+            x = endX[i];
+            y = endY[i];
+        }
+        return total;
+    }
+
+    protected abstract Coordinate getStartCoordinateFromCity(T city);
+
+    protected abstract Coordinate getEndCoordinateFromCity(T city);
+
+    public T reverseCity(T city){
+        return city;
+    }
+
+    public boolean canReverse(T city){
+        return false;
+    }
+
+}
@@ -0,0 +1,33 @@
+package drawingbot.geom.spatial;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.LineString;
+
+import java.util.List;
+
+public class GridSequencerLineString extends GridSequencer<LineString> {
+
+    public GridSequencerLineString(List<LineString> cities, double allowableDistance) {
+        super(cities, allowableDistance);
+    }
+
+    @Override
+    public LineString reverseCity(LineString city) {
+        return city.reverse();
+    }
+
+    @Override
+    public boolean canReverse(LineString city) {
+        return true;
+    }
+
+    @Override
+    protected Coordinate getStartCoordinateFromCity(LineString geometry) {
+        return geometry.getCoordinateN(0);
+    }
+
+    @Override
+    protected Coordinate getEndCoordinateFromCity(LineString geometry) {
+        return geometry.getCoordinateN(geometry.getNumPoints() - 1);
+    }
+}
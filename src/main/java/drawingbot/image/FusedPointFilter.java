@@ -0,0 +1,215 @@
+package drawingbot.image;
+
+import com.jhlabs.image.*;
+import drawingbot.javafx.observables.ObservableImageFilter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Applies a chain of point-wise filters to an image in a single pass, rather than creating a new image for every filter in the chain.
+ * <br>
+ * Consecutive filters which change each channel independently, e.g. Contrast, Gamma, Exposure, Adjust RGB and Invert, are composed into one lookup table per channel.
+ * Other point-wise filters, e.g. Adjust HSB and Grayscale, are applied to each pixel in turn between the lookup tables.
+ * The image is split into bands of rows which are filtered on multiple threads.
+ */
+public class FusedPointFilter extends AbstractBufferedImageOp implements TiledImageFilter.IFootprint {
+
+    private final List<Stage> stages = new ArrayList<>();
+
+    /**
+     * @param filters the filters to apply in order, they must all be point-wise, see {@link #canFuse(BufferedImageOp)}
+     */
+    public FusedPointFilter(List<? extends BufferedImageOpFactory> filters){
+        List<PointFilter> separable = new ArrayList<>();
+        for(BufferedImageOpFactory factory : filters){
+            BufferedImageOp imageOp = factory.getBufferedImageOp();
+            if(!canFuse(imageOp)){
+                throw new IllegalArgumentException("Filter isn't point-wise: " + imageOp.getClass().getSimpleName());
+            }
+            if(isSeparable(imageOp)){
+                separable.add((PointFilter) imageOp);
+            }else{
+                addLookupStage(separable);
+                stages.add(new Stage(null, factory));
+            }
+        }
+        addLookupStage(separable);
+    }
+
+    /**
+     * Composes the filters into one lookup table per channel, the filters are separable so the result for each channel only depends on the same channel of the input
+     * <br>
+     * The lookup table is found by filtering a ramp of every channel value with {@link PointFilter#filter(BufferedImage, BufferedImage)} rather than calling {@link PointFilter#filterRGB(int, int, int)} directly,
+     * as the {@link TransferFilter}s only create their transfer tables when the image is filtered.
+     */
+    private void addLookupStage(List<PointFilter> separable){
+        if(separable.isEmpty()){
+            return;
+        }
+        BufferedImage ramp = new BufferedImage(256, 1, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = new int[256];
+        for(int v = 0; v < 256; v++){
+            pixels[v] = 0xff000000 | (v << 16) | (v << 8) | v;
+        }
+        ramp.setRGB(0, 0, 256, 1, pixels, 0, 256);
+        for(PointFilter filter : separable){
+            ramp = filter.filter(ramp, null);
+        }
+        ramp.getRGB(0, 0, 256, 1, pixels, 0, 256);
+
+        int[] lookupTable = new int[256 * 3];
+        for(int v = 0; v < 256; v++){
+            int rgb = pixels[v];
+            lookupTable[v] = (rgb >> 16) & 0xff;
+            lookupTable[256 + v] = (rgb >> 8) & 0xff;
+            lookupTable[512 + v] = rgb & 0xff;
+        }
+        stages.add(new Stage(lookupTable, null));
+        separable.clear();
+    }
+
+    @Override
+    public int getFootprintRadius() {
+        return 0;
+    }
+
+    @Override
+    public BufferedImage filter(BufferedImage src, BufferedImage dst) {
+        try {
+            return filterParallel(src, dst);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return src;
+        }
+    }
+
+    /**
+     * @param dst the previous result of this filter, which will be reused if it's compatible, may be null
+     */
+    public BufferedImage filterParallel(BufferedImage src, BufferedImage dst) throws InterruptedException {
+        BufferedImage result = TiledImageFilter.isCompatible(src, dst) ? dst : createCompatibleDestImage(src, null);
+        int height = src.getHeight();
+        int bandHeight = TiledImageFilter.getBandHeight(height, 0);
+        if(bandHeight >= height){
+            filterBand(src, result, 0, height);
+            return result;
+        }
+
+        List<Callable<Void>> jobs = new ArrayList<>();
+        for(int y = 0; y < height; y += bandHeight){
+            int startY = y;
+            int endY = Math.min(height, y + bandHeight);
+            jobs.add(() -> {
+                filterBand(src, result, startY, endY);
+                return null;
+            });
+        }
+        try{
+            for(Future<Void> future : TiledImageFilter.getTileService().invokeAll(jobs)){
+                future.get();
+            }
+        }catch (ExecutionException e){
+            throw new RuntimeException(e.getCause());
+        }
+        return result;
+    }
+
+    private void filterBand(BufferedImage src, BufferedImage dst, int startY, int endY){
+        int width = src.getWidth();
+
+        // most point filters aren't thread safe, so each band creates its own instances
+        PointFilter[] kernels = new PointFilter[stages.size()];
+        for(int i = 0; i < stages.size(); i++){
+            Stage stage = stages.get(i);
+            if(stage.factory() != null){
+                kernels[i] = (PointFilter) stage.factory().getBufferedImageOp();
+                kernels[i].setDimensions(width, src.getHeight());
+            }
+        }
+
+        boolean directAccess = src.getType() == BufferedImage.TYPE_INT_ARGB && dst.getType() == BufferedImage.TYPE_INT_ARGB;
+        int[] pixels = new int[width];
+        for(int y = startY; y < endY; y++){
+            if(directAccess){
+                src.getRaster().getDataElements(0, y, width, 1, pixels);
+            }else{
+                src.getRGB(0, y, width, 1, pixels, 0, width);
+            }
+            for(int i = 0; i < stages.size(); i++){
+                int[] lookupTable = stages.get(i).lookupTable();
+                if(lookupTable != null){
+                    for(int x = 0; x < width; x++){
+                        int argb = pixels[x];
+                        pixels[x] = (argb & 0xff000000) | (lookupTable[(argb >> 16) & 0xff] << 16) | (lookupTable[256 + ((argb >> 8) & 0xff)] << 8) | lookupTable[512 + (argb & 0xff)];
+                    }
+                }else{
+                    PointFilter kernel = kernels[i];
+                    for(int x = 0; x < width; x++){
+                        pixels[x] = kernel.filterRGB(x, y, pixels[x]);
+                    }
+                }
+            }
+            if(directAccess){
+                dst.getRaster().setDataElements(0, y, width, 1, pixels);
+            }else{
+                dst.setRGB(0, y, width, 1, pixels, 0, width);
+            }
+        }
+    }
+
+    /**
+     * @return true if the filter can be applied by the {@link FusedPointFilter}, i.e. each pixels result only depends on the pixel itself
+     */
+    public static boolean canFuse(BufferedImageOp imageOp){
+        return imageOp instanceof PointFilter && TiledImageFilter.isPointWise(imageOp);
+    }
+
+    /**
+     * @return true if the filter changes each channel independently of the others, leaving the alpha unchanged
+     */
+    public static boolean isSeparable(BufferedImageOp imageOp){
+        return imageOp instanceof TransferFilter || imageOp instanceof RGBAdjustFilter || imageOp instanceof InvertFilter;
+    }
+
+    /**
+     * @return the index after the last filter in the run of point-wise filters which starts at the given index, disabled filters within the run are skipped
+     */
+    public static int getRunEnd(List<ObservableImageFilter> filters, int start){
+        int end = start;
+        for(int i = start; i < filters.size(); i++){
+            ObservableImageFilter filter = filters.get(i);
+            if(!filter.enable.get()){
+                continue;
+            }
+            if(!canFuse(filter.getBufferedImageOp())){
+                break;
+            }
+            end = i + 1;
+        }
+        return end;
+    }
+
+    /**
+     * @return the enabled filters between the start and end index
+     */
+    public static List<ObservableImageFilter> getEnabledFilters(List<ObservableImageFilter> filters, int start, int end){
+        List<ObservableImageFilter> enabled = new ArrayList<>();
+        for(int i = start; i < end; i++){
+            if(filters.get(i).enable.get()){
+                enabled.add(filters.get(i));
+            }
+        }
+        return enabled;
+    }
+
+    /**
+     * A stage of the fused filter, either a lookup table with the red, green and blue tables one after another, or a factory for a point filter
+     */
+    private record Stage(int[] lookupTable, BufferedImageOpFactory factory){}
+}
@@ -4,6 +4,7 @@ import drawingbot.api.ICanvas;
 import drawingbot.api.IProgressCallback;
 import drawingbot.image.format.ImageData;
 import drawingbot.javafx.observables.ObservableImageFilter;
+import drawingbot.javafx.preferences.DBPreferences;
 import drawingbot.plotting.canvas.ObservableCanvas;
 import drawingbot.plotting.canvas.SimpleCanvas;
 import drawingbot.registry.MasterRegistry;
@@ -16,9 +17,8 @@ import javafx.concurrent.Service;
 import javafx.concurrent.Task;
 
 import java.awt.image.BufferedImage;
-import java.awt.image.BufferedImageOp;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.awt.image.DataBuffer;
+import java.util.*;
 
 public class ImageFilteringService implements ImageFilterSettings.Listener, ObservableCanvas.Listener {
 
@@ -37,6 +37,7 @@ public class ImageFilteringService implements ImageFilterSettings.Listener, Obse
     private final InvalidationListener croppingListener;
 
     private transient BufferedImage cropped;
+    private long cacheCounter = 0;
 
     public ImageFilteringService(){
         targetCanvasProperty().addListener((observable, oldValue, newValue) -> {
@@ -98,58 +99,135 @@ public class ImageFilteringService implements ImageFilterSettings.Listener, Obse
         }
     }
 
-    private BufferedImage doUpdate(ICanvas targetCanvas, IProgressCallback callback){
-        boolean updateDownstream = runningState.anyMatch(Flags.FORCE_REDRAW);
+    private BufferedImage doUpdate(ICanvas targetCanvas, IProgressCallback callback) throws InterruptedException {
+        boolean updateAll = runningState.anyMatch(Flags.FORCE_REDRAW, Flags.OPEN_IMAGE_UPDATED, Flags.IMAGE_FILTERS_FULL_UPDATE);
 
-        if(runningState.anyMatch(Flags.OPEN_IMAGE_UPDATED)){
-            updateDownstream = true;
+        if(updateAll || cropped == null || runningState.anyMatch(Flags.CROPPING_CHANGED, Flags.CANVAS_CHANGED)){
+            cropped = getImageData().createCroppedImage(targetCanvas);
+            updateAll = true;
         }
 
-        if(updateDownstream || cropped == null || runningState.anyMatch(Flags.CROPPING_CHANGED, Flags.CANVAS_CHANGED)){
-            cropped = getImageData().createCroppedImage(targetCanvas);
-            updateDownstream = true;
+        List<ObservableImageFilter> filters = getImageSettings().currentFilters.get();
+        if(updateAll){
+            //mark every filter dirty, so they're still updated if this update is interrupted
+            markDirty();
         }
 
-        if(!updateDownstream && runningState.anyMatch(Flags.IMAGE_FILTERS_FULL_UPDATE)){
-            updateDownstream = true;
+        // find the first filter which needs to be updated, every filter after it will need to be updated too
+        int firstDirty = filters.size();
+        for(int i = 0; i < filters.size(); i++){
+            if(filterCache.get(filters.get(i)).isDirty){
+                firstDirty = i;
+                break;
+            }
         }
 
+        // find the last cached image before the first dirty filter, if the cached images have been evicted the filters will need to be updated again
+        int start = firstDirty;
         BufferedImage filteredImage = cropped;
-        int filterCount = 0;
-        for(ObservableImageFilter filter : getImageSettings().currentFilters.get()){
-            ImageStateCache stateCache = this.filterCache.get(filter);
+        ImageStateCache inputCache = null;
+        for(int i = firstDirty - 1; i >= 0; i--){
+            ObservableImageFilter filter = filters.get(i);
+            ImageStateCache stateCache = filterCache.get(filter);
             if(filter.enable.get()){
-                if(updateDownstream || stateCache.isDirty || stateCache.bufferedImage == null){
-
-                    BufferedImageOp imageOp = filter.getBufferedImageOp();
+                if(stateCache.bufferedImage != null){
+                    filteredImage = stateCache.bufferedImage;
+                    inputCache = stateCache;
+                    break;
+                }
+                start = i;
+            }
+        }
 
-                    if(stateCache.bufferedImage != null && isCachedImageCompatible(filteredImage, stateCache.bufferedImage)){
-                        filteredImage = imageOp.filter(filteredImage, stateCache.bufferedImage);
-                    }else{
-                        filteredImage = imageOp.filter(filteredImage, null);
+        for(int i = start; i < filters.size(); i++){
+            ObservableImageFilter filter = filters.get(i);
+            ImageStateCache stateCache = filterCache.get(filter);
+            if(filter.enable.get()){
+                // consecutive point-wise filters are applied in one pass, so only the last filter in the run has a cached result
+                int runEnd = FusedPointFilter.getRunEnd(filters, i);
+                if(runEnd - i > 1){
+                    ImageStateCache lastCache = filterCache.get(filters.get(runEnd - 1));
+                    filteredImage = new FusedPointFilter(FusedPointFilter.getEnabledFilters(filters, i, runEnd)).filterParallel(filteredImage, lastCache.bufferedImage);
+                    for(int j = i; j < runEnd; j++){
+                        ImageStateCache runCache = filterCache.get(filters.get(j));
+                        runCache.bufferedImage = null;
+                        runCache.isDirty = false;
                     }
-
-                    updateDownstream = true; //one of the filters has changed, so all the ones after this need to be updated
-                }else{
-                    filteredImage = stateCache.bufferedImage;
+                    lastCache.bufferedImage = filteredImage;
+                    lastCache.lastUsed = ++cacheCounter;
+                    i = runEnd - 1;
+                    callback.updateProgress(i + 1, filters.size());
+                    continue;
                 }
+                filteredImage = TiledImageFilter.filter(filter, filteredImage, stateCache.bufferedImage);
                 stateCache.bufferedImage = filteredImage;
-                stateCache.isDirty = false;
-            }else if(stateCache.isDirty){
-                //the filter has just been disabled, so update downstream filters
-                updateDownstream = true;
-                stateCache.isDirty = false;
+                stateCache.lastUsed = ++cacheCounter;
+            }else{
                 stateCache.bufferedImage = null;
             }
+            stateCache.isDirty = false;
+            callback.updateProgress(i + 1, filters.size());
+        }
 
-            filterCount++;
-            callback.updateProgress(filterCount, getImageSettings().currentFilters.get().size());
+        // the input image is the most likely to be needed again, as the next change will probably be to the same filter
+        if(inputCache != null){
+            inputCache.lastUsed = ++cacheCounter;
         }
+        evictCachedImages(filters, filteredImage);
 
         callback.updateProgress(1, 1);
         return filteredImage;
     }
 
+    /**
+     * Removes the least recently used images from the cache until the cache is within the memory budget, the current result is never removed
+     */
+    private void evictCachedImages(List<ObservableImageFilter> filters, BufferedImage result){
+        long budget = DBPreferences.INSTANCE.imageFilterCacheSize.get() * 1024L * 1024L;
+        List<ImageStateCache> cached = new ArrayList<>();
+        long total = 0;
+        for(ObservableImageFilter filter : filters){
+            ImageStateCache stateCache = filterCache.get(filter);
+            if(stateCache.bufferedImage != null && stateCache.bufferedImage != result){
+                cached.add(stateCache);
+                total += stateCache.getSizeInBytes();
+            }
+        }
+        if(total <= budget){
+            return;
+        }
+        cached.sort(Comparator.comparingLong(stateCache -> stateCache.lastUsed));
+        for(ImageStateCache stateCache : cached){
+            if(total <= budget){
+                break;
+            }
+            total -= stateCache.getSizeInBytes();
+            stateCache.bufferedImage = null;
+        }
+    }
+
+    /**
+     * @return the size in bytes of the cached images which count towards the memory budget, the current result isn't included as it's never removed
+     */
+    long getCacheSizeInBytes(BufferedImage result){
+        long total = 0;
+        for(ImageStateCache stateCache : filterCache.values()){
+            if(stateCache.bufferedImage != null && stateCache.bufferedImage != result){
+                total += stateCache.getSizeInBytes();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Filters the image on the current thread rather than with the {@link #getImageFilteringService()}, used to test the cache without the JavaFX thread
+     */
+    BufferedImage updateImmediately() throws InterruptedException {
+        runningState.loadState(liveState);
+        liveState.clear();
+        return doUpdate(new SimpleCanvas(getTargetCanvas()), IProgressCallback.NULL);
+    }
+
     public void dispose(){
         filterCache.values().forEach(ImageStateCache::destroy);
         filterCache.clear();
@@ -194,13 +272,10 @@ public class ImageFilteringService implements ImageFilterSettings.Listener, Obse
         filterCache.values().forEach(ImageStateCache::markDirty);
     }
 
-    private boolean isCachedImageCompatible(BufferedImage src, BufferedImage dst){
-        return src.getWidth() == dst.getWidth() && src.getHeight() == dst.getHeight() && src.getType() == dst.getType();
-    }
-
     private static class ImageStateCache {
         public BufferedImage bufferedImage = null;
         public boolean isDirty;
+        public long lastUsed;
 
         public ImageStateCache(ObservableImageFilter filter){
             this.isDirty = filter.enable.get(); //if the filter is enabled mark it dirty, if not we don't need to mark updates
@@ -214,6 +289,14 @@ public class ImageFilteringService implements ImageFilterSettings.Listener, Obse
         public void markDirty(){
             isDirty = true;
         }
+
+        public long getSizeInBytes(){
+            if(bufferedImage == null){
+                return 0;
+            }
+            DataBuffer dataBuffer = bufferedImage.getRaster().getDataBuffer();
+            return (long) dataBuffer.getSize() * dataBuffer.getNumBanks() * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+        }
     }
 
     ////////////////////////////////////////////////////////
@@ -323,7 +406,7 @@ public class ImageFilteringService implements ImageFilterSettings.Listener, Obse
                 protected Task<BufferedImage> createTask() {
                     return new Task<>() {
                         @Override
-                        protected BufferedImage call() {
+                        protected BufferedImage call() throws InterruptedException {
                             setFilteredImage(null);
                             setFilteredCanvas(null);
                             if(getImageData() == null){
@@ -13,6 +13,7 @@ import drawingbot.utils.EnumRotation;
 import drawingbot.utils.UnitsLength;
 import javafx.scene.paint.Color;
 import org.imgscalr.Scalr;
+import org.jetbrains.annotations.Nullable;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
@@ -66,10 +67,18 @@ public class ImageTools {
 
     //// BUFFERED IMAGE FILTERS
 
+    /**
+     * @return the filtered image, or null if the thread was interrupted
+     */
+    @Nullable
     public static BufferedImage lazyConvolutionFilter(BufferedImage image, float[][] matrix){
         return lazyConvolutionFilter(image, matrix, 1, false);
     }
 
+    /**
+     * @return the filtered image, or null if the thread was interrupted
+     */
+    @Nullable
     public static BufferedImage lazyConvolutionFilter(BufferedImage image, float[][] matrix, int scale, boolean normalize){
         DrawingBotV3.logger.entering("ImageTools", "lazyConvolutionFilter: " + scale);
         if(scale != 1){
@@ -78,7 +87,8 @@ public class ImageTools {
         if(normalize){
             matrix = MatrixTools.normalizeMatrix(matrix);
         }
-        return new ConvolveOp(MatrixTools.matrixToKernal(matrix), ConvolveOp.EDGE_NO_OP, null).filter(image, null);
+        Kernel kernel = MatrixTools.matrixToKernal(matrix);
+        return TiledImageFilter.filterOrCancel(() -> new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null), image);
     }
 
     /**a lazy/very fast way to filter an image,*/
@@ -17,11 +17,18 @@ public class PixelDataARGB extends PixelDataAbstract implements IPixelDataHSB {
     private final int[] cacheARGBtoARGB = new int[4];
 
     public PixelDataARGB(int width, int height) {
+        this(width, height, false);
+    }
+
+    /**
+     * @param direct if true the channels will be stored off-heap, see {@link RawData#RawData(int, int, boolean)}
+     */
+    public PixelDataARGB(int width, int height, boolean direct) {
         super(width, height);
-        this.alpha = new RawData(width, height);
-        this.red = new RawData(width, height);
-        this.green = new RawData(width, height);
-        this.blue = new RawData(width, height);
+        this.alpha = new RawData(width, height, direct);
+        this.red = new RawData(width, height, direct);
+        this.green = new RawData(width, height, direct);
+        this.blue = new RawData(width, height, direct);
     }
 
     public RawData getRawData(int channel) {
@@ -135,6 +142,16 @@ public class PixelDataARGB extends PixelDataAbstract implements IPixelDataHSB {
         blue.setData(x, y, b);
     }
 
+    /**
+     * Enables / disables the running averages of each channel, see {@link RawData#setAverageTracking(boolean)}
+     */
+    public void setAverageTracking(boolean trackAverage){
+        alpha.setAverageTracking(trackAverage);
+        red.setAverageTracking(trackAverage);
+        green.setAverageTracking(trackAverage);
+        blue.setAverageTracking(trackAverage);
+    }
+
     @Override
     public void setSoftClip(Shape softClip) {
         super.setSoftClip(softClip);
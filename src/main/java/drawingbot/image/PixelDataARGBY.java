@@ -12,8 +12,12 @@ public class PixelDataARGBY extends PixelDataARGB implements IPixelListenable {
     public IPixelListener listener;
 
     public PixelDataARGBY(int width, int height) {
-        super(width, height);
-        this.luminance = new RawData(width, height);
+        this(width, height, false);
+    }
+
+    public PixelDataARGBY(int width, int height, boolean direct) {
+        super(width, height, direct);
+        this.luminance = new RawData(width, height, direct);
     }
 
     @Override
@@ -78,6 +82,12 @@ public class PixelDataARGBY extends PixelDataARGB implements IPixelListenable {
         return luminance;
     }
 
+    @Override
+    public void setAverageTracking(boolean trackAverage) {
+        super.setAverageTracking(trackAverage);
+        luminance.setAverageTracking(trackAverage);
+    }
+
     @Override
     public void setSoftClip(Shape softClip) {
         super.setSoftClip(softClip);
@@ -18,7 +18,7 @@ import java.awt.image.WritableRaster;
 public class PixelDataAdditiveComposite extends PixelDataARGBY{
 
     private BufferedImage cacheImage;
-    private final Graphics2D cacheGraphics;
+    private Graphics2D cacheGraphics;
 
     private final Rectangle2D cacheRect = new Rectangle2D.Double(0, 0, 0, 0);
     private final int[] cachePixelData = new int[1];
@@ -27,6 +27,19 @@ public class PixelDataAdditiveComposite extends PixelDataARGBY{
 
     public PixelDataAdditiveComposite(int width, int height) {
         super(width, height);
+    }
+
+    /**
+     * The cache image is only created if it's used, {@link drawingbot.pfm.helpers.PFMRenderPipe} blends directly into the pixel data with {@link #doAdditiveBlend(int, int, int, int, int)}
+     */
+    public Graphics2D getCacheGraphics(){
+        if(cacheGraphics == null){
+            createCacheImage();
+        }
+        return cacheGraphics;
+    }
+
+    private void createCacheImage(){
         BufferedImage cacheImage = ObservableWritableRaster.createObservableBufferedImage(width, height, (x, y) -> {
             if(!isDrawing){
                 return;
@@ -43,10 +56,6 @@ public class PixelDataAdditiveComposite extends PixelDataARGBY{
         this.cacheGraphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
     }
 
-    public Graphics2D getCacheGraphics(){
-        return cacheGraphics;
-    }
-
     public void preDraw(){
         cacheRect.setRect(0, 0, 0, 0);
         isDrawing = true;
@@ -55,7 +64,7 @@ public class PixelDataAdditiveComposite extends PixelDataARGBY{
     public void postDraw(BresenhamHelper.IPixelSetter callback){
         isDrawing = false;
 
-        if(cacheRect.isEmpty()){
+        if(cacheImage == null || cacheRect.isEmpty()){
             return;
         }
         for(int x = (int) cacheRect.getMinX(); x <= cacheRect.getMaxX() && x < cacheImage.getWidth(); x++){
@@ -97,7 +106,10 @@ public class PixelDataAdditiveComposite extends PixelDataARGBY{
     public void destroy() {
         super.destroy();
         cacheImage = null;
-        cacheGraphics.dispose();
+        if(cacheGraphics != null){
+            cacheGraphics.dispose();
+            cacheGraphics = null;
+        }
     }
 
     @Override
@@ -6,6 +6,8 @@ import drawingbot.api.IPlottingTools;
 /**
  * Essentially a fast implementation of {@link drawingbot.pfm.AbstractDarkestPFM#findDarkestArea(IPixelData, int[])}
  * It splits the image into tiles and keeps track of the total darkness of each tile so it can provide the darkest pixel in that tile as fast as possible.
+ * <br>
+ * The tiles are indexed by a min-tree which is updated as the pixel data changes, so finding the darkest tile takes O(log tiles), the darkest pixel of each tile is also cached until a pixel in that tile changes which could affect it.
  */
 public class PixelTargetDarkestArea extends PixelTargetCache implements RawData.IDataListener {
 
@@ -17,11 +19,20 @@ public class PixelTargetDarkestArea extends PixelTargetCache implements RawData.
 
     private int totalSamplesX;
     private int totalSamplesY;
+    private int totalTiles;
 
-    private double[][] tileSamples;
-    private int[][] pixelCounts;
+    private double[] tileSamples;
+    private int[] pixelCounts;
     private int[] darkestPixelCache;
 
+    /**the min-tree over the tiles, each node stores the index of the darkest tile below it, leaves start at index = totalTiles*/
+    private int[] darkestTileTree;
+
+    /**the cached darkest pixel of each tile, -1 when it needs to be recalculated*/
+    private int[] tileDarkestX;
+    private int[] tileDarkestY;
+    private int[] tileDarkestLuminance;
+
     public PixelTargetDarkestArea(IPlottingTools tools, IPixelData data){
         this.tools = tools;
         this.data = data;
@@ -34,26 +45,22 @@ public class PixelTargetDarkestArea extends PixelTargetCache implements RawData.
 
         totalSamplesX = Math.max(1, getWidth()/getSampleWidth());
         totalSamplesY = Math.max(1, getHeight()/getSampleHeight());
+        totalTiles = totalSamplesX * totalSamplesY;
 
-        tileSamples = new double[totalSamplesX][totalSamplesY];
-        pixelCounts = new int[totalSamplesX][totalSamplesY];
+        tileSamples = new double[totalTiles];
+        pixelCounts = new int[totalTiles];
+        tileDarkestX = new int[totalTiles];
+        tileDarkestY = new int[totalTiles];
+        tileDarkestLuminance = new int[totalTiles];
 
         for(int sampleX = 0; sampleX < totalSamplesX; sampleX++) {
             for (int sampleY = 0; sampleY < totalSamplesY; sampleY++) {
 
-                int startX = sampleX * getSampleWidth();
-                int endX = startX + getSampleWidth();
-
-                int startY = sampleY*getSampleHeight();
-                int endY = startY + getSampleHeight();
-
-                if(sampleX == getWidth()/getSampleWidth()-1){
-                    endX = getWidth();
-                }
+                int startX = getTileStartX(sampleX);
+                int endX = getTileEndX(sampleX);
 
-                if(sampleY == getHeight()/getSampleHeight()-1){
-                    endY = getHeight();
-                }
+                int startY = getTileStartY(sampleY);
+                int endY = getTileEndY(sampleY);
 
                 double tileSample = 0;
                 int pixelCount = 0;
@@ -67,11 +74,21 @@ public class PixelTargetDarkestArea extends PixelTargetCache implements RawData.
                         }
                     }
                 }
-                tileSamples[sampleX][sampleY] = tileSample/pixelCount;
-                pixelCounts[sampleX][sampleY] = pixelCount;
+                int tile = getTileIndex(sampleX, sampleY);
+                tileSamples[tile] = tileSample/pixelCount;
+                pixelCounts[tile] = pixelCount;
+                tileDarkestX[tile] = -1;
             }
         }
 
+        darkestTileTree = new int[totalTiles * 2];
+        for(int tile = 0; tile < totalTiles; tile++){
+            darkestTileTree[totalTiles + tile] = tile;
+        }
+        for(int node = totalTiles - 1; node > 0; node--){
+            darkestTileTree[node] = getDarkerTile(darkestTileTree[node * 2], darkestTileTree[node * 2 + 1]);
+        }
+
         this.data.attachLuminanceDataListener(this);
     }
 
@@ -83,8 +100,16 @@ public class PixelTargetDarkestArea extends PixelTargetCache implements RawData.
         if(tools.withinPlottableArea(x, y)) {
             int tileX = Math.min(totalSamplesX - 1, getTileX(x, y));
             int tileY = Math.min(totalSamplesY - 1, getTileY(x, y));
-            int pixelCount = pixelCounts[tileX][tileY];
-            tileSamples[tileX][tileY] += (double)(newValue - oldValue)/pixelCount;
+            int tile = getTileIndex(tileX, tileY);
+            int pixelCount = pixelCounts[tile];
+            tileSamples[tile] += (double)(newValue - oldValue)/pixelCount;
+            updateTile(tile);
+
+            // Only invalidate the tiles darkest pixel if this change could alter it
+            if(tileDarkestX[tile] != -1 && ((x == tileDarkestX[tile] && y == tileDarkestY[tile]) || newValue <= tileDarkestLuminance[tile])){
+                tileDarkestX[tile] = -1;
+            }
+
             if (darkestPixelCache != null && x == darkestPixelCache[0] && y == darkestPixelCache[1]) {
                 darkestPixelCache = null;
             }
@@ -104,43 +129,30 @@ public class PixelTargetDarkestArea extends PixelTargetCache implements RawData.
 
         //// 1) FIND THE DARKEST TILE \\\\
 
-        double darkestSample = Double.MAX_VALUE;
-        int darkestSampleX = -1;
-        int darkestSampleY = -1;
+        int darkestTile = darkestTileTree[1];
 
-        for(int sampleX = 0; sampleX < totalSamplesX; sampleX++) {
-            for (int sampleY = 0; sampleY < totalSamplesY; sampleY++) {
-                double sample = tileSamples[sampleX][sampleY];
-                int pixelCount = pixelCounts[sampleX][sampleY];
-
-                // When using Soft Clip, it's possible that no pixels are being observed in a given area.
-                if(pixelCount == 0){
-                    continue;
-                }
-                int sampleI = (int)sample;
-                if((darkestSampleX == -1 || sampleI < darkestSample)){
-                    darkestSample = sampleI;
-                    darkestSampleX = sampleX;
-                    darkestSampleY = sampleY;
-                }
-            }
+        // When using Soft Clip, it's possible that no pixels are being observed in any area.
+        if(pixelCounts[darkestTile] == 0){
+            return darkestPixelCache = new int[]{-1, -1, Integer.MAX_VALUE};
         }
 
         //// 2) FIND THE DARKEST PIXEL IN THAT TILE \\\\
 
-        int startX = darkestSampleX * getSampleWidth();
-        int endX = startX + getSampleWidth();
+        if(tileDarkestX[darkestTile] == -1){
+            updateTileDarkestPixel(darkestTile);
+        }
+        return darkestPixelCache = new int[]{tileDarkestX[darkestTile], tileDarkestY[darkestTile], tileDarkestLuminance[darkestTile]};
+    }
 
-        int startY = darkestSampleY*getSampleHeight();
-        int endY = startY + getSampleHeight();
+    private void updateTileDarkestPixel(int tile){
+        int sampleX = tile / totalSamplesY;
+        int sampleY = tile % totalSamplesY;
 
-        if(darkestSampleX == getWidth()/getSampleWidth()-1){
-            endX = getWidth();
-        }
+        int startX = getTileStartX(sampleX);
+        int endX = getTileEndX(sampleX);
 
-        if(darkestSampleY == getHeight()/getSampleHeight()-1){
-            endY = getHeight();
-        }
+        int startY = getTileStartY(sampleY);
+        int endY = getTileEndY(sampleY);
 
         int darkestPixel = Integer.MAX_VALUE;
         int darkestPixelX = -1;
@@ -158,7 +170,40 @@ public class PixelTargetDarkestArea extends PixelTargetCache implements RawData.
                 }
             }
         }
-        return darkestPixelCache = new int[]{darkestPixelX, darkestPixelY, darkestPixel};
+        tileDarkestX[tile] = darkestPixelX;
+        tileDarkestY[tile] = darkestPixelY;
+        tileDarkestLuminance[tile] = darkestPixel;
+    }
+
+    /**
+     * Updates the min-tree after the sample of the given tile has changed
+     */
+    private void updateTile(int tile){
+        for(int node = (totalTiles + tile) / 2; node > 0; node /= 2){
+            int darker = getDarkerTile(darkestTileTree[node * 2], darkestTileTree[node * 2 + 1]);
+            if(darkestTileTree[node] == darker && darker != tile){
+                break;
+            }
+            darkestTileTree[node] = darker;
+        }
+    }
+
+    /**
+     * Compares the tiles in the same way as scanning the tiles in order, tiles with no observed pixels are always ignored, ties go to the first tile
+     */
+    private int getDarkerTile(int tileA, int tileB){
+        if(pixelCounts[tileA] == 0){
+            return pixelCounts[tileB] == 0 ? Math.min(tileA, tileB) : tileB;
+        }
+        if(pixelCounts[tileB] == 0){
+            return tileA;
+        }
+        int sampleA = (int)tileSamples[tileA];
+        int sampleB = (int)tileSamples[tileB];
+        if(sampleA != sampleB){
+            return sampleA < sampleB ? tileA : tileB;
+        }
+        return Math.min(tileA, tileB);
     }
 
     @Override
@@ -166,6 +211,10 @@ public class PixelTargetDarkestArea extends PixelTargetCache implements RawData.
         tileSamples = null;
         pixelCounts = null;
         darkestPixelCache = null;
+        darkestTileTree = null;
+        tileDarkestX = null;
+        tileDarkestY = null;
+        tileDarkestLuminance = null;
     }
 
     public int getWidth(){
@@ -199,4 +248,24 @@ public class PixelTargetDarkestArea extends PixelTargetCache implements RawData.
     public int getTileY(int x, int y){
         return (y/sampleHeight);
     }
+
+    private int getTileIndex(int sampleX, int sampleY){
+        return sampleX * totalSamplesY + sampleY;
+    }
+
+    private int getTileStartX(int sampleX){
+        return sampleX * getSampleWidth();
+    }
+
+    private int getTileEndX(int sampleX){
+        return sampleX == getWidth()/getSampleWidth()-1 ? getWidth() : getTileStartX(sampleX) + getSampleWidth();
+    }
+
+    private int getTileStartY(int sampleY){
+        return sampleY * getSampleHeight();
+    }
+
+    private int getTileEndY(int sampleY){
+        return sampleY == getHeight()/getSampleHeight()-1 ? getHeight() : getTileStartY(sampleY) + getSampleHeight();
+    }
 }
@@ -3,14 +3,17 @@ package drawingbot.image;
 import drawingbot.utils.Utils;
 
 import java.awt.*;
+import java.nio.ByteBuffer;
 
 /**represents raw pixel data, removing bloat to provide fastest possible speeds
- * it also keeps track of the average of all the data stored which allows for progress updates to be more frequent*/
+ * it also keeps track of the average of all the data stored which allows for progress updates to be more frequent
+ * the data is stored in a single row-major array, or in an off-heap buffer when created as direct, so each channel uses exactly width * height bytes*/
 public class RawData {
 
     public int width;
     public int height;
-    public byte[][] data;
+    public byte[] data;
+    public ByteBuffer buffer;
     public double averageData;
     public int pixelCount;
 
@@ -21,13 +24,31 @@ public class RawData {
 
     public IDataListener listener;
 
+    /**when false the running average isn't updated by {@link #setData(int, int, int)}, allowing separate regions to be written from multiple threads, the average should be recalculated afterwards*/
+    public boolean trackAverage = true;
+
     public RawData(int width, int height){
+        this(width, height, false);
+    }
+
+    /**
+     * @param direct if true the data will be stored off-heap in a direct {@link ByteBuffer}, otherwise in a byte array
+     */
+    public RawData(int width, int height, boolean direct){
         this.width = width;
         this.height = height;
-        this.data = new byte[width][height];
+        if(direct){
+            this.buffer = ByteBuffer.allocateDirect(width*height);
+        }else{
+            this.data = new byte[width*height];
+        }
         this.pixelCount = width*height;
     }
 
+    public boolean isDirect(){
+        return buffer != null;
+    }
+
     public void setBounds(int min, int max){
         this.min = min;
         this.max = max;
@@ -45,8 +66,13 @@ public class RawData {
         return averageData / pixelCount;
     }
 
+    public int getIndex(int x, int y){
+        return y*width + x;
+    }
+
     public int getData(int x, int y){
-        return Byte.toUnsignedInt(data[x][y]);
+        int index = y*width + x;
+        return Byte.toUnsignedInt(data != null ? data[index] : buffer.get(index));
     }
 
     public void setData(int x, int y, int value){
@@ -55,9 +81,14 @@ public class RawData {
         value = Utils.clamp(value, 0, max);
 
 
-        data[x][y] = (byte)value;
+        int index = y*width + x;
+        if(data != null){
+            data[index] = (byte)value;
+        }else{
+            buffer.put(index, (byte)value);
+        }
 
-        if(isWithinObservableRange(x, y)){
+        if(trackAverage && isWithinObservableRange(x, y)){
             averageData -= oldValue; //remove old value from average
             averageData += value; //add new value to average
         }
@@ -88,11 +119,19 @@ public class RawData {
         }
     }
 
+    public void setAverageTracking(boolean trackAverage){
+        boolean recalculate = trackAverage && !this.trackAverage;
+        this.trackAverage = trackAverage;
+        if(recalculate){
+            recalculateAverageData();
+        }
+    }
+
     public void recalculateAverageData(){
         averageData = 0;
         pixelCount = 0;
-        for(int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
+        for(int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
                 if(isWithinObservableRange(x, y)){
                     averageData += getData(x, y);
                     pixelCount++;
@@ -117,6 +156,7 @@ public class RawData {
     public void destroy() {
         this.softClip = null;
         this.data = null;
+        this.buffer = null;
     }
 
     public interface IDataListener{
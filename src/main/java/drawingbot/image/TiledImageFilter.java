@@ -0,0 +1,180 @@
+package drawingbot.image;
+
+import com.jhlabs.image.*;
+import drawingbot.DrawingBotV3;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Applies image filters to large images in overlapping bands of rows on multiple threads, filters are only split into bands if their footprint is known, i.e. the distance around each pixel which can affect its result.
+ * <br>
+ * Each band is filtered with a margin of extra rows the size of the footprint above and below it, so the pixels inside the band are identical to filtering the whole image, filters with an unknown footprint are applied to the whole image as before.
+ * Bands span the full width of the image, so only the rows above and below each band are filtered twice, which keeps the overhead of large radius blurs low.
+ */
+public class TiledImageFilter {
+
+    /**images with fewer pixels than this are filtered directly, as they gain very little from being split*/
+    public static final int MIN_PIXELS = 512 * 512;
+
+    public static final int MIN_BAND_HEIGHT = 16;
+
+    /**the footprint of filters which depend on the whole image, e.g. histograms, borders, motion blurs*/
+    public static final int GLOBAL_FOOTPRINT = -1;
+
+    /**
+     * Can be implemented by a {@link BufferedImageOp} to declare its footprint, if it's not one of the built-in filters
+     */
+    public interface IFootprint {
+
+        /**
+         * @return the maximum distance in pixels from a pixel which can affect its result, 0 for point-wise filters or {@link #GLOBAL_FOOTPRINT}
+         */
+        int getFootprintRadius();
+
+    }
+
+    /**
+     * @return the footprint radius of the filter, with its current settings
+     */
+    public static int getFootprintRadius(BufferedImageOp imageOp){
+        if(imageOp instanceof IFootprint footprint){
+            return footprint.getFootprintRadius();
+        }
+        if(isPointWise(imageOp)){
+            return 0;
+        }
+        Class<?> filterClass = imageOp.getClass();
+        // the kernel radius is rounded up by the filter, an extra pixel is added for the fractional part
+        if(filterClass == GaussianFilter.class || filterClass == UnsharpFilter.class || filterClass == HighPassFilter.class || filterClass == GlowFilter.class){
+            return (int) Math.ceil(((GaussianFilter) imageOp).getRadius()) + 1;
+        }
+        if(filterClass == BoxBlurFilter.class){
+            BoxBlurFilter boxBlur = (BoxBlurFilter) imageOp;
+            return ((int) Math.ceil(Math.max(boxBlur.getHRadius(), boxBlur.getVRadius())) + 1) * Math.max(1, boxBlur.getIterations());
+        }
+        if(filterClass == SmartBlurFilter.class){
+            SmartBlurFilter smartBlur = (SmartBlurFilter) imageOp;
+            return Math.max(smartBlur.getHRadius(), smartBlur.getVRadius()) + 1;
+        }
+        // 3x3 kernels
+        if(filterClass == BlurFilter.class || filterClass == SharpenFilter.class || filterClass == MedianFilter.class || filterClass == MinimumFilter.class || filterClass == MaximumFilter.class){
+            return 1;
+        }
+        if(imageOp instanceof ConvolveOp convolveOp){
+            Kernel kernel = convolveOp.getKernel();
+            return Math.max(kernel.getWidth(), kernel.getHeight()) / 2;
+        }
+        return GLOBAL_FOOTPRINT;
+    }
+
+    /**
+     * @return true if the filter is one of the built-in point-wise filters, which don't depend on the position of the pixel or the pixels around it, see {@link FusedPointFilter}
+     */
+    public static boolean isPointWise(BufferedImageOp imageOp){
+        return imageOp instanceof TransferFilter || imageOp instanceof RGBAdjustFilter || imageOp instanceof HSBAdjustFilter || imageOp instanceof GrayscaleFilter || imageOp instanceof InvertFilter;
+    }
+
+    /**
+     * Applies the filter created by the factory to the source image
+     * @param factory creates the filter, a new instance is created for each band, as most filters aren't thread safe
+     * @param src the source image, which is not modified
+     * @param cachedDst the previous result of this filter, which will be reused if it's compatible, may be null
+     * @return the filtered image
+     */
+    public static BufferedImage filter(BufferedImageOpFactory factory, BufferedImage src, BufferedImage cachedDst) throws InterruptedException {
+        BufferedImageOp imageOp = factory.getBufferedImageOp();
+        BufferedImage dst = isCompatible(src, cachedDst) ? cachedDst : null;
+
+        int radius = getFootprintRadius(imageOp);
+        int height = src.getHeight();
+        int bandHeight = getBandHeight(height, Math.max(0, radius));
+        if(!canSplit(src, radius, bandHeight)){
+            return imageOp.filter(src, dst);
+        }
+
+        BufferedImage result = dst != null ? dst : new BufferedImage(src.getWidth(), height, src.getType());
+
+        List<Callable<Void>> jobs = new ArrayList<>();
+        for(int y = 0; y < height; y += bandHeight){
+            int bandY = y;
+            int bandRows = Math.min(bandHeight, height - y);
+            BufferedImageOp bandOp = jobs.isEmpty() ? imageOp : factory.getBufferedImageOp();
+            jobs.add(() -> {
+                filterBand(bandOp, src, result, bandY, bandRows, radius);
+                return null;
+            });
+        }
+
+        try{
+            for(Future<Void> future : getTileService().invokeAll(jobs)){
+                future.get();
+            }
+        }catch (ExecutionException e){
+            throw new RuntimeException(e.getCause());
+        }
+        return result;
+    }
+
+    /**
+     * Applies the filter created by the factory to the source image, if the thread is interrupted the interrupt is restored and null is returned
+     * @return the filtered image, or null if the filter was cancelled
+     */
+    @Nullable
+    public static BufferedImage filterOrCancel(BufferedImageOpFactory factory, BufferedImage src){
+        try{
+            return filter(factory, src, null);
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static void filterBand(BufferedImageOp imageOp, BufferedImage src, BufferedImage dst, int y, int rows, int radius){
+        int srcY = Math.max(0, y - radius);
+        int srcHeight = Math.min(src.getHeight(), y + rows + radius) - srcY;
+
+        BufferedImage filtered = imageOp.filter(src.getSubimage(0, srcY, src.getWidth(), srcHeight), null);
+        dst.getRaster().setDataElements(0, y, filtered.getRaster().createChild(0, y - srcY, src.getWidth(), rows, 0, 0, null));
+    }
+
+    /**
+     * @return the number of rows in each band, the image is split into a couple of bands per processor, bands are at least twice the footprint radius high so the margins don't outweigh the band
+     */
+    public static int getBandHeight(int height, int radius){
+        int bands = Runtime.getRuntime().availableProcessors() * 2;
+        return Math.max(Math.max(MIN_BAND_HEIGHT, radius * 2), (height + bands - 1) / bands);
+    }
+
+    /**
+     * Only the integer image types are split, as the filters will create images of the same type for each band, small images are filtered directly
+     */
+    private static boolean canSplit(BufferedImage src, int radius, int bandHeight){
+        if(radius == GLOBAL_FOOTPRINT || bandHeight >= src.getHeight()){
+            return false;
+        }
+        if(src.getType() != BufferedImage.TYPE_INT_ARGB && src.getType() != BufferedImage.TYPE_INT_RGB && src.getType() != BufferedImage.TYPE_INT_ARGB_PRE){
+            return false;
+        }
+        return (long) src.getWidth() * src.getHeight() > MIN_PIXELS;
+    }
+
+    public static boolean isCompatible(BufferedImage src, BufferedImage dst){
+        return dst != null && src.getWidth() == dst.getWidth() && src.getHeight() == dst.getHeight() && src.getType() == dst.getType();
+    }
+
+    private static ExecutorService tileService;
+
+    static synchronized ExecutorService getTileService(){
+        if(tileService == null){
+            tileService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), DrawingBotV3.threadFactory("DrawingBotV3 - Image Filtering"));
+        }
+        return tileService;
+    }
+}
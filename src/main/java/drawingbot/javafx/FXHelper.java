@@ -379,6 +379,8 @@ public class FXHelper {
 
     public static void saveProject(ObservableProject project, Consumer<ObservableProject> callback){
         if(project.file.get() != null){
+            //saved before the callback, like saveProjectAs, so the drawing is complete if the project is closed afterwards
+            PlottedDrawingSerializer.saveProjectDrawing(project);
             GenericPreset<PresetProjectSettings> preset = Register.PRESET_LOADER_PROJECT.createNewPreset();
             Register.PRESET_MANAGER_PROJECT.updatePreset(project.context, project, preset, false);
 
@@ -418,6 +420,7 @@ public class FXHelper {
             DrawingBotV3.INSTANCE.backgroundService.submit(() -> {
                 //context.project().updateExportDirectory(file.getParentFile()); //saving our project is not "Exporting"
 
+                PlottedDrawingSerializer.saveProjectDrawing(project);
                 GenericPreset<PresetProjectSettings> preset = Register.PRESET_LOADER_PROJECT.createNewPreset();
                 Register.PRESET_MANAGER_PROJECT.updatePreset(project.context, project, preset, false);
 
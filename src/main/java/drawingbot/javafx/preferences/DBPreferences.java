@@ -64,6 +64,11 @@ public class DBPreferences implements ISettings {
 
     public final IntegerSetting<?> maxTextureSize = register(createRangedIntSetting(DBPreferences.class, CATEGORY_ADVANCED, "maxTextureSize", -1, -1, 8096));
     public final BooleanSetting<?> disableOpenGLRenderer = register(createBooleanSetting(DBPreferences.class, CATEGORY_ADVANCED, "disableOpenGLRenderer", false));
+    public final BooleanSetting<?> compactGeometryStorage = register(createBooleanSetting(DBPreferences.class, CATEGORY_ADVANCED, "compactGeometryStorage", false));
+    public final BooleanSetting<?> saveDrawingWithProject = register(createBooleanSetting(DBPreferences.class, CATEGORY_ADVANCED, "saveDrawingWithProject", false));
+    public final BooleanSetting<?> tiledViewportRendering = register(createBooleanSetting(DBPreferences.class, CATEGORY_ADVANCED, "tiledViewportRendering", true));
+    public final IntegerSetting<?> viewportLayerCacheSize = (IntegerSetting<?>) register(createRangedIntSetting(DBPreferences.class, CATEGORY_ADVANCED, "viewportLayerCacheSize", 512, 0, Short.MAX_VALUE)).setDisplaySlider(false);
+    public final IntegerSetting<?> exportCacheSize = (IntegerSetting<?>) register(createRangedIntSetting(DBPreferences.class, CATEGORY_ADVANCED, "exportCacheSize", 256, 0, Short.MAX_VALUE)).setDisplaySlider(false);
 
     ///////////////////////////////////////////////
 
@@ -85,6 +90,7 @@ public class DBPreferences implements ISettings {
     //// ADVANCED \\\\
 
     public final DoubleSetting<?> importDPI = (DoubleSetting<?>) register(createRangedDoubleSetting(DBPreferences.class, CATEGORY_IMAGE, "importDPI", 150D, 1D, Short.MAX_VALUE)).setDisplaySlider(false);
+    public final IntegerSetting<?> imageFilterCacheSize = (IntegerSetting<?>) register(createRangedIntSetting(DBPreferences.class, CATEGORY_IMAGE, "imageFilterCacheSize", 1024, 0, Short.MAX_VALUE)).setDisplaySlider(false);
 
 
     ///////////////////////////////////////////////
@@ -157,6 +163,7 @@ public class DBPreferences implements ISettings {
 
     public final DoubleSetting<?> exportDPI = (DoubleSetting<?>) register(createRangedDoubleSetting(DBPreferences.class, CATEGORY_IMAGE, "exportDPI", 300D, 1D, Short.MAX_VALUE)).setDisplaySlider(false).setDisplayName("Export DPI");
     public final BooleanSetting<?> transparentPNG = (BooleanSetting<?>) register(createBooleanSetting(DBPreferences.class, CATEGORY_IMAGE, "transparentPNG", false).setDisplayName("Export Transparent PNGs"));
+    public final BooleanSetting<?> tiledImageExport = (BooleanSetting<?>) register(createBooleanSetting(DBPreferences.class, CATEGORY_IMAGE, "tiledImageExport", false).setDisplayName("Tiled Image Export"));
 
     //// GCODE SETTINGS \\\\
 
@@ -132,6 +132,12 @@ public class FXPreferences extends AbstractFXController {
                             new SettingNode<>("Export Folder", settings.defaultExportDirectory),
                             new LabelNode("Advanced").setTitleStyling(),
                             new SettingNode<>("High Quality Mode DPI", settings.importDPI),
+                            new SettingNode<>("Image Filter Cache (MB)", settings.imageFilterCacheSize),
+                            new SettingNode<>("Compact Geometry Storage", settings.compactGeometryStorage),
+                            new SettingNode<>("Save Plotted Drawing with Project", settings.saveDrawingWithProject),
+                            new SettingNode<>("Tiled Viewport Rendering", settings.tiledViewportRendering),
+                            new SettingNode<>("Viewport Layer Cache (MB)", settings.viewportLayerCacheSize),
+                            new SettingNode<>("Export Optimisation Cache (MB)", settings.exportCacheSize),
 
                             new LabelNode("Preset Defaults").setTitleStyling(),
                             new LabelNode("Drawing Area", () -> EditorSheet.createDefaultPresetComboBox(Register.PRESET_LOADER_DRAWING_AREA)),
@@ -276,6 +282,7 @@ public class FXPreferences extends AbstractFXController {
                         new LabelNode("Resolution").setTitleStyling(),
                         new SettingNode<>(settings.exportDPI),
                         new SettingNode<>(settings.transparentPNG),
+                        new SettingNode<>(settings.tiledImageExport),
                         new PropertyNode<>("Image Export Size", settings.imageExportSize, String.class).setEditable(false),
                         new LabelNode("Animations").setTitleStyling(),
                         new SettingNode<>("Frames per second", settings.framesPerSecond),
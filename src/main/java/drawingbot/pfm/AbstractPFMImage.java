@@ -9,9 +9,14 @@ public abstract class AbstractPFMImage extends AbstractPFM implements IPFMImage
 
     public int transparentARGB = -1;
 
+    /**
+     * If true the pixel data will be stored off-heap, see {@link drawingbot.image.RawData#RawData(int, int, boolean)}
+     */
+    public boolean directPixelData = false;
+
     @Override
     public IPixelData createPixelData(int width, int height) {
-        return new PixelDataARGBY(width, height);
+        return new PixelDataARGBY(width, height, directPixelData);
     }
 
     @Override
@@ -6,6 +6,7 @@ import drawingbot.geom.shapes.GLine;
 import drawingbot.geom.shapes.IGeometry;
 import drawingbot.image.*;
 import drawingbot.pfm.helpers.PFMRenderPipe;
+import drawingbot.pfm.helpers.ParallelSketchRunner;
 import drawingbot.plotting.PFMTask;
 import drawingbot.plotting.PlottingTools;
 import drawingbot.utils.Utils;
@@ -28,6 +29,8 @@ public abstract class AbstractSketchPFM extends AbstractDarkestPFM {
 
     public boolean shouldLiftPen;
 
+    public int parallelWorkers = 1;
+
     //process specific
     public double initialLuminance = 0;
 
@@ -47,6 +50,11 @@ public abstract class AbstractSketchPFM extends AbstractDarkestPFM {
 
     public PixelTargetCache targetCache;
 
+    /**
+     * The host PFM, if this instance is a worker created by {@link ParallelSketchRunner}
+     */
+    public AbstractSketchPFM parallelHost = null;
+
     @Override
     public void setup() {
         super.setup();
@@ -86,7 +94,7 @@ public abstract class AbstractSketchPFM extends AbstractDarkestPFM {
         if(radiusMin != radiusMax || tools.getCanvas().getRenderedPenWidth() != 1F){
             return new PixelDataAdditiveComposite(width, height);
         }
-        return new PixelDataARGBY(width, height);
+        return new PixelDataARGBY(width, height, directPixelData);
     }
 
 
@@ -105,6 +113,11 @@ public abstract class AbstractSketchPFM extends AbstractDarkestPFM {
             return;
         }
 
+        if(ParallelSketchRunner.canRunParallel(this)){
+            new ParallelSketchRunner(this, parallelWorkers).run();
+            return;
+        }
+
         while(!tools.isFinished()){
 
             // Find the darkest pixel in the image, using the current method, use this as the current position
@@ -117,53 +130,13 @@ public abstract class AbstractSketchPFM extends AbstractDarkestPFM {
                 addLinkingGeometry(tools.getPixelData(), context.last, context.current);
             }
 
-            beginSquiggle();
-
-            // Keep track of the squiggle's deviation
-            float initialDarkness = tools.getPixelData().getLuminance(context.getX(), context.getY());
-            float allowableDarkness = !shouldLiftPen ? Float.MAX_VALUE : initialDarkness + Math.max(1, 255 * squiggleMaxDeviation);
-            boolean failed = false;
-
-            // Run the loop until it is stopped in the case of should lift pen, or run it until the maximum squiggle length if we should lift the pen
-            for (int s = 0; !shouldLiftPen || s < squiggleMaxLength; s++) {
-
-                // Remove the previous result
-                context.clearResult();
+            SquiggleResult result = runSquiggle(context, tools.getPixelData());
 
-                // Find the next geometry / result
-                nextPathFindingResult(context, tools.getPixelData());
-
-                // If no result has been found we end this squiggle early
-                if(!context.hasResult()){
-                    failed = true;
-                    break;
-                }
-
-                // If the squiggle has passed the minimum length now we check the squiggles darkness
-                if(shouldLiftPen && s >= squiggleMinLength){
-
-                    // Check the last generated geometry doesn't exceed the allowable darkness, if it does end the squiggle early
-                    if(context.getAvgLuminance() > allowableDarkness || context.getAvgLuminance()  > tools.getPixelData().getAverageLuminance()){
-                        break;
-                    }
-
-                }
-
-                // The generated geometry has passed all our tests, add it too the drawing & update the context
-                addPathFindingResult(context, tools.getPixelData());
-                context.last = context.getPosition();
-                context.current = context.getDstPosition();
-
-                // Check the squiggle shouldn't be ended early
-                if(updateProgress(tools) || tools.isFinished()){
-                    endSquiggle();
-                    return;
-                }
+            if(result == SquiggleResult.FINISHED){
+                return;
             }
 
-            endSquiggle();
-
-            if(failed){
+            if(result == SquiggleResult.FAILED){
                 // If there were no path finding results from the current point, it must be isolated, so erase it.
                 tools.getPixelData().setLuminance(context.getX(), context.getY(), 255);
                 fails++;
@@ -183,6 +156,73 @@ public abstract class AbstractSketchPFM extends AbstractDarkestPFM {
         }
     }
 
+    public enum SquiggleResult {
+        COMPLETED,
+        FAILED,
+        FINISHED
+    }
+
+    /**
+     * Draws a single squiggle starting from the contexts current position
+     * @return the result of the squiggle, {@link SquiggleResult#FINISHED} if the PFM should stop
+     */
+    public SquiggleResult runSquiggle(PathFindingContext context, IPixelData pixelData){
+        beginSquiggle();
+
+        // Keep track of the squiggle's deviation
+        float initialDarkness = pixelData.getLuminance(context.getX(), context.getY());
+        float allowableDarkness = !shouldLiftPen ? Float.MAX_VALUE : initialDarkness + Math.max(1, 255 * squiggleMaxDeviation);
+        boolean failed = false;
+
+        // Run the loop until it is stopped in the case of should lift pen, or run it until the maximum squiggle length if we should lift the pen
+        for (int s = 0; !shouldLiftPen || s < squiggleMaxLength; s++) {
+
+            // Remove the previous result
+            context.clearResult();
+
+            // Find the next geometry / result
+            nextPathFindingResult(context, pixelData);
+
+            // If no result has been found we end this squiggle early
+            if(!context.hasResult()){
+                failed = true;
+                break;
+            }
+
+            // If the squiggle has passed the minimum length now we check the squiggles darkness
+            if(shouldLiftPen && s >= squiggleMinLength){
+
+                // Check the last generated geometry doesn't exceed the allowable darkness, if it does end the squiggle early
+                if(context.getAvgLuminance() > allowableDarkness || context.getAvgLuminance()  > pixelData.getAverageLuminance()){
+                    break;
+                }
+
+            }
+
+            // The generated geometry has passed all our tests, add it too the drawing & update the context
+            addPathFindingResult(context, pixelData);
+            context.last = context.getPosition();
+            context.current = context.getDstPosition();
+
+            // Check the squiggle shouldn't be ended early
+            if(shouldEndSquiggle()){
+                endSquiggle();
+                return SquiggleResult.FINISHED;
+            }
+        }
+
+        endSquiggle();
+        return failed ? SquiggleResult.FAILED : SquiggleResult.COMPLETED;
+    }
+
+    protected boolean shouldEndSquiggle(){
+        if(parallelHost != null){
+            // Workers don't update the progress, it's updated by the host once each phase is complete
+            return tools.isFinished();
+        }
+        return updateProgress(tools) || tools.isFinished();
+    }
+
     public void beginSquiggle(){
 
     }
@@ -203,6 +243,14 @@ public abstract class AbstractSketchPFM extends AbstractDarkestPFM {
         return actualProgress >= 1;
     }
 
+    /**
+     * Updates the progress of the host PFM while running in parallel, see {@link ParallelSketchRunner}
+     * @return true if the PFM has finished
+     */
+    public boolean checkProgress(){
+        return updateProgress(tools);
+    }
+
     public abstract void nextPathFindingResult(PathFindingContext context, IPixelData pixels);
 
     public void addPathFindingResult(PathFindingContext context, IPixelData pixels){
@@ -213,6 +261,76 @@ public abstract class AbstractSketchPFM extends AbstractDarkestPFM {
         eraseAddGeometry(pixels, new GLine(src[0], src[1], dst[0], dst[1]));
     }
 
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    //// PARALLEL WORKERS \\\\
+
+    /**
+     * Copies the values calculated during the hosts {@link #setup()}, so this instance can be used as a worker by {@link ParallelSketchRunner}
+     */
+    public void setupParallelWorker(AbstractSketchPFM host){
+        this.parallelHost = host;
+        this.squiggleMinLength = host.squiggleMinLength;
+        this.squiggleMaxLength = host.squiggleMaxLength;
+        this.minLineLength = host.minLineLength;
+        this.maxLineLength = host.maxLineLength;
+        this.radiusMin = host.radiusMin;
+        this.radiusMax = host.radiusMax;
+        this.eraseMin = host.eraseMin;
+        this.eraseMax = host.eraseMax;
+        this.initialLuminance = host.initialLuminance;
+        this.renderPipe.setRescaleMode(host.renderPipe.rescaleMode);
+    }
+
+    /**
+     * Resets the state of the worker before it processes a new tile, so the result doesn't depend on which tiles the worker processed before
+     */
+    public void beginParallelTile(AbstractSketchPFM host, int seed){
+        this.lineProgress = host.lineProgress;
+        this.lumProgress = host.lumProgress;
+        this.actualProgress = host.actualProgress;
+        this.context.clearResult();
+        this.context.current = new int[2];
+        this.context.last = new int[2];
+        this.tools.setRandomSeed(seed);
+        this.tools.getSimpleLineSampler().lastAngle = 0F;
+    }
+
+    /**
+     * Draws squiggles inside the given tile only, used by the workers of {@link ParallelSketchRunner}
+     * @param tile the tile to draw inside, the worker only reads/writes pixels within the tile
+     * @param maxSquiggles the maximum number of squiggles to draw
+     * @param targetLuminance the average luminance at which the tile is complete
+     * @return true if the tile may require more squiggles
+     */
+    public boolean runTile(ParallelSketchRunner.Tile tile, int maxSquiggles, float targetLuminance){
+        int tileFails = 0;
+        for(int i = 0; i < maxSquiggles; i++){
+            if(tools.isFinished()){
+                return false;
+            }
+            context.last = context.current;
+            context.current = new int[2];
+            if(tile.updateDarkestPixel(tools.getPixelData(), context.current) >= targetLuminance){
+                return false;
+            }
+
+            SquiggleResult result = runSquiggle(context, tools.getPixelData());
+
+            if(result == SquiggleResult.FINISHED){
+                return false;
+            }
+
+            if(result == SquiggleResult.FAILED){
+                tools.getPixelData().setLuminance(context.getX(), context.getY(), 255);
+                if(++tileFails >= MAX_FAILS){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     @Override
     public int minLineLength() {
         return minLineLength;
@@ -38,7 +38,7 @@ public class PFMSpiralBasic extends AbstractPFMImage {
 
     @Override
     public IPixelData createPixelData(int width, int height) {
-        return new PixelDataARGBY(width, height);
+        return new PixelDataARGBY(width, height, directPixelData);
     }
 
     @Override
@@ -0,0 +1,71 @@
+package drawingbot.pfm.helpers;
+
+/**
+ * Caches the pixel offsets of bresenham lines starting at 0, 0, the lines plotted by {@link BresenhamHelper#plotLine(int, int, int, int, BresenhamHelper.IPixelSetter)} only depend on the difference between the start and end points, so the offsets can be reused for every start point.
+ * <br>
+ * Lines within the cache radius are only calculated once, longer lines are calculated each time they are requested.
+ * N.B this class is not thread safe.
+ */
+public class BresenhamLineTable {
+
+    public static final int DEFAULT_CACHE_RADIUS = 128;
+
+    private final int cacheRadius;
+    private final int cacheStride;
+    private final int[][] cache;
+
+    public BresenhamLineTable(){
+        this(DEFAULT_CACHE_RADIUS);
+    }
+
+    public BresenhamLineTable(int cacheRadius){
+        this.cacheRadius = cacheRadius;
+        this.cacheStride = cacheRadius * 2 + 1;
+        this.cache = new int[cacheStride * cacheStride][];
+    }
+
+    /**
+     * @param dx the x difference between the end point and the start point
+     * @param dy the y difference between the end point and the start point
+     * @return the x/y offsets of every pixel on the line in the order they would be plotted, stored as [x0, y0, x1, y1, ...]
+     */
+    public int[] getLineOffsets(int dx, int dy){
+        if(Math.abs(dx) > cacheRadius || Math.abs(dy) > cacheRadius){
+            return createLineOffsets(dx, dy);
+        }
+        int index = (dy + cacheRadius) * cacheStride + dx + cacheRadius;
+        int[] offsets = cache[index];
+        if(offsets == null){
+            offsets = cache[index] = createLineOffsets(dx, dy);
+        }
+        return offsets;
+    }
+
+    /**
+     * Matches the output of {@link BresenhamHelper#plotLine(int, int, int, int, BresenhamHelper.IPixelSetter)} from 0, 0 to dx, dy
+     */
+    public static int[] createLineOffsets(int dx, int dy){
+        int[] offsets = new int[(Math.max(Math.abs(dx), Math.abs(dy)) + 1) * 2];
+        int count = 0;
+
+        int x0 = 0, y0 = 0;
+        int adx =  Math.abs(dx), sx = 0<dx ? 1 : -1;
+        int ady = -Math.abs(dy), sy = 0<dy ? 1 : -1;
+        int err = adx+ady, e2;
+
+        for (;;) {
+            offsets[count++] = x0;
+            offsets[count++] = y0;
+            e2 = 2*err;
+            if (e2 >= ady) {
+                if (x0 == dx) break;
+                err += ady; x0 += sx;
+            }
+            if (e2 <= adx) {
+                if (y0 == dy) break;
+                err += adx; y0 += sy;
+            }
+        }
+        return offsets;
+    }
+}
@@ -1,6 +1,7 @@
 package drawingbot.pfm.helpers;
 
 import drawingbot.api.IPixelData;
+import drawingbot.image.RawData;
 
 import java.awt.*;
 
@@ -62,6 +63,49 @@ public class LuminanceTestLine extends LuminanceTest {
         }
     }
 
+    /**
+     * Equivalent to calling {@link #addSample(IPixelData, int, int)} for every pixel of a line, without the overhead of plotting the line for each test, see {@link BresenhamLineTable}
+     * @param pixels the pixel data to sample
+     * @param luminance the raw luminance data of the pixel data, if available, otherwise null
+     * @param startX the x coordinate of the start of the line
+     * @param startY the y coordinate of the start of the line
+     * @param offsets the offsets of the pixels on the line, relative to the start
+     */
+    public void addLineSamples(IPixelData pixels, RawData luminance, int startX, int startY, int[] offsets){
+        int width = pixels.getWidth();
+        int height = pixels.getHeight();
+        for(int i = 0; i < offsets.length; i += 2){
+            int x = startX + offsets[i];
+            int y = startY + offsets[i + 1];
+
+            if(x < 0 || x >= width || y < 0 || y >= height || (softClip != null && !softClip.contains(x, y))){
+                //if we're off the image we'll take the last result and stop there
+                if(stopPrematurely && darkestSample == -1 && pixelCount > minPixelCount){
+                    darkestDst[0] = lastTestX;
+                    darkestDst[1] = lastTestY;
+                    darkestSample = getCurrentSample();
+                    sampleIndex = pixelCount;
+                }
+                continue;
+            }
+
+            luminanceSum += luminance != null ? luminance.getData(x, y) : pixels.getLuminance(x, y);
+            pixelCount++;
+            lastTestX = x;
+            lastTestY = y;
+
+            if(pixelCount > minPixelCount){
+                float currentSample = (float) luminanceSum / (float) pixelCount;
+                if(darkestSample == -1 || currentSample < darkestSample){
+                    darkestDst[0] = x;
+                    darkestDst[1] = y;
+                    darkestSample = currentSample;
+                    sampleIndex = pixelCount;
+                }
+            }
+        }
+    }
+
     public float getSampleIndex(){
         return (float)sampleIndex / pixelCount;
     }
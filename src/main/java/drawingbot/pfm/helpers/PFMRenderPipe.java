@@ -2,6 +2,7 @@ package drawingbot.pfm.helpers;
 
 import drawingbot.api.IPixelData;
 import drawingbot.geom.shapes.IGeometry;
+import drawingbot.image.ImageTools;
 import drawingbot.image.PixelDataAdditiveComposite;
 import drawingbot.image.PixelDataComposite;
 import drawingbot.image.PixelDataGraphicsComposite;
@@ -20,6 +21,7 @@ public class PFMRenderPipe {
     private BasicStroke defaultStroke = null;
     private Color defaultColor = null;
     public BresenhamHelper bresenhamHelper = new BresenhamHelper();
+    public StrokeRasterizer strokeRasterizer = new StrokeRasterizer();
     public EnumRescaleMode rescaleMode = DBPreferences.INSTANCE.defaultRescalingMode.get();
     public RenderPipeSampleTest sampleTest = new RenderPipeSampleTest();
 
@@ -57,29 +59,27 @@ public class PFMRenderPipe {
     public int eraseGeometry(IPixelData pixelData, IPixelData reference, IGeometry geometry, int adjust, float lineWidth, PixelDataComposite.ICompositeFunction function){
         int colourSamples = -1;
         if(pixelData instanceof PixelDataGraphicsComposite data){
-            //HQ method: using Graphics2D implementation, slower but supports anti aliased lines and lineWidth.
-            Graphics2D graphics2D = data.getGraphics2D();
-            data.enableBlending(function);
-            graphics2D.setStroke(getDefaultStroke(lineWidth));
-            graphics2D.setColor(getDefaultEraseColorAlpha(adjust));
-            graphics2D.draw(geometry.getAWTShape());
-            data.disableBlending();
-
-            // Add Colour Samples to the Geometry
+            //HQ method: anti aliased lines with lineWidth, the foreground is updated directly and composited with the background by the composite function
             sampleTest.resetColourSamples(0); //make sure we don't alter the pixel data twice
             sampleTest.setPixelDataTargets(reference, null);
-            bresenhamHelper.plotShape(geometry.getAWTShape(), sampleTest);//Erase the geometry and gather colour samples
+
+            data.enableBlending(function);
+            strokeRasterizer.rasterizeStroke(geometry.getAWTShape(), lineWidth, data.getWidth(), data.getHeight(), (x, y, coverage) -> {
+                blendEraseColour(data.foreground, x, y, (int) (adjust * (coverage / 255F)));
+                sampleTest.setPixel(x, y);
+            });
+            data.disableBlending();
             colourSamples = sampleTest.getCurrentAverage();
         }else if(pixelData instanceof PixelDataAdditiveComposite data) {
             // Setup color samples, with this method, we perform both simultaneously erasing/sampling together
             sampleTest.resetColourSamples(0); //make sure we don't alter the pixel data twice
             sampleTest.setPixelDataTargets(reference, null);
 
-            data.preDraw();
-            data.getCacheGraphics().setStroke(getDefaultStroke(lineWidth));
-            data.getCacheGraphics().setColor(getDefaultEraseColor(adjust));
-            geometry.renderAWT(data.getCacheGraphics());
-            data.postDraw(sampleTest);
+            strokeRasterizer.rasterizeStroke(geometry.getAWTShape(), lineWidth, data.getWidth(), data.getHeight(), (x, y, coverage) -> {
+                int add = (int) (adjust * (coverage / 255F));
+                data.doAdditiveBlend(x, y, add, add, add);
+                sampleTest.setPixel(x, y);
+            });
 
             colourSamples = sampleTest.getCurrentAverage();
         }else{
@@ -92,6 +92,23 @@ public class PFMRenderPipe {
         return colourSamples;
     }
 
+    /**
+     * Blends white with the given alpha over the pixel, the same as drawing with {@link #getDefaultEraseColorAlpha(int)} and the default SRC_OVER composite
+     */
+    private static void blendEraseColour(IPixelData pixelData, int x, int y, int alpha){
+        if(alpha <= 0){
+            return;
+        }
+        int argb = pixelData.getARGB(x, y);
+        int dstAlpha = ImageTools.alpha(argb);
+        int dstWeight = dstAlpha * (255 - alpha) / 255;
+        int resultAlpha = alpha + dstWeight;
+        int red = (255 * alpha + ImageTools.red(argb) * dstWeight) / resultAlpha;
+        int green = (255 * alpha + ImageTools.green(argb) * dstWeight) / resultAlpha;
+        int blue = (255 * alpha + ImageTools.blue(argb) * dstWeight) / resultAlpha;
+        pixelData.setARGB(x, y, resultAlpha, red, green, blue);
+    }
+
     public void defaultEraseFunction(int[] foreground, int[] background, int[] result){
         int offset = (int) (foreground[0]*1F); //1.2F offset approximately makes images match previous versions more closely
 
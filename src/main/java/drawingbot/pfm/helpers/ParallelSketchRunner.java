@@ -0,0 +1,262 @@
+package drawingbot.pfm.helpers;
+
+import drawingbot.DrawingBotV3;
+import drawingbot.api.IPixelData;
+import drawingbot.geom.shapes.IGeometry;
+import drawingbot.image.PixelDataARGBY;
+import drawingbot.javafx.GenericSetting;
+import drawingbot.pfm.AbstractSketchPFM;
+import drawingbot.plotting.PFMTask;
+import drawingbot.plotting.PlottingTools;
+import drawingbot.utils.EnumRendererType;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs an {@link AbstractSketchPFM} on multiple threads by splitting the plotting area into a grid of tiles.
+ * <br>
+ * Each round the tiles are processed in four phases, where only tiles which don't share an edge or corner are processed at the same time, every worker owns the pixels of its tile for the duration of the phase.
+ * Lines which cross the edge of a tile are stopped at the edge, and the grid is shifted by half a tile every other round so the pixels near the edges are drawn in the next round.
+ * <br>
+ * Every tile uses a random seed created from the PFMs random seed, the round and the tile's position and the geometries are added to the drawing in tile order once a phase is complete, so the results are reproducible for the same random seed.
+ */
+public class ParallelSketchRunner {
+
+    public static final int MIN_TILE_SIZE = 128;
+    public static final int SQUIGGLES_PER_TILE = 4;
+
+    public final AbstractSketchPFM host;
+    public final int workerCount;
+    public final int tileSize;
+
+    private final BlockingQueue<AbstractSketchPFM> workers;
+
+    public ParallelSketchRunner(AbstractSketchPFM host, int workerCount){
+        this.host = host;
+        this.workerCount = workerCount;
+        this.tileSize = Math.max(MIN_TILE_SIZE, host.maxLineLength * 4);
+        this.workers = new ArrayBlockingQueue<>(workerCount);
+    }
+
+    /**
+     * @return true if the given pfm can be run with multiple threads, pen lifting is required and only the bresenham erasing used by {@link PixelDataARGBY} is thread safe
+     */
+    public static boolean canRunParallel(AbstractSketchPFM pfm){
+        PFMTask task = pfm.tools.pfmTask;
+        if(pfm.parallelWorkers <= 1 || pfm.parallelHost != null || !pfm.shouldLiftPen || task == null){
+            return false;
+        }
+        if(!task.canUseMultiThreading() || task.isColourMatchTask()){
+            return false;
+        }
+        IPixelData pixelData = pfm.tools.getPixelData();
+        return pixelData != null && pixelData.getClass() == PixelDataARGBY.class && pixelData.getRawLuminanceData().listener == null;
+    }
+
+    public void run(){
+        PixelDataARGBY pixelData = (PixelDataARGBY) host.tools.getPixelData();
+        ExecutorService service = Executors.newFixedThreadPool(workerCount, DrawingBotV3.threadFactory("DrawingBotV3 - Parallel Sketch Worker"));
+        DrawingBotV3.logger.fine("Parallel Sketch PFM - Workers: %s, Tile Size: %s".formatted(workerCount, tileSize));
+
+        for(int i = 0; i < workerCount; i++){
+            workers.add(createWorker());
+        }
+
+        float targetLuminance = (float) (host.initialLuminance + (host.desiredLuminance - host.initialLuminance) * host.lineDensity);
+
+        //the running averages can't be updated safely from multiple threads, so they are recalculated after every phase instead
+        pixelData.setAverageTracking(false);
+        try{
+            for(int round = 0; !host.tools.isFinished(); round++){
+                boolean active = false;
+                for(int phase = 0; phase < 4; phase++){
+                    List<Tile> tiles = createTiles(pixelData, round, phase);
+                    List<Callable<Boolean>> jobs = new ArrayList<>();
+                    for(Tile tile : tiles){
+                        jobs.add(() -> runTile(tile, targetLuminance));
+                    }
+
+                    List<Future<Boolean>> results = service.invokeAll(jobs);
+
+                    //add the geometries in tile order, regardless of the order the workers finished in
+                    for(int i = 0; i < tiles.size(); i++){
+                        active |= results.get(i).get();
+                        tiles.get(i).geometries.forEach(host.tools::addGeometry);
+                    }
+
+                    pixelData.luminance.recalculateAverageData();
+                    if(host.checkProgress() || host.tools.isFinished()){
+                        return;
+                    }
+                }
+                if(!active){
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            service.shutdownNow();
+            pixelData.setAverageTracking(true);
+            workers.forEach(AbstractSketchPFM::destroy);
+            workers.clear();
+        }
+    }
+
+    private boolean runTile(Tile tile, float targetLuminance) throws InterruptedException {
+        AbstractSketchPFM worker = workers.take();
+        try{
+            worker.beginParallelTile(host, tile.seed);
+            ((TilePlottingTools) worker.tools).setTile(tile);
+            return worker.runTile(tile, SQUIGGLES_PER_TILE, targetLuminance);
+        }finally {
+            ((TilePlottingTools) worker.tools).setTile(null);
+            workers.add(worker);
+        }
+    }
+
+    private AbstractSketchPFM createWorker(){
+        PFMTask task = host.tools.pfmTask;
+        AbstractSketchPFM worker = (AbstractSketchPFM) task.pfmFactory.instance();
+        worker.setPlottingTools(new TilePlottingTools(host.tools));
+        GenericSetting.applySettingsToInstance(task.pfmSettings, worker);
+        worker.onSettingsApplied();
+        worker.setupParallelWorker(host);
+        return worker;
+    }
+
+    /**
+     * Creates the tiles of the given phase, phases alternate between odd / even columns and rows so tiles processed at the same time are never neighbours.
+     */
+    private List<Tile> createTiles(IPixelData pixelData, int round, int phase){
+        int offset = round % 2 == 0 ? 0 : tileSize / 2;
+        int columns = (pixelData.getWidth() + offset + tileSize - 1) / tileSize;
+        int rows = (pixelData.getHeight() + offset + tileSize - 1) / tileSize;
+
+        List<Tile> tiles = new ArrayList<>();
+        for(int row = phase / 2; row < rows; row += 2){
+            for(int column = phase % 2; column < columns; column += 2){
+                int x = Math.max(0, column * tileSize - offset);
+                int y = Math.max(0, row * tileSize - offset);
+                int width = Math.min(pixelData.getWidth(), column * tileSize - offset + tileSize) - x;
+                int height = Math.min(pixelData.getHeight(), row * tileSize - offset + tileSize) - y;
+                if(width > 0 && height > 0){
+                    int seed = ((host.tools.getRandomSeed() * 31 + round) * 31 + row) * 31 + column;
+                    tiles.add(new Tile(x, y, width, height, seed, host.tools.getSoftClipPixelMask()));
+                }
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * A region of the pixel data owned by a single worker, the soft clip of the PFM is combined with the bounds of the tile, so the {@link LuminanceTestLine} stops lines at the edges of the tile.
+     */
+    public static class Tile extends Rectangle {
+
+        public final int seed;
+        public final Shape mask;
+        public final List<IGeometry> geometries = new ArrayList<>();
+
+        public Tile(int x, int y, int width, int height, int seed, Shape mask){
+            super(x, y, width, height);
+            this.seed = seed;
+            this.mask = mask;
+        }
+
+        @Override
+        public boolean contains(double x, double y) {
+            return super.contains(x, y) && (mask == null || mask.contains(x, y));
+        }
+
+        /**
+         * Finds the darkest pixel in the tile
+         * @param pixels the pixel data to search
+         * @param dst will be set to the x/y coordinates of the darkest pixel
+         * @return the average luminance of the tile, or 255 if the tile contains no plottable pixels
+         */
+        public float updateDarkestPixel(IPixelData pixels, int[] dst){
+            long luminanceSum = 0;
+            int pixelCount = 0;
+            int darkest = Integer.MAX_VALUE;
+
+            for(int px = x; px < x + width; px++){
+                for(int py = y; py < y + height; py++){
+                    if(mask != null && !mask.contains(px, py)){
+                        continue;
+                    }
+                    int luminance = pixels.getLuminance(px, py);
+                    luminanceSum += luminance;
+                    pixelCount++;
+                    if(luminance < darkest){
+                        darkest = luminance;
+                        dst[0] = px;
+                        dst[1] = py;
+                    }
+                }
+            }
+            return pixelCount == 0 ? 255 : (float) luminanceSum / pixelCount;
+        }
+    }
+
+    /**
+     * The {@link PlottingTools} used by each worker, geometries are collected by the tile rather than added to the drawing so they can be added in order by the host.
+     */
+    public static class TilePlottingTools extends PlottingTools {
+
+        public final PlottingTools hostTools;
+        private Tile tile;
+
+        public TilePlottingTools(PlottingTools hostTools){
+            super(hostTools.drawing, hostTools.currentGroup);
+            this.hostTools = hostTools;
+            this.pfmTask = hostTools.pfmTask;
+            this.softClip = hostTools.softClip;
+            this.softClipFastMask = hostTools.getSoftClipPixelMask();
+            this.plottingTransform = hostTools.plottingTransform;
+            this.disablePlotting = hostTools.disablePlotting;
+        }
+
+        public void setTile(Tile tile){
+            this.tile = tile;
+        }
+
+        @Override
+        public Shape getSoftClipPixelMask() {
+            return tile != null ? tile : softClipFastMask;
+        }
+
+        @Override
+        public boolean withinPlottableArea(int x, int y) {
+            return (tile == null || tile.contains(x, y)) && super.withinPlottableArea(x, y);
+        }
+
+        @Override
+        public void addGeometry(IGeometry geometry) {
+            if(tile != null && !disablePlotting){
+                tile.geometries.add(geometry);
+            }
+        }
+
+        @Override
+        public IGeometry getLastGeometry() {
+            return tile == null || tile.geometries.isEmpty() ? null : tile.geometries.get(tile.geometries.size()-1);
+        }
+
+        @Override
+        public void reRender(EnumRendererType rendererType) {
+            //NOP - the host is responsible for re-rendering
+        }
+
+        @Override
+        public void destroy() {
+            tile = null;
+            super.destroy();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package drawingbot.pfm.helpers;
 
 import drawingbot.api.IPixelData;
+import drawingbot.image.PixelDataARGBY;
+import drawingbot.image.RawData;
 import drawingbot.plotting.PlottingTools;
 
 import java.awt.*;
@@ -14,10 +16,12 @@ public class SimpleLineSampler {
     public PlottingTools tools;
 
     private final LuminanceTestLine luminanceTest = new LuminanceTestLine();
+    private final BresenhamLineTable lineTable = new BresenhamLineTable();
     private final BresenhamHelper.IPixelSetter forEndPoints = this::forEndPoint;
 
     //internal only
     private IPixelData pixels;
+    private RawData luminance;
     private int startX;
     private int startY;
     private boolean safeValues;
@@ -41,6 +45,7 @@ public class SimpleLineSampler {
 
     public void setupSampler(IPixelData pixels, int startX, int startY, float lastAngle, boolean safe){
         this.pixels = pixels;
+        this.luminance = pixels instanceof PixelDataARGBY ? pixels.getRawLuminanceData() : null;
         this.startX = startX;
         this.startY = startY;
         this.lastAngle = lastAngle;
@@ -87,6 +92,11 @@ public class SimpleLineSampler {
             luminanceTest.luminanceSum+=1;
         }
 
-        tools.bresenham.plotLine(startX, startY, endX, endY, (xT, yT) -> luminanceTest.addSample(pixels, xT, yT));
+        if(tools.bresenham.clippingShape == null && tools.bresenham.clippingGeometry == null){
+            // Fast path: sample the precomputed line directly, the offsets are identical to those of plotLine
+            luminanceTest.addLineSamples(pixels, luminance, startX, startY, lineTable.getLineOffsets(endX - startX, endY - startY));
+        }else{
+            tools.bresenham.plotLine(startX, startY, endX, endY, (xT, yT) -> luminanceTest.addSample(pixels, xT, yT));
+        }
     }
 }
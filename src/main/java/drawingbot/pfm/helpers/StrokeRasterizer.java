@@ -0,0 +1,170 @@
+package drawingbot.pfm.helpers;
+
+import java.awt.*;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+
+/**
+ * Rasterizes anti-aliased strokes with round caps & joins, without drawing them to an intermediate image.
+ * <br>
+ * The shape is flattened into line segments and the coverage of each pixel is found from its distance to the nearest segment, pixels are only passed to the {@link ICoverageSetter} once per stroke, so overlapping segments aren't blended twice.
+ * Pixel centres are at integer coordinates, matching the geometries created from {@link BresenhamHelper} pixel coordinates.
+ */
+public class StrokeRasterizer {
+
+    public static final double FLATNESS = 0.25;
+
+    public interface ICoverageSetter {
+
+        /**
+         * @param coverage the coverage of the pixel from 1 - 255
+         */
+        void setCoverage(int x, int y, int coverage);
+
+    }
+
+    private float[] segments = new float[64];
+    private int segmentCount;
+    private final float[] coords = new float[6];
+
+    //the max coverage of each pixel covered by the current stroke, and the indices of the covered pixels
+    private byte[] coverage = new byte[0];
+    private int[] covered = new int[256];
+    private int coveredCount;
+    private int width, height;
+
+    public void rasterizeStroke(Shape shape, float lineWidth, int width, int height, ICoverageSetter setter){
+        lineWidth = Math.abs(lineWidth);
+        if(lineWidth == 0){
+            return;
+        }
+        setSize(width, height);
+        flatten(shape);
+
+        double halfWidth = lineWidth / 2D;
+        double maxCoverage = Math.min(1, lineWidth);
+        for(int i = 0; i < segmentCount; i++){
+            int index = i * 4;
+            rasterizeSegment(segments[index], segments[index + 1], segments[index + 2], segments[index + 3], halfWidth, maxCoverage);
+        }
+
+        for(int i = 0; i < coveredCount; i++){
+            int pixel = covered[i];
+            int value = coverage[pixel] & 0xFF;
+            coverage[pixel] = 0;
+            setter.setCoverage(pixel % width, pixel / width, value);
+        }
+        coveredCount = 0;
+    }
+
+    private void setSize(int width, int height){
+        if(this.width != width || this.height != height || coverage.length != width * height){
+            this.width = width;
+            this.height = height;
+            this.coverage = new byte[width * height];
+        }
+    }
+
+    private void flatten(Shape shape){
+        segmentCount = 0;
+        float moveX = 0, moveY = 0, lastX = 0, lastY = 0;
+        boolean isolatedPoint = false;
+        PathIterator iterator = shape.getPathIterator(null, FLATNESS);
+        while(!iterator.isDone()){
+            switch (iterator.currentSegment(coords)) {
+                case PathIterator.SEG_MOVETO -> {
+                    if(isolatedPoint){
+                        addSegment(lastX, lastY, lastX, lastY);
+                    }
+                    moveX = lastX = coords[0];
+                    moveY = lastY = coords[1];
+                    isolatedPoint = true;
+                }
+                case PathIterator.SEG_LINETO -> {
+                    addSegment(lastX, lastY, coords[0], coords[1]);
+                    lastX = coords[0];
+                    lastY = coords[1];
+                    isolatedPoint = false;
+                }
+                case PathIterator.SEG_CLOSE -> {
+                    addSegment(lastX, lastY, moveX, moveY);
+                    lastX = moveX;
+                    lastY = moveY;
+                    isolatedPoint = false;
+                }
+            }
+            iterator.next();
+        }
+        if(isolatedPoint){
+            //a single point is drawn as a dot, like the round caps of a zero length line
+            addSegment(lastX, lastY, lastX, lastY);
+        }
+    }
+
+    private void addSegment(float x1, float y1, float x2, float y2){
+        if((segmentCount + 1) * 4 > segments.length){
+            segments = Arrays.copyOf(segments, segments.length * 2);
+        }
+        int index = segmentCount * 4;
+        segments[index] = x1;
+        segments[index + 1] = y1;
+        segments[index + 2] = x2;
+        segments[index + 3] = y2;
+        segmentCount++;
+    }
+
+    private void rasterizeSegment(double ax, double ay, double bx, double by, double halfWidth, double maxCoverage){
+        // pixels within half a pixel of the edge of the stroke are partially covered
+        double reach = halfWidth + 0.5;
+        double dx = bx - ax, dy = by - ay;
+        double lengthSq = dx * dx + dy * dy;
+
+        int minY = Math.max(0, (int) Math.floor(Math.min(ay, by) - reach));
+        int maxY = Math.min(height - 1, (int) Math.ceil(Math.max(ay, by) + reach));
+
+        for(int y = minY; y <= maxY; y++){
+            // find the part of the segment within reach of this row, to limit the pixels tested
+            double tMin = 0, tMax = 1;
+            if(Math.abs(dy) > 1e-9){
+                double t0 = (y - reach - ay) / dy, t1 = (y + reach - ay) / dy;
+                tMin = Math.max(0, Math.min(t0, t1));
+                tMax = Math.min(1, Math.max(t0, t1));
+                if(tMin > tMax){
+                    continue;
+                }
+            }
+            double x0 = ax + tMin * dx, x1 = ax + tMax * dx;
+            int minX = Math.max(0, (int) Math.floor(Math.min(x0, x1) - reach));
+            int maxX = Math.min(width - 1, (int) Math.ceil(Math.max(x0, x1) + reach));
+
+            int rowOffset = y * width;
+            double py = y - ay;
+            for(int x = minX; x <= maxX; x++){
+                double px = x - ax;
+                double t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSq));
+                double distX = px - t * dx, distY = py - t * dy;
+                double distance = Math.sqrt(distX * distX + distY * distY);
+
+                double pixelCoverage = Math.min(reach - distance, maxCoverage);
+                if(pixelCoverage <= 0){
+                    continue;
+                }
+                int value = Math.min(255, (int) (pixelCoverage * 255 + 0.5));
+                if(value == 0){
+                    continue;
+                }
+                int pixel = rowOffset + x;
+                int previous = coverage[pixel] & 0xFF;
+                if(previous == 0){
+                    if(coveredCount == covered.length){
+                        covered = Arrays.copyOf(covered, covered.length * 2);
+                    }
+                    covered[coveredCount++] = pixel;
+                }
+                if(value > previous){
+                    coverage[pixel] = (byte) value;
+                }
+            }
+        }
+    }
+}
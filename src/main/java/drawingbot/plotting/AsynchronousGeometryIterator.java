@@ -4,6 +4,7 @@ import drawingbot.geom.shapes.IGeometry;
 
 /**
  * An implementation of the Geometry Iterator which can be used to perform Asynchronous rendering as the drawing is being generated
+ * The drawing's geometries are stored in a {@link GeometryLog} or a {@link GeometryStore}, so they can be read while the PFM is still adding geometries
  */
 public class AsynchronousGeometryIterator extends AbstractGeometryIterator {
 
@@ -13,6 +13,7 @@ public class DistributionSet {
     public final List<ObservableDrawingPen> globalRenderOrder;
     public final List<PlottedGroup> plottedGroups;
     private final List<IGeometry> geometries;
+    private boolean reassignedPens = false;
 
     public DistributionSet(PlottedDrawing plottedDrawing, List<PlottedGroup> plottedGroups){
         this.plottedDrawing = plottedDrawing;
@@ -41,4 +42,21 @@ public class DistributionSet {
         return geometries;
     }
 
+    /**
+     * Sets the geometry's pen, distributions should use this rather than setting it directly so the drawing can tell if any geometries were reassigned
+     */
+    public void setPenIndex(IGeometry geometry, int penIndex){
+        if(geometry.getPenIndex() != penIndex){
+            geometry.setPenIndex(penIndex);
+            reassignedPens = true;
+        }
+    }
+
+    /**
+     * @return true if the distribution assigned any geometries to a different pen
+     */
+    public boolean hasReassignedPens(){
+        return reassignedPens;
+    }
+
 }
\ No newline at end of file
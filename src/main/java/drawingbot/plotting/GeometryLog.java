@@ -0,0 +1,105 @@
+package drawingbot.plotting;
+
+import drawingbot.geom.shapes.IGeometry;
+
+import java.util.*;
+
+/**
+ * An append only list of geometries, used for the {@link PlottedDrawing#geometries} while the drawing is being generated.
+ * <br>
+ * The geometries are stored in fixed size segments which are never moved or resized, so one thread can add geometries while any number of other threads read the geometries which have already been added, without locking or copying the list.
+ * A geometry is safely published to the readers once {@link #size()} includes it, see {@link AsynchronousGeometryIterator}.
+ * <br>
+ * Iterators only return the geometries which had been added when they were created and don't fail when geometries are added during iteration.
+ * Clearing the list while it's being read isn't supported.
+ */
+public class GeometryLog extends AbstractList<IGeometry> implements RandomAccess {
+
+    public static final int SEGMENT_BITS = 12;
+    public static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    public static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private volatile IGeometry[][] segments = new IGeometry[0][];
+    private volatile int size = 0;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public IGeometry get(int index) {
+        // the size must be read before the segments, the segments are always published before the size
+        checkIndex(index);
+        return segments[index >>> SEGMENT_BITS][index & SEGMENT_MASK];
+    }
+
+    @Override
+    public boolean add(IGeometry geometry) {
+        int index = size;
+        int segmentIndex = index >>> SEGMENT_BITS;
+        IGeometry[][] segments = this.segments;
+        if(segmentIndex == segments.length){
+            segments = Arrays.copyOf(segments, segments.length + 1);
+            segments[segmentIndex] = new IGeometry[SEGMENT_SIZE];
+            this.segments = segments;
+        }
+        segments[segmentIndex][index & SEGMENT_MASK] = geometry;
+        size = index + 1;
+        return true;
+    }
+
+    @Override
+    public IGeometry set(int index, IGeometry geometry) {
+        checkIndex(index);
+        IGeometry[] segment = segments[index >>> SEGMENT_BITS];
+        IGeometry previous = segment[index & SEGMENT_MASK];
+        segment[index & SEGMENT_MASK] = geometry;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        segments = new IGeometry[0][];
+    }
+
+    @Override
+    public Iterator<IGeometry> iterator() {
+        return new SnapshotIterator(this);
+    }
+
+    private void checkIndex(int index){
+        if(index < 0 || index >= size){
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Iterates the geometries in an append only list which had been added when the iterator was created, used by the {@link GeometryLog} and the {@link GeometryStore}
+     */
+    public static class SnapshotIterator implements Iterator<IGeometry> {
+
+        private final List<IGeometry> list;
+        private final int size;
+        private int index = 0;
+
+        public SnapshotIterator(List<IGeometry> list){
+            this.list = list;
+            this.size = list.size();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        public IGeometry next() {
+            if(index >= size){
+                throw new NoSuchElementException();
+            }
+            return list.get(index++);
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package drawingbot.plotting;
+
+import drawingbot.geom.GeometryUtils;
+import drawingbot.geom.shapes.GLine;
+import drawingbot.geom.shapes.GPath;
+import drawingbot.geom.shapes.ILine;
+import drawingbot.geom.shapes.IGeometry;
+import drawingbot.pfm.helpers.BresenhamHelper;
+import javafx.scene.canvas.GraphicsContext;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateXY;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.RandomAccess;
+
+/**
+ * A compact list of geometries, which stores {@link GLine}s as columns of primitive coordinates and attributes rather than as objects.
+ * <br>
+ * Lines added to the store are copied and {@link #get(int)} returns a lightweight view of the stored line, other geometry types are stored as they are.
+ * The views aren't {@link GLine}s, code which handles lines specially should check for an {@link ILine} instead.
+ * Changes made to the attributes / coordinates of a view are written back to the store, views of the same index are equal to each other.
+ * <br>
+ * The store is append only, it's safe for one thread to add geometries while others read the geometries which have already been added, iterators behave the same as the {@link GeometryLog}'s.
+ */
+public class GeometryStore extends AbstractList<IGeometry> implements RandomAccess {
+
+    public static final int CHUNK_BITS = 12;
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    public static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile Chunk[] chunks = new Chunk[0];
+    private volatile int size = 0;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public IGeometry get(int index) {
+        checkIndex(index);
+        Chunk chunk = chunks[index >>> CHUNK_BITS];
+        int offset = index & CHUNK_MASK;
+        if(chunk.objects != null && chunk.objects[offset] != null){
+            return chunk.objects[offset];
+        }
+        return new StoredLine(this, index);
+    }
+
+    @Override
+    public boolean add(IGeometry geometry) {
+        int index = size;
+        int chunkIndex = index >>> CHUNK_BITS;
+        if(chunkIndex == chunks.length){
+            Chunk[] newChunks = Arrays.copyOf(chunks, chunks.length + 1);
+            newChunks[chunkIndex] = new Chunk();
+            chunks = newChunks;
+        }
+        write(chunks[chunkIndex], index & CHUNK_MASK, geometry);
+        size = index + 1;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public IGeometry set(int index, IGeometry geometry) {
+        IGeometry previous = get(index);
+        if(previous instanceof StoredLine line){
+            previous = line.copyGeometry();
+        }
+        write(chunks[index >>> CHUNK_BITS], index & CHUNK_MASK, geometry);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        chunks = new Chunk[0];
+        modCount++;
+    }
+
+    @Override
+    public Iterator<IGeometry> iterator() {
+        return new GeometryLog.SnapshotIterator(this);
+    }
+
+    /**
+     * @return a list of geometries from this store, which only stores their indices
+     */
+    public IndexList createIndexList(){
+        return new IndexList(this);
+    }
+
+    /**
+     * @return the index of the geometry in this store, or -1 if it isn't stored here
+     */
+    public int indexOfStored(IGeometry geometry){
+        if(geometry instanceof StoredLine line){
+            return line.store == this ? line.index : -1;
+        }
+        int index = geometry.getGeometryIndex();
+        if(index >= 0 && index < size && get(index) == geometry){
+            return index;
+        }
+        return -1;
+    }
+
+    private void write(Chunk chunk, int offset, IGeometry geometry){
+        if(geometry instanceof StoredLine line){
+            writeLine(chunk, offset, geometry, line.getX1(), line.getY1(), line.getX2(), line.getY2());
+        }else if(geometry.getClass() == GLine.class){
+            GLine line = (GLine) geometry;
+            writeLine(chunk, offset, geometry, line.getX1(), line.getY1(), line.getX2(), line.getY2());
+        }else{
+            if(chunk.objects == null){
+                chunk.objects = new IGeometry[CHUNK_SIZE];
+            }
+            chunk.objects[offset] = geometry;
+        }
+    }
+
+    private void writeLine(Chunk chunk, int offset, IGeometry geometry, float x1, float y1, float x2, float y2){
+        int coordIndex = offset << 2;
+        chunk.coords[coordIndex] = x1;
+        chunk.coords[coordIndex + 1] = y1;
+        chunk.coords[coordIndex + 2] = x2;
+        chunk.coords[coordIndex + 3] = y2;
+        chunk.penIndex[offset] = geometry.getPenIndex();
+        chunk.pfmPenIndex[offset] = geometry.getPFMPenIndex();
+        chunk.sampledRGBA[offset] = geometry.getSampledRGBA();
+        chunk.groupID[offset] = geometry.getGroupID();
+        chunk.fillType[offset] = geometry.getFillType();
+        if(chunk.objects != null){
+            chunk.objects[offset] = null;
+        }
+    }
+
+    private void checkIndex(int index){
+        if(index < 0 || index >= size){
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private Chunk chunk(int index){
+        return chunks[index >>> CHUNK_BITS];
+    }
+
+    /**
+     * A fixed size block of the store, the object array is only created if the block contains geometries which aren't lines
+     */
+    private static class Chunk {
+
+        private final float[] coords = new float[CHUNK_SIZE * 4];
+        private final int[] penIndex = new int[CHUNK_SIZE];
+        private final int[] pfmPenIndex = new int[CHUNK_SIZE];
+        private final int[] sampledRGBA = new int[CHUNK_SIZE];
+        private final int[] groupID = new int[CHUNK_SIZE];
+        private final int[] fillType = new int[CHUNK_SIZE];
+        private IGeometry[] objects;
+
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * A view of a line in a {@link GeometryStore}, the geometry index is fixed to the lines position in the store
+     */
+    public static class StoredLine implements ILine {
+
+        private final GeometryStore store;
+        private final int index;
+
+        private StoredLine(GeometryStore store, int index){
+            this.store = store;
+            this.index = index;
+        }
+
+        private float coord(int i){
+            return store.chunk(index).coords[((index & CHUNK_MASK) << 2) + i];
+        }
+
+        private void setLine(float x1, float y1, float x2, float y2){
+            float[] coords = store.chunk(index).coords;
+            int coordIndex = (index & CHUNK_MASK) << 2;
+            coords[coordIndex] = x1;
+            coords[coordIndex + 1] = y1;
+            coords[coordIndex + 2] = x2;
+            coords[coordIndex + 3] = y2;
+        }
+
+        @Override
+        public float getX1() {
+            return coord(0);
+        }
+
+        @Override
+        public float getY1() {
+            return coord(1);
+        }
+
+        @Override
+        public float getX2() {
+            return coord(2);
+        }
+
+        @Override
+        public float getY2() {
+            return coord(3);
+        }
+
+        @Override
+        public void addToPath(boolean addMove, GPath path) {
+            if(addMove){
+                path.moveTo(getX1(), getY1());
+            }
+            path.lineTo(getX2(), getY2());
+        }
+
+        @Override
+        public int getVertexCount() {
+            return 2;
+        }
+
+        @Override
+        public Shape getAWTShape() {
+            return new Line2D.Float(getX1(), getY1(), getX2(), getY2());
+        }
+
+        @Override
+        public int getGeometryIndex() {
+            return index;
+        }
+
+        @Override
+        public int getPenIndex() {
+            return store.chunk(index).penIndex[index & CHUNK_MASK];
+        }
+
+        @Override
+        public int getPFMPenIndex() {
+            return store.chunk(index).pfmPenIndex[index & CHUNK_MASK];
+        }
+
+        @Override
+        public int getSampledRGBA() {
+            return store.chunk(index).sampledRGBA[index & CHUNK_MASK];
+        }
+
+        @Override
+        public int getFillType() {
+            return store.chunk(index).fillType[index & CHUNK_MASK];
+        }
+
+        @Override
+        public int getGroupID() {
+            return store.chunk(index).groupID[index & CHUNK_MASK];
+        }
+
+        /**
+         * The index of a stored line is its position in the store, so it can't be changed
+         */
+        @Override
+        public void setGeometryIndex(int index) {
+            //NOP
+        }
+
+        @Override
+        public void setPenIndex(int index) {
+            store.chunk(this.index).penIndex[this.index & CHUNK_MASK] = index;
+        }
+
+        @Override
+        public void setPFMPenIndex(int index) {
+            store.chunk(this.index).pfmPenIndex[this.index & CHUNK_MASK] = index;
+        }
+
+        @Override
+        public void setSampledRGBA(int rgba) {
+            store.chunk(index).sampledRGBA[index & CHUNK_MASK] = rgba;
+        }
+
+        @Override
+        public void setGroupID(int groupID) {
+            store.chunk(index).groupID[index & CHUNK_MASK] = groupID;
+        }
+
+        @Override
+        public void setFillType(int fillType) {
+            store.chunk(index).fillType[index & CHUNK_MASK] = fillType;
+        }
+
+        @Override
+        public void renderFX(GraphicsContext graphics) {
+            graphics.strokeLine(getX1(), getY1(), getX2(), getY2());
+        }
+
+        @Override
+        public void renderAWT(Graphics2D graphics) {
+            graphics.drawLine((int)getX1(), (int)getY1(), (int)getX2(), (int)getY2());
+        }
+
+        @Override
+        public void renderBresenham(BresenhamHelper helper, BresenhamHelper.IPixelSetter setter) {
+            helper.plotLine((int)getX1(), (int)getY1(), (int)getX2(), (int)getY2(), setter);
+        }
+
+        @Override
+        public IGeometry transformGeometry(AffineTransform transform) {
+            float[] coords = new float[]{getX1(), getY1(), getX2(), getY2()};
+            transform.transform(coords, 0, coords, 0, 2);
+            setLine(coords[0], coords[1], coords[2], coords[3]);
+            return this;
+        }
+
+        @Override
+        public String serializeData() {
+            return GeometryUtils.serializeCoords(new float[]{getX1(), getY1(), getX2(), getY2()});
+        }
+
+        @Override
+        public void deserializeData(String geometryData) {
+            float[] coords = GeometryUtils.deserializeCoords(geometryData);
+            setLine(coords[0], coords[1], coords[2], coords[3]);
+        }
+
+        @Override
+        public Coordinate getOriginCoordinate() {
+            return new CoordinateXY(getX1(), getY1());
+        }
+
+        @Override
+        public Coordinate getEndCoordinate() {
+            return new CoordinateXY(getX2(), getY2());
+        }
+
+        /**
+         * @return a standalone {@link GLine} with the same data
+         */
+        @Override
+        public IGeometry copyGeometry() {
+            return GeometryUtils.copyGeometryData(new GLine(getX1(), getY1(), getX2(), getY2()), this);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof StoredLine line && line.store == store && line.index == index;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(store) * 31 + index;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * A list of geometries from a {@link GeometryStore}, which only stores their indices in the store, used for the {@link PlottedGroup}s geometry lists
+     * <br>
+     * Geometries which aren't already in the store, e.g. the results of an operation on the stored geometries, are appended to the store when they're added to the list.
+     * The list then returns the stored version of the geometry, lines are copied into the store so changes made to the original line afterwards won't be seen by the list.
+     * Appending to the store follows the store's rules, only one thread may add geometries to the store or to any of its lists at a time.
+     */
+    public static class IndexList extends AbstractList<IGeometry> implements RandomAccess {
+
+        private final GeometryStore store;
+        private int[] indices = new int[16];
+        private int size = 0;
+
+        public IndexList(GeometryStore store){
+            this.store = store;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public IGeometry get(int index) {
+            checkIndex(index);
+            return store.get(indices[index]);
+        }
+
+        @Override
+        public boolean add(IGeometry geometry) {
+            int storeIndex = getStoreIndex(geometry);
+            if(size == indices.length){
+                indices = Arrays.copyOf(indices, indices.length + (indices.length >> 1));
+            }
+            indices[size++] = storeIndex;
+            modCount++;
+            return true;
+        }
+
+        @Override
+        public IGeometry set(int index, IGeometry geometry) {
+            checkIndex(index);
+            IGeometry previous = store.get(indices[index]);
+            indices[index] = getStoreIndex(geometry);
+            return previous;
+        }
+
+        @Override
+        public IGeometry remove(int index) {
+            checkIndex(index);
+            IGeometry previous = store.get(indices[index]);
+            System.arraycopy(indices, index + 1, indices, index, size - index - 1);
+            size--;
+            modCount++;
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            indices = new int[16];
+            size = 0;
+            modCount++;
+        }
+
+        /**
+         * @return the index of the geometry in the store, appending the geometry to the store if it isn't already stored
+         */
+        private int getStoreIndex(IGeometry geometry){
+            int storeIndex = store.indexOfStored(geometry);
+            if(storeIndex == -1){
+                storeIndex = store.size();
+                store.add(geometry);
+            }
+            return storeIndex;
+        }
+
+        private void checkIndex(int index){
+            if(index < 0 || index >= size){
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+        }
+    }
+}
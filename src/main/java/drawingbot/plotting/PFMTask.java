@@ -18,9 +18,6 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
 public class PFMTask extends DBTask<PlottedDrawing> implements ISpecialListenable<PFMTask.Listener> {
@@ -47,8 +44,6 @@ public class PFMTask extends DBTask<PlottedDrawing> implements ISpecialListenabl
     public boolean skipReRender = false;
 
     // SPECIAL \\
-    public boolean useLowQuality = false;
-    public int parallelPlots = 3;
     public boolean enablePlottingResolution = true;
 
     /**
@@ -140,6 +135,11 @@ public class PFMTask extends DBTask<PlottedDrawing> implements ISpecialListenabl
                 //PFMs which utilise images/vectors as inputs should initialize their images here once the IPlottingTools have been setup but before the final setup of the PFM
                 preProcessImages();
 
+                //pre-processing stops early if the task is cancelled, so the images may not exist
+                if(isCancelled() || Thread.currentThread().isInterrupted()){
+                    return false;
+                }
+
                 tools.currentGroup.setPFMFactory(pfmFactory);
 
                 //Finally we call the setup method on the PFM, now the IPlottingTools have been setup and the images generated
@@ -150,37 +150,8 @@ public class PFMTask extends DBTask<PlottedDrawing> implements ISpecialListenabl
                 sendListenerEvent(l -> l.postSetupPFM(this, pfm));
             }
             case DO_PROCESS -> {
-                if(!useLowQuality){
-                    //Run the PFM, this method will only return once all processing has been completed
-                    pfm.run();
-                }else{
-                    /*
-                     * Experimental Feature: to draw with multiple sketch PFMs at the same time, currently broken due to PFMs not being thread-safe
-                     * Would need to be re-implemented directly inside the SketchPFM
-                     */
-                    final CountDownLatch latch = new CountDownLatch(parallelPlots);
-
-                    ExecutorService newService = Executors.newFixedThreadPool(parallelPlots, r -> {
-                        Thread t = new Thread(r, "DrawingBotV3 - Parallel Plotting Service v2");
-                        t.setDaemon(true);
-                        return t;
-                    });
-
-                    for(int i = 0; i < parallelPlots; i ++){
-                        newService.submit(() -> {
-                            pfm.run();
-                            latch.countDown();
-                        });
-                    }
-
-                    try {
-                        latch.await();
-                    } catch (InterruptedException e) {
-                        return false;
-                    } finally {
-                        newService.shutdown();
-                    }
-                }
+                //Run the PFM, this method will only return once all processing has been completed, Sketch PFMs may use multiple threads see ParallelSketchRunner
+                pfm.run();
             }
             case POST_PROCESSING -> {
                 pfm.postProcess();
@@ -482,6 +453,13 @@ public class PFMTask extends DBTask<PlottedDrawing> implements ISpecialListenabl
         sendListenerEvent(listener -> listener.onSubTaskRemoved(this, task));
     }
 
+    /**
+     * Runs all of the sub tasks added to this task and waits for them to finish, independent sub tasks are run at the same time see {@link SubTaskScheduler}
+     */
+    public void runSubTasks(){
+        SubTaskScheduler.runSubTasks(this);
+    }
+
     public void addSubDrawing(PlottedDrawing drawing){
         if(hostTask != null){
             hostTask.addSubDrawing(drawing);
@@ -4,8 +4,10 @@ import drawingbot.DrawingBotV3;
 import drawingbot.api.IPFMImage;
 import drawingbot.api.IPixelData;
 import drawingbot.files.json.projects.DBTaskContext;
+import drawingbot.image.FusedPointFilter;
 import drawingbot.image.ImageFilterSettings;
 import drawingbot.image.ImageTools;
+import drawingbot.image.TiledImageFilter;
 import drawingbot.image.format.ImageData;
 import drawingbot.javafx.GenericSetting;
 import drawingbot.javafx.observables.ObservableDrawingSet;
@@ -16,9 +18,9 @@ import org.imgscalr.Scalr;
 import org.jetbrains.annotations.Nullable;
 
 import java.awt.image.BufferedImage;
-import java.awt.image.BufferedImageOp;
 import java.io.File;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class PFMTaskImage extends PFMTask {
 
@@ -61,13 +63,25 @@ public class PFMTaskImage extends PFMTask {
             imgPlotting = imageData.createCroppedImage(drawing.getCanvas());
 
             DrawingBotV3.logger.fine("Applying Filters");
-            for(ObservableImageFilter filter : imgFilterSettings.currentFilters.get()) {
+            List<ObservableImageFilter> filters = imgFilterSettings.currentFilters.get();
+            for(int i = 0; i < filters.size(); i++) {
+                ObservableImageFilter filter = filters.get(i);
                 if (filter.enable.get()) {
-                    BufferedImageOp instance = filter.filterFactory.instance();
-                    filter.filterSettings.forEach(setting -> setting.applySetting(instance));
-
+                    // consecutive point-wise filters are applied in one pass
+                    int runEnd = FusedPointFilter.getRunEnd(filters, i);
+                    if(runEnd - i > 1){
+                        List<ObservableImageFilter> fused = FusedPointFilter.getEnabledFilters(filters, i, runEnd);
+                        updateMessage("Pre-Processing - " + fused.stream().map(f -> f.name.getValue()).collect(Collectors.joining(", ")));
+                        imgPlotting = new FusedPointFilter(fused).filter(imgPlotting, null);
+                        i = runEnd - 1;
+                        continue;
+                    }
                     updateMessage("Pre-Processing - " + filter.name.getValue());
-                    imgPlotting = instance.filter(imgPlotting, null);
+                    imgPlotting = TiledImageFilter.filterOrCancel(filter, imgPlotting);
+                    if(imgPlotting == null){
+                        //the task was cancelled, it will stop once pre-processing returns
+                        return;
+                    }
                 }
             }
         }
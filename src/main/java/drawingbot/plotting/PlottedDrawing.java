@@ -9,6 +9,7 @@ import drawingbot.geom.shapes.IGeometry;
 import drawingbot.image.ImageTools;
 import drawingbot.javafx.observables.ObservableDrawingPen;
 import drawingbot.javafx.observables.ObservableDrawingSet;
+import drawingbot.javafx.preferences.DBPreferences;
 import drawingbot.pfm.PFMFactory;
 import drawingbot.plotting.canvas.SimpleCanvas;
 import drawingbot.registry.Register;
@@ -23,24 +24,34 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 
 public class PlottedDrawing {
 
+    private static final AtomicLong instanceCounter = new AtomicLong(0);
+
     public UUID uuid;
+    /**unique to each instance, unlike the {@link #uuid} which is restored when a drawing is loaded, allows caches to identify the drawing without holding a reference to it*/
+    public final long instanceID = instanceCounter.incrementAndGet();
     public ICanvas canvas;
     public DrawingSets drawingSets;
 
     public final List<IGeometry> geometries;
+    @Nullable
+    public final GeometryStore geometryStore;
     public final Map<Integer, PlottedGroup> groups;
     public MetadataMap metadata;
 
-    public long vertexCount;
+    public volatile long vertexCount;
     public int displayedShapeMin = -1;
     public int displayedShapeMax = -1;
     public long displayedVertexCount = -1;
     public boolean ignoreWeightedDistribution = false; //used for disabling distributions within sub tasks, will use the pfms default
 
+    /**incremented when the pen distribution reassigns any geometries, the geometries pen indices are changed in place so caches of the drawing must include the revision, see {@link #getDistributionRevision()}*/
+    private volatile int distributionRevision = 0;
+
     private Map<ObservableDrawingPen, Integer> perPenGeometryStats;
 
     public PlottedDrawing(ICanvas canvas, DrawingSets drawingSets){
@@ -51,7 +62,8 @@ public class PlottedDrawing {
         this.uuid = UUID.randomUUID();
         this.canvas = copyCanvas ? new SimpleCanvas(canvas) : canvas;
         this.drawingSets = drawingSets;
-        this.geometries = new ArrayList<>();
+        this.geometryStore = DBPreferences.INSTANCE.compactGeometryStorage.get() ? new GeometryStore() : null;
+        this.geometries = geometryStore != null ? geometryStore : new GeometryLog();
         this.groups = new HashMap<>();
         this.metadata = new MetadataMap(new HashMap<>());
     }
@@ -136,6 +148,13 @@ public class PlottedDrawing {
         return vertexCount;
     }
 
+    /**
+     * @return the revision of the pen distribution, which changes when {@link #updatePenDistribution()} reassigns the geometries pens without changing the number of geometries
+     */
+    public int getDistributionRevision(){
+        return distributionRevision;
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////////////////
 
@@ -147,6 +166,11 @@ public class PlottedDrawing {
         geometries.add(geometry);
         vertexCount += geometry.getVertexCount();
 
+        if(geometryStore != null){
+            //lines are copied into the store, so the groups must reference the stored version
+            geometry = geometryStore.get(geometries.size() - 1);
+        }
+
         addGeometryToGroups(geometry);
     }
 
@@ -187,6 +211,9 @@ public class PlottedDrawing {
 
     public PlottedGroup addPlottedGroup(PlottedGroup plottedGroup){
         plottedGroup.parent = this;
+        if(geometryStore != null && plottedGroup.geometries.isEmpty()){
+            plottedGroup.geometries = createGeometryList();
+        }
         groups.put(plottedGroup.groupID, plottedGroup);
         return plottedGroup;
     }
@@ -250,6 +277,13 @@ public class PlottedDrawing {
         drawing.groups.values().forEach(g -> mergePlottedGroup(g, simplify, forExport, consumer));
     }
 
+    /**
+     * @return a new list for geometries from this drawing, which only stores their indices if the drawing is using a {@link GeometryStore}
+     */
+    public List<IGeometry> createGeometryList(){
+        return geometryStore != null ? geometryStore.createIndexList() : new ArrayList<>();
+    }
+
     public void addGeometryToGroups(IGeometry geometry){
         getPlottedGroup(geometry.getGroupID()).addGeometry(geometry);
     }
@@ -283,6 +317,7 @@ public class PlottedDrawing {
 
     public void updatePenDistribution(){
         if(!ignoreWeightedDistribution){
+            boolean reassigned = false;
             groups.values().forEach(g -> g.needsDistribution = true);
 
             for(PlottedGroup group : groups.values()){
@@ -299,7 +334,9 @@ public class PlottedDrawing {
                 }else{
                     distributionSet.add(group);
                 }
-                group.getActiveDistributionType().distribute.accept(new DistributionSet(this, distributionSet));
+                DistributionSet set = new DistributionSet(this, distributionSet);
+                group.getActiveDistributionType().distribute.accept(set);
+                reassigned |= set.hasReassignedPens();
                 distributionSet.forEach(g -> {
                     g.onDistributionChanged();
                     g.needsDistribution = false;
@@ -308,6 +345,11 @@ public class PlottedDrawing {
 
             //Force refresh the geometry stats
             updatePerPenGeometryStats(this);
+
+            //pen changes which don't reassign any geometries keep the same revision, so the pen layers which are still valid can be reused
+            if(reassigned){
+                distributionRevision++;
+            }
         }
     }
 
@@ -416,7 +458,7 @@ public class PlottedDrawing {
         AsynchronousGeometryIterator iterator = new AsynchronousGeometryIterator(drawing);
         while (iterator.hasNext()){
             IGeometry geometry = iterator.next();
-            groupGeometriesPerPen.get(iterator.currentGroup).computeIfAbsent(iterator.currentPen, (v) -> new ArrayList<>());
+            groupGeometriesPerPen.get(iterator.currentGroup).computeIfAbsent(iterator.currentPen, (v) -> drawing.createGeometryList());
             groupGeometriesPerPen.get(iterator.currentGroup).get(iterator.currentPen).add(geometry);
 
             if(IGeometryFilter.DEFAULT_VIEW_FILTER.filter(drawing, geometry, iterator.currentPen)){
@@ -485,10 +527,10 @@ public class PlottedDrawing {
                 for (; currentIndex < set.getGeometryList().size(); currentIndex++) {
                     IGeometry geometry = set.getGeometryList().get(currentIndex);
                     if(geometry.getGeometryIndex() >= displayMin && geometry.getGeometryIndex() <= displayMax) { //TODO MAKE THIS A FILTER THING!!
-                        geometry.setPenIndex(pen.getPenNumber());
+                        set.setPenIndex(geometry, pen.getPenNumber());
                         currentCount++;
                     }else{
-                        geometry.setPenIndex(-1);
+                        set.setPenIndex(geometry, -1);
                     }
                     if(currentCount >= geometriesPerPen && i != renderOrder.size()-1){ // if it's the last pen ignore the geometries per pen count;
                         continue order;
@@ -510,7 +552,7 @@ public class PlottedDrawing {
         Random rand = new Random(0);
 
         for(IGeometry geometry : set.getGeometryList()){
-            geometry.setPenIndex(getRandomIndexWeighted(rand, weights, totalWeight));
+            set.setPenIndex(geometry, getRandomIndexWeighted(rand, weights, totalWeight));
         }
     }
 
@@ -583,7 +625,7 @@ public class PlottedDrawing {
             while (currentIndex < squiggles.size()){
                 Squiggle squiggle = squiggles.get(currentIndex);
                 if(i==renderOrder.size()-1 || squiggle.getAverageLuminance() < currentLuminanceThreshold){
-                    squiggle.geometries.forEach(s -> s.setPenIndex(pen.getPenNumber()));
+                    squiggle.geometries.forEach(s -> set.setPenIndex(s, pen.getPenNumber()));
                     currentCount+=squiggle.geometries.size();
                     currentIndex++;
                 }else{
@@ -625,7 +667,7 @@ public class PlottedDrawing {
 
             for(int s = 0; i != renderOrder.size()-1 ? s < squigglesPerPen : !squiggles.isEmpty(); s++){
                 Squiggle squiggle = squiggles.remove(rand.nextInt(0, squiggles.size()));
-                squiggle.geometries.forEach(g -> g.setPenIndex(pen.getPenNumber()));
+                squiggle.geometries.forEach(g -> set.setPenIndex(g, pen.getPenNumber()));
             }
         }
     }
@@ -736,7 +778,7 @@ public class PlottedDrawing {
             for(IGeometry geometry : group.geometries){
                 int originalIndex = geometry.getPFMPenIndex();
                 int currentIndex = remapIndexMap.getOrDefault(originalIndex, originalIndex);
-                geometry.setPenIndex(currentIndex);
+                set.setPenIndex(geometry, currentIndex);
             }
         }
 
@@ -752,7 +794,7 @@ public class PlottedDrawing {
                 ObservableDrawingPen pen = group.drawingSet.pens.get(penNumber);
                 if (pen.isEnabled()) {
                     ///add all the geometries to the first enabled pen
-                    group.geometries.forEach(g -> g.setPenIndex(penNumber));
+                    group.geometries.forEach(g -> set.setPenIndex(g, penNumber));
                     return;
                 }
             }
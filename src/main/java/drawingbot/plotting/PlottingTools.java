@@ -4,7 +4,7 @@ import drawingbot.DrawingBotV3;
 import drawingbot.api.*;
 import drawingbot.files.json.projects.DBTaskContext;
 import drawingbot.files.json.projects.ObservableProject;
-import drawingbot.geom.GeometryClipping;
+import drawingbot.geom.GeometryClipper;
 import drawingbot.geom.shapes.*;
 import drawingbot.image.PixelDataMask;
 import drawingbot.javafx.observables.ObservableDrawingPen;
@@ -49,6 +49,7 @@ public class PlottingTools implements IPlottingTools {
 
     // CLIPPING \\
     public Shape clippingShape = null;
+    private GeometryClipper geometryClipper = null;
     public Shape softClip = null;
     public Shape softClipFastMask = null;
 
@@ -98,6 +99,19 @@ public class PlottingTools implements IPlottingTools {
         this.clippingShape = clippingShape;
     }
 
+    /**
+     * @return the clipper for the current clipping shape, prepared once per shape
+     */
+    public GeometryClipper getGeometryClipper() {
+        if(clippingShape == null){
+            return null;
+        }
+        if(geometryClipper == null || geometryClipper.shape != clippingShape){
+            geometryClipper = GeometryClipper.create(clippingShape);
+        }
+        return geometryClipper;
+    }
+
     public Shape getSoftClip() {
         return softClip;
     }
@@ -179,6 +193,7 @@ public class PlottingTools implements IPlottingTools {
         defaultColourTest = null;
         transform = null;
         clippingShape = null;
+        geometryClipper = null;
         softClip = null;
         softClipFastMask = null;
     }
@@ -368,8 +383,8 @@ public class PlottingTools implements IPlottingTools {
             geometry = geometry.transformGeometry(plottingTransform);
         }
 
-        if(clippingShape != null && GeometryClipping.shouldClip(clippingShape, geometry, false)){
-            List<IGeometry> geometries = GeometryClipping.clip(clippingShape, geometry, 0.5D, false);
+        if(clippingShape != null){
+            List<IGeometry> geometries = getGeometryClipper().clip(geometry, false);
             geometries.forEach(g -> {
                 if(hostTaskTransform != null){
                     g = g.transformGeometry(hostTaskTransform);
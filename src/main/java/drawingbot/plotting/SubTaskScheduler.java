@@ -0,0 +1,143 @@
+package drawingbot.plotting;
+
+import drawingbot.DrawingBotV3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+
+/**
+ * Runs the sub tasks of a {@link PFMTask} e.g. the channels of a CMYK colour separation, at the same time on a shared pool of worker threads.
+ * <br>
+ * The number of sub tasks running at once is limited by the number of processors and by an estimate of the memory each sub task requires for its {@link drawingbot.api.IPixelData}, so large images will fall back to fewer concurrent sub tasks rather than running out of memory.
+ * The sub drawings are still rendered in the order the sub tasks were added to the host, see {@link WrappedGeometryIterator}.
+ * <br>
+ * Nothing in this repository creates sub tasks yet, the scheduler is used by {@link PFMTask#runSubTasks()} for tasks which add their own sub tasks e.g. colour separation plugins.
+ */
+public class SubTaskScheduler {
+
+    /**the estimated memory required per pixel of the drawing, this includes the reference & plotting pixel data and the source / filtered images used to create them*/
+    public static final long BYTES_PER_PIXEL_ESTIMATE = 16;
+
+    /**the fraction of the free memory which the concurrent sub tasks can use*/
+    public static final double MEMORY_BUDGET = 0.75;
+
+    private static final ThreadLocal<Boolean> isWorkerThread = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * Runs all the sub tasks of the host task, returns once every sub task has completed, failed or been cancelled
+     */
+    public static void runSubTasks(PFMTask hostTask){
+        runSubTasks(hostTask, new ArrayList<>(hostTask.getSubTasks()));
+    }
+
+    public static void runSubTasks(PFMTask hostTask, List<PFMTask> subTasks){
+        if(subTasks.isEmpty()){
+            return;
+        }
+        int parallelism = getParallelism(subTasks);
+        if(parallelism > 1 && !isWorkerThread.get()){
+            DrawingBotV3.logger.fine("Sub Tasks - Running %s sub tasks, %s at a time".formatted(subTasks.size(), parallelism));
+
+            // the workers are shared by every sub task, so sub tasks shouldn't create their own threads too
+            for(PFMTask subTask : subTasks){
+                subTask.allowSubTaskMultiThreading = false;
+            }
+        }
+        run(subTasks, parallelism, hostTask::isFinished);
+    }
+
+    /**
+     * Runs the tasks on the shared workers in the order given, with at most the given number of tasks running at once, returns once every task has completed, failed or been cancelled
+     * @param isCancelled checked before each task is started, tasks which haven't been started yet are cancelled once it returns true
+     */
+    public static void run(List<? extends RunnableFuture<?>> tasks, int parallelism, BooleanSupplier isCancelled){
+        // tasks which schedule their own sub tasks run them serially, they would otherwise wait on the workers they're using
+        if(parallelism <= 1 || isWorkerThread.get()){
+            for(RunnableFuture<?> task : tasks){
+                if(isCancelled.getAsBoolean()){
+                    task.cancel(true);
+                    continue;
+                }
+                task.run();
+            }
+            return;
+        }
+
+        CompletionService<RunnableFuture<?>> completionService = new ExecutorCompletionService<>(getWorkerService());
+        int next = 0;
+        int running = 0;
+        try{
+            while(next < tasks.size() || running > 0){
+                while(running < parallelism && next < tasks.size()){
+                    RunnableFuture<?> task = tasks.get(next++);
+                    if(isCancelled.getAsBoolean()){
+                        task.cancel(true);
+                        continue;
+                    }
+                    completionService.submit(() -> {
+                        isWorkerThread.set(true);
+                        try{
+                            task.run();
+                        }finally {
+                            isWorkerThread.set(false);
+                        }
+                        return task;
+                    });
+                    running++;
+                }
+                if(running > 0){
+                    //failures within the sub task are reported by the sub task itself, see DBTask#setException
+                    Future<RunnableFuture<?>> completed = completionService.take();
+                    running--;
+                    try{
+                        completed.get();
+                    }catch (ExecutionException e){
+                        DrawingBotV3.logger.log(Level.SEVERE, "Sub Task Failed", e.getCause());
+                    }
+                }
+            }
+        }catch (InterruptedException e){
+            tasks.forEach(task -> task.cancel(true));
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the number of sub tasks which can be run at the same time, limited by the available processors and the free memory
+     */
+    public static int getParallelism(List<PFMTask> subTasks){
+        int parallelism = Math.min(subTasks.size(), Runtime.getRuntime().availableProcessors());
+
+        long required = 0;
+        for(PFMTask subTask : subTasks){
+            required = Math.max(required, estimateMemory(subTask));
+        }
+        if(required > 0){
+            Runtime runtime = Runtime.getRuntime();
+            long free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+            parallelism = (int) Math.min(parallelism, (long) (free * MEMORY_BUDGET) / required);
+        }
+        return Math.max(1, parallelism);
+    }
+
+    /**
+     * @return the estimated memory required to run the sub task, in bytes
+     */
+    public static long estimateMemory(PFMTask subTask){
+        double width = subTask.drawing.getCanvas().getScaledDrawingWidth();
+        double height = subTask.drawing.getCanvas().getScaledDrawingHeight();
+        return (long) (width * height) * BYTES_PER_PIXEL_ESTIMATE;
+    }
+
+    private static ExecutorService workerService;
+
+    private static synchronized ExecutorService getWorkerService(){
+        if(workerService == null){
+            workerService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), DrawingBotV3.threadFactory("DrawingBotV3 - Sub Task Worker"));
+        }
+        return workerService;
+    }
+}
@@ -3,24 +3,31 @@ package drawingbot.plotting;
 import drawingbot.api.IGeometryFilter;
 import drawingbot.geom.shapes.IGeometry;
 
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Iterates the geometries of multiple drawings, the drawings are always iterated in the order they were added even when they're being plotted at the same time, e.g. by the {@link SubTaskScheduler}
+ */
 public class WrappedGeometryIterator extends AbstractGeometryIterator{
 
-    private final Map<PlottedDrawing, AbstractGeometryIterator> iterators = new ConcurrentHashMap<>();
+    private final Map<PlottedDrawing, AbstractGeometryIterator> iteratorMap = new LinkedHashMap<>();
+    private volatile List<AbstractGeometryIterator> iterators = List.of();
     private AbstractGeometryIterator currentIterator;
 
-    public void addIterator(PlottedDrawing drawing, AbstractGeometryIterator iterator){
-        iterators.put(drawing, iterator);
+    public synchronized void addIterator(PlottedDrawing drawing, AbstractGeometryIterator iterator){
+        iteratorMap.put(drawing, iterator);
+        iterators = List.copyOf(iteratorMap.values());
     }
 
-    public void removeIterator(PlottedDrawing drawing){
-        iterators.remove(drawing);
+    public synchronized void removeIterator(PlottedDrawing drawing){
+        iteratorMap.remove(drawing);
+        iterators = List.copyOf(iteratorMap.values());
     }
 
-    public void resetIterator(PlottedDrawing drawing){
-        AbstractGeometryIterator iterator = iterators.get(drawing);
+    public synchronized void resetIterator(PlottedDrawing drawing){
+        AbstractGeometryIterator iterator = iteratorMap.get(drawing);
         if(iterator != null){
             iterator.reset();
         }
@@ -29,18 +36,19 @@ public class WrappedGeometryIterator extends AbstractGeometryIterator{
     @Override
     public void setVertexLimit(int vertexLimit) {
         super.setVertexLimit(vertexLimit);
-        iterators.values().forEach(i -> i.setVertexLimit(vertexLimit/iterators.size()));
+        List<AbstractGeometryIterator> current = iterators;
+        current.forEach(i -> i.setVertexLimit(vertexLimit/current.size()));
     }
 
     @Override
     public void setGeometryFilter(IGeometryFilter geometryFilter) {
         super.setGeometryFilter(geometryFilter);
-        iterators.values().forEach(i -> i.setGeometryFilter(geometryFilter));
+        iterators.forEach(i -> i.setGeometryFilter(geometryFilter));
     }
 
     @Override
     protected boolean hasNextInternal() {
-        for(AbstractGeometryIterator iterator : iterators.values()){
+        for(AbstractGeometryIterator iterator : iterators){
             if(iterator.hasNext()){
                 currentIterator = iterator;
                 return true;
@@ -59,7 +67,7 @@ public class WrappedGeometryIterator extends AbstractGeometryIterator{
     @Override
     public void reset(){
         super.reset();
-        iterators.values().forEach(AbstractGeometryIterator::reset);
+        iterators.forEach(AbstractGeometryIterator::reset);
     }
 
 }
\ No newline at end of file
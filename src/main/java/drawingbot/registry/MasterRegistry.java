@@ -6,6 +6,7 @@ import drawingbot.api.IDrawingPen;
 import drawingbot.api.IDrawingSet;
 import drawingbot.api.IPFM;
 import drawingbot.drawing.ColorSeparationHandler;
+import drawingbot.drawing.PenColourIndex;
 import drawingbot.files.DrawingExportHandler;
 import drawingbot.files.json.*;
 import drawingbot.files.json.projects.DBTaskContext;
@@ -449,6 +450,72 @@ public class MasterRegistry {
 
     ///////////////////////////////////////////////////////////////////////////////////////////////////////
 
+    //// PEN COLOUR INDEX \\\\
+
+    private PenColourIndex penColourIndex = null;
+    private boolean penColourIndexListening = false;
+
+    /**
+     * @return an index of every registered pen and every pen in the registered drawing sets, for finding the pens closest to a colour, the index is recreated when the pens / drawing sets change
+     */
+    public synchronized PenColourIndex getPenColourIndex(){
+        if(!penColourIndexListening){
+            Register.PRESET_LOADER_DRAWING_PENS.listeners().add(new IPresetLoader.Listener<>() {
+                @Override
+                public void onPresetAdded(GenericPreset<IDrawingPen> preset) {
+                    invalidatePenColourIndex();
+                }
+
+                @Override
+                public void onPresetRemoved(GenericPreset<IDrawingPen> preset) {
+                    invalidatePenColourIndex();
+                }
+
+                @Override
+                public void onPresetEdited(GenericPreset<IDrawingPen> preset) {
+                    invalidatePenColourIndex();
+                }
+            });
+            Register.PRESET_LOADER_DRAWING_SET.listeners().add(new IPresetLoader.Listener<>() {
+                @Override
+                public void onPresetAdded(GenericPreset<IDrawingSet> preset) {
+                    invalidatePenColourIndex();
+                }
+
+                @Override
+                public void onPresetRemoved(GenericPreset<IDrawingSet> preset) {
+                    invalidatePenColourIndex();
+                }
+
+                @Override
+                public void onPresetEdited(GenericPreset<IDrawingSet> preset) {
+                    invalidatePenColourIndex();
+                }
+            });
+            penColourIndexListening = true;
+        }
+        if(penColourIndex == null){
+            List<IDrawingPen> pens = new ArrayList<>();
+            for(GenericPreset<IDrawingPen> preset : new ArrayList<>(Register.PRESET_LOADER_DRAWING_PENS.getPresets())){
+                pens.add(preset.getData());
+            }
+            for(GenericPreset<IDrawingSet> preset : new ArrayList<>(Register.PRESET_LOADER_DRAWING_SET.getPresets())){
+                if(preset.getData() != null){
+                    pens.addAll(preset.getData().getPens());
+                }
+            }
+            penColourIndex = new PenColourIndex(pens);
+            DrawingBotV3.logger.fine("Pen Colour Index - Indexed %s pens".formatted(penColourIndex.size()));
+        }
+        return penColourIndex;
+    }
+
+    public synchronized void invalidatePenColourIndex(){
+        penColourIndex = null;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
     //// IMAGE FILTERS \\\\
     public Map<EnumFilterTypes, ObservableList<GenericFactory<BufferedImageOp>>> imgFilterFactories = FXCollections.observableMap(new LinkedHashMap<>());
     public HashMap<Class<? extends BufferedImageOp>, List<GenericSetting<?, ?>>> imgFilterSettings = new LinkedHashMap<>();
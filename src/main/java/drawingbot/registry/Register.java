@@ -295,6 +295,7 @@ public class Register implements IPlugin {
         //// GENERAL \\\\
         MasterRegistry.INSTANCE.registerPFMSetting(GenericSetting.createRangedFloatSetting(AbstractPFM.class, CATEGORY_DEFAULT, "Plotting Resolution", 1.0F, 0.1F, 10.0F, (pfm, value) -> pfm.pfmResolution = value).setSafeRange(0.1F, 1.0F).setRandomiseExclude(true).setToneMappingExclude(true));
         MasterRegistry.INSTANCE.registerPFMSetting(GenericSetting.createRangedIntSetting(AbstractPFM.class, CATEGORY_DEFAULT, "Random Seed", 0, Integer.MIN_VALUE, Integer.MAX_VALUE, (pfm, value) -> pfm.tools.setRandomSeed(value)).setToneMappingExclude(true));
+        MasterRegistry.INSTANCE.registerPFMSetting(GenericSetting.createBooleanSetting(AbstractPFMImage.class, CATEGORY_DEFAULT, "Off-Heap Pixel Data", false, (pfm, value) -> pfm.directPixelData = value).setRandomiseExclude(true).setToneMappingExclude(true));
 
         //// SKETCH LINES \\\\
         MasterRegistry.INSTANCE.registerPFMSetting(GenericSetting.createBooleanSetting(PFMSketchLinesBasic.class, CATEGORY_SHADING, "Shading", false, (pfm, value) -> pfm.enableShading = value));
@@ -332,6 +333,7 @@ public class Register implements IPlugin {
         MasterRegistry.INSTANCE.registerPFMSetting(GenericSetting.createRangedIntSetting(AbstractSketchPFM.class, CATEGORY_SQUIGGLES, "Squiggle Max Length", 500, 1, Short.MAX_VALUE, (pfm, value) -> pfm.squiggleMaxLength = value).setSafeRange(1, 5000).addAltKey("Squiggle Length"));
         MasterRegistry.INSTANCE.registerPFMSetting(GenericSetting.createRangedFloatSetting(AbstractSketchPFM.class, CATEGORY_SQUIGGLES, "Squiggle Max Deviation", 25, 0, 100, (pfm, value) -> pfm.squiggleMaxDeviation = value/100F));
         MasterRegistry.INSTANCE.registerPFMSetting(GenericSetting.createBooleanSetting(AbstractSketchPFM.class, CATEGORY_STYLE, "Should Lift Pen", true, (pfm, value) -> pfm.shouldLiftPen = value).setRandomiseExclude(true));
+        MasterRegistry.INSTANCE.registerPFMSetting(GenericSetting.createRangedIntSetting(AbstractSketchPFM.class, CATEGORY_DEFAULT, "Parallel Workers", 1, 1, 256, (pfm, value) -> pfm.parallelWorkers = value).setSafeRange(1, 64).setRandomiseExclude(true).setToneMappingExclude(true));
         MasterRegistry.INSTANCE.registerPFMSetting(GenericSetting.createRangedFloatSetting(PFMSketchLinesBasic.class, CATEGORY_STYLE, "Drawing Delta Angle", 360F, -360F, 360F, (pfm, value) -> pfm.drawingDeltaAngle = value).setRandomiseExclude(true));
 
         MasterRegistry.INSTANCE.registerSettingCategory(CATEGORY_ERASING, 1);
@@ -0,0 +1,507 @@
+package drawingbot.render;
+
+import drawingbot.DrawingBotV3;
+import drawingbot.api.ICanvas;
+import drawingbot.api.IGeometryFilter;
+import drawingbot.files.exporters.Graphics2DExporter;
+import drawingbot.files.exporters.ImageRenderer;
+import drawingbot.files.json.projects.DBTaskContext;
+import drawingbot.geom.shapes.IGeometry;
+import drawingbot.image.blend.EnumBlendMode;
+import drawingbot.javafx.observables.ObservableDrawingPen;
+import drawingbot.plotting.DrawingGeometryIterator;
+import drawingbot.plotting.PlottedDrawing;
+import drawingbot.plotting.PlottedGroup;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.effect.BlendMode;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the rendered drawing displayed in the viewport, split into tiles which are rendered off the FX thread at multiple levels of detail.
+ * <br>
+ * The coarse level is rendered first so the whole drawing appears quickly, it's then refined one tile at a time by the full resolution level. The finished tiles are kept, so redraws of the same drawing with the same {@link RenderKey} only need to draw the cached tiles back onto the canvas rather than iterating every geometry again.
+ * <br>
+ * Each pen is rendered into its own transparent layer, the layers of the enabled pens are then composited onto the canvas in the render order with the blend mode. Changing the blend mode only re-composites the cached layers, and changing a pen's colour or stroke size only re-renders that pen's layer.
+ * Enabling / disabling a pen or changing its weight usually makes the pen distribution reassign geometries to other pens, which changes the drawing's distribution revision and rebuilds every layer, see {@link PlottedDrawing#getDistributionRevision()}. When no geometries are reassigned, e.g. with a pre-configured distribution, the cached layers are re-composited.
+ * Within a layer the pen's strokes are composited normally, the blend mode is applied between the layers and the background.
+ * Layers which aren't displayed are kept for when they're enabled again, and evicted least recently used first when the cache is larger than the memory budget.
+ * <br>
+ * Tiles are drawn onto the canvas in the coordinates of the canvas, so the graphics context should have no transform applied.
+ */
+public class DrawingTilePyramid {
+
+    public static final int TILE_SIZE = 256;
+
+    /**the downscale of each level of detail, in the order they are rendered, the last level must be full resolution*/
+    public static final int[] LEVELS = new int[]{4, 1};
+
+    /**
+     * Everything which changes the geometries in each pen's layer or their position, the pyramid must be rebuilt when the key changes
+     * <br>
+     * The pen distribution changes the geometries pens in place, so the drawing's distribution revision is included as well as the geometry count
+     */
+    public record RenderKey(PlottedDrawing drawing, int geometryCount, int distributionRevision, int displayedMin, int displayedMax, IGeometryFilter geometryFilter, int filterState, double renderScale, int width, int height) {
+
+        public static RenderKey create(PlottedDrawing drawing, IGeometryFilter geometryFilter, int filterState, double renderScale, int width, int height){
+            return new RenderKey(drawing, drawing.getGeometryCount(), drawing.getDistributionRevision(), drawing.getDisplayedShapeMin(), drawing.getDisplayedShapeMax(), geometryFilter, filterState, renderScale, width, height);
+        }
+    }
+
+    /**
+     * Everything which changes the appearance of one pen's layer, the geometries in the layer are covered by the {@link RenderKey}
+     */
+    public record LayerKey(ObservableDrawingPen pen, int argb, float strokeSize) {
+
+        public static LayerKey create(ObservableDrawingPen pen){
+            return new LayerKey(pen, pen.getARGB(), pen.getStrokeSize());
+        }
+    }
+
+    private record Entry(IGeometry geometry, PlottedGroup group) {}
+
+    private static class Tile {
+
+        private final PenLayer layer;
+        private final int level;
+        private final int index;
+        private final int x, y, width, height;
+
+        private BufferedImage image;
+        private WritableImage fxImage;
+
+        private Tile(PenLayer layer, int level, int index, int x, int y, int width, int height) {
+            this.layer = layer;
+            this.level = level;
+            this.index = index;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        private long getBytes(){
+            return fxImage == null ? 0 : (long) fxImage.getWidth() * (long) fxImage.getHeight() * 4;
+        }
+    }
+
+    public final RenderKey key;
+    public final DBTaskContext context;
+
+    private final int tilesX, tilesY;
+
+    /**tiles which have been rendered but not yet converted to JavaFX images*/
+    private final ConcurrentLinkedQueue<Tile> renderedQueue = new ConcurrentLinkedQueue<>();
+
+    //// FX THREAD ONLY \\\\
+    private final LinkedHashMap<LayerKey, PenLayer> layers = new LinkedHashMap<>(16, 0.75F, true);
+    private List<PenLayer> visibleLayers = List.of();
+    private EnumBlendMode blendMode = EnumBlendMode.NORMAL;
+    private Color canvasColor = Color.WHITE;
+    private final LinkedHashSet<Integer> dirtyTiles = new LinkedHashSet<>();
+    private long cachedBytes = 0;
+    private long memoryBudget = Long.MAX_VALUE;
+
+    public DrawingTilePyramid(RenderKey key, DBTaskContext context) {
+        this.key = key;
+        this.context = context;
+        this.tilesX = Math.max(1, (key.width + TILE_SIZE - 1) / TILE_SIZE);
+        this.tilesY = Math.max(1, (key.height + TILE_SIZE - 1) / TILE_SIZE);
+    }
+
+    /**
+     * Updates the pens which are displayed and how they're composited, starting the render of any layers which aren't cached. FX Thread only
+     * @param renderOrder the pens in the order they should be composited, disabled pens are skipped
+     * @param memoryBudget the maximum size of the cached layers in bytes, layers which are displayed are never evicted
+     */
+    public void update(List<ObservableDrawingPen> renderOrder, EnumBlendMode blendMode, Color canvasColor, long memoryBudget){
+        this.memoryBudget = memoryBudget;
+
+        List<PenLayer> visible = new ArrayList<>();
+        for(ObservableDrawingPen pen : renderOrder){
+            if(!pen.isEnabled()){
+                continue;
+            }
+            LayerKey layerKey = LayerKey.create(pen);
+            PenLayer layer = layers.get(layerKey);
+            if(layer == null){
+                layer = new PenLayer(layerKey);
+                layers.put(layerKey, layer);
+                layer.start();
+            }
+            visible.add(layer);
+        }
+
+        if(!visible.equals(visibleLayers) || blendMode != this.blendMode || !canvasColor.equals(this.canvasColor)){
+            visibleLayers.forEach(layer -> layer.visible = false);
+            visible.forEach(layer -> layer.visible = true);
+            visibleLayers = visible;
+            this.blendMode = blendMode;
+            this.canvasColor = canvasColor;
+
+            //layers which were hidden before they finished rendering are of no use
+            layers.values().removeIf(layer -> {
+                if(!layer.visible && !layer.isComplete()){
+                    removeLayer(layer);
+                    return true;
+                }
+                return false;
+            });
+            redraw();
+        }
+        evictLayers();
+    }
+
+    /**
+     * Stops rendering every layer, called when the pyramid is replaced. FX Thread only
+     */
+    public void cancel(){
+        layers.values().forEach(this::removeLayer);
+        layers.clear();
+        visibleLayers = List.of();
+        dirtyTiles.clear();
+    }
+
+    /**
+     * @return the fraction of the displayed layers tiles which have been rendered, over all levels of detail
+     */
+    public double getProgress(){
+        long rendered = 0, total = 0;
+        for(PenLayer layer : visibleLayers){
+            rendered += layer.renderedTiles.get();
+            total += layer.totalTiles;
+        }
+        return total == 0 ? 1 : (double) rendered / total;
+    }
+
+    public long getCachedBytes(){
+        return cachedBytes;
+    }
+
+    private void removeLayer(PenLayer layer){
+        layer.cancel();
+        for(Tile tile : layer.bestTiles){
+            if(tile != null){
+                cachedBytes -= tile.getBytes();
+            }
+        }
+        Arrays.fill(layer.bestTiles, null);
+    }
+
+    /**
+     * Removes the least recently displayed layers until the cache fits within the memory budget
+     */
+    private void evictLayers(){
+        Iterator<PenLayer> iterator = layers.values().iterator();
+        while(cachedBytes > memoryBudget && iterator.hasNext()){
+            PenLayer layer = iterator.next();
+            if(!layer.visible){
+                removeLayer(layer);
+                iterator.remove();
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    //// LAYERS \\\\
+
+    /**
+     * The tiles of a single pen, the geometries are sorted into the tiles they overlap and then rendered onto a transparent background
+     */
+    private class PenLayer {
+
+        private final LayerKey layerKey;
+        private final int totalTiles = tilesX * tilesY * LEVELS.length;
+        private final AtomicInteger renderedTiles = new AtomicInteger();
+        private volatile boolean cancelled = false;
+
+        private List<Entry> entries = new ArrayList<>();
+        private int[][] tileEntries = new int[tilesX * tilesY][];
+        private int[] tileEntryCounts = new int[tilesX * tilesY];
+
+        //// FX THREAD ONLY \\\\
+        private final Tile[] bestTiles = new Tile[tilesX * tilesY];
+        private boolean visible = false;
+
+        private PenLayer(LayerKey layerKey) {
+            this.layerKey = layerKey;
+        }
+
+        private void start(){
+            execute(-1, () -> {
+                binGeometries();
+                if(cancelled){
+                    return;
+                }
+                AtomicInteger remaining = new AtomicInteger(totalTiles);
+                for(int level = 0; level < LEVELS.length; level++){
+                    for(int tileY = 0; tileY < tilesY; tileY++){
+                        for(int tileX = 0; tileX < tilesX; tileX++){
+                            int x = tileX * TILE_SIZE;
+                            int y = tileY * TILE_SIZE;
+                            Tile tile = new Tile(this, level, tileY * tilesX + tileX, x, y, Math.min(TILE_SIZE, key.width - x), Math.min(TILE_SIZE, key.height - y));
+                            execute(level, () -> {
+                                try{
+                                    if(!cancelled && renderTile(tile)){
+                                        renderedQueue.add(tile);
+                                        renderedTiles.incrementAndGet();
+                                    }
+                                }finally {
+                                    //once every tile is rendered the geometries are no longer needed
+                                    if(remaining.decrementAndGet() == 0){
+                                        releaseGeometries();
+                                    }
+                                }
+                            });
+                        }
+                    }
+                }
+            });
+        }
+
+        private void cancel(){
+            cancelled = true;
+            releaseGeometries();
+        }
+
+        private boolean isComplete(){
+            return renderedTiles.get() == totalTiles;
+        }
+
+        private void binGeometries(){
+            DrawingGeometryIterator iterator = new DrawingGeometryIterator(key.drawing, List.of(layerKey.pen));
+            iterator.setGeometryFilter(key.geometryFilter);
+            iterator.setVertexLimit(0);
+            while(iterator.hasNext()){
+                IGeometry geometry = iterator.next();
+                if(iterator.currentFilterResult){
+                    addGeometry(geometry, iterator.currentGroup);
+                }
+                if(cancelled){
+                    return;
+                }
+            }
+        }
+
+        private synchronized void addGeometry(IGeometry geometry, PlottedGroup group){
+            if(entries == null){
+                return;
+            }
+            int index = entries.size();
+            entries.add(new Entry(geometry, group));
+
+            // the bounds of the geometry in canvas pixels, including the width of the stroke
+            ICanvas canvas = key.drawing.getCanvas();
+            double drawingScale = canvas.getCanvasScale() * key.renderScale;
+            double margin = canvas.getRenderedPenWidth(layerKey.pen.getStrokeSize()) * drawingScale + 1;
+            Rectangle2D bounds = geometry.getAWTShape().getBounds2D();
+            double minX = (bounds.getMinX() * canvas.getCanvasScale() + canvas.getScaledDrawingOffsetX()) * key.renderScale - margin;
+            double minY = (bounds.getMinY() * canvas.getCanvasScale() + canvas.getScaledDrawingOffsetY()) * key.renderScale - margin;
+            double maxX = (bounds.getMaxX() * canvas.getCanvasScale() + canvas.getScaledDrawingOffsetX()) * key.renderScale + margin;
+            double maxY = (bounds.getMaxY() * canvas.getCanvasScale() + canvas.getScaledDrawingOffsetY()) * key.renderScale + margin;
+
+            int minTileX = Math.max(0, (int) Math.floor(minX / TILE_SIZE));
+            int minTileY = Math.max(0, (int) Math.floor(minY / TILE_SIZE));
+            int maxTileX = Math.min(tilesX - 1, (int) Math.floor(maxX / TILE_SIZE));
+            int maxTileY = Math.min(tilesY - 1, (int) Math.floor(maxY / TILE_SIZE));
+
+            for(int tileY = minTileY; tileY <= maxTileY; tileY++){
+                for(int tileX = minTileX; tileX <= maxTileX; tileX++){
+                    int tile = tileY * tilesX + tileX;
+                    int[] list = tileEntries[tile];
+                    int count = tileEntryCounts[tile];
+                    if(list == null){
+                        list = tileEntries[tile] = new int[16];
+                    }else if(count == list.length){
+                        list = tileEntries[tile] = Arrays.copyOf(list, list.length * 2);
+                    }
+                    list[count] = index;
+                    tileEntryCounts[tile] = count + 1;
+                }
+            }
+        }
+
+        private synchronized void releaseGeometries(){
+            entries = null;
+            tileEntries = null;
+            tileEntryCounts = null;
+        }
+
+        /**
+         * @return true if the tile was rendered, false if the layer was cancelled, tiles without any geometries are left without an image
+         */
+        private boolean renderTile(Tile tile){
+            List<Entry> entries;
+            int[] list;
+            int count;
+            synchronized (this){
+                if(this.entries == null){
+                    return false;
+                }
+                entries = this.entries;
+                list = tileEntries[tile.index];
+                count = tileEntryCounts[tile.index];
+            }
+            if(count == 0){
+                return true;
+            }
+
+            int downscale = LEVELS[tile.level];
+            int width = Math.max(1, (tile.width + downscale - 1) / downscale);
+            int height = Math.max(1, (tile.height + downscale - 1) / downscale);
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = ImageRenderer.createFreshGraphics2D(context, image, EnumBlendMode.NORMAL, false, false);
+            graphics.scale(1D / downscale, 1D / downscale);
+            graphics.translate(-tile.x, -tile.y);
+            graphics.scale(key.renderScale, key.renderScale);
+            Graphics2DExporter.preDraw(key.drawing, graphics);
+
+            for(int i = 0; i < count; i++){
+                if(cancelled){
+                    graphics.dispose();
+                    return false;
+                }
+                Entry entry = entries.get(list[i]);
+                RenderUtils.renderGeometryAWT(graphics, entry.geometry, key.drawing, entry.group, layerKey.pen);
+            }
+            graphics.dispose();
+            tile.image = image;
+            return true;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    //// DISPLAY \\\\
+
+    /**
+     * Queues every tile to be composited again, used after the canvas has been cleared. FX Thread only
+     */
+    public void redraw(){
+        for(int i = 0; i < tilesX * tilesY; i++){
+            dirtyTiles.add(i);
+        }
+    }
+
+    /**
+     * @return true if there are tiles waiting to be drawn to the canvas. FX Thread only
+     */
+    public boolean hasTilesToDraw(){
+        return !dirtyTiles.isEmpty() || !renderedQueue.isEmpty();
+    }
+
+    /**
+     * Collects the tiles which have been rendered since the last call and composites the tiles they've changed, lower detail tiles never replace higher detail ones. FX Thread only
+     * @param timeout the maximum time to spend drawing tiles in milliseconds, 0 will draw every tile
+     */
+    public void drawTiles(GraphicsContext graphics, int timeout){
+        long startTime = System.currentTimeMillis();
+
+        Tile rendered;
+        while((rendered = renderedQueue.poll()) != null){
+            PenLayer layer = rendered.layer;
+            Tile best = layer.bestTiles[rendered.index];
+            if(!layer.cancelled && (best == null || best.level < rendered.level)){
+                if(rendered.image != null){
+                    rendered.fxImage = SwingFXUtils.toFXImage(rendered.image, null);
+                    cachedBytes += rendered.getBytes();
+                }
+                if(best != null){
+                    cachedBytes -= best.getBytes();
+                    best.fxImage = null;
+                }
+                layer.bestTiles[rendered.index] = rendered;
+                if(layer.visible){
+                    dirtyTiles.add(rendered.index);
+                }
+            }
+            rendered.image = null;
+            if(timeout > 0 && System.currentTimeMillis() - startTime > timeout){
+                break;
+            }
+        }
+        evictLayers();
+
+        Iterator<Integer> iterator = dirtyTiles.iterator();
+        while(iterator.hasNext()){
+            int index = iterator.next();
+            iterator.remove();
+            compositeTile(graphics, index);
+            if(timeout > 0 && System.currentTimeMillis() - startTime > timeout){
+                break;
+            }
+        }
+        graphics.setGlobalBlendMode(BlendMode.SRC_OVER);
+        graphics.setImageSmoothing(false);
+    }
+
+    private void compositeTile(GraphicsContext graphics, int index){
+        int x = (index % tilesX) * TILE_SIZE;
+        int y = (index / tilesX) * TILE_SIZE;
+        int width = Math.min(TILE_SIZE, key.width - x);
+        int height = Math.min(TILE_SIZE, key.height - y);
+
+        graphics.setGlobalBlendMode(BlendMode.SRC_OVER);
+        graphics.clearRect(x, y, width, height);
+        graphics.setFill(canvasColor);
+        graphics.fillRect(x, y, width, height);
+
+        graphics.setGlobalBlendMode(blendMode.jfxBlend);
+        for(PenLayer layer : visibleLayers){
+            Tile tile = layer.bestTiles[index];
+            if(tile == null || tile.fxImage == null){
+                continue;
+            }
+            boolean upscaled = LEVELS[tile.level] != 1;
+            graphics.setImageSmoothing(upscaled);
+            graphics.drawImage(tile.fxImage, tile.x, tile.y, upscaled ? tile.width : tile.fxImage.getWidth(), upscaled ? tile.height : tile.fxImage.getHeight());
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final AtomicLong jobCounter = new AtomicLong();
+
+    /**
+     * Runs the job on the viewport's tile threads, lower levels of detail run first over every layer, then in the order they were queued
+     */
+    private static void execute(int level, Runnable runnable){
+        getTileService().execute(new TileJob(level, jobCounter.getAndIncrement(), runnable));
+    }
+
+    private record TileJob(int level, long order, Runnable runnable) implements Runnable, Comparable<TileJob> {
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+
+        @Override
+        public int compareTo(TileJob o) {
+            int compare = Integer.compare(level, o.level);
+            return compare != 0 ? compare : Long.compare(order, o.order);
+        }
+    }
+
+    private static ExecutorService tileService;
+
+    private static synchronized ExecutorService getTileService(){
+        if(tileService == null){
+            //leave a processor free for the FX thread
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            tileService = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), DrawingBotV3.threadFactory("DrawingBotV3 - Viewport Tiles"));
+        }
+        return tileService;
+    }
+}
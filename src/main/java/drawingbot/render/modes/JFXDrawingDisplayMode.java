@@ -3,14 +3,17 @@ package drawingbot.render.modes;
 import drawingbot.DrawingBotV3;
 import drawingbot.api.IGeometryFilter;
 import drawingbot.javafx.observables.ObservableDrawingPen;
+import drawingbot.javafx.preferences.DBPreferences;
 import drawingbot.javafx.util.JFXUtils;
 import drawingbot.plotting.DrawingGeometryIterator;
 import drawingbot.plotting.PFMTask;
 import drawingbot.plotting.PlottedDrawing;
 import drawingbot.plotting.WrappedGeometryIterator;
+import drawingbot.render.DrawingTilePyramid;
 import drawingbot.render.RenderUtils;
 import drawingbot.render.renderer.JFXRenderer;
 import drawingbot.render.renderer.RendererFactory;
+import drawingbot.render.viewport.Viewport;
 import drawingbot.utils.EnumTaskStage;
 import drawingbot.utils.flags.Flags;
 import javafx.beans.binding.Bindings;
@@ -26,11 +29,17 @@ public abstract class JFXDrawingDisplayMode extends DisplayModeDrawing implement
     ////////////////////////////////////////////////////////
 
     private DrawingGeometryIterator drawingIterator;
+    private DrawingTilePyramid tilePyramid;
 
     @Override
     public void doRender(JFXRenderer jfr) {
         PlottedDrawing drawing = getDisplayedDrawing();
 
+        if(tilePyramid != null && (drawing == null || getDisplayedTask() != null || !DBPreferences.INSTANCE.tiledViewportRendering.get())){
+            tilePyramid.cancel();
+            tilePyramid = null;
+        }
+
         // Render the current active task using the Async - Iterator
         if(getDisplayedTask() != null){
             PFMTask renderedTask = getDisplayedTask();
@@ -51,6 +60,11 @@ public abstract class JFXDrawingDisplayMode extends DisplayModeDrawing implement
             }
             return;
         }
+        if(drawing != null && DBPreferences.INSTANCE.tiledViewportRendering.get()){
+            drawingIterator = null;
+            renderTiles(jfr, drawing);
+            return;
+        }
         if(drawing != null){
             if(drawingIterator == null || drawingIterator.currentDrawing != drawing){
                 drawingIterator = new DrawingGeometryIterator(drawing);
@@ -75,6 +89,46 @@ public abstract class JFXDrawingDisplayMode extends DisplayModeDrawing implement
         }
     }
 
+    /**
+     * Renders the finished drawing from the cached tiles, each pen's tiles are rebuilt off the FX thread when the pen's appearance changes
+     */
+    private void renderTiles(JFXRenderer jfr, PlottedDrawing drawing){
+        DrawingTilePyramid.RenderKey key = DrawingTilePyramid.RenderKey.create(drawing, getGeometryFilter(), getFilterState(), jfr.getRenderScale(), (int) Math.ceil(jfr.jfxCanvas.getWidth()), (int) Math.ceil(jfr.jfxCanvas.getHeight()));
+
+        boolean redraw = getViewport().getRenderFlags().anyMatchAndClearOnMatch(Flags.FORCE_REDRAW, Flags.CLEAR_DRAWING_JFX, Flags.CURRENT_DRAWING_CHANGED);
+        if(tilePyramid == null || !tilePyramid.key.equals(key)){
+            if(tilePyramid != null){
+                tilePyramid.cancel();
+            }
+            tilePyramid = new DrawingTilePyramid(key, DrawingBotV3.context());
+            jfr.clearCanvas();
+            setRenderStatus("Drawing");
+        }
+        tilePyramid.update(drawing.getGlobalRenderOrder(), getViewport().getRendererBlendMode(), DrawingBotV3.project().getDrawingArea().canvasColor.getValue(), DBPreferences.INSTANCE.viewportLayerCacheSize.get() * 1024L * 1024L);
+        if(redraw){
+            tilePyramid.redraw();
+        }
+        tilePyramid.drawTiles(jfr.graphicsFX, RenderUtils.vertexRenderTimeOutNormal);
+        setRenderProgress(tilePyramid.getProgress());
+    }
+
+    /**
+     * @return a hash of any state the geometry filter depends on other than the drawing & its pens, so the cached tiles are rebuilt when it changes
+     */
+    protected int getFilterState(){
+        return 0;
+    }
+
+    @Override
+    public void deactivateDisplayMode(Viewport viewport) {
+        super.deactivateDisplayMode(viewport);
+        //the cached layers would be stale by the time the display mode is active again
+        if(tilePyramid != null){
+            tilePyramid.cancel();
+            tilePyramid = null;
+        }
+    }
+
     @Override
     public boolean isRenderDirty(JFXRenderer jfr) {
         if(getViewport().getRenderFlags().anyMatch(Flags.FORCE_REDRAW, Flags.CLEAR_DRAWING_JFX, Flags.CURRENT_DRAWING_CHANGED, Flags.ACTIVE_TASK_CHANGED, Flags.ACTIVE_TASK_CHANGED_STATE)){
@@ -84,6 +138,9 @@ public abstract class JFXDrawingDisplayMode extends DisplayModeDrawing implement
         if(displayedTask!= null) {
             return displayedTask.stage == EnumTaskStage.DO_PROCESS && displayedTask.getTaskGeometryIterator().hasNext();
         }
+        if(tilePyramid != null && tilePyramid.hasTilesToDraw()){
+            return true;
+        }
         return drawingIterator != null && drawingIterator.hasNext();
     }
 
@@ -156,6 +213,11 @@ public abstract class JFXDrawingDisplayMode extends DisplayModeDrawing implement
 
         }
 
+        @Override
+        protected int getFilterState() {
+            return DrawingBotV3.project().selectedPens.get().hashCode();
+        }
+
         @Override
         public String getName() {
             return "Selected pen";
@@ -0,0 +1,44 @@
+package drawingbot.drawing;
+
+import drawingbot.api.IDrawingPen;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class PenColourIndexTest {
+
+    @Test
+    public void testNearestMatchesLinearSearch() {
+        Random random = new Random(1);
+        List<IDrawingPen> pens = new ArrayList<>();
+        for(int i = 0; i < 500; i++){
+            pens.add(new DrawingPen(i % 2 == 0 ? "Even" : "Odd", "Pen " + i, 0xff000000 | random.nextInt(0xffffff)));
+        }
+        PenColourIndex index = new PenColourIndex(pens);
+        Assert.assertEquals(pens.size(), index.size());
+
+        for(int i = 0; i < 200; i++){
+            int argb = 0xff000000 | random.nextInt(0xffffff);
+
+            List<IDrawingPen> expected = new ArrayList<>(pens);
+            expected.sort(Comparator.comparingDouble(pen -> PenColourIndex.getColourDistance(argb, pen.getARGB())));
+            assertSameDistances(argb, expected.subList(0, 5), index.findNearest(argb, 5, null));
+
+            List<IDrawingPen> expectedOdd = expected.stream().filter(pen -> pen.getType().equals("Odd")).toList();
+            assertSameDistances(argb, expectedOdd.subList(0, 3), index.findNearest(argb, 3, PenColourIndex.byType("Odd")));
+        }
+
+        Assert.assertNull(index.findNearest(0xff000000, PenColourIndex.byType("Missing")));
+    }
+
+    private static void assertSameDistances(int argb, List<IDrawingPen> expected, List<IDrawingPen> actual){
+        Assert.assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++){
+            Assert.assertEquals(PenColourIndex.getColourDistance(argb, expected.get(i).getARGB()), PenColourIndex.getColourDistance(argb, actual.get(i).getARGB()), 1e-5);
+        }
+    }
+}
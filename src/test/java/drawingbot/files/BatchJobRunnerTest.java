@@ -0,0 +1,124 @@
+package drawingbot.files;
+
+import drawingbot.JUnitDBV3ClassRunner;
+import drawingbot.registry.Register;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+@RunWith(JUnitDBV3ClassRunner.class)
+public class BatchJobRunnerTest {
+
+    @Test
+    public void testParseArgs() {
+        Assert.assertNull(BatchJobRunner.parseArgs(new String[0]));
+        //--batch is only accepted as the first argument
+        Assert.assertNull(BatchJobRunner.parseArgs(new String[]{"--jobs", "2", "--batch", "input"}));
+
+        BatchJobRunner defaults = BatchJobRunner.parseArgs(new String[]{"--batch", "input"});
+        Assert.assertNotNull(defaults);
+        Assert.assertEquals(new File("input"), defaults.source);
+        Assert.assertEquals(List.of(BatchJobRunner.DEFAULT_EXPORT), defaults.exportIDs);
+        Assert.assertNull(defaults.outputDirectory);
+        Assert.assertNull(defaults.templateFile);
+        Assert.assertEquals(Runtime.getRuntime().availableProcessors(), defaults.maxJobs);
+        Assert.assertEquals(ExportTask.Mode.PER_DRAWING, defaults.exportMode);
+
+        BatchJobRunner runner = BatchJobRunner.parseArgs(new String[]{"--batch", "input", "--export", "svg_default, image_default:.jpg,", "--output", "output", "--template", "template.drawingbotv3", "--jobs", "0", "--mode", "per_pen"});
+        Assert.assertNotNull(runner);
+        Assert.assertEquals(List.of("svg_default", "image_default:.jpg"), runner.exportIDs);
+        Assert.assertEquals(new File("output"), runner.outputDirectory);
+        Assert.assertEquals(new File("template.drawingbotv3"), runner.templateFile);
+        Assert.assertEquals(1, runner.maxJobs);
+        Assert.assertEquals(ExportTask.Mode.PER_PEN, runner.exportMode);
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> BatchJobRunner.parseArgs(new String[]{"--batch"}));
+        Assert.assertThrows(IllegalArgumentException.class, () -> BatchJobRunner.parseArgs(new String[]{"--batch", "input", "--jobs"}));
+        Assert.assertThrows(IllegalArgumentException.class, () -> BatchJobRunner.parseArgs(new String[]{"--batch", "input", "--unknown", "value"}));
+        Assert.assertThrows(IllegalArgumentException.class, () -> BatchJobRunner.parseArgs(new String[]{"--batch", "input", "--mode", "per_n_pens"}));
+        Assert.assertThrows(IllegalArgumentException.class, () -> BatchJobRunner.parseArgs(new String[]{"--batch", "input", "--jobs", "many"}));
+    }
+
+    @Test
+    public void testFindInputsDirectory() throws IOException {
+        File directory = Files.createTempDirectory("batch").toFile();
+        File image = createFile(directory, "b.png");
+        File project = createFile(directory, "a.drawingbotv3");
+        createFile(directory, "notes.txt");
+        new File(directory, "sub.png").mkdir();
+
+        Assert.assertEquals(List.of(project, image), BatchJobRunner.findInputs(directory));
+        //a single supported file is a batch of one
+        Assert.assertEquals(List.of(image), BatchJobRunner.findInputs(image));
+        Assert.assertThrows(IOException.class, () -> BatchJobRunner.findInputs(new File(directory, "missing")));
+        Assert.assertThrows(IOException.class, () -> BatchJobRunner.findInputs(null));
+    }
+
+    @Test
+    public void testFindInputsManifest() throws IOException {
+        File directory = Files.createTempDirectory("batch").toFile();
+        File relative = createFile(directory, "relative.png");
+        File absolute = createFile(Files.createTempDirectory("batch").toFile(), "absolute.JPG");
+        File manifest = new File(directory, "manifest.txt");
+        Files.writeString(manifest.toPath(), String.join("\n", "# comment", "", "  relative.png  ", absolute.getAbsolutePath(), "missing.png"));
+
+        //relative paths are resolved against the manifests directory, missing files are skipped
+        Assert.assertEquals(List.of(relative, absolute), BatchJobRunner.findInputs(manifest));
+    }
+
+    @Test
+    public void testFindExports() throws IOException {
+        List<BatchJobRunner.BatchExport> exports = BatchJobRunner.findExports(List.of("svg_default", "image_default:jpg", "pdf_default:.pdf"));
+        Assert.assertEquals(3, exports.size());
+        assertExport(exports.get(0), Register.EXPORT_SVG, ".svg", "");
+        assertExport(exports.get(1), Register.EXPORT_IMAGE, ".jpg", "");
+        assertExport(exports.get(2), Register.EXPORT_PDF, ".pdf", "");
+
+        //exports which would write to the same file are given the handlers name as a suffix
+        exports = BatchJobRunner.findExports(List.of("svg_default", "svg_inkscape", "image_default:.png", "image_reference:.jpg"));
+        Assert.assertEquals(4, exports.size());
+        assertExport(exports.get(0), Register.EXPORT_SVG, ".svg", "_svg_default");
+        assertExport(exports.get(1), Register.EXPORT_INKSCAPE_SVG, ".svg", "_svg_inkscape");
+        assertExport(exports.get(2), Register.EXPORT_IMAGE, ".png", "");
+        assertExport(exports.get(3), Register.EXPORT_REF_IMAGE, ".jpg", "");
+
+        Assert.assertThrows(IOException.class, () -> BatchJobRunner.findExports(List.of("svg_default", "unknown_export")));
+    }
+
+    @Test
+    public void testFindImageFile() throws IOException {
+        File projectDirectory = Files.createTempDirectory("batch").toFile();
+        File project = createFile(projectDirectory, "project.drawingbotv3");
+        File moved = createFile(projectDirectory, "image.png");
+
+        //the image has moved along with the project
+        File original = new File(Files.createTempDirectory("batch").toFile(), "image.png");
+        Assert.assertEquals(moved, BatchJobRunner.findImageFile(original, project));
+
+        //the image still exists in its original location
+        createFile(original.getParentFile(), "image.png");
+        Assert.assertEquals(original, BatchJobRunner.findImageFile(original, project));
+
+        //the image can't be found, the original is returned so the error names the original path
+        File missing = new File(original.getParentFile(), "missing.png");
+        Assert.assertEquals(missing, BatchJobRunner.findImageFile(missing, project));
+    }
+
+    private static void assertExport(BatchJobRunner.BatchExport export, DrawingExportHandler handler, String extension, String suffix){
+        Assert.assertSame(handler, export.handler());
+        Assert.assertEquals(extension, export.extension());
+        Assert.assertEquals(suffix, export.suffix());
+    }
+
+    private static File createFile(File directory, String name) throws IOException {
+        File file = new File(directory, name);
+        Assert.assertTrue(file.createNewFile());
+        file.deleteOnExit();
+        return file;
+    }
+}
@@ -0,0 +1,155 @@
+package drawingbot.files;
+
+import drawingbot.DrawingBotV3;
+import drawingbot.JUnitDBV3ClassRunner;
+import drawingbot.drawing.DrawingSets;
+import drawingbot.geom.shapes.*;
+import drawingbot.javafx.observables.ObservableDrawingSet;
+import drawingbot.plotting.PlottedDrawing;
+import drawingbot.plotting.PlottedGroup;
+import drawingbot.plotting.canvas.SimpleCanvas;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.PathIterator;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+@RunWith(JUnitDBV3ClassRunner.class)
+public class PlottedDrawingSerializerTest {
+
+    public static final int GEOMETRY_COUNT = PlottedDrawingSerializer.BLOCK_SIZE * 2 + 123;
+
+    /**coordinates which can't be stored as 1/16 fixed point values, or which are easily lost when converted*/
+    public static final float[] SPECIAL_COORDS = new float[]{-0.0F, 0.0F, 0.1F, -0.1F, 1F / 3F, -1234.5625F, Float.MIN_VALUE, -Float.MIN_VALUE, 3e9F, -3e9F, 16777217F, Float.MAX_VALUE};
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        DrawingSets drawingSets = DrawingBotV3.project().getDrawingSets();
+        ObservableDrawingSet drawingSet = drawingSets.getActiveDrawingSet();
+
+        PlottedDrawing drawing = new PlottedDrawing(new SimpleCanvas(1000, 1000), drawingSets);
+        List<PlottedGroup> groups = new ArrayList<>();
+        for(int i = 0; i < 3; i++){
+            groups.add(drawing.newPlottedGroup(drawingSet, null));
+        }
+
+        Random random = new Random(0);
+        for(int i = 0; i < GEOMETRY_COUNT; i++){
+            IGeometry geometry = createGeometry(i, random);
+            geometry.setPenIndex(random.nextInt(drawingSet.pens.size() + 1) - 1);
+            geometry.setPFMPenIndex(random.nextInt(8));
+            geometry.setSampledRGBA(random.nextInt());
+            geometry.setFillType(random.nextInt(3) - 1);
+            drawing.addGeometry(geometry, groups.get(random.nextInt(groups.size())));
+        }
+
+        File file = File.createTempFile("plotted_drawing", PlottedDrawingSerializer.EXTENSION);
+        file.deleteOnExit();
+        PlottedDrawingSerializer.write(drawing, file);
+        Assert.assertEquals(drawing.uuid, PlottedDrawingSerializer.readDrawingUUID(file));
+
+        PlottedDrawing loaded;
+        try(PlottedDrawingSerializer.Reader reader = new PlottedDrawingSerializer.Reader(file, drawingSets)){
+            while(!reader.isDone()){
+                reader.readBlock();
+            }
+            Assert.assertEquals(GEOMETRY_COUNT, reader.getGeometriesRead());
+            loaded = reader.drawing;
+        }
+
+        Assert.assertEquals(drawing.uuid, loaded.uuid);
+        Assert.assertEquals(drawing.getCanvas().getWidth(), loaded.getCanvas().getWidth(), 0);
+        Assert.assertEquals(drawing.getCanvas().getHeight(), loaded.getCanvas().getHeight(), 0);
+
+        Assert.assertEquals(drawing.groups.size(), loaded.groups.size());
+        for(PlottedGroup group : drawing.groups.values()){
+            PlottedGroup loadedGroup = loaded.getPlottedGroup(group.getGroupID());
+            Assert.assertNotNull(loadedGroup);
+            Assert.assertSame(group.drawingSet, loadedGroup.drawingSet);
+            Assert.assertEquals(group.groupType, loadedGroup.groupType);
+            Assert.assertEquals(group.originalDrawingSetOrder, loadedGroup.originalDrawingSetOrder);
+            Assert.assertEquals(group.geometries.size(), loadedGroup.geometries.size());
+        }
+
+        Assert.assertEquals(drawing.getGeometryCount(), loaded.getGeometryCount());
+        Assert.assertEquals(drawing.getVertexCount(), loaded.getVertexCount());
+        for(int i = 0; i < drawing.getGeometryCount(); i++){
+            assertGeometryEquals(i, drawing.geometries.get(i), loaded.geometries.get(i));
+        }
+    }
+
+    private static IGeometry createGeometry(int index, Random random){
+        switch (index % 7){
+            case 0:
+                return new GLine(nextCoord(random), nextCoord(random), nextCoord(random), nextCoord(random));
+            case 1:
+                return new GQuadCurve(nextCoord(random), nextCoord(random), nextCoord(random), nextCoord(random), nextCoord(random), nextCoord(random));
+            case 2:
+                return new GCubicCurve(nextCoord(random), nextCoord(random), nextCoord(random), nextCoord(random), nextCoord(random), nextCoord(random), nextCoord(random), nextCoord(random));
+            case 3:
+                return new GRectangle(nextCoord(random), nextCoord(random), nextCoord(random), nextCoord(random));
+            case 4:
+                return new GEllipse(nextCoord(random), nextCoord(random), nextCoord(random), nextCoord(random));
+            case 5:
+                GPath path = new GPath();
+                path.moveTo(nextCoord(random), nextCoord(random));
+                path.lineTo(nextCoord(random), nextCoord(random));
+                path.quadTo(nextCoord(random), nextCoord(random), nextCoord(random), nextCoord(random));
+                path.curveTo(nextCoord(random), nextCoord(random), nextCoord(random), nextCoord(random), nextCoord(random), nextCoord(random));
+                if(random.nextBoolean()){
+                    path.closePath();
+                }
+                return path;
+            default:
+                return new GShape(new Ellipse2D.Float(nextCoord(random), nextCoord(random), nextCoord(random), nextCoord(random)));
+        }
+    }
+
+    /**
+     * @return a mix of fixed point coordinates, negative coordinates and coordinates which must be stored as raw floats
+     */
+    private static float nextCoord(Random random){
+        return switch (random.nextInt(4)) {
+            case 0 -> random.nextInt(16000) / 16F;
+            case 1 -> -random.nextInt(16000) / 16F;
+            case 2 -> (random.nextFloat() - 0.5F) * 2000F;
+            default -> SPECIAL_COORDS[random.nextInt(SPECIAL_COORDS.length)];
+        };
+    }
+
+    private static void assertGeometryEquals(int index, IGeometry expected, IGeometry actual){
+        String message = "Geometry " + index;
+        Assert.assertEquals(message, expected.getClass(), actual.getClass());
+        Assert.assertEquals(message, expected.getGeometryIndex(), actual.getGeometryIndex());
+        Assert.assertEquals(message, expected.getPenIndex(), actual.getPenIndex());
+        Assert.assertEquals(message, expected.getPFMPenIndex(), actual.getPFMPenIndex());
+        Assert.assertEquals(message, expected.getGroupID(), actual.getGroupID());
+        Assert.assertEquals(message, expected.getSampledRGBA(), actual.getSampledRGBA());
+        Assert.assertEquals(message, expected.getFillType(), actual.getFillType());
+
+        PathIterator expectedPath = expected.getAWTShape().getPathIterator(null);
+        PathIterator actualPath = actual.getAWTShape().getPathIterator(null);
+        Assert.assertEquals(message, expectedPath.getWindingRule(), actualPath.getWindingRule());
+
+        //compare the float bits, so -0.0 and 0.0 are different
+        float[] expectedCoords = new float[6];
+        float[] actualCoords = new float[6];
+        while(!expectedPath.isDone()){
+            Assert.assertFalse(message + " has too few segments", actualPath.isDone());
+            int type = expectedPath.currentSegment(expectedCoords);
+            Assert.assertEquals(message, type, actualPath.currentSegment(actualCoords));
+            for(int c = 0; c < 6; c++){
+                Assert.assertEquals(message + " coord " + c, Float.floatToRawIntBits(expectedCoords[c]), Float.floatToRawIntBits(actualCoords[c]));
+            }
+            expectedPath.next();
+            actualPath.next();
+        }
+        Assert.assertTrue(message + " has too many segments", actualPath.isDone());
+    }
+}
@@ -0,0 +1,204 @@
+package drawingbot.files.exporters;
+
+import drawingbot.plotting.canvas.SimpleCanvas;
+import drawingbot.utils.UnitsLength;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.geom.AffineTransform;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GCodeArcFitterTest {
+
+    public static final double TOLERANCE = 0.05;
+    /**allows for the rounding of the float coordinates*/
+    public static final double EPSILON = 1e-4;
+
+    @Test
+    public void testCircles() {
+        for(boolean screenClockwise : new boolean[]{true, false}){
+            //partial arcs
+            assertFitsCircle(screenClockwise, 20, Math.PI * 1.5, 54);
+            assertFitsCircle(screenClockwise, 5, Math.PI / 2, 12);
+            //full circles, the fitter must split them as a single arc can't return to its start
+            assertFitsCircle(screenClockwise, 20, Math.PI * 2, 72);
+            assertFitsCircle(screenClockwise, 50, Math.PI * 2, 360);
+        }
+    }
+
+    /**
+     * Samples a circle in drawing coordinates, where the y-axis points down, and converts it to G-Code coordinates with {@link GCodeExporter#createGCodeTransform}
+     * @param screenClockwise true if the circle is clockwise when viewed in the viewport, which must be a G2 move once the y-axis has been flipped
+     */
+    private static void assertFitsCircle(boolean screenClockwise, double radius, double sweep, int segments){
+        AffineTransform transform = GCodeExporter.createGCodeTransform(new SimpleCanvas(200, 200, UnitsLength.MILLIMETRES), new GCodeSettings());
+        double direction = screenClockwise ? 1 : -1;
+        List<float[]> points = new ArrayList<>();
+        for(int i = 0; i <= segments; i++){
+            double angle = direction * sweep * i / segments;
+            double[] point = new double[]{100 + radius * Math.cos(angle), 100 + radius * Math.sin(angle)};
+            transform.transform(point, 0, point, 0, 1);
+            points.add(new float[]{(float) point[0], (float) point[1]});
+        }
+        RecordedMoves moves = fit(points);
+        Assert.assertTrue("No arcs were fitted", moves.fitter.arcMoves > 0);
+        for(Move move : moves.moves){
+            if(move.arc){
+                Assert.assertEquals("Wrong arc direction", screenClockwise, move.clockwise);
+            }
+        }
+        assertWithinTolerance(points, moves);
+    }
+
+    @Test
+    public void testCollinear() {
+        List<float[]> points = new ArrayList<>();
+        for(int i = 0; i <= 50; i++){
+            points.add(new float[]{10 + i * 0.5F, 20 + i * 0.25F});
+        }
+        RecordedMoves moves = fit(points);
+        Assert.assertEquals(0, moves.fitter.arcMoves);
+        Assert.assertEquals(1, moves.moves.size());
+        assertWithinTolerance(points, moves);
+
+        //small deviations within the tolerance should still be merged
+        points.clear();
+        for(int i = 0; i <= 50; i++){
+            points.add(new float[]{i, i % 2 == 0 ? 0 : (float) (TOLERANCE / 2)});
+        }
+        moves = fit(points);
+        Assert.assertEquals(0, moves.fitter.arcMoves);
+        Assert.assertEquals(1, moves.moves.size());
+        assertWithinTolerance(points, moves);
+    }
+
+    @Test
+    public void testZigZag() {
+        List<float[]> points = new ArrayList<>();
+        for(int i = 0; i <= 50; i++){
+            points.add(new float[]{i, i % 2 == 0 ? 0 : 1});
+        }
+        RecordedMoves moves = fit(points);
+        Assert.assertEquals(0, moves.fitter.arcMoves);
+        Assert.assertEquals(50, moves.moves.size());
+        assertWithinTolerance(points, moves);
+    }
+
+    @Test
+    public void testMixed() {
+        //a line, followed by a semicircle, followed by a zig-zag
+        List<float[]> points = new ArrayList<>();
+        for(int i = 0; i <= 10; i++){
+            points.add(new float[]{i * 2, 0});
+        }
+        for(int i = 1; i <= 36; i++){
+            double angle = -Math.PI / 2 + Math.PI * i / 36;
+            points.add(new float[]{(float) (20 + 10 * Math.cos(angle)), (float) (10 + 10 * Math.sin(angle))});
+        }
+        for(int i = 1; i <= 10; i++){
+            points.add(new float[]{20 - i, i % 2 == 0 ? 20 : 22});
+        }
+        RecordedMoves moves = fit(points);
+        Assert.assertTrue(moves.fitter.arcMoves > 0);
+        Assert.assertTrue(moves.moves.size() < points.size() - 1);
+        assertWithinTolerance(points, moves);
+    }
+
+    /**
+     * Checks the path ends at the last input point, every input point is within the tolerance of the emitted path and every arc starts and ends on its circle
+     */
+    private static void assertWithinTolerance(List<float[]> points, RecordedMoves moves){
+        Move last = moves.moves.get(moves.moves.size() - 1);
+        float[] lastPoint = points.get(points.size() - 1);
+        Assert.assertEquals(lastPoint[0], last.x, 0);
+        Assert.assertEquals(lastPoint[1], last.y, 0);
+
+        for(Move move : moves.moves){
+            if(move.arc){
+                double startRadius = Math.hypot(move.startX - move.centerX, move.startY - move.centerY);
+                double endRadius = Math.hypot(move.x - move.centerX, move.y - move.centerY);
+                Assert.assertEquals("Arc end isn't on the circle", startRadius, endRadius, TOLERANCE);
+            }
+        }
+
+        for(int i = 0; i < points.size(); i++){
+            float[] point = points.get(i);
+            double distance = Double.MAX_VALUE;
+            for(Move move : moves.moves){
+                distance = Math.min(distance, move.distance(point[0], point[1]));
+            }
+            Assert.assertTrue("Point " + i + " is " + distance + " from the path", distance <= TOLERANCE + EPSILON);
+        }
+    }
+
+    private static RecordedMoves fit(List<float[]> points){
+        RecordedMoves moves = new RecordedMoves(new GCodeArcFitter(TOLERANCE), points.get(0));
+        for(float[] point : points){
+            moves.fitter.addPoint(point[0], point[1]);
+        }
+        moves.fitter.flush(moves);
+        Assert.assertTrue(moves.fitter.isEmpty());
+        Assert.assertEquals(moves.moves.size(), moves.fitter.outputMoves);
+        return moves;
+    }
+
+    private static class RecordedMoves implements GCodeArcFitter.IMoveConsumer {
+
+        private final GCodeArcFitter fitter;
+        private final List<Move> moves = new ArrayList<>();
+        private float lastX, lastY;
+
+        private RecordedMoves(GCodeArcFitter fitter, float[] start){
+            this.fitter = fitter;
+            this.lastX = start[0];
+            this.lastY = start[1];
+        }
+
+        @Override
+        public void linearMove(float x, float y) {
+            moves.add(new Move(false, false, lastX, lastY, x, y, 0, 0));
+            lastX = x;
+            lastY = y;
+        }
+
+        @Override
+        public void arcMove(boolean clockwise, float x, float y, float i, float j) {
+            moves.add(new Move(true, clockwise, lastX, lastY, x, y, lastX + i, lastY + j));
+            lastX = x;
+            lastY = y;
+        }
+    }
+
+    /**
+     * A G1, G2 or G3 move, in G-Code coordinates where the y-axis points up so G2 is clockwise
+     */
+    private record Move(boolean arc, boolean clockwise, double startX, double startY, double x, double y, double centerX, double centerY){
+
+        private double distance(double px, double py){
+            if(!arc){
+                double dx = x - startX, dy = y - startY;
+                double lengthSq = dx * dx + dy * dy;
+                double t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, ((px - startX) * dx + (py - startY) * dy) / lengthSq));
+                return Math.hypot(px - (startX + t * dx), py - (startY + t * dy));
+            }
+            double radius = Math.hypot(startX - centerX, startY - centerY);
+            double startAngle = Math.atan2(startY - centerY, startX - centerX);
+            double endAngle = Math.atan2(y - centerY, x - centerX);
+            double pointAngle = Math.atan2(py - centerY, px - centerX);
+
+            //the angles travelled from the start, in the direction of the arc
+            double sweep = clockwise ? normalise(startAngle - endAngle) : normalise(endAngle - startAngle);
+            double travelled = clockwise ? normalise(startAngle - pointAngle) : normalise(pointAngle - startAngle);
+            if(travelled <= sweep){
+                return Math.abs(Math.hypot(px - centerX, py - centerY) - radius);
+            }
+            return Math.min(Math.hypot(px - startX, py - startY), Math.hypot(px - x, py - y));
+        }
+
+        private static double normalise(double angle){
+            angle %= Math.PI * 2;
+            return angle < 0 ? angle + Math.PI * 2 : angle;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package drawingbot.files.exporters;
+
+import drawingbot.utils.Utils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+public class GCodeBuilderTest {
+
+    @Test
+    public void testFormatFloat() {
+        byte[] dst = new byte[32];
+        float[] values = new float[]{0F, -0F, 0.5F, -0.0001F, 0.0625F, 0.0005F, 2.0005F, 123456.79F, -12.3456F, 1e9F};
+        for(float value : values){
+            assertFormat(value, dst);
+        }
+        Random random = new Random(0);
+        for(int i = 0; i < 100000; i++){
+            assertFormat((random.nextFloat() - 0.5F) * 2000, dst);
+            assertFormat(Float.intBitsToFloat(random.nextInt()), dst);
+        }
+    }
+
+    private static void assertFormat(float value, byte[] dst){
+        int end = GCodeBuilder.formatFloat(value, dst, 0);
+        if(end != -1){
+            Assert.assertEquals(Utils.gcodeFloat(value), new String(dst, 0, end, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void testTemplate() {
+        List<GCodeWildcard> wildcards = List.of(new GCodeWildcard("%NAME%", "%OLD_NAME%") {
+            @Override
+            public String getValue(GCodeBuilder builder) {
+                return "$pen\\";
+            }
+        });
+        Assert.assertEquals("G1 Z0", GCodeTemplate.compile("G1 Z0", wildcards).format(null));
+        Assert.assertEquals("(Pen: $pen\\) ($pen\\)", GCodeTemplate.compile("(Pen: %NAME%) (%OLD_NAME%)", wildcards).format(null));
+        Assert.assertEquals("", GCodeTemplate.compile(null, wildcards).format(null));
+    }
+}
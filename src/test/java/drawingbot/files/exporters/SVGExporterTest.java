@@ -0,0 +1,343 @@
+package drawingbot.files.exporters;
+
+import drawingbot.DrawingBotV3;
+import drawingbot.JUnitDBV3ClassRunner;
+import drawingbot.api.IGeometryFilter;
+import drawingbot.files.ExportTask;
+import drawingbot.geom.shapes.*;
+import drawingbot.javafx.observables.ObservableDrawingPen;
+import drawingbot.javafx.preferences.DBPreferences;
+import drawingbot.plotting.PlottedDrawing;
+import drawingbot.plotting.canvas.CanvasUtils;
+import drawingbot.plotting.canvas.SimpleCanvas;
+import drawingbot.registry.Register;
+import org.apache.batik.dom.GenericDOMImplementation;
+import org.apache.batik.svggen.SVGGraphics2D;
+import org.apache.batik.util.SVGConstants;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@RunWith(JUnitDBV3ClassRunner.class)
+public class SVGExporterTest {
+
+    /**the largest difference allowed between the coordinates of the two exports, in page units*/
+    public static final double TOLERANCE = 0.05;
+
+    /**plain decimal numbers, without trailing zeros or a negative zero*/
+    private static final Pattern NUMBER_FORMAT = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]*[1-9])?");
+    private static final Pattern PATH_TOKEN = Pattern.compile("[MLQCZmlqcz]|-?[0-9]*\\.?[0-9]+(?:[eE][-+]?[0-9]+)?");
+
+    private static PlottedDrawing drawing;
+
+    @BeforeClass
+    public static void setup() {
+        drawing = new PlottedDrawing(new SimpleCanvas(200, 150), DrawingBotV3.project().getDrawingSets());
+        drawing.newPlottedGroup(DrawingBotV3.project().getDrawingSets().activeDrawingSet.get(), null);
+        int penCount = DrawingBotV3.project().getDrawingSets().activeDrawingSet.get().pens.size();
+
+        Random random = new Random(0);
+        for(int i = 0; i < 60; i++){
+            float x = random.nextFloat() * 160 + 20;
+            float y = random.nextFloat() * 110 + 20;
+            IGeometry geometry = switch (i % 3){
+                case 0 -> new GQuadCurve(x, y, x + random.nextFloat() * 40 - 20, y + random.nextFloat() * 40 - 20, x + random.nextFloat() * 40 - 20, y + random.nextFloat() * 40 - 20);
+                case 1 -> new GCubicCurve(x, y, x + 15, y - 10, x - 5, y + 15, x + random.nextFloat() * 40 - 20, y + random.nextFloat() * 40 - 20);
+                default -> new GLine(x, y, x + random.nextFloat() * 40 - 20, y + random.nextFloat() * 40 - 20);
+            };
+            geometry.setPenIndex(i % penCount);
+            drawing.addGeometry(geometry);
+        }
+    }
+
+    @Test
+    public void testNumberFormat() throws IOException {
+        Assert.assertEquals("0", formatNumber(0));
+        Assert.assertEquals("0", formatNumber(-0D));
+        Assert.assertEquals("0", formatNumber(-0.0004));
+        Assert.assertEquals("-0.001", formatNumber(-0.0006));
+        Assert.assertEquals("0.001", formatNumber(0.001));
+        Assert.assertEquals("0", formatNumber(1e-300));
+        Assert.assertEquals("0", formatNumber(Double.MIN_VALUE));
+        Assert.assertEquals("0", formatNumber(Double.NaN));
+        Assert.assertEquals("0.1", formatNumber(0.1));
+        Assert.assertEquals("2.5", formatNumber(2.5));
+        Assert.assertEquals("-7", formatNumber(-7));
+        Assert.assertEquals("10", formatNumber(10));
+        Assert.assertEquals("100.05", formatNumber(100.05));
+        Assert.assertEquals("-12.346", formatNumber(-12.3456));
+        Assert.assertEquals("123456789.25", formatNumber(123456789.25));
+        Assert.assertEquals("1000000000000", formatNumber(999999999999.9996));
+        Assert.assertEquals("100000000000000000000", formatNumber(1e20));
+        Assert.assertEquals("-15000000000000000", formatNumber(-1.5e16));
+    }
+
+    /**
+     * Formatted numbers must parse back to the original value rounded to {@link SVGExporter#PATH_PRECISION} decimal places
+     */
+    @Test
+    public void testNumberRoundTrip() throws IOException {
+        Random random = new Random(0);
+        double maxError = 0.5 / Math.pow(10, SVGExporter.PATH_PRECISION);
+        for(int i = 0; i < 20000; i++){
+            double value = random.nextDouble() * Math.pow(10, random.nextInt(26) - 6) * (random.nextBoolean() ? 1 : -1);
+            String formatted = formatNumber(value);
+            Assert.assertTrue(value + " formatted as " + formatted, NUMBER_FORMAT.matcher(formatted).matches());
+            Assert.assertEquals(value + " formatted as " + formatted, value, Double.parseDouble(formatted), maxError + Math.ulp(value) * 2);
+        }
+    }
+
+    /**
+     * The streamed export must contain the same layers & paths as the DOM based export it replaced
+     */
+    @Test
+    public void testMatchesDOMExport() throws Exception {
+        ExportTask exportTask = createExportTask();
+
+        StringWriter writer = new StringWriter();
+        SVGExporter.writeSVG(exportTask, new SVGExporter.SVGWriter(writer), false);
+        List<Layer> actual = parseLayers(writer.toString());
+        List<Layer> expected = parseLayers(exportDOMReference(exportTask));
+
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++){
+            Layer expectedLayer = expected.get(i);
+            Layer actualLayer = actual.get(i);
+            Assert.assertEquals(expectedLayer.id, actualLayer.id);
+            Assert.assertEquals(SVGExporter.SVGWriter.toHex(exportTask.exportRenderOrder.get(i).getAWTColor().getRGB()), actualLayer.stroke);
+            Assert.assertEquals(expectedLayer.id, expectedLayer.shapes.size(), actualLayer.shapes.size());
+            for(int s = 0; s < expectedLayer.shapes.size(); s++){
+                LayerShape expectedShape = expectedLayer.shapes.get(s);
+                LayerShape actualShape = actualLayer.shapes.get(s);
+                String message = expectedLayer.id + " shape " + s;
+                Assert.assertEquals(message, expectedShape.commands, actualShape.commands);
+                Assert.assertEquals(message, expectedShape.strokeWidth, actualShape.strokeWidth, expectedShape.strokeWidth * 0.001);
+                for(int p = 0; p < expectedShape.points.length; p++){
+                    Assert.assertEquals(message, expectedShape.points[p], actualShape.points[p], TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInkscapeLayers() throws Exception {
+        ExportTask exportTask = createExportTask();
+        StringWriter writer = new StringWriter();
+        SVGExporter.writeSVG(exportTask, new SVGExporter.SVGWriter(writer), true);
+
+        Document document = parseDocument(writer.toString());
+        Assert.assertEquals(SVGExporter.INKSCAPE_NS, document.getDocumentElement().getAttribute("xmlns:inkscape"));
+        int layers = 0;
+        for(Node node = document.getDocumentElement().getFirstChild(); node != null; node = node.getNextSibling()){
+            if(node instanceof Element element && element.getTagName().equals("g")){
+                Assert.assertEquals("layer", element.getAttribute("inkscape:groupmode"));
+                Assert.assertEquals(element.getAttribute("id"), element.getAttribute("inkscape:label").replace(' ', '_'));
+                layers++;
+            }
+        }
+        Assert.assertEquals(exportTask.exportRenderOrder.size(), layers);
+    }
+
+    private static String formatNumber(double value) throws IOException {
+        StringWriter writer = new StringWriter();
+        new SVGExporter.SVGWriter(writer).number(value);
+        return writer.toString();
+    }
+
+    private static ExportTask createExportTask(){
+        ExportTask exportTask = new ExportTask(DrawingBotV3.context(), Register.EXPORT_SVG, ExportTask.Mode.PER_DRAWING, drawing, IGeometryFilter.BYPASS_FILTER, ".svg", new File("test.svg"), true, true, true);
+        exportTask.createExportPlottedDrawing(IGeometryFilter.BYPASS_FILTER);
+        return exportTask;
+    }
+
+    /**
+     * The previous DOM based export, each pen is drawn into its own document with Batik's SVGGraphics2D which is then imported into the host document
+     */
+    private static String exportDOMReference(ExportTask exportTask) throws IOException {
+        int width = (int) exportTask.exportDrawing.getCanvas().getScaledWidth();
+        int scaledPageWidth = (int) CanvasUtils.getExportWidth(exportTask.exportDrawing.getCanvas(), DrawingBotV3.SVG_DPI);
+        int scaledPageHeight = (int) CanvasUtils.getExportHeight(exportTask.exportDrawing.getCanvas(), DrawingBotV3.SVG_DPI);
+        double scale = (double) scaledPageWidth / width;
+
+        DOMImplementation domImpl = GenericDOMImplementation.getDOMImplementation();
+        Document document = domImpl.createDocument(SVGExporter.SVG_NS, SVGExporter.SVG, null);
+        Element svgRoot = document.getDocumentElement();
+
+        int index = 0;
+        for(ObservableDrawingPen drawingPen : exportTask.exportRenderOrder){
+            String layerName = SVGExporter.formatLayerName(DBPreferences.INSTANCE.svgLayerNaming.get(), drawingPen.getDisplayName(), "" + (index + 1));
+
+            Document graphicsDocument = domImpl.createDocument(SVGExporter.SVG_NS, SVGExporter.SVG, null);
+            SVGGraphics2D graphics = new SVGGraphics2D(graphicsDocument);
+            Element group = graphicsDocument.createElementNS(SVGConstants.SVG_NAMESPACE_URI, SVGConstants.SVG_G_TAG);
+            group.setAttribute("id", layerName.replace(' ', '_'));
+
+            graphics.setTopLevelGroup(group);
+            graphics.setSVGCanvasSize(new Dimension(scaledPageWidth, scaledPageHeight));
+            graphics.transform(AffineTransform.getScaleInstance(scale, scale));
+
+            Graphics2DExporter.preDraw(exportTask, graphics);
+            Graphics2DExporter.drawGeometries(exportTask, graphics, (d, geometry, pen) -> pen == drawingPen);
+
+            if(group.hasChildNodes()){
+                svgRoot.appendChild(document.importNode(group, true));
+            }
+            graphics.dispose();
+            index++;
+        }
+
+        StringWriter writer = new StringWriter();
+        new SVGGraphics2D(document).stream(svgRoot, writer, true, true);
+        return writer.toString();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @param commands the path commands, with the implied commands of repeated segments written out
+     * @param points the points of the path in page space
+     * @param strokeWidth the stroke width in page space
+     */
+    private record LayerShape(String commands, double[] points, double strokeWidth){}
+
+    private record Layer(String id, String stroke, List<LayerShape> shapes){}
+
+    private static Document parseDocument(String svg) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        //don't fetch the SVG DTD referenced by Batik's output
+        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        return factory.newDocumentBuilder().parse(new InputSource(new StringReader(svg)));
+    }
+
+    private static List<Layer> parseLayers(String svg) throws Exception {
+        List<Layer> layers = new ArrayList<>();
+        for(Node node = parseDocument(svg).getDocumentElement().getFirstChild(); node != null; node = node.getNextSibling()){
+            if(node instanceof Element element && element.getTagName().equals("g") && !element.getAttribute("id").equals("Background")){
+                Layer layer = new Layer(element.getAttribute("id"), getStyle(element, "stroke"), new ArrayList<>());
+                collectShapes(element, new AffineTransform(), 1D, layer.shapes);
+                layers.add(layer);
+            }
+        }
+        return layers;
+    }
+
+    /**
+     * Finds the paths & lines in the element and its children, applying the transforms & stroke widths of their parents
+     */
+    private static void collectShapes(Element element, AffineTransform parentTransform, double parentStrokeWidth, List<LayerShape> shapes){
+        AffineTransform transform = new AffineTransform(parentTransform);
+        transform.concatenate(parseTransform(element.getAttribute("transform")));
+        String strokeWidthValue = getStyle(element, "stroke-width");
+        double strokeWidth = strokeWidthValue == null ? parentStrokeWidth : Double.parseDouble(strokeWidthValue);
+        double pageStrokeWidth = strokeWidth * Math.sqrt(Math.abs(transform.getDeterminant()));
+
+        switch (element.getTagName()) {
+            case "path" -> {
+                StringBuilder commands = new StringBuilder();
+                List<Double> coords = new ArrayList<>();
+                char command = 0;
+                int remaining = 0;
+                Matcher matcher = PATH_TOKEN.matcher(element.getAttribute("d"));
+                while(matcher.find()){
+                    String token = matcher.group();
+                    if(Character.isLetter(token.charAt(0))){
+                        Assert.assertTrue("Relative path commands aren't supported", Character.isUpperCase(token.charAt(0)));
+                        command = token.charAt(0);
+                        if(command == 'Z'){
+                            commands.append('Z');
+                        }
+                        remaining = 0;
+                        continue;
+                    }
+                    if(remaining == 0){
+                        //the command can be omitted for repeated segments, segments repeated after a move are lines
+                        commands.append(command);
+                        remaining = command == 'Q' ? 4 : command == 'C' ? 6 : 2;
+                        if(command == 'M'){
+                            command = 'L';
+                        }
+                    }
+                    coords.add(Double.parseDouble(token));
+                    remaining--;
+                }
+                shapes.add(new LayerShape(commands.toString(), transformPoints(transform, coords), pageStrokeWidth));
+            }
+            case "line" -> {
+                List<Double> coords = List.of(Double.parseDouble(element.getAttribute("x1")), Double.parseDouble(element.getAttribute("y1")), Double.parseDouble(element.getAttribute("x2")), Double.parseDouble(element.getAttribute("y2")));
+                shapes.add(new LayerShape("ML", transformPoints(transform, coords), pageStrokeWidth));
+            }
+            default -> {
+                for(Node child = element.getFirstChild(); child != null; child = child.getNextSibling()){
+                    if(child instanceof Element childElement){
+                        collectShapes(childElement, transform, strokeWidth, shapes);
+                    }
+                }
+            }
+        }
+    }
+
+    private static double[] transformPoints(AffineTransform transform, List<Double> coords){
+        double[] points = new double[coords.size()];
+        for(int i = 0; i < points.length; i++){
+            points[i] = coords.get(i);
+        }
+        transform.transform(points, 0, points, 0, points.length / 2);
+        return points;
+    }
+
+    private static AffineTransform parseTransform(String value){
+        AffineTransform transform = new AffineTransform();
+        Matcher matcher = Pattern.compile("(\\w+)\\s*\\(([^)]*)\\)").matcher(value);
+        while(matcher.find()){
+            String[] split = matcher.group(2).trim().split("[\\s,]+");
+            double[] args = new double[split.length];
+            for(int i = 0; i < split.length; i++){
+                args[i] = Double.parseDouble(split[i]);
+            }
+            switch (matcher.group(1)) {
+                case "matrix" -> transform.concatenate(new AffineTransform(args));
+                case "translate" -> transform.translate(args[0], args.length > 1 ? args[1] : 0);
+                case "scale" -> transform.scale(args[0], args.length > 1 ? args[1] : args[0]);
+                case "rotate" -> transform.rotate(Math.toRadians(args[0]), args.length > 2 ? args[1] : 0, args.length > 2 ? args[2] : 0);
+                default -> Assert.fail("Unsupported transform: " + matcher.group(1));
+            }
+        }
+        return transform;
+    }
+
+    /**
+     * @return the value of the presentation attribute or the property in the elements style attribute
+     */
+    private static String getStyle(Element element, String name){
+        if(element.hasAttribute(name)){
+            return element.getAttribute(name);
+        }
+        for(String declaration : element.getAttribute("style").split(";")){
+            String[] split = declaration.split(":", 2);
+            if(split.length == 2 && split[0].trim().equals(name)){
+                return split[1].trim();
+            }
+        }
+        return null;
+    }
+}
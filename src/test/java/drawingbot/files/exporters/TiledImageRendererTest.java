@@ -0,0 +1,123 @@
+package drawingbot.files.exporters;
+
+import drawingbot.DrawingBotV3;
+import drawingbot.JUnitDBV3ClassRunner;
+import drawingbot.api.IGeometryFilter;
+import drawingbot.geom.shapes.*;
+import drawingbot.image.blend.EnumBlendMode;
+import drawingbot.plotting.AsynchronousGeometryIterator;
+import drawingbot.plotting.PlottedDrawing;
+import drawingbot.plotting.canvas.SimpleCanvas;
+import drawingbot.render.RenderUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnitDBV3ClassRunner.class)
+public class TiledImageRendererTest {
+
+    /**the largest difference allowed in any channel, the anti-aliasing of shapes crossing the tile edges can differ slightly*/
+    public static final int CHANNEL_TOLERANCE = 2;
+    /**the fraction of pixels which may exceed the channel tolerance*/
+    public static final double PIXEL_TOLERANCE = 0.001;
+
+    private static PlottedDrawing drawing;
+    private static int renderedGeometries;
+
+    @BeforeClass
+    public static void setup() {
+        // spans multiple tiles in both directions, with partial tiles on the right & bottom edges
+        SimpleCanvas canvas = new SimpleCanvas(700, 500);
+        drawing = new PlottedDrawing(canvas, DrawingBotV3.project().getDrawingSets());
+        drawing.newPlottedGroup(DrawingBotV3.project().getDrawingSets().activeDrawingSet.get(), null);
+        int penCount = DrawingBotV3.project().getDrawingSets().activeDrawingSet.get().pens.size();
+
+        Random random = new Random(0);
+        for(int i = 0; i < 2000; i++){
+            float x = random.nextFloat() * 760 - 30;
+            float y = random.nextFloat() * 560 - 30;
+            IGeometry geometry = switch (i % 4){
+                case 0 -> new GQuadCurve(x, y, x + random.nextFloat() * 80 - 40, y + random.nextFloat() * 80 - 40, x + random.nextFloat() * 80 - 40, y + random.nextFloat() * 80 - 40);
+                case 1 -> new GCubicCurve(x, y, x + 30, y - 20, x - 10, y + 60, x + random.nextFloat() * 120 - 60, y + random.nextFloat() * 120 - 60);
+                default -> new GLine(x, y, x + random.nextFloat() * 300 - 150, y + random.nextFloat() * 300 - 150);
+            };
+            geometry.setPenIndex(random.nextInt(penCount));
+            drawing.addGeometry(geometry);
+        }
+    }
+
+    @Test
+    public void testMatchesImageRenderer() {
+        ImageRenderer imageRenderer = new ImageRenderer(DrawingBotV3.context(), drawing.getCanvas(), EnumBlendMode.NORMAL, false, BufferedImage.TYPE_INT_ARGB, true);
+        Graphics2D graphics = imageRenderer.getGraphics();
+        Graphics2DExporter.preDraw(drawing, graphics);
+        RenderUtils.renderDrawingAWT(graphics, new AsynchronousGeometryIterator(drawing), IGeometryFilter.BYPASS_FILTER, 0, 0);
+        imageRenderer.dispose();
+        BufferedImage expected = imageRenderer.createExportImage();
+
+        TiledImageRenderer tiledRenderer = createTiledRenderer();
+        Assert.assertTrue(tiledRenderer.getBandCount() > 1);
+        AtomicInteger finishedGeometries = new AtomicInteger();
+        tiledRenderer.setBandListener((band, finished) -> finishedGeometries.addAndGet(finished));
+        RenderedImage tiled = tiledRenderer.createExportImage();
+
+        Assert.assertEquals(expected.getWidth(), tiled.getWidth());
+        Assert.assertEquals(expected.getHeight(), tiled.getHeight());
+
+        Raster raster = tiled.getData();
+        int[] pixel = new int[4];
+        int mismatches = 0;
+        for(int y = 0; y < expected.getHeight(); y++){
+            for(int x = 0; x < expected.getWidth(); x++){
+                int argb = expected.getRGB(x, y);
+                raster.getPixel(x, y, pixel);
+                int difference = Math.max(Math.max(Math.abs(((argb >> 16) & 0xFF) - pixel[0]), Math.abs(((argb >> 8) & 0xFF) - pixel[1])), Math.max(Math.abs((argb & 0xFF) - pixel[2]), Math.abs((argb >>> 24) - pixel[3])));
+                if(difference > CHANNEL_TOLERANCE){
+                    mismatches++;
+                }
+            }
+        }
+        int allowed = (int) (expected.getWidth() * expected.getHeight() * PIXEL_TOLERANCE);
+        Assert.assertTrue("%s pixels differ, %s allowed".formatted(mismatches, allowed), mismatches <= allowed);
+
+        //every geometry is reported as finished exactly once, once its last band is rendered
+        Assert.assertEquals(renderedGeometries, finishedGeometries.get());
+        tiled.getData();
+        Assert.assertEquals(renderedGeometries, finishedGeometries.get());
+    }
+
+    /**
+     * Interrupting the writing thread must surface as a cancellation, not a failure, and leave the interrupt flag set
+     */
+    @Test
+    public void testInterrupted() {
+        RenderedImage tiled = createTiledRenderer().createExportImage();
+        Thread.currentThread().interrupt();
+        try{
+            Assert.assertThrows(CancellationException.class, tiled::getData);
+            Assert.assertTrue(Thread.currentThread().isInterrupted());
+        }finally{
+            Thread.interrupted();
+        }
+    }
+
+    private static TiledImageRenderer createTiledRenderer(){
+        TiledImageRenderer renderer = new TiledImageRenderer(DrawingBotV3.context(), drawing, EnumBlendMode.NORMAL, true, true);
+        renderedGeometries = 0;
+        RenderUtils.renderDrawing(renderer, new AsynchronousGeometryIterator(drawing), IGeometryFilter.BYPASS_FILTER, 0, 0, (r, geometry, d, group, pen) -> {
+            r.addGeometry(geometry, group, pen);
+            renderedGeometries++;
+        });
+        Assert.assertTrue(renderedGeometries > 0);
+        return renderer;
+    }
+}
@@ -0,0 +1,235 @@
+package drawingbot.geom;
+
+import drawingbot.geom.shapes.GCubicCurve;
+import drawingbot.geom.shapes.GLine;
+import drawingbot.geom.shapes.GQuadCurve;
+import drawingbot.geom.shapes.IGeometry;
+import drawingbot.image.PixelDataMask;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class GeometryClipperTest {
+
+    @Test
+    public void testRectangleClipping() {
+        GeometryClipper clipper = GeometryClipper.create(new Rectangle2D.Double(0, 0, 10, 10));
+
+        GLine inside = new GLine(2, 2, 8, 8);
+        List<IGeometry> result = clipper.clip(inside, false);
+        Assert.assertEquals(1, result.size());
+        Assert.assertSame(inside, result.get(0));
+
+        assertLine(clipper.clip(new GLine(-5, 5, 15, 5), false).get(0), 0, 5, 10, 5);
+        Assert.assertTrue(clipper.clip(new GLine(-5, -5, -1, 20), false).isEmpty());
+
+        List<IGeometry> outside = clipper.clip(new GLine(-5, 5, 15, 5), true);
+        Assert.assertEquals(2, outside.size());
+        assertLine(outside.get(0), -5, 5, 0, 5);
+        assertLine(outside.get(1), 10, 5, 15, 5);
+    }
+
+    @Test
+    public void testShapeClipping() {
+        Path2D ring = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+        ring.append(new Rectangle2D.Double(0, 0, 10, 10), false);
+        ring.append(new Rectangle2D.Double(3, 3, 4, 4), false);
+        GeometryClipper clipper = GeometryClipper.create(ring);
+
+        List<IGeometry> result = clipper.clip(new GLine(-1, 5, 11, 5), false);
+        Assert.assertEquals(2, result.size());
+        assertLine(result.get(0), 0, 5, 3, 5);
+        assertLine(result.get(1), 7, 5, 10, 5);
+
+        GeometryClipper ellipse = GeometryClipper.create(new Ellipse2D.Double(0, 0, 10, 10));
+        Assert.assertTrue(ellipse.contains(5, 5));
+        Assert.assertFalse(ellipse.contains(0.5, 0.5));
+        assertLine(ellipse.clip(new GLine(-5, 5, 15, 5), false).get(0), 0, 5, 10, 5);
+    }
+
+    @Test
+    public void testMaskClipping() {
+        //columns 5 - 14 are inside of the mask
+        PixelDataMask mask = new PixelDataMask(20, 20, new Rectangle(5, 0, 10, 20));
+        GeometryClipper clipper = GeometryClipper.create(mask);
+        Assert.assertTrue(clipper instanceof GeometryClipper.MaskClipper);
+
+        assertLine(clipper.clip(new GLine(0, 10.5F, 20, 10.5F), false).get(0), 5, 10.5F, 15, 10.5F);
+        List<IGeometry> outside = clipper.clip(new GLine(0, 10.5F, 20, 10.5F), true);
+        Assert.assertEquals(2, outside.size());
+        assertLine(outside.get(0), 0, 10.5F, 5, 10.5F);
+        assertLine(outside.get(1), 15, 10.5F, 20, 10.5F);
+
+        //lines which extend beyond the masks bounds
+        List<IGeometry> result = clipper.clip(new GLine(-10, 10.5F, 30, 10.5F), false);
+        Assert.assertEquals(1, result.size());
+        assertLine(result.get(0), 5, 10.5F, 15, 10.5F);
+        outside = clipper.clip(new GLine(30, 10.5F, -10, 10.5F), true);
+        Assert.assertEquals(2, outside.size());
+        assertLine(outside.get(0), 30, 10.5F, 15, 10.5F);
+        assertLine(outside.get(1), 5, 10.5F, -10, 10.5F);
+        Assert.assertTrue(clipper.clip(new GLine(-10, -5, 30, -5), false).isEmpty());
+
+        GLine inside = new GLine(6, 1, 14, 19);
+        Assert.assertSame(inside, clipper.clip(inside, false).get(0));
+    }
+
+    /**
+     * Every part of the line must be kept by either the inside or the outside clip, and each piece must be on the correct side of the mask
+     */
+    @Test
+    public void testMaskClippingRandom() {
+        Ellipse2D ellipse = new Ellipse2D.Double(4, 3, 30, 24);
+        PixelDataMask mask = new PixelDataMask(40, 32, ellipse);
+        GeometryClipper clipper = GeometryClipper.create(mask);
+        Random random = new Random(0);
+        for(int i = 0; i < 500; i++){
+            GLine line = new GLine(random.nextFloat() * 50 - 5, random.nextFloat() * 42 - 5, random.nextFloat() * 50 - 5, random.nextFloat() * 42 - 5);
+            double length = 0;
+            for(boolean outside : new boolean[]{false, true}){
+                for(IGeometry piece : clipper.clip(line, outside)){
+                    GLine pieceLine = (GLine) piece;
+                    double pieceLength = Math.hypot(pieceLine.getX2() - pieceLine.getX1(), pieceLine.getY2() - pieceLine.getY1());
+                    length += pieceLength;
+                    if(pieceLength > 0.01){
+                        double midX = (pieceLine.getX1() + pieceLine.getX2()) / 2D, midY = (pieceLine.getY1() + pieceLine.getY2()) / 2D;
+                        Assert.assertEquals("Line " + i + " midpoint " + midX + ", " + midY, !outside, mask.contains(midX, midY));
+                    }
+                }
+            }
+            Assert.assertEquals("Line " + i, Math.hypot(line.getX2() - line.getX1(), line.getY2() - line.getY1()), length, 0.001);
+        }
+    }
+
+    @Test
+    public void testCurveClipping() {
+        GeometryClipper clipper = GeometryClipper.create(new Rectangle2D.Double(0, 0, 100, 100));
+
+        //enters through the left edge, leaves & re-enters through the top edge and then leaves through the right edge
+        GQuadCurve quad = new GQuadCurve(-20, 50, 50, -80, 120, 50);
+        quad.setPenIndex(3);
+        assertCurvePieces(clipper, quad, false, 2);
+        assertCurvePieces(clipper, quad, true, 3);
+        assertClippedLength(clipper, quad);
+
+        //starts inside and leaves through the right edge, the start point is kept exactly
+        GCubicCurve cubic = new GCubicCurve(50, 50, 80, 0, 120, 100, 150, 50);
+        cubic.setPenIndex(2);
+        List<IGeometry> result = assertCurvePieces(clipper, cubic, false, 1);
+        float[] start = getStartPoint(result.get(0).getAWTShape());
+        Assert.assertEquals(50, start[0], 0);
+        Assert.assertEquals(50, start[1], 0);
+        assertCurvePieces(clipper, cubic, true, 1);
+        assertClippedLength(clipper, cubic);
+
+        GCubicCurve inside = new GCubicCurve(10, 10, 40, 90, 60, 0, 90, 90);
+        Assert.assertSame(inside, clipper.clip(inside, false).get(0));
+        Assert.assertTrue(clipper.clip(inside, true).isEmpty());
+        GQuadCurve outside = new GQuadCurve(110, 10, 150, 50, 110, 90);
+        Assert.assertTrue(clipper.clip(outside, false).isEmpty());
+        Assert.assertSame(outside, clipper.clip(outside, true).get(0));
+    }
+
+    @Test
+    public void testMaskCurveClipping() {
+        GeometryClipper clipper = GeometryClipper.create(new PixelDataMask(20, 20, new Rectangle(5, 0, 10, 20)));
+
+        //x moves linearly from 0 to 20, so the curve crosses the edges of the mask at t = 0.25 and t = 0.75
+        GQuadCurve quad = new GQuadCurve(0, 2, 10, 30, 20, 2);
+        List<IGeometry> result = assertCurvePieces(clipper, quad, false, 1);
+        float[] start = getStartPoint(result.get(0).getAWTShape());
+        Assert.assertEquals(5, start[0], 0.01F);
+        Assert.assertEquals(12.5F, start[1], 0.01F);
+        assertCurvePieces(clipper, quad, true, 2);
+        assertClippedLength(clipper, quad);
+    }
+
+    private static void assertLine(IGeometry geometry, float x1, float y1, float x2, float y2){
+        Assert.assertTrue(geometry instanceof GLine);
+        GLine line = (GLine) geometry;
+        Assert.assertEquals(x1, line.getX1(), 0.01F);
+        Assert.assertEquals(y1, line.getY1(), 0.01F);
+        Assert.assertEquals(x2, line.getX2(), 0.01F);
+        Assert.assertEquals(y2, line.getY2(), 0.01F);
+    }
+
+    /**
+     * Checks the pieces are still curves and are on the correct side of the clipping shape, away from the points where they were split
+     */
+    private static List<IGeometry> assertCurvePieces(GeometryClipper clipper, IGeometry curve, boolean outside, int expectedPieces){
+        List<IGeometry> pieces = clipper.clip(curve, outside);
+        Assert.assertEquals(expectedPieces, pieces.size());
+        for(IGeometry piece : pieces){
+            Assert.assertNotSame(curve, piece);
+            Assert.assertEquals(curve.getPenIndex(), piece.getPenIndex());
+
+            boolean hasCurve = false;
+            PathIterator iterator = piece.getAWTShape().getPathIterator(null);
+            float[] coords = new float[6];
+            while(!iterator.isDone()){
+                int type = iterator.currentSegment(coords);
+                Assert.assertNotEquals(PathIterator.SEG_LINETO, type);
+                hasCurve |= type == PathIterator.SEG_CUBICTO;
+                iterator.next();
+            }
+            Assert.assertTrue(hasCurve);
+
+            List<float[]> points = getFlattenedPoints(piece.getAWTShape());
+            float[] first = points.get(0), last = points.get(points.size() - 1);
+            for(float[] point : points){
+                if(Math.hypot(point[0] - first[0], point[1] - first[1]) > 0.5 && Math.hypot(point[0] - last[0], point[1] - last[1]) > 0.5){
+                    Assert.assertEquals("Point " + point[0] + ", " + point[1], !outside, clipper.contains(point[0], point[1]));
+                }
+            }
+        }
+        return pieces;
+    }
+
+    /**
+     * The pieces kept by the inside & outside clips must add up to the whole curve
+     */
+    private static void assertClippedLength(GeometryClipper clipper, IGeometry curve){
+        double length = 0;
+        for(boolean outside : new boolean[]{false, true}){
+            for(IGeometry piece : clipper.clip(curve, outside)){
+                length += getLength(piece.getAWTShape());
+            }
+        }
+        double expected = getLength(curve.getAWTShape());
+        Assert.assertEquals(expected, length, expected * 0.001);
+    }
+
+    private static float[] getStartPoint(Shape shape){
+        return getFlattenedPoints(shape).get(0);
+    }
+
+    private static double getLength(Shape shape){
+        List<float[]> points = getFlattenedPoints(shape);
+        double length = 0;
+        for(int i = 1; i < points.size(); i++){
+            length += Math.hypot(points.get(i)[0] - points.get(i - 1)[0], points.get(i)[1] - points.get(i - 1)[1]);
+        }
+        return length;
+    }
+
+    private static List<float[]> getFlattenedPoints(Shape shape){
+        List<float[]> points = new ArrayList<>();
+        PathIterator iterator = shape.getPathIterator(null, 0.01);
+        float[] coords = new float[6];
+        while(!iterator.isDone()){
+            iterator.currentSegment(coords);
+            points.add(new float[]{coords[0], coords[1]});
+            iterator.next();
+        }
+        return points;
+    }
+}
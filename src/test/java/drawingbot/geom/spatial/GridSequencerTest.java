@@ -0,0 +1,247 @@
+package drawingbot.geom.spatial;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class GridSequencerTest {
+
+    public static final int CITY_COUNT = 3000;
+    /**allows for the rounding of the summed distances*/
+    public static final double EPSILON = 1e-6;
+
+    @Test
+    public void testEmpty() {
+        Assert.assertTrue(new TestSequencer(new ArrayList<>()).sort().isEmpty());
+
+        List<City> single = List.of(new City(0, 10, 10, 20, 20, true, false));
+        List<City> sorted = new TestSequencer(single).sort();
+        Assert.assertEquals(1, sorted.size());
+        Assert.assertEquals(0, sorted.get(0).id);
+    }
+
+    @Test
+    public void testReversible() {
+        assertSorted(createCities(CITY_COUNT, 1F, 0));
+    }
+
+    @Test
+    public void testNotReversible() {
+        assertSorted(createCities(CITY_COUNT, 0F, 1));
+    }
+
+    @Test
+    public void testMixed() {
+        assertSorted(createCities(CITY_COUNT, 0.5F, 2));
+    }
+
+    /**
+     * Points which share their start / end, e.g. closed shapes, and many cities at the same location
+     */
+    @Test
+    public void testDuplicates() {
+        List<City> cities = new ArrayList<>();
+        Random random = new Random(3);
+        for(int i = 0; i < CITY_COUNT; i++){
+            double x = random.nextInt(10) * 10;
+            double y = random.nextInt(10) * 10;
+            boolean closed = random.nextBoolean();
+            cities.add(new City(i, x, y, closed ? x : x + 5, closed ? y : y + 5, random.nextBoolean(), false));
+        }
+        assertSorted(cities);
+    }
+
+    /**
+     * The improvement pass is limited by work rather than time, so the same cities must always be sorted the same way
+     */
+    @Test
+    public void testDeterministic() {
+        List<City> cities = createCities(CITY_COUNT, 0.75F, 4);
+        List<City> first = new TestSequencer(cities).sort();
+        List<City> second = new TestSequencer(cities).sort();
+        Assert.assertEquals(first, second);
+
+        //a tiny budget stops the improvement early, but must still be reproducible
+        TestSequencer limitedA = new TestSequencer(cities);
+        limitedA.setImprovementBudget(1);
+        TestSequencer limitedB = new TestSequencer(cities);
+        limitedB.setImprovementBudget(1);
+        Assert.assertEquals(limitedA.sort(), limitedB.sort());
+    }
+
+    @Test
+    public void testNoImprovement() {
+        List<City> cities = createCities(CITY_COUNT, 1F, 5);
+        TestSequencer sequencer = new TestSequencer(cities);
+        sequencer.setImprovementBudget(0);
+        List<City> sorted = sequencer.sort();
+        Assert.assertEquals(sequencer.greedyDistance, sequencer.sortedDistance, 0);
+        Assert.assertEquals(getNearestNeighbourDistance(cities), getTourDistance(sorted), EPSILON);
+    }
+
+    /**
+     * An interrupted sort skips the rest of the improvement pass, but must still return every city
+     */
+    @Test
+    public void testInterrupted() {
+        List<City> cities = createCities(CITY_COUNT, 1F, 6);
+        TestSequencer sequencer = new TestSequencer(cities);
+        Thread.currentThread().interrupt();
+        List<City> sorted;
+        try{
+            sorted = sequencer.sort();
+        }finally{
+            Thread.interrupted();
+        }
+        assertEmittedOnce(cities, sorted);
+    }
+
+    /**
+     * Checks every city is emitted exactly once, only reversible cities are reversed and the pen up distance isn't worse than a simple nearest neighbour tour
+     */
+    private static void assertSorted(List<City> cities){
+        TestSequencer sequencer = new TestSequencer(cities);
+        List<City> sorted = sequencer.sort();
+        assertEmittedOnce(cities, sorted);
+
+        double distance = getTourDistance(sorted);
+        Assert.assertEquals(sequencer.sortedDistance, distance, EPSILON);
+        Assert.assertTrue("The improvement made the tour longer", sequencer.sortedDistance <= sequencer.greedyDistance + EPSILON);
+
+        double nearestNeighbour = getNearestNeighbourDistance(cities);
+        Assert.assertTrue("Sorted %s, Nearest Neighbour %s".formatted(distance, nearestNeighbour), distance <= nearestNeighbour + EPSILON);
+        Assert.assertTrue("Sorted %s, Original %s".formatted(distance, sequencer.originalDistance), distance <= sequencer.originalDistance + EPSILON);
+    }
+
+    private static void assertEmittedOnce(List<City> cities, List<City> sorted){
+        Assert.assertEquals(cities.size(), sorted.size());
+        boolean[] emitted = new boolean[cities.size()];
+        for(City city : sorted){
+            Assert.assertFalse("City " + city.id + " emitted twice", emitted[city.id]);
+            emitted[city.id] = true;
+
+            City original = cities.get(city.id);
+            if(city.reversed){
+                Assert.assertTrue("City " + city.id + " can't be reversed", original.reversible);
+                Assert.assertEquals(original.reverse(), city);
+            }else{
+                Assert.assertEquals(original, city);
+            }
+        }
+    }
+
+    /**
+     * @return the pen up distance of the cities in the given order, starting from the origin
+     */
+    private static double getTourDistance(List<City> cities){
+        double total = 0;
+        double x = 0, y = 0;
+        for(City city : cities){
+            total += distance(x, y, city.startX, city.startY);
+            x = city.endX;
+            y = city.endY;
+        }
+        return total;
+    }
+
+    /**
+     * A brute force nearest neighbour tour, starting from the origin and moving to the closest end point of the remaining cities
+     */
+    private static double getNearestNeighbourDistance(List<City> cities){
+        boolean[] visited = new boolean[cities.size()];
+        double total = 0;
+        double x = 0, y = 0;
+        for(int i = 0; i < cities.size(); i++){
+            int nearest = -1;
+            boolean nearestReversed = false;
+            double nearestDistance = Double.MAX_VALUE;
+            for(int c = 0; c < cities.size(); c++){
+                if(visited[c]){
+                    continue;
+                }
+                City city = cities.get(c);
+                double distance = distance(x, y, city.startX, city.startY);
+                if(distance < nearestDistance){
+                    nearest = c;
+                    nearestReversed = false;
+                    nearestDistance = distance;
+                }
+                if(city.reversible){
+                    distance = distance(x, y, city.endX, city.endY);
+                    if(distance < nearestDistance){
+                        nearest = c;
+                        nearestReversed = true;
+                        nearestDistance = distance;
+                    }
+                }
+            }
+            visited[nearest] = true;
+            total += nearestDistance;
+            City city = cities.get(nearest);
+            x = nearestReversed ? city.startX : city.endX;
+            y = nearestReversed ? city.startY : city.endY;
+        }
+        return total;
+    }
+
+    private static double distance(double x1, double y1, double x2, double y2){
+        //the same formula as the sequencer, so ties between equally distant cities are broken the same way
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * @param reversibleChance the chance of each city being reversible
+     */
+    private static List<City> createCities(int count, float reversibleChance, long seed){
+        Random random = new Random(seed);
+        List<City> cities = new ArrayList<>();
+        for(int i = 0; i < count; i++){
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            double angle = random.nextDouble() * Math.PI * 2;
+            double length = random.nextDouble() * 20;
+            cities.add(new City(i, x, y, x + Math.cos(angle) * length, y + Math.sin(angle) * length, random.nextFloat() < reversibleChance, false));
+        }
+        return cities;
+    }
+
+    private record City(int id, double startX, double startY, double endX, double endY, boolean reversible, boolean reversed){
+
+        private City reverse(){
+            return new City(id, endX, endY, startX, startY, reversible, !reversed);
+        }
+    }
+
+    private static class TestSequencer extends GridSequencer<City> {
+
+        private TestSequencer(List<City> cities) {
+            super(cities, 0D);
+        }
+
+        @Override
+        protected Coordinate getStartCoordinateFromCity(City city) {
+            return new Coordinate(city.startX, city.startY);
+        }
+
+        @Override
+        protected Coordinate getEndCoordinateFromCity(City city) {
+            return new Coordinate(city.endX, city.endY);
+        }
+
+        @Override
+        public City reverseCity(City city) {
+            return city.reverse();
+        }
+
+        @Override
+        public boolean canReverse(City city) {
+            return city.reversible;
+        }
+    }
+}
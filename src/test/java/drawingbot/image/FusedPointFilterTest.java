@@ -0,0 +1,116 @@
+package drawingbot.image;
+
+import drawingbot.JUnitDBV3ClassRunner;
+import drawingbot.TestUtils;
+import drawingbot.files.json.JsonLoaderManager;
+import drawingbot.files.json.presets.PresetImageFilters;
+import drawingbot.javafx.GenericFactory;
+import drawingbot.javafx.GenericPreset;
+import drawingbot.javafx.GenericSetting;
+import drawingbot.javafx.observables.ObservableImageFilter;
+import drawingbot.registry.MasterRegistry;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(JUnitDBV3ClassRunner.class)
+public class FusedPointFilterTest {
+
+    private static BufferedImage image;
+    private static GenericPreset<PresetImageFilters> imageFilterPreset;
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        BufferedImage loaded = BufferedImageLoader.loadImage("images/testimage.jpg", true);
+        Assert.assertNotNull(loaded);
+        image = new BufferedImage(loaded.getWidth(), loaded.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.drawImage(loaded, 0, 0, null);
+        graphics.dispose();
+
+        InputStream stream = TestUtils.class.getResourceAsStream("/presets/filter_unit_test.json");
+        imageFilterPreset = JsonLoaderManager.importPresetFile(stream, null);
+        Assert.assertNotNull(imageFilterPreset);
+    }
+
+    /**
+     * Each separable filter on its own is applied with a lookup table, which must match the filter itself
+     */
+    @Test
+    public void testSeparableFilters() {
+        List<ObservableImageFilter> filters = getPointWiseFilters();
+        int tested = 0;
+        for(ObservableImageFilter filter : filters){
+            if(FusedPointFilter.isSeparable(filter.getBufferedImageOp())){
+                assertMatchesSequential(List.of(filter));
+                tested++;
+            }
+        }
+        Assert.assertTrue("No separable filters were tested", tested > 0);
+    }
+
+    /**
+     * Every point-wise filter one after another, so the lookup tables are composed and interleaved with the non-separable filters
+     */
+    @Test
+    public void testFilterChain() {
+        List<ObservableImageFilter> filters = getPointWiseFilters();
+        assertMatchesSequential(filters);
+
+        List<ObservableImageFilter> reversed = new ArrayList<>(filters);
+        Collections.reverse(reversed);
+        assertMatchesSequential(reversed);
+    }
+
+    private static void assertMatchesSequential(List<ObservableImageFilter> filters){
+        String message = filters.stream().map(filter -> filter.name.get()).toList().toString();
+
+        BufferedImage expected = image;
+        for(ObservableImageFilter filter : filters){
+            expected = filter.getBufferedImageOp().filter(expected, null);
+        }
+        BufferedImage fused = new FusedPointFilter(filters).filter(image, null);
+
+        Assert.assertEquals(message, expected.getWidth(), fused.getWidth());
+        Assert.assertEquals(message, expected.getHeight(), fused.getHeight());
+        for(int y = 0; y < expected.getHeight(); y++){
+            for(int x = 0; x < expected.getWidth(); x++){
+                int expectedARGB = expected.getRGB(x, y);
+                int fusedARGB = fused.getRGB(x, y);
+                if(expectedARGB != fusedARGB){
+                    Assert.fail("%s: pixel (%s, %s) expected %08x but was %08x".formatted(message, x, y, expectedARGB, fusedARGB));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return every registered filter which can be fused, with the settings from the filter unit test preset
+     */
+    private static List<ObservableImageFilter> getPointWiseFilters(){
+        List<ObservableImageFilter> filters = new ArrayList<>();
+        for (List<GenericFactory<BufferedImageOp>> factories : MasterRegistry.INSTANCE.imgFilterFactories.values()) {
+            for (GenericFactory<BufferedImageOp> factory : factories) {
+                ObservableImageFilter observableFilter = new ObservableImageFilter(factory);
+                if(!FusedPointFilter.canFuse(observableFilter.getBufferedImageOp())){
+                    continue;
+                }
+                imageFilterPreset.data.filters.stream().filter(presetFilter -> presetFilter.type.equals(factory.getRegistryName())).findFirst().ifPresent(presetFilter -> GenericSetting.applySettings(presetFilter.settings, observableFilter.filterSettings));
+                observableFilter.enable.set(true);
+                filters.add(observableFilter);
+            }
+        }
+        Assert.assertFalse("No point-wise filters are registered", filters.isEmpty());
+        return filters;
+    }
+}
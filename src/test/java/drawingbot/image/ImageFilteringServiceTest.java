@@ -0,0 +1,172 @@
+package drawingbot.image;
+
+import drawingbot.JUnitDBV3ClassRunner;
+import drawingbot.image.format.ImageData;
+import drawingbot.javafx.GenericSetting;
+import drawingbot.javafx.observables.ObservableImageFilter;
+import drawingbot.javafx.preferences.DBPreferences;
+import drawingbot.plotting.canvas.SimpleCanvas;
+import drawingbot.registry.MasterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Random;
+
+/**
+ * Checks the filtered image from the {@link ImageFilteringService} matches applying every filter to the whole image in turn, after partial updates and cache evictions
+ */
+@RunWith(JUnitDBV3ClassRunner.class)
+public class ImageFilteringServiceTest {
+
+    public static final int WIDTH = 1024;
+    public static final int HEIGHT = 1024;
+
+    private ImageFilteringService service;
+    private ImageFilterSettings settings;
+    private BufferedImage cropped;
+    private int defaultCacheSize;
+
+    @Before
+    public void setup() {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Random random = new Random(0);
+        for(int y = 0; y < HEIGHT; y++){
+            for(int x = 0; x < WIDTH; x++){
+                image.setRGB(x, y, random.nextInt() | 0xFF000000);
+            }
+        }
+
+        settings = new ImageFilterSettings();
+        addFilter("Gaussian Blur", "Radius", 6F);
+        //consecutive point-wise filters are fused, only the last has a cached result
+        addFilter("Contrast", "Contrast", 1.4F);
+        addFilter("Gamma", "Gamma", 0.8F);
+        addFilter("Box Blur", "H Radius", 3F);
+        addFilter("Sharpen", null, null);
+        addFilter("Invert", null, null);
+
+        SimpleCanvas canvas = new SimpleCanvas(WIDTH, HEIGHT);
+        ImageData imageData = new ImageData(null, image);
+        cropped = imageData.createCroppedImage(canvas);
+        Assert.assertTrue("The image is too small to be split into bands", (long) cropped.getWidth() * cropped.getHeight() > TiledImageFilter.MIN_PIXELS);
+
+        service = new ImageFilteringService();
+        service.setTargetCanvas(canvas);
+        service.setImageData(imageData);
+        service.setImageSettings(settings);
+
+        defaultCacheSize = DBPreferences.INSTANCE.imageFilterCacheSize.get();
+    }
+
+    @After
+    public void cleanup() {
+        DBPreferences.INSTANCE.imageFilterCacheSize.set(defaultCacheSize);
+        service.dispose();
+    }
+
+    /**
+     * The blurs are split into bands by the {@link TiledImageFilter}, the result must be identical to the untiled filters
+     */
+    @Test
+    public void testMatchesUntiled() throws InterruptedException {
+        BufferedImage result = service.updateImmediately();
+        assertMatchesUntiled("Full Update", result);
+
+        //only the filters after the changed filter are updated, from the cached result before it
+        setFilterSetting(3, "H Radius", 5F);
+        assertMatchesUntiled("Partial Update", service.updateImmediately());
+
+        setFilterSetting(1, "Contrast", 0.7F);
+        assertMatchesUntiled("Fused Update", service.updateImmediately());
+
+        settings.currentFilters.get().get(4).enable.set(false);
+        assertMatchesUntiled("Disabled Filter", service.updateImmediately());
+    }
+
+    @Test
+    public void testCacheBudget() throws InterruptedException {
+        long imageSize = getSizeInBytes(cropped);
+
+        //with the default budget every intermediate result is kept, the fused run only caches its last image
+        BufferedImage result = service.updateImmediately();
+        Assert.assertEquals(4 * imageSize, service.getCacheSizeInBytes(result));
+
+        //a budget which only fits one of the cached images
+        int budgetMB = (int) ((imageSize * 3 / 2) / (1024 * 1024));
+        long budget = budgetMB * 1024L * 1024L;
+        Assert.assertTrue(budget >= imageSize && budget < imageSize * 2);
+        DBPreferences.INSTANCE.imageFilterCacheSize.set(budgetMB);
+
+        for(int i = 0; i < 4; i++){
+            //alternate between filters so the evicted images are needed again
+            setFilterSetting(i % 2 == 0 ? 3 : 0, i % 2 == 0 ? "H Radius" : "Radius", 2F + i);
+            result = service.updateImmediately();
+            assertMatchesUntiled("Budget Update " + i, result);
+            long cacheSize = service.getCacheSizeInBytes(result);
+            Assert.assertTrue("Cache size %s exceeds the budget %s".formatted(cacheSize, budget), cacheSize <= budget);
+            Assert.assertTrue("Every cached image was removed", cacheSize > 0);
+        }
+
+        //with no budget only the current result is kept
+        DBPreferences.INSTANCE.imageFilterCacheSize.set(0);
+        setFilterSetting(4, null, null);
+        settings.currentFilters.get().get(5).enable.set(false);
+        result = service.updateImmediately();
+        assertMatchesUntiled("No Budget", result);
+        Assert.assertEquals(0, service.getCacheSizeInBytes(result));
+
+        setFilterSetting(3, "H Radius", 1F);
+        assertMatchesUntiled("No Budget Partial Update", service.updateImmediately());
+    }
+
+    private void assertMatchesUntiled(String message, BufferedImage result){
+        BufferedImage expected = cropped;
+        for(ObservableImageFilter filter : settings.currentFilters.get()){
+            if(filter.enable.get()){
+                expected = filter.getBufferedImageOp().filter(expected, null);
+            }
+        }
+        Assert.assertNotNull(message, result);
+        Assert.assertEquals(message, expected.getWidth(), result.getWidth());
+        Assert.assertEquals(message, expected.getHeight(), result.getHeight());
+        for(int y = 0; y < expected.getHeight(); y++){
+            for(int x = 0; x < expected.getWidth(); x++){
+                int expectedARGB = expected.getRGB(x, y);
+                int resultARGB = result.getRGB(x, y);
+                if(expectedARGB != resultARGB){
+                    Assert.fail("%s: pixel (%s, %s) expected %08x but was %08x".formatted(message, x, y, expectedARGB, resultARGB));
+                }
+            }
+        }
+    }
+
+    private void addFilter(String name, String key, Object value){
+        ObservableImageFilter filter = new ObservableImageFilter(MasterRegistry.INSTANCE.getImageFilterFactory(name));
+        if(key != null){
+            GenericSetting.findSetting(filter.filterSettings, key).setValue(value);
+        }
+        settings.currentFilters.get().add(filter);
+    }
+
+    /**
+     * Changes a setting of the filter, or marks the filter as changed if the key is null
+     */
+    private void setFilterSetting(int index, String key, Object value){
+        ObservableImageFilter filter = settings.currentFilters.get().get(index);
+        if(key == null){
+            filter.name.set(filter.name.get() + " ");
+            return;
+        }
+        GenericSetting.findSetting(filter.filterSettings, key).setValue(value);
+    }
+
+    private static long getSizeInBytes(BufferedImage image){
+        DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+        return (long) dataBuffer.getSize() * dataBuffer.getNumBanks() * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+    }
+}
@@ -0,0 +1,93 @@
+package drawingbot.image;
+
+import com.jhlabs.image.GaussianFilter;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.util.Arrays;
+import java.util.Random;
+
+public class TiledImageFilterTest {
+
+    public static final int WIDTH = 900;
+    public static final int HEIGHT = 700;
+
+    private static BufferedImage image;
+
+    @BeforeClass
+    public static void setup() {
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Random random = new Random(0);
+        for(int y = 0; y < HEIGHT; y++){
+            for(int x = 0; x < WIDTH; x++){
+                image.setRGB(x, y, random.nextInt() | 0xFF000000);
+            }
+        }
+    }
+
+    /**
+     * Convolutions with kernels taller than the margin between bands would read pixels from the neighbouring bands
+     */
+    @Test
+    public void testConvolution() throws InterruptedException {
+        for(int size : new int[]{3, 9, 31}){
+            float[] data = new float[size * size];
+            Arrays.fill(data, 1F / data.length);
+            Kernel kernel = new Kernel(size, size, data);
+            for(int edge : new int[]{ConvolveOp.EDGE_NO_OP, ConvolveOp.EDGE_ZERO_FILL}){
+                assertMatchesSinglePass("Convolution " + size + " Edge " + edge, () -> new ConvolveOp(kernel, edge, null));
+            }
+        }
+    }
+
+    @Test
+    public void testGaussian() throws InterruptedException {
+        for(float radius : new float[]{1.5F, 12F, 40F}){
+            assertMatchesSinglePass("Gaussian " + radius, () -> new GaussianFilter(radius));
+        }
+    }
+
+    /**
+     * A cancelled filter must not return the unfiltered image
+     */
+    @Test
+    public void testCancelled() {
+        BufferedImageOpFactory factory = () -> new GaussianFilter(10F);
+        Assert.assertTrue(TiledImageFilter.getBandHeight(HEIGHT, 11) < HEIGHT);
+        Thread.currentThread().interrupt();
+        try{
+            Assert.assertNull(TiledImageFilter.filterOrCancel(factory, image));
+            Assert.assertTrue(Thread.currentThread().isInterrupted());
+        }finally{
+            Thread.interrupted();
+        }
+        Assert.assertNotNull(TiledImageFilter.filterOrCancel(factory, image));
+    }
+
+    private static void assertMatchesSinglePass(String message, BufferedImageOpFactory factory) throws InterruptedException {
+        BufferedImageOp imageOp = factory.getBufferedImageOp();
+        int radius = TiledImageFilter.getFootprintRadius(imageOp);
+        Assert.assertNotEquals(message, TiledImageFilter.GLOBAL_FOOTPRINT, radius);
+        Assert.assertTrue(message + " wasn't split into bands", TiledImageFilter.getBandHeight(HEIGHT, radius) < HEIGHT);
+
+        BufferedImage expected = imageOp.filter(image, null);
+        BufferedImage banded = TiledImageFilter.filter(factory, image, null);
+
+        Assert.assertEquals(message, expected.getWidth(), banded.getWidth());
+        Assert.assertEquals(message, expected.getHeight(), banded.getHeight());
+        for(int y = 0; y < HEIGHT; y++){
+            for(int x = 0; x < WIDTH; x++){
+                int expectedARGB = expected.getRGB(x, y);
+                int bandedARGB = banded.getRGB(x, y);
+                if(expectedARGB != bandedARGB){
+                    Assert.fail("%s: pixel (%s, %s) expected %08x but was %08x".formatted(message, x, y, expectedARGB, bandedARGB));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package drawingbot.pfm;
+
+import drawingbot.DrawingBotV3;
+import drawingbot.JUnitDBV3ClassRunner;
+import drawingbot.TestUtils;
+import drawingbot.geom.shapes.IGeometry;
+import drawingbot.javafx.GenericSetting;
+import drawingbot.pfm.helpers.ParallelSketchRunner;
+import drawingbot.plotting.PFMTask;
+import drawingbot.plotting.PFMTaskBuilder;
+import drawingbot.registry.MasterRegistry;
+import drawingbot.registry.Register;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(JUnitDBV3ClassRunner.class)
+public class ParallelSketchRunnerTest {
+
+    public static final int WORKERS = 4;
+    public static final int SEED = 1234;
+    public static final int MAX_LINES = 20000;
+    public static final int MAX_LINE_LENGTH = 40;
+    /**the tile size used by the runner for the max line length*/
+    public static final int TILE_SIZE = Math.max(ParallelSketchRunner.MIN_TILE_SIZE, MAX_LINE_LENGTH * 4);
+
+    @Test
+    public void testReproducible() {
+        List<String> firstRun = runParallelSketch();
+        List<String> secondRun = runParallelSketch();
+
+        Assert.assertFalse(firstRun.isEmpty());
+        Assert.assertEquals(firstRun.size(), secondRun.size());
+        for(int i = 0; i < firstRun.size(); i++){
+            Assert.assertEquals("Geometry " + i + " differs between runs", firstRun.get(i), secondRun.get(i));
+        }
+    }
+
+    /**
+     * Runs the Sketch Lines PFM with multiple workers, checks every geometry stays inside a tile of one of the two grids used by the runner.
+     * When run on a single thread the lines cross the edges of both grids, so this also checks the PFM ran in parallel.
+     * @return a description of every geometry in the final drawing, in the order they were added
+     */
+    private List<String> runParallelSketch(){
+        List<GenericSetting<?, ?>> settings = GenericSetting.copy(MasterRegistry.INSTANCE.getObservablePFMSettingsList(Register.INSTANCE.PFM_SKETCH_LINES), new ArrayList<>());
+        GenericSetting.findSetting(settings, "Parallel Workers").setValue(WORKERS);
+        GenericSetting.findSetting(settings, "Random Seed").setValue(SEED);
+        GenericSetting.findSetting(settings, "Line Max Limit").setValue(MAX_LINES);
+        GenericSetting.findSetting(settings, "Line Max Length").setValue(MAX_LINE_LENGTH);
+        GenericSetting.findSetting(settings, "Plotting Resolution").setValue(1F);
+
+        PFMTaskBuilder builder = PFMTaskBuilder.create(DrawingBotV3.context(), Register.INSTANCE.PFM_SKETCH_LINES);
+        builder.pfmSettings = settings;
+        PFMTask task = builder.createPFMTask();
+
+        TestUtils.runPFMTest(task, null);
+
+        List<String> failures = new ArrayList<>();
+        List<String> geometries = new ArrayList<>();
+        for(IGeometry geometry : task.drawing.geometries){
+            Rectangle2D bounds = geometry.getAWTShape().getBounds2D();
+            //even rounds use the grid at the origin, odd rounds shift the grid by half a tile
+            if(!isWithinTile(bounds, 0) && !isWithinTile(bounds, TILE_SIZE / 2)){
+                failures.add("Geometry %s crosses the edges of both tile grids".formatted(bounds));
+            }
+            geometries.add(describe(geometry));
+        }
+        Assert.assertEquals(Collections.emptyList(), failures);
+        task.tryDestroy();
+        return geometries;
+    }
+
+    /**
+     * @param offset the offset of the tile grid
+     * @return true if the bounds are within a single tile of the grid
+     */
+    private static boolean isWithinTile(Rectangle2D bounds, int offset){
+        return Math.floorDiv((int) Math.floor(bounds.getMinX()) + offset, TILE_SIZE) == Math.floorDiv((int) Math.floor(bounds.getMaxX()) + offset, TILE_SIZE)
+                && Math.floorDiv((int) Math.floor(bounds.getMinY()) + offset, TILE_SIZE) == Math.floorDiv((int) Math.floor(bounds.getMaxY()) + offset, TILE_SIZE);
+    }
+
+    private static String describe(IGeometry geometry){
+        StringBuilder builder = new StringBuilder();
+        builder.append(geometry.getClass().getSimpleName()).append(" pen: ").append(geometry.getPenIndex());
+        float[] coords = new float[6];
+        for(PathIterator iterator = geometry.getAWTShape().getPathIterator(null); !iterator.isDone(); iterator.next()){
+            int type = iterator.currentSegment(coords);
+            builder.append(' ').append(type);
+            int points = type == PathIterator.SEG_CUBICTO ? 3 : type == PathIterator.SEG_QUADTO ? 2 : type == PathIterator.SEG_CLOSE ? 0 : 1;
+            for(int i = 0; i < points * 2; i++){
+                builder.append(' ').append(coords[i]);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,121 @@
+package drawingbot.pfm.helpers;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Compares the coverage of the {@link StrokeRasterizer} with the anti-aliased Graphics2D strokes previously used to erase geometries
+ */
+public class StrokeRasterizerTest {
+
+    public static final int WIDTH = 200;
+    public static final int HEIGHT = 200;
+
+    public static final float[] LINE_WIDTHS = new float[]{1F, 2F, 5F, 12F};
+
+    /**the largest difference in the coverage of a single pixel, the coverage from the distance to the stroke is an approximation of the area covered*/
+    public static final int PIXEL_TOLERANCE = 64;
+    /**the largest difference in the total coverage of the stroke, as a fraction of the Graphics2D coverage*/
+    public static final double TOTAL_TOLERANCE = 0.1;
+
+    @Test
+    public void testLines() {
+        assertMatchesGraphics2D("Horizontal", new Line2D.Float(20, 50, 180, 50));
+        assertMatchesGraphics2D("Vertical", new Line2D.Float(60, 10, 60, 190));
+        assertMatchesGraphics2D("Diagonal", new Line2D.Float(15, 20, 185, 170));
+        assertMatchesGraphics2D("Fractional", new Line2D.Float(10.3F, 100.7F, 190.6F, 131.2F));
+        assertMatchesGraphics2D("Short", new Line2D.Float(100, 100, 103, 101));
+        //partially outside the image
+        assertMatchesGraphics2D("Clipped", new Line2D.Float(-40, 120, 240, 160));
+    }
+
+    @Test
+    public void testPath() {
+        Path2D.Float path = new Path2D.Float();
+        path.moveTo(30, 150);
+        path.lineTo(80, 120);
+        path.lineTo(90, 180);
+        path.lineTo(170, 60);
+        path.quadTo(120, 20, 40, 40);
+        assertMatchesGraphics2D("Path", path);
+    }
+
+    /**
+     * Each pixel is only passed to the setter once, even where the segments of the stroke overlap
+     */
+    @Test
+    public void testCoveredOnce() {
+        Path2D.Float path = new Path2D.Float();
+        path.moveTo(20, 20);
+        path.lineTo(180, 180);
+        path.lineTo(20, 180);
+        path.lineTo(180, 20);
+        path.closePath();
+
+        StrokeRasterizer rasterizer = new StrokeRasterizer();
+        for(int pass = 0; pass < 2; pass++){
+            int[] calls = new int[WIDTH * HEIGHT];
+            rasterizer.rasterizeStroke(path, 8F, WIDTH, HEIGHT, (x, y, coverage) -> {
+                Assert.assertTrue(coverage > 0 && coverage <= 255);
+                calls[y * WIDTH + x]++;
+            });
+            for(int i = 0; i < calls.length; i++){
+                Assert.assertTrue("Pixel " + i + " covered " + calls[i] + " times", calls[i] <= 1);
+            }
+        }
+    }
+
+    private static void assertMatchesGraphics2D(String name, Shape shape){
+        StrokeRasterizer rasterizer = new StrokeRasterizer();
+        for(float lineWidth : LINE_WIDTHS){
+            String message = name + " Width " + lineWidth;
+            int[] expected = renderGraphics2D(shape, lineWidth);
+            int[] actual = new int[WIDTH * HEIGHT];
+            rasterizer.rasterizeStroke(shape, lineWidth, WIDTH, HEIGHT, (x, y, coverage) -> actual[y * WIDTH + x] = coverage);
+
+            long expectedTotal = 0, actualTotal = 0;
+            for(int i = 0; i < expected.length; i++){
+                expectedTotal += expected[i];
+                actualTotal += actual[i];
+                if(Math.abs(expected[i] - actual[i]) > PIXEL_TOLERANCE){
+                    Assert.fail("%s: pixel (%s, %s) expected %s but was %s".formatted(message, i % WIDTH, i / WIDTH, expected[i], actual[i]));
+                }
+            }
+            Assert.assertTrue(message, expectedTotal > 0);
+            Assert.assertEquals(message + " total coverage", 1D, (double) actualTotal / expectedTotal, TOTAL_TOLERANCE);
+        }
+    }
+
+    /**
+     * Renders the stroke in white on black with the same stroke & hints as the previous erase, returning the coverage of each pixel
+     */
+    private static int[] renderGraphics2D(Shape shape, float lineWidth){
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(0, 0, WIDTH, HEIGHT);
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        //stroke normalization snaps the stroke to the pixel grid, which would hide differences in the coverage
+        graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        //the rasterizer's pixel centres are at integer coordinates, Graphics2D's are at the centre of each pixel
+        graphics.translate(0.5, 0.5);
+        graphics.setColor(Color.WHITE);
+        graphics.setStroke(new BasicStroke(lineWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        graphics.draw(shape);
+        graphics.dispose();
+
+        int[] coverage = new int[WIDTH * HEIGHT];
+        for(int y = 0; y < HEIGHT; y++){
+            for(int x = 0; x < WIDTH; x++){
+                coverage[y * WIDTH + x] = (image.getRGB(x, y) >> 16) & 0xFF;
+            }
+        }
+        return coverage;
+    }
+}
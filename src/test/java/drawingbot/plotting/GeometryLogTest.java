@@ -0,0 +1,72 @@
+package drawingbot.plotting;
+
+import drawingbot.geom.shapes.GLine;
+import drawingbot.geom.shapes.IGeometry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class GeometryLogTest {
+
+    @Test
+    public void testAppend() {
+        GeometryLog log = new GeometryLog();
+        int count = GeometryLog.SEGMENT_SIZE * 3 + 7;
+        for(int i = 0; i < count; i++){
+            GLine line = new GLine(i, i, i + 1, i + 1);
+            line.setGeometryIndex(i);
+            log.add(line);
+        }
+        Assert.assertEquals(count, log.size());
+        for(int i = 0; i < count; i++){
+            Assert.assertEquals(i, log.get(i).getGeometryIndex());
+        }
+
+        Iterator<IGeometry> iterator = log.iterator();
+        log.add(new GLine(0, 0, 1, 1));
+        int iterated = 0;
+        while(iterator.hasNext()){
+            iterator.next();
+            iterated++;
+        }
+        Assert.assertEquals(count, iterated);
+
+        log.clear();
+        Assert.assertEquals(0, log.size());
+        Assert.assertThrows(IndexOutOfBoundsException.class, () -> log.get(0));
+    }
+
+    @Test
+    public void testConcurrentReads() throws InterruptedException {
+        GeometryLog log = new GeometryLog();
+        int count = GeometryLog.SEGMENT_SIZE * 50;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            try{
+                int read = 0;
+                while(read < count){
+                    while(read < log.size()){
+                        Assert.assertEquals(read, log.get(read).getGeometryIndex());
+                        read++;
+                    }
+                }
+            }catch (Throwable t){
+                failure.set(t);
+            }
+        });
+        reader.start();
+
+        for(int i = 0; i < count; i++){
+            GLine line = new GLine(i, i, i + 1, i + 1);
+            line.setGeometryIndex(i);
+            log.add(line);
+        }
+        reader.join(10000);
+
+        Assert.assertNull(failure.get());
+        Assert.assertFalse(reader.isAlive());
+    }
+}
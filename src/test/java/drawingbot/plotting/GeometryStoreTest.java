@@ -0,0 +1,236 @@
+package drawingbot.plotting;
+
+import drawingbot.geom.GeometryClipper;
+import drawingbot.geom.shapes.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class GeometryStoreTest {
+
+    @Test
+    public void testRoundTrip() {
+        GeometryStore store = new GeometryStore();
+        int count = GeometryStore.CHUNK_SIZE * 2 + 5;
+        for(int i = 0; i < count; i++){
+            IGeometry geometry = createGeometry(i);
+            geometry.setGeometryIndex(i);
+            store.add(geometry);
+        }
+        Assert.assertEquals(count, store.size());
+
+        for(int i = 0; i < count; i++){
+            IGeometry expected = createGeometry(i);
+            IGeometry stored = store.get(i);
+            assertGeometryEquals(expected, stored);
+            if(expected instanceof GLine){
+                Assert.assertTrue(stored instanceof GeometryStore.StoredLine);
+                Assert.assertEquals(i, stored.getGeometryIndex());
+                Assert.assertEquals(stored, store.get(i));
+                Assert.assertEquals(stored.hashCode(), store.get(i).hashCode());
+                Assert.assertEquals(GLine.class, stored.copyGeometry().getClass());
+                assertGeometryEquals(expected, stored.copyGeometry());
+            }
+            Assert.assertEquals(i, store.indexOfStored(stored));
+        }
+
+        Iterator<IGeometry> iterator = store.iterator();
+        store.add(new GLine(0, 0, 1, 1));
+        int iterated = 0;
+        while(iterator.hasNext()){
+            assertGeometryEquals(createGeometry(iterated), iterator.next());
+            iterated++;
+        }
+        Assert.assertEquals(count, iterated);
+
+        store.clear();
+        Assert.assertEquals(0, store.size());
+        Assert.assertThrows(IndexOutOfBoundsException.class, () -> store.get(0));
+    }
+
+    /**
+     * Changes made through the views of stored lines must be written back to the store
+     */
+    @Test
+    public void testWriteThrough() {
+        GeometryStore store = new GeometryStore();
+        store.add(createLine(0));
+        store.add(new GQuadCurve(0, 0, 5, 5, 10, 0));
+
+        IGeometry view = store.get(0);
+        view.setPenIndex(7);
+        view.setPFMPenIndex(8);
+        view.setSampledRGBA(0x12345678);
+        view.setGroupID(9);
+        view.setFillType(1);
+        view.transformGeometry(AffineTransform.getTranslateInstance(10, 20));
+
+        ILine line = (ILine) store.get(0);
+        Assert.assertEquals(7, line.getPenIndex());
+        Assert.assertEquals(8, line.getPFMPenIndex());
+        Assert.assertEquals(0x12345678, line.getSampledRGBA());
+        Assert.assertEquals(9, line.getGroupID());
+        Assert.assertEquals(1, line.getFillType());
+        Assert.assertEquals(10, line.getX1(), 0);
+        Assert.assertEquals(20.5F, line.getY1(), 0);
+
+        //replacing a line returns a standalone copy of the previous line
+        IGeometry previous = store.set(0, new GLine(1, 2, 3, 4));
+        Assert.assertEquals(GLine.class, previous.getClass());
+        Assert.assertEquals(10, ((GLine) previous).getX1(), 0);
+        Assert.assertEquals(1, ((ILine) store.get(0)).getX1(), 0);
+
+        //lines can replace other geometries and vice versa
+        store.set(1, new GLine(5, 6, 7, 8));
+        Assert.assertTrue(store.get(1) instanceof GeometryStore.StoredLine);
+        GCubicCurve curve = new GCubicCurve(0, 0, 1, 1, 2, 2, 3, 3);
+        store.set(0, curve);
+        Assert.assertSame(curve, store.get(0));
+    }
+
+    @Test
+    public void testIndexList() {
+        GeometryStore store = new GeometryStore();
+        for(int i = 0; i < 10; i++){
+            IGeometry geometry = createGeometry(i);
+            geometry.setGeometryIndex(i);
+            store.add(geometry);
+        }
+
+        GeometryStore.IndexList list = store.createIndexList();
+        for(int i = 9; i >= 0; i -= 2){
+            list.add(store.get(i));
+        }
+        Assert.assertEquals(5, list.size());
+        Assert.assertEquals(10, store.size());
+        for(int i = 0; i < list.size(); i++){
+            Assert.assertEquals(store.get(9 - i * 2), list.get(i));
+        }
+
+        list.set(0, store.get(0));
+        Assert.assertEquals(store.get(0), list.get(0));
+        list.remove(0);
+        Assert.assertEquals(4, list.size());
+        Assert.assertEquals(store.get(7), list.get(0));
+        Assert.assertThrows(IndexOutOfBoundsException.class, () -> list.get(4));
+
+        list.clear();
+        Assert.assertEquals(0, list.size());
+        Assert.assertEquals(10, store.size());
+    }
+
+    /**
+     * Geometries which aren't in the store e.g. the results of clipping, are appended to the store when added to an index list
+     */
+    @Test
+    public void testIndexListForeignGeometries() {
+        GeometryStore store = new GeometryStore();
+        store.add(createLine(0));
+        GeometryStore.IndexList list = store.createIndexList();
+
+        GLine line = createLine(1);
+        list.add(line);
+        Assert.assertEquals(2, store.size());
+        Assert.assertEquals(store.get(1), list.get(0));
+        assertGeometryEquals(line, list.get(0));
+
+        GCubicCurve curve = new GCubicCurve(0, 0, 1, 1, 2, 2, 3, 3);
+        list.add(curve);
+        Assert.assertEquals(3, store.size());
+        Assert.assertSame(curve, list.get(1));
+
+        //lines from another store are copied into this one
+        GeometryStore other = new GeometryStore();
+        other.add(createLine(2));
+        list.set(0, other.get(0));
+        Assert.assertEquals(4, store.size());
+        Assert.assertEquals(store.get(3), list.get(0));
+        assertGeometryEquals(createLine(2), list.get(0));
+
+        //clipping a stored line creates new lines, which can be added to the list
+        GeometryClipper clipper = GeometryClipper.create(new Rectangle2D.Double(0, 0, 5, 5));
+        List<IGeometry> clipped = clipper.clip(store.get(3), false);
+        Assert.assertEquals(1, clipped.size());
+        Assert.assertTrue(clipped.get(0) instanceof GLine);
+        Assert.assertEquals(0, ((GLine) clipped.get(0)).getX1(), 0.01F);
+        Assert.assertEquals(store.get(3).getPenIndex(), clipped.get(0).getPenIndex());
+        list.add(clipped.get(0));
+        Assert.assertEquals(5, store.size());
+        assertGeometryEquals(clipped.get(0), list.get(2));
+    }
+
+    @Test
+    public void testConcurrentAppend() throws InterruptedException {
+        GeometryStore store = new GeometryStore();
+        int count = GeometryStore.CHUNK_SIZE * 50;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            try{
+                int read = 0;
+                while(read < count){
+                    while(read < store.size()){
+                        IGeometry geometry = store.get(read);
+                        Assert.assertEquals(read, geometry.getGeometryIndex());
+                        Assert.assertEquals(read % 7, geometry.getPenIndex());
+                        Assert.assertEquals(read, ((ILine) geometry).getX1(), 0);
+                        Assert.assertEquals(read + 1, ((ILine) geometry).getY2(), 0);
+                        read++;
+                    }
+                }
+            }catch (Throwable t){
+                failure.set(t);
+            }
+        });
+        reader.start();
+
+        for(int i = 0; i < count; i++){
+            GLine line = new GLine(i, i, i + 1, i + 1);
+            line.setGeometryIndex(i);
+            line.setPenIndex(i % 7);
+            store.add(line);
+        }
+        reader.join(10000);
+
+        Assert.assertNull(failure.get());
+        Assert.assertFalse(reader.isAlive());
+    }
+
+    private static IGeometry createGeometry(int i){
+        if(i % 5 == 4){
+            GCubicCurve curve = new GCubicCurve(i, 0, i, 1, i + 1, 1, i + 1, 0);
+            setAttributes(curve, i);
+            return curve;
+        }
+        return createLine(i);
+    }
+
+    private static GLine createLine(int i){
+        GLine line = new GLine(i * 0.5F, i + 0.5F, -i, i * 2);
+        setAttributes(line, i);
+        return line;
+    }
+
+    private static void setAttributes(IGeometry geometry, int i){
+        geometry.setPenIndex(i % 7);
+        geometry.setPFMPenIndex(i % 3);
+        geometry.setSampledRGBA(i * 31);
+        geometry.setGroupID(i % 4);
+        geometry.setFillType(i % 2);
+    }
+
+    private static void assertGeometryEquals(IGeometry expected, IGeometry actual){
+        Assert.assertEquals(expected.getPenIndex(), actual.getPenIndex());
+        Assert.assertEquals(expected.getPFMPenIndex(), actual.getPFMPenIndex());
+        Assert.assertEquals(expected.getSampledRGBA(), actual.getSampledRGBA());
+        Assert.assertEquals(expected.getGroupID(), actual.getGroupID());
+        Assert.assertEquals(expected.getFillType(), actual.getFillType());
+        Assert.assertEquals(expected.getVertexCount(), actual.getVertexCount());
+        Assert.assertEquals(expected.serializeData(), actual.serializeData());
+    }
+}
@@ -101,6 +101,23 @@ public class PlottedDrawingTests {
         Assert.assertEquals(outputDrawing.geometries.size(), 8);
     }
 
+    /**
+     * The revision only changes when the distribution moves geometries to different pens
+     */
+    @Test
+    public void testDistributionRevision() {
+        PlottedDrawing drawing = toCopy.copy();
+        drawing.updatePenDistribution();
+        int revision = drawing.getDistributionRevision();
+
+        drawing.updatePenDistribution();
+        Assert.assertEquals(revision, drawing.getDistributionRevision());
+
+        drawing.geometries.forEach(geometry -> geometry.setPenIndex(-1));
+        drawing.updatePenDistribution();
+        Assert.assertNotEquals(revision, drawing.getDistributionRevision());
+    }
+
     @Test
     public void testSerializeCoords() {
         float[] coordsA = new float[]{0.12345F, 1.2345F, 12.345F, 123.45F, 1234.5F, 12345F};
@@ -0,0 +1,129 @@
+package drawingbot.plotting;
+
+import drawingbot.DrawingBotV3;
+import drawingbot.JUnitDBV3ClassRunner;
+import drawingbot.geom.shapes.GLine;
+import drawingbot.geom.shapes.IGeometry;
+import drawingbot.javafx.observables.ObservableDrawingSet;
+import drawingbot.plotting.canvas.SimpleCanvas;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnitDBV3ClassRunner.class)
+public class SubTaskSchedulerTest {
+
+    public static final int GEOMETRIES_PER_TASK = 5000;
+
+    @Test
+    public void testConcurrent() {
+        int parallelism = Math.min(3, Runtime.getRuntime().availableProcessors());
+        Assume.assumeTrue(parallelism > 1);
+
+        CyclicBarrier barrier = new CyclicBarrier(parallelism);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<FutureTask<Void>> tasks = new ArrayList<>();
+        for(int i = 0; i < parallelism * 3; i++){
+            tasks.add(new FutureTask<>(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                //only passes if the other tasks are running at the same time
+                barrier.await(10, TimeUnit.SECONDS);
+                running.decrementAndGet();
+                return null;
+            }));
+        }
+
+        SubTaskScheduler.run(tasks, parallelism, () -> false);
+
+        Assert.assertEquals(parallelism, maxRunning.get());
+        for(FutureTask<Void> task : tasks){
+            Assert.assertTrue(task.isDone());
+            Assert.assertFalse(task.isCancelled());
+            try{
+                task.get();
+            }catch (InterruptedException | ExecutionException e){
+                Assert.fail("Sub task failed: " + e);
+            }
+        }
+    }
+
+    @Test
+    public void testCancelled() {
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        List<FutureTask<Void>> tasks = new ArrayList<>();
+        for(int i = 0; i < 4; i++){
+            tasks.add(new FutureTask<>(() -> {
+                cancelled.set(true);
+                return null;
+            }));
+        }
+
+        SubTaskScheduler.run(tasks, 1, cancelled::get);
+
+        Assert.assertFalse(tasks.get(0).isCancelled());
+        for(int i = 1; i < tasks.size(); i++){
+            Assert.assertTrue(tasks.get(i).isCancelled());
+        }
+    }
+
+    /**
+     * The sub drawings are plotted at the same time, but the live preview must still iterate them in the order they were added
+     */
+    @Test
+    public void testPreviewOrder() {
+        int parallelism = Math.min(4, Runtime.getRuntime().availableProcessors());
+        Assume.assumeTrue(parallelism > 1);
+
+        ObservableDrawingSet drawingSet = DrawingBotV3.project().getActiveDrawingSet();
+        WrappedGeometryIterator iterator = new WrappedGeometryIterator();
+        CyclicBarrier barrier = new CyclicBarrier(parallelism);
+        List<PlottedDrawing> drawings = new ArrayList<>();
+        List<FutureTask<Void>> tasks = new ArrayList<>();
+        for(int i = 0; i < parallelism; i++){
+            PlottedDrawing drawing = new PlottedDrawing(new SimpleCanvas(100, 100), DrawingBotV3.project().getDrawingSets());
+            PlottedGroup group = drawing.newPlottedGroup(drawingSet, null);
+            drawings.add(drawing);
+            iterator.addIterator(drawing, new AsynchronousGeometryIterator(drawing));
+
+            int taskIndex = i;
+            tasks.add(new FutureTask<>(() -> {
+                barrier.await(10, TimeUnit.SECONDS);
+                for(int g = 0; g < GEOMETRIES_PER_TASK; g++){
+                    GLine line = new GLine(taskIndex, g, taskIndex + 1, g + 1);
+                    line.setPenIndex(0);
+                    drawing.addGeometry(line, group);
+                }
+                return null;
+            }));
+        }
+
+        SubTaskScheduler.run(tasks, parallelism, () -> false);
+        for(FutureTask<Void> task : tasks){
+            Assert.assertTrue(task.isDone());
+            Assert.assertFalse(task.isCancelled());
+        }
+
+        int drawingIndex = 0;
+        int geometryIndex = 0;
+        while(iterator.hasNext()){
+            IGeometry geometry = iterator.next();
+            if(geometryIndex == GEOMETRIES_PER_TASK){
+                drawingIndex++;
+                geometryIndex = 0;
+            }
+            Assert.assertSame(drawings.get(drawingIndex), iterator.currentDrawing);
+            Assert.assertEquals(geometryIndex, geometry.getGeometryIndex());
+            geometryIndex++;
+        }
+        Assert.assertEquals(parallelism - 1, drawingIndex);
+        Assert.assertEquals(GEOMETRIES_PER_TASK, geometryIndex);
+    }
+}
@@ -0,0 +1,153 @@
+package drawingbot.render;
+
+import drawingbot.DrawingBotV3;
+import drawingbot.JUnitDBV3ClassRunner;
+import drawingbot.api.IGeometryFilter;
+import drawingbot.geom.shapes.GLine;
+import drawingbot.image.blend.EnumBlendMode;
+import drawingbot.javafx.observables.ObservableDrawingPen;
+import drawingbot.javafx.util.JFXUtils;
+import drawingbot.plotting.PlottedDrawing;
+import drawingbot.plotting.canvas.SimpleCanvas;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests the cache of the tile pyramid without a viewport, the tiles are composited onto a canvas which isn't displayed
+ */
+@RunWith(JUnitDBV3ClassRunner.class)
+public class DrawingTilePyramidTest {
+
+    public static final int WIDTH = 600;
+    public static final int HEIGHT = 400;
+    public static final long TIMEOUT = 30000;
+
+    private static PlottedDrawing drawing;
+    private static ObservableDrawingPen penA, penB;
+
+    @BeforeClass
+    public static void setup() {
+        drawing = new PlottedDrawing(new SimpleCanvas(WIDTH, HEIGHT), DrawingBotV3.project().getDrawingSets());
+        drawing.newPlottedGroup(DrawingBotV3.project().getDrawingSets().activeDrawingSet.get(), null);
+        List<ObservableDrawingPen> pens = DrawingBotV3.project().getDrawingSets().activeDrawingSet.get().pens;
+        Assert.assertTrue(pens.size() >= 2);
+        penA = pens.get(0);
+        penB = pens.get(1);
+
+        Random random = new Random(0);
+        for(int i = 0; i < 500; i++){
+            GLine line = new GLine(random.nextFloat() * WIDTH, random.nextFloat() * HEIGHT, random.nextFloat() * WIDTH, random.nextFloat() * HEIGHT);
+            line.setPenIndex(i % 2);
+            drawing.addGeometry(line);
+        }
+    }
+
+    @Test
+    public void testRenderKey() {
+        DrawingTilePyramid.RenderKey key = createKey(drawing, 0, 1D);
+        Assert.assertEquals(key, createKey(drawing, 0, 1D));
+        Assert.assertEquals(key.hashCode(), createKey(drawing, 0, 1D).hashCode());
+
+        Assert.assertNotEquals(key, createKey(drawing, 1, 1D));
+        Assert.assertNotEquals(key, createKey(drawing, 0, 2D));
+        Assert.assertNotEquals(key, createKey(drawing.copy(), 0, 1D));
+
+        //adding geometries or changing the displayed range changes the key
+        PlottedDrawing copy = drawing.copy();
+        DrawingTilePyramid.RenderKey copyKey = createKey(copy, 0, 1D);
+        copy.addGeometry(new GLine(0, 0, 10, 10));
+        Assert.assertNotEquals(copyKey, createKey(copy, 0, 1D));
+        copyKey = createKey(copy, 0, 1D);
+        copy.displayedShapeMax = 10;
+        Assert.assertNotEquals(copyKey, createKey(copy, 0, 1D));
+    }
+
+    @Test
+    public void testLayerKey() {
+        ObservableDrawingPen pen = new ObservableDrawingPen(0, penA);
+        DrawingTilePyramid.LayerKey key = DrawingTilePyramid.LayerKey.create(pen);
+        Assert.assertEquals(key, DrawingTilePyramid.LayerKey.create(pen));
+
+        JFXUtils.runNow(() -> pen.javaFXColour.set(Color.color(0.12, 0.34, 0.56)));
+        DrawingTilePyramid.LayerKey recoloured = DrawingTilePyramid.LayerKey.create(pen);
+        Assert.assertNotEquals(key, recoloured);
+
+        JFXUtils.runNow(() -> pen.strokeSize.set(pen.strokeSize.get() + 1));
+        Assert.assertNotEquals(recoloured, DrawingTilePyramid.LayerKey.create(pen));
+
+        //each pen has its own layer, even with the same appearance
+        Assert.assertNotEquals(DrawingTilePyramid.LayerKey.create(penA), DrawingTilePyramid.LayerKey.create(pen));
+    }
+
+    /**
+     * Hidden layers are kept while they fit within the budget, and evicted once they don't, displayed layers are never evicted
+     */
+    @Test
+    public void testEvictLayers() {
+        DrawingTilePyramid pyramid = new DrawingTilePyramid(createKey(drawing, 0, 1D), DrawingBotV3.context());
+        GraphicsContext graphics = createGraphics();
+
+        renderLayers(pyramid, graphics, List.of(penA), Long.MAX_VALUE);
+        long bytesA = pyramid.getCachedBytes();
+        Assert.assertTrue(bytesA > 0);
+
+        renderLayers(pyramid, graphics, List.of(penB), Long.MAX_VALUE);
+        long bytesB = pyramid.getCachedBytes() - bytesA;
+        Assert.assertTrue(bytesB > 0);
+
+        //the hidden layer is still cached, so displaying it again doesn't render it again
+        JFXUtils.runNow(() -> pyramid.update(List.of(penA), EnumBlendMode.NORMAL, Color.WHITE, Long.MAX_VALUE));
+        Assert.assertEquals(1D, pyramid.getProgress(), 0);
+        Assert.assertEquals(bytesA + bytesB, pyramid.getCachedBytes());
+
+        //a budget smaller than the displayed layer only evicts the hidden layer
+        JFXUtils.runNow(() -> pyramid.update(List.of(penA), EnumBlendMode.NORMAL, Color.WHITE, 1));
+        Assert.assertEquals(bytesA, pyramid.getCachedBytes());
+        Assert.assertEquals(1D, pyramid.getProgress(), 0);
+
+        //the evicted layer must be rendered again
+        JFXUtils.runNow(() -> pyramid.update(List.of(penB), EnumBlendMode.NORMAL, Color.WHITE, Long.MAX_VALUE));
+        Assert.assertTrue(pyramid.getProgress() < 1D);
+        renderLayers(pyramid, graphics, List.of(penB), Long.MAX_VALUE);
+        Assert.assertEquals(bytesA + bytesB, pyramid.getCachedBytes());
+
+        JFXUtils.runNow(pyramid::cancel);
+        Assert.assertEquals(0, pyramid.getCachedBytes());
+    }
+
+    private static DrawingTilePyramid.RenderKey createKey(PlottedDrawing drawing, int filterState, double renderScale){
+        return DrawingTilePyramid.RenderKey.create(drawing, IGeometryFilter.BYPASS_FILTER, filterState, renderScale, (int) (WIDTH * renderScale), (int) (HEIGHT * renderScale));
+    }
+
+    private static GraphicsContext createGraphics(){
+        AtomicReference<GraphicsContext> graphics = new AtomicReference<>();
+        JFXUtils.runNow(() -> graphics.set(new Canvas(WIDTH, HEIGHT).getGraphicsContext2D()));
+        return graphics.get();
+    }
+
+    /**
+     * Displays the given pens and draws the tiles until every layer has finished rendering
+     */
+    private static void renderLayers(DrawingTilePyramid pyramid, GraphicsContext graphics, List<ObservableDrawingPen> pens, long memoryBudget){
+        JFXUtils.runNow(() -> pyramid.update(pens, EnumBlendMode.NORMAL, Color.WHITE, memoryBudget));
+        long startTime = System.currentTimeMillis();
+        AtomicReference<Boolean> finished = new AtomicReference<>(false);
+        while(!finished.get()){
+            Assert.assertTrue("The layers took too long to render", System.currentTimeMillis() - startTime < TIMEOUT);
+            JFXUtils.runNow(() -> {
+                boolean complete = pyramid.getProgress() == 1D;
+                pyramid.drawTiles(graphics, 0);
+                finished.set(complete && !pyramid.hasTilesToDraw());
+            });
+        }
+    }
+}